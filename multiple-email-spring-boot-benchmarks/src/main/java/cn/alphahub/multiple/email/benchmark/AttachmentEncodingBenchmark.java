@@ -0,0 +1,58 @@
+package cn.alphahub.multiple.email.benchmark;
+
+import cn.alphahub.multiple.email.EmailTemplate;
+import cn.alphahub.multiple.email.EmailTemplate.MimeMessageDomain;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * 不同大小附件的构建与编码开销
+ * <p>发送实例把邮件完整写出到空输出流，测量结果包含读取上传文件、构建邮件以及附件的Base64编码。</p>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttachmentEncodingBenchmark {
+    /**
+     * 附件大小（KB）
+     */
+    @Param({"1", "64", "1024", "10240"})
+    private int sizeKb;
+    private EmailTemplate emailTemplate;
+    private MimeMessageDomain message;
+    private MultipartFile file;
+
+    @Setup
+    public void setup() {
+        this.emailTemplate = BenchmarkSupport.emailTemplate(new BenchmarkSupport.NullMailSender(true), Runnable::run);
+        this.message = new MimeMessageDomain(BenchmarkSupport.TO, null, null, "Benchmark attachment", "<p>See attachment.</p>", null);
+        byte[] content = new byte[this.sizeKb * 1024];
+        new Random(42).nextBytes(content);
+        this.file = new BenchmarkSupport.BytesMultipartFile("attachment.bin", content);
+    }
+
+    @Benchmark
+    public SendResult attachment() {
+        return this.emailTemplate.sendAsync(this.message, this.file).join();
+    }
+}
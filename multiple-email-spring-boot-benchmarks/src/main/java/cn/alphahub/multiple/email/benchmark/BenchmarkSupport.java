@@ -0,0 +1,146 @@
+package cn.alphahub.multiple.email.benchmark;
+
+import cn.alphahub.multiple.email.EmailTemplate;
+import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRecipientProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRenderProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolProperties;
+import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.dispatch.EmailDispatcher;
+import cn.alphahub.multiple.email.render.MailTemplateEngine;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * 基准测试公共组件
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+final class BenchmarkSupport {
+    static final String FROM = "bench@example.com";
+    static final String TO = "to@example.com";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 在只注册邮件模板依赖的Spring容器中创建{@link EmailTemplate}，默认邮件模板使用给定的发送实例
+     * <p>容器不加载自动配置，重试、追踪、发件箱等可选组件均保持缺省值；容器不持有需要释放的资源，不再关闭。</p>
+     *
+     * @param mailSender 邮件发送实例
+     * @param executor   邮件发送执行器
+     * @return email template
+     */
+    static EmailTemplate emailTemplate(JavaMailSender mailSender, Executor executor) {
+        MailProperties mailProperties = new MailProperties();
+        mailProperties.setUsername(FROM);
+        MailWrapper mailWrapper = new MailWrapper(Map.of(Email.DEFAULT_TEMPLATE, mailProperties), Map.of(Email.DEFAULT_TEMPLATE, mailSender));
+        EmailThreadPoolProperties threadPoolProperties = new EmailThreadPoolProperties();
+        // 基准测试的执行器不限制队列长度，不做准入控制
+        threadPoolProperties.setMaxPendingTasks(Integer.MAX_VALUE);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(MailProperties.class, () -> mailProperties);
+        context.registerBean(JavaMailSender.class, () -> mailSender);
+        context.registerBean(MailWrapper.class, () -> mailWrapper);
+        context.registerBean(EmailThreadPoolProperties.class, () -> threadPoolProperties);
+        context.registerBean(EmailRecipientProperties.class, EmailRecipientProperties::new);
+        context.registerBean(EmailDispatcher.class, () -> new EmailDispatcher(threadPoolProperties, executor));
+        context.registerBean(MailTemplateEngine.class, () -> new MailTemplateEngine(new EmailRenderProperties(), context));
+        context.registerBean(EmailTemplate.class);
+        context.refresh();
+        return context.getBean(EmailTemplate.class);
+    }
+
+    /**
+     * 不连接SMTP服务器的邮件发送实例
+     * <p>{@code encode}为false时只执行发送前的{@code saveChanges()}；为true时再把邮件完整编码写出，包括附件的Base64编码。</p>
+     */
+    static final class NullMailSender extends JavaMailSenderImpl {
+        private final boolean encode;
+
+        NullMailSender(boolean encode) {
+            this.encode = encode;
+        }
+
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+            try {
+                for (MimeMessage mimeMessage : mimeMessages) {
+                    mimeMessage.saveChanges();
+                    if (this.encode) {
+                        mimeMessage.writeTo(OutputStream.nullOutputStream());
+                    }
+                }
+            } catch (MessagingException | IOException e) {
+                throw new MailSendException("Failed to encode message", e);
+            }
+        }
+    }
+
+    /**
+     * 内存中的上传文件
+     *
+     * @param name    文件名
+     * @param content 文件内容
+     */
+    record BytesMultipartFile(String name, byte[] content) implements MultipartFile {
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return this.name;
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.content.length == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return this.content.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return this.content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(this.content);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), this.content);
+        }
+    }
+}
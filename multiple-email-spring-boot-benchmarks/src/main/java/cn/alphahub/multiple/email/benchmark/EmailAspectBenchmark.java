@@ -0,0 +1,114 @@
+package cn.alphahub.multiple.email.benchmark;
+
+import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.config.EmailConfig.LoadBalanceStrategy;
+import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.group.CircuitBreaker;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+/**
+ * {@link EmailAspect}切换邮件模板的开销
+ * <p>{@code direct}为不经过切面的基线，{@code template}和{@code group}分别为{@code @Email(name)}和{@code @Email(group)}；
+ * {@code uncached}每次调用前清空方法解析缓存，对比缓存前查找注解和邮件模板的开销，{@code nested}为嵌套调用恢复外层邮件模板。</p>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailAspectBenchmark {
+    private SwitchTarget direct;
+    private SwitchTarget proxied;
+    private EmailAspect aspect;
+
+    @Setup
+    public void setup() {
+        MailProperties mailProperties = new MailProperties();
+        mailProperties.setUsername(BenchmarkSupport.FROM);
+        MailWrapper mailWrapper = new MailWrapper(Map.of("BENCH", mailProperties), Map.of("BENCH", new JavaMailSenderImpl()));
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, Duration.ofSeconds(30));
+        mailWrapper.setTemplateGroupMap(Map.of("bulk", new TemplateGroup("bulk", LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN,
+                List.of(new TemplateGroup.Member("BENCH", 1, circuitBreaker)))));
+
+        this.direct = new SwitchTarget();
+        SwitchTarget target = new SwitchTarget();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        this.aspect = new EmailAspect(mailWrapper);
+        proxyFactory.addAspect(this.aspect);
+        this.proxied = proxyFactory.getProxy();
+        target.self = this.proxied;
+    }
+
+    @Benchmark
+    public Object direct() {
+        return this.direct.template();
+    }
+
+    @Benchmark
+    public Object template() {
+        return this.proxied.template();
+    }
+
+    @Benchmark
+    public Object group() {
+        return this.proxied.group();
+    }
+
+    @Benchmark
+    public Object uncached() {
+        this.aspect.clearCache();
+        return this.proxied.template();
+    }
+
+    @Benchmark
+    public Object nested() {
+        return this.proxied.nested();
+    }
+
+    /**
+     * 被切面代理的目标
+     */
+    public static class SwitchTarget {
+        private SwitchTarget self;
+
+        @Email(name = "BENCH")
+        public Object template() {
+            return EmailAspect.MAIL_TEMPLATE_TL.get().context();
+        }
+
+        @Email(group = "bulk")
+        public Object group() {
+            return EmailAspect.MAIL_TEMPLATE_TL.get().group();
+        }
+
+        @Email(group = "bulk")
+        public Object nested() {
+            this.self.template();
+            return EmailAspect.MAIL_TEMPLATE_TL.get().group();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cn.alphahub.multiple.email.benchmark;
+
+import cn.alphahub.multiple.email.EmailTemplate;
+import cn.alphahub.multiple.email.EmailTemplate.MailDomain;
+import cn.alphahub.multiple.email.EmailTemplate.MailMergeDomain;
+import cn.alphahub.multiple.email.EmailTemplate.MailMergeRecipient;
+import cn.alphahub.multiple.email.EmailTemplate.MimeMessageDomain;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 邮件合并与逐封构建的开销对比
+ * <p>同一封带附件的邮件个性化后发给{@code recipients}个收件人，发送实例把邮件完整写出到空输出流，测量结果包含构建邮件和全部编码。</p>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MailMergeBenchmark {
+    private static final String BODY = "<html><body><h1>Hello ${name},</h1><p>Here is the monthly newsletter.</p></body></html>";
+    /**
+     * 附件大小（KB）
+     */
+    @Param({"64", "1024"})
+    private int sizeKb;
+    /**
+     * 收件人数量
+     */
+    @Param({"200"})
+    private int recipients;
+    private EmailTemplate emailTemplate;
+    private Path attachment;
+    private List<MailDomain> messages;
+    private MailMergeDomain mailMerge;
+
+    @Setup
+    public void setup() throws IOException {
+        this.emailTemplate = BenchmarkSupport.emailTemplate(new BenchmarkSupport.NullMailSender(true), Runnable::run);
+        byte[] content = new byte[this.sizeKb * 1024];
+        new Random(42).nextBytes(content);
+        this.attachment = Files.createTempFile("mail-merge-benchmark-", ".bin");
+        Files.write(this.attachment, content);
+        this.messages = new ArrayList<>(this.recipients);
+        List<MailMergeRecipient> mergeRecipients = new ArrayList<>(this.recipients);
+        for (int i = 0; i < this.recipients; i++) {
+            String to = "to" + i + "@example.com";
+            String name = "Reader " + i;
+            this.messages.add(new MimeMessageDomain(to, null, null, "Newsletter for " + name, BODY.replace("${name}", name), this.attachment.toString()));
+            mergeRecipients.add(new MailMergeRecipient(to, Map.of("name", name)));
+        }
+        this.mailMerge = new MailMergeDomain(null, "Newsletter for ${name}", BODY, this.attachment.toString(), null, mergeRecipients);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.attachment);
+    }
+
+    @Benchmark
+    public List<SendResult> individualMessages() {
+        return this.emailTemplate.sendBatch(this.messages).join();
+    }
+
+    @Benchmark
+    public List<SendResult> mailMerge() {
+        return this.emailTemplate.sendMerge(this.mailMerge).join();
+    }
+}
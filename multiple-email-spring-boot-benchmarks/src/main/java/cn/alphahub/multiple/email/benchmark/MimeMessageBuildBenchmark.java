@@ -0,0 +1,55 @@
+package cn.alphahub.multiple.email.benchmark;
+
+import cn.alphahub.multiple.email.EmailTemplate;
+import cn.alphahub.multiple.email.EmailTemplate.MimeMessageDomain;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 邮件消息对象构建为{@code MimeMessage}的开销
+ * <p>发送实例只执行{@code saveChanges()}，执行器在调用线程上直接运行，测量结果只包含构建邮件和生成邮件头。</p>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MimeMessageBuildBenchmark {
+    private EmailTemplate emailTemplate;
+    private SimpleMailMessageDomain simpleMessage;
+    private MimeMessageDomain mimeMessage;
+
+    @Setup
+    public void setup() {
+        this.emailTemplate = BenchmarkSupport.emailTemplate(new BenchmarkSupport.NullMailSender(false), Runnable::run);
+        this.simpleMessage = new SimpleMailMessageDomain(BenchmarkSupport.TO, null, null, "Benchmark subject", "Plain text body of the benchmark message.");
+        this.mimeMessage = new MimeMessageDomain(BenchmarkSupport.TO, null, null, "Benchmark subject",
+                "<html><body><h1>Benchmark</h1><p>HTML body of the benchmark message.</p></body></html>", null);
+    }
+
+    @Benchmark
+    public SendResult simpleMessage() {
+        return this.emailTemplate.sendAsync(this.simpleMessage).join();
+    }
+
+    @Benchmark
+    public SendResult mimeMessage() {
+        return this.emailTemplate.sendAsync(this.mimeMessage).join();
+    }
+}
@@ -0,0 +1,109 @@
+package cn.alphahub.multiple.email.benchmark;
+
+import cn.alphahub.multiple.email.EmailTemplate;
+import cn.alphahub.multiple.email.EmailTemplate.MailDomain;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailPoolProperties;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * 端到端发送吞吐量
+ * <p>
+ * 通过{@link FakeSmtpServer}完成真实的SMTP交互，比较不同线程池大小与SMTP连接池大小下的吞吐量，
+ * {@code poolSize=0}表示不开启连接池，每封邮件新建连接。
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendThroughputBenchmark {
+    private static final int MESSAGES = 200;
+
+    /**
+     * 邮件线程池大小
+     */
+    @Param({"4", "16"})
+    private int executorThreads;
+    /**
+     * SMTP连接池大小
+     */
+    @Param({"0", "1", "4", "8"})
+    private int poolSize;
+    private FakeSmtpServer server;
+    private ThreadPoolExecutor executor;
+    private PooledJavaMailSender mailSender;
+    private EmailTemplate emailTemplate;
+    private List<SimpleMailMessageDomain> messages;
+
+    @Setup
+    public void setup() throws IOException {
+        this.server = new FakeSmtpServer();
+        EmailPoolProperties poolProperties = new EmailPoolProperties();
+        poolProperties.setEnabled(this.poolSize > 0);
+        poolProperties.setMaxSize(Math.max(1, this.poolSize));
+        poolProperties.setMaxMessagesPerConnection(Integer.MAX_VALUE);
+        this.mailSender = new PooledJavaMailSender(poolProperties);
+        this.mailSender.setHost("127.0.0.1");
+        this.mailSender.setPort(this.server.getPort());
+        this.executor = new ThreadPoolExecutor(this.executorThreads, this.executorThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("bench-email-"));
+        this.emailTemplate = BenchmarkSupport.emailTemplate(this.mailSender, this.executor);
+        this.messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            this.messages.add(new SimpleMailMessageDomain("to" + i + "@example.com", null, null, "Benchmark " + i, "Plain text body."));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.executor.shutdownNow();
+        this.mailSender.destroy();
+        this.server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void sendAsync() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            futures[i] = this.emailTemplate.sendAsync(this.messages.get(i));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public List<SendResult> sendBatch() {
+        List<MailDomain> batch = new ArrayList<>(this.messages);
+        return this.emailTemplate.sendBatch(batch).join();
+    }
+}
@@ -0,0 +1,87 @@
+package cn.alphahub.multiple.email.benchmark;
+
+import cn.alphahub.multiple.email.render.CompiledMailTemplate;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 正文模板渲染开销
+ * <p>以{@link String#replace}逐个替换占位符为基准，对比预编译模板渲染为字符串、以及直接渲染到MIME编码输出流的开销。</p>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateRenderBenchmark {
+    private static final String SOURCE = """
+            <!DOCTYPE html>
+            <html>
+            <head><meta charset="UTF-8"><title>Welcome to ${site}, ${name}</title></head>
+            <body>
+            <h1>Hello ${name},</h1>
+            <p>Thanks for joining ${site}. Your account ${account} is now active.</p>
+            <p>Your order ${order} ships to ${city} within ${days} days.</p>
+            <p><a href="${link}">Sign in</a></p>
+            <footer>${site} &middot; Unsubscribe at any time.</footer>
+            </body>
+            </html>
+            """.repeat(8);
+    private static final OutputStream NULL_OUTPUT = OutputStream.nullOutputStream();
+    private CompiledMailTemplate template;
+    private Map<String, Object> model;
+    private Session session;
+
+    @Setup
+    public void setup() {
+        this.template = CompiledMailTemplate.compile("welcome", SOURCE);
+        this.model = Map.of("site", "alphahub", "name", "Weasley", "account", "weasley@example.com", "order", 20261016L,
+                "city", "Hangzhou", "days", 3, "link", "https://example.com/login?from=mail");
+        this.session = Session.getInstance(new Properties());
+    }
+
+    @Benchmark
+    public String stringReplace() {
+        String text = SOURCE;
+        for (Map.Entry<String, Object> entry : this.model.entrySet()) {
+            text = text.replace("${" + entry.getKey() + "}", String.valueOf(entry.getValue()));
+        }
+        return text;
+    }
+
+    @Benchmark
+    public String render() {
+        return this.template.render(this.model);
+    }
+
+    @Benchmark
+    public MimeMessage renderToMimeStream() throws MessagingException, IOException {
+        MimeMessage mimeMessage = new MimeMessage(this.session);
+        mimeMessage.setSubject(this.template.renderSubject(this.model), "UTF-8");
+        mimeMessage.setDataHandler(this.template.toDataHandler(this.model));
+        mimeMessage.saveChanges();
+        mimeMessage.writeTo(NULL_OUTPUT);
+        return mimeMessage;
+    }
+}
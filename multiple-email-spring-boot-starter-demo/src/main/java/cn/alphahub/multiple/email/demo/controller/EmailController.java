@@ -3,19 +3,31 @@ package cn.alphahub.multiple.email.demo.controller;
 
 import cn.alphahub.multiple.email.EmailTemplate;
 import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.tracking.DeliveryRecord;
+import cn.alphahub.multiple.email.tracking.DeliveryStatus;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import static cn.alphahub.multiple.email.EmailTemplate.MailMergeDomain;
 import static cn.alphahub.multiple.email.EmailTemplate.MimeMessageDomain;
 import static cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
 
@@ -33,36 +45,61 @@ public class EmailController {
 
     @Autowired
     private EmailTemplate emailTemplate;
+    @Autowired
+    private DeliveryTracker deliveryTracker;
 
     /**
      * 发送简单邮件
      * <p>此方法没有标注 {@code @Email} 注解，将使用默认邮件模板发送。</p>
+     * <p>客户端超时重试时携带相同的{@code Idempotency-Key}请求头（或请求体的{@code idempotencyKey}），邮件只发送一次。</p>
      *
-     * @param message 简单邮件消息对象
+     * @param message        简单邮件消息对象
+     * @param idempotencyKey 幂等键 (可选)
      * @return a {@code ResponseEntity} with a success message
      */
     @PostMapping("/simple/send")
-    public ResponseEntity<String> sendSimpleEmail(@RequestBody @Validated SimpleMailMessageDomain message) throws Exception {
+    public ResponseEntity<String> sendSimpleEmail(@RequestBody @Validated SimpleMailMessageDomain message,
+                                                  @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) throws Exception {
         log.info("Attempting to send simple email: {}", message);
+        if (idempotencyKey != null && message.getIdempotencyKey() == null) {
+            message.setIdempotencyKey(idempotencyKey);
+        }
         emailTemplate.send(message);
         return ResponseEntity.ok("Simple email sent successfully.");
     }
 
+    /**
+     * 异步发送简单邮件
+     * <p>直接返回{@code CompletableFuture}，Spring MVC 在发送完成前释放请求线程。</p>
+     *
+     * @param message 简单邮件消息对象
+     * @return a {@code ResponseEntity} with the message id and tracking id
+     */
+    @PostMapping("/simple/send/async")
+    public CompletableFuture<ResponseEntity<String>> sendSimpleEmailAsync(@RequestBody @Validated SimpleMailMessageDomain message) {
+        log.info("Attempting to send simple email asynchronously: {}", message);
+        return emailTemplate.sendAsync(message, Duration.ofSeconds(30))
+                .thenApply(result -> ResponseEntity.ok("Simple email sent successfully, message id: " + result.getMessageId()
+                        + ", tracking id: " + result.getTrackingId()))
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to send simple email: " + e.getMessage()));
+    }
+
     /**
      * 发送带附件的邮件
      * <p>此方法标注了 {@code @Email(name = "EmailOffice365")}，将使用名为 'EmailOffice365' 的邮件模板发送。</p>
      *
      * @param message Mime邮件消息对象
-     * @param file    附件 (可选)
+     * @param files   附件，可上传多个 (可选)
      * @return a {@code ResponseEntity} with a success or error message
      */
     @Email(name = "EmailOffice365")
     @PostMapping("/mime/send")
     public ResponseEntity<String> sendMimeEmail(@ModelAttribute @Validated MimeMessageDomain message,
-                                                @RequestPart(required = false) MultipartFile file) {
+                                                @RequestPart(name = "file", required = false) MultipartFile[] files) {
         log.info("Attempting to send mime email: {}", message);
         try {
-            emailTemplate.send(message, file);
+            emailTemplate.send(message, files);
             return ResponseEntity.ok("Mime email sent successfully.");
         } catch (Exception e) {
             log.error("Failed to send mime email for domain: {}", message, e);
@@ -88,4 +125,83 @@ public class EmailController {
         emailTemplate.send(message);
         return ResponseEntity.ok("Simple email with 'EmailOffice365' template sent successfully.");
     }
+
+    /**
+     * 使用邮件模板组发送简单邮件
+     * <p>此方法标注了 {@code @Email(group = "bulk")}，由邮件模板组 'bulk' 选择邮件模板发送，失败时自动切换到组内其他邮件模板。</p>
+     *
+     * @param message 简单邮件消息对象
+     * @return a {@code CompletableFuture} of {@code ResponseEntity} with a success or error message
+     */
+    @Email(group = "bulk")
+    @PostMapping("/simple/send/group")
+    public CompletableFuture<ResponseEntity<String>> sendSimpleEmailWithGroup(@RequestBody @Validated SimpleMailMessageDomain message) {
+        log.info("Attempting to send simple email with 'bulk' template group: {}", message);
+        return emailTemplate.sendAsync(message, Duration.ofSeconds(30))
+                .thenApply(result -> ResponseEntity.ok("Simple email sent successfully with template '" + result.getTemplateName() + "'."))
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to send simple email: " + e.getMessage()));
+    }
+
+    /**
+     * 使用正文模板发送HTML邮件
+     * <p>正文模板位于 {@code classpath:/templates/email/}，邮件主题取自模板的 {@code <title>}。</p>
+     *
+     * @param templateId 正文模板ID，如 'welcome'
+     * @param to         收件人的邮箱
+     * @param model      模板变量
+     * @return a {@code CompletableFuture} of {@code ResponseEntity} with a success or error message
+     */
+    @PostMapping("/template/send")
+    public CompletableFuture<ResponseEntity<String>> sendTemplateEmail(@RequestParam String templateId, @RequestParam String to,
+                                                                       @RequestBody Map<String, Object> model) {
+        log.info("Attempting to send email with body template '{}' to: {}", templateId, to);
+        return emailTemplate.sendAsync(templateId, model, to)
+                .thenApply(result -> ResponseEntity.ok("Template email sent successfully, message id: " + result.getMessageId()))
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to send template email: " + e.getMessage()));
+    }
+
+    /**
+     * 邮件合并：给多个收件人发送个性化邮件
+     * <p>附件和内嵌图片只编码一次，所有收件人共享；每个收件人只渲染自己的主题和正文。</p>
+     *
+     * @param message 邮件合并消息对象
+     * @return a {@code CompletableFuture} of {@code ResponseEntity} with the number of sent messages
+     */
+    @PostMapping("/merge/send")
+    public CompletableFuture<ResponseEntity<String>> sendMergeEmail(@RequestBody @Validated MailMergeDomain message) {
+        log.info("Attempting to send mail merge to {} recipients", message.getRecipients().size());
+        return emailTemplate.sendMerge(message)
+                .thenApply(results -> ResponseEntity.ok("Mail merge finished, " + countSuccess(results) + "/" + results.size() + " sent successfully."))
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to send mail merge: " + e.getMessage()));
+    }
+
+    /**
+     * 查询投递记录
+     *
+     * @param id 投递记录ID，即发送结果的{@code trackingId}
+     * @return a {@code ResponseEntity} with the delivery record, or 404 if unknown
+     */
+    @GetMapping("/deliveries/{id}")
+    public ResponseEntity<DeliveryRecord> getDelivery(@PathVariable String id) {
+        return ResponseEntity.of(deliveryTracker.find(id));
+    }
+
+    /**
+     * 按状态列出最近的投递记录，如 {@code /site/email/deliveries?status=FAILED}
+     *
+     * @param status 投递状态 (可选)
+     * @param limit  最多返回的记录数量
+     * @return delivery records, newest first
+     */
+    @GetMapping("/deliveries")
+    public List<DeliveryRecord> listDeliveries(@RequestParam(required = false) DeliveryStatus status, @RequestParam(defaultValue = "20") int limit) {
+        return deliveryTracker.list(status, Math.min(limit, 1000));
+    }
+
+    private static long countSuccess(List<EmailTemplate.SendResult> results) {
+        return results.stream().filter(EmailTemplate.SendResult::isSuccess).count();
+    }
 }
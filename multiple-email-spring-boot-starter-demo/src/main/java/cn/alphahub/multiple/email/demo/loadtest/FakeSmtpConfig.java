@@ -0,0 +1,85 @@
+package cn.alphahub.multiple.email.demo.loadtest;
+
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailTemplateProperties;
+import java.io.IOException;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * 把所有邮件模板指向进程内假SMTP服务器
+ * <p>
+ * 启用{@code fake-smtp} profile（如{@code --spring.profiles.active=email,fake-smtp}）后，
+ * 默认邮件模板和{@code spring.mail.email-templates}中的每个邮件模板都改为连接本机假SMTP服务器，
+ * 其余配置（连接池、速率限制、邮件模板组等）保持不变，可直接用于压测。
+ * 改写在配置类的{@link BeanPostProcessor}中完成，{@code EmailTemplateReloader}重新加载配置时同样会经过此处理，不会连接到真实的SMTP服务器。
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@Slf4j
+@Profile("fake-smtp")
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(FakeSmtpProperties.class)
+public class FakeSmtpConfig {
+
+    /**
+     * 进程内假SMTP服务器
+     *
+     * @param fakeSmtpProperties fake SMTP properties
+     * @return fake SMTP server
+     * @throws IOException 端口被占用
+     */
+    @Bean(destroyMethod = "close")
+    public FakeSmtpServer fakeSmtpServer(FakeSmtpProperties fakeSmtpProperties) throws IOException {
+        FakeSmtpServer server = new FakeSmtpServer(fakeSmtpProperties);
+        log.info("Fake SMTP server listening on {}:{}", server.getHost(), server.getPort());
+        return server;
+    }
+
+    /**
+     * 配置属性绑定完成后改写SMTP服务器地址
+     *
+     * @param fakeSmtpServer fake SMTP server, resolved when the first mail properties bean is bound
+     * @return bean post processor
+     */
+    @Bean
+    public static BeanPostProcessor fakeSmtpMailPropertiesPostProcessor(ObjectProvider<FakeSmtpServer> fakeSmtpServer) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof MailProperties mailProperties) {
+                    redirect(mailProperties, fakeSmtpServer.getObject());
+                } else if (bean instanceof EmailTemplateProperties templateProperties && Objects.nonNull(templateProperties.getEmailTemplates())) {
+                    for (EmailProperties template : templateProperties.getEmailTemplates()) {
+                        if (Objects.nonNull(template.getMailProperties())) {
+                            redirect(template.getMailProperties(), fakeSmtpServer.getObject());
+                        }
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static void redirect(MailProperties mailProperties, FakeSmtpServer server) {
+        log.info("Redirecting SMTP server {}:{} ({}) to fake SMTP server {}:{}", mailProperties.getHost(), mailProperties.getPort(),
+                mailProperties.getUsername(), server.getHost(), server.getPort());
+        mailProperties.setHost(server.getHost());
+        mailProperties.setPort(server.getPort());
+        mailProperties.setProtocol("smtp");
+        // 假SMTP服务器只支持明文SMTP
+        mailProperties.getProperties().put("mail.smtp.ssl.enable", "false");
+        mailProperties.getProperties().put("mail.smtp.starttls.enable", "false");
+        mailProperties.getProperties().put("mail.smtp.auth", "false");
+    }
+}
@@ -0,0 +1,23 @@
+package cn.alphahub.multiple.email.demo.loadtest;
+
+import cn.alphahub.multiple.email.test.FakeSmtpOptions;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 进程内假SMTP服务器配置
+ * <p>各配置项见{@link FakeSmtpOptions}；与基准测试不同，压测默认模拟服务商的处理耗时和握手耗时。</p>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@ConfigurationProperties(prefix = "demo.fake-smtp")
+public class FakeSmtpProperties extends FakeSmtpOptions {
+
+    public FakeSmtpProperties() {
+        this.setLatency(Duration.ofMillis(20));
+        this.setLatencyJitter(Duration.ofMillis(10));
+        this.setConnectLatency(Duration.ofMillis(50));
+    }
+}
@@ -0,0 +1,139 @@
+package cn.alphahub.multiple.email.demo.loadtest;
+
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import java.net.http.HttpClient;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * 压测负载生成器
+ * <p>
+ * 以{@code concurrency}个并发通过HTTP调用本服务的{@code EmailController}接口，覆盖参数校验、切面、
+ * 准入控制、线程池、连接池和SMTP交互的完整链路，统计吞吐量和请求延迟百分位。
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@Slf4j
+@Component
+@Profile("fake-smtp")
+public class LoadGenerator {
+    private final Environment environment;
+    private final FakeSmtpServer fakeSmtpServer;
+    private final RestClient restClient;
+
+    public LoadGenerator(Environment environment, FakeSmtpServer fakeSmtpServer) {
+        this.environment = environment;
+        this.fakeSmtpServer = fakeSmtpServer;
+        this.restClient = RestClient.builder()
+                .requestFactory(new JdkClientHttpRequestFactory(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()))
+                .build();
+    }
+
+    /**
+     * 执行一轮压测，同一时间只应运行一轮
+     *
+     * @param request 压测参数
+     * @return 压测结果
+     * @throws InterruptedException 等待压测结束时被中断
+     */
+    public synchronized LoadTestReport run(LoadTestRequest request) throws InterruptedException {
+        String url = "http://127.0.0.1:" + this.environment.getRequiredProperty("local.server.port") + request.getPath();
+        if (request.getWarmup() > 0) {
+            this.drive(url, request, request.getWarmup(), new long[request.getWarmup()]);
+        }
+        FakeSmtpServer.Stats before = this.fakeSmtpServer.getStats();
+        long[] latencies = new long[request.getRequests()];
+        long start = System.nanoTime();
+        int succeeded = this.drive(url, request, request.getRequests(), latencies);
+        long elapsedNanos = System.nanoTime() - start;
+        FakeSmtpServer.Stats after = this.fakeSmtpServer.getStats();
+
+        Arrays.sort(latencies);
+        LoadTestReport report = new LoadTestReport();
+        report.setRequests(request.getRequests());
+        report.setConcurrency(request.getConcurrency());
+        report.setSucceeded(succeeded);
+        report.setFailed(request.getRequests() - succeeded);
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        report.setThroughput(request.getRequests() * 1e9 / Math.max(1L, elapsedNanos));
+        report.setP50Millis(percentile(latencies, 0.50));
+        report.setP90Millis(percentile(latencies, 0.90));
+        report.setP99Millis(percentile(latencies, 0.99));
+        report.setP999Millis(percentile(latencies, 0.999));
+        report.setMaxMillis(latencies[latencies.length - 1] / 1e6);
+        report.setSmtp(after.minus(before));
+        log.info("Load test finished: {}", report);
+        return report;
+    }
+
+    /**
+     * 以固定并发发送请求
+     *
+     * @param url       接口地址
+     * @param request   压测参数
+     * @param total     请求数
+     * @param latencies 每个请求的延迟（纳秒），按请求序号写入
+     * @return 返回2xx的请求数
+     * @throws InterruptedException 等待压测结束时被中断
+     */
+    private int drive(String url, LoadTestRequest request, int total, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(request.getConcurrency());
+        try {
+            for (int i = 0; i < request.getConcurrency(); i++) {
+                workers.execute(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < total) {
+                        long start = System.nanoTime();
+                        if (this.send(url, request.getTo(), index)) {
+                            succeeded.incrementAndGet();
+                        }
+                        latencies[index] = System.nanoTime() - start;
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+        }
+        if (!workers.awaitTermination(1, TimeUnit.HOURS)) {
+            workers.shutdownNow();
+        }
+        return succeeded.get();
+    }
+
+    private boolean send(String url, String to, int index) {
+        try {
+            return this.restClient.post()
+                    .uri(url)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("to", to, "subject", "Load test #" + index, "text", "Load test message #" + index))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .getStatusCode()
+                    .is2xxSuccessful();
+        } catch (RestClientException e) {
+            log.debug("Load test request #{} failed: {}", index, e.getMessage());
+            return false;
+        }
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))] / 1e6;
+    }
+}
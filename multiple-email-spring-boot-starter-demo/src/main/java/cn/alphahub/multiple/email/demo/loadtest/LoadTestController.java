@@ -0,0 +1,61 @@
+package cn.alphahub.multiple.email.demo.loadtest;
+
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 压测Controller
+ * <p>只在{@code fake-smtp} profile下启用，避免误把压测流量发到真实的邮件服务商。</p>
+ * <pre>
+ * curl -X POST localhost:8080/site/load-test -H 'Content-Type: application/json' \
+ *      -d '{"requests": 10000, "concurrency": 64}'
+ * </pre>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@Slf4j
+@Profile("fake-smtp")
+@RestController
+@RequestMapping("/site/load-test")
+public class LoadTestController {
+
+    @Autowired
+    private LoadGenerator loadGenerator;
+
+    @Autowired
+    private FakeSmtpServer fakeSmtpServer;
+
+    /**
+     * 执行一轮压测
+     *
+     * @param request 压测参数，未提供的参数使用默认值
+     * @return 吞吐量、延迟百分位和假SMTP服务器计数
+     * @throws InterruptedException 等待压测结束时被中断
+     */
+    @PostMapping
+    public LoadTestReport run(@RequestBody(required = false) @Validated LoadTestRequest request) throws InterruptedException {
+        LoadTestRequest loadTestRequest = request != null ? request : new LoadTestRequest();
+        log.info("Starting load test: {}", loadTestRequest);
+        return this.loadGenerator.run(loadTestRequest);
+    }
+
+    /**
+     * 假SMTP服务器累计计数
+     *
+     * @return fake SMTP server stats
+     */
+    @GetMapping("/smtp")
+    public FakeSmtpServer.Stats smtpStats() {
+        return this.fakeSmtpServer.getStats();
+    }
+}
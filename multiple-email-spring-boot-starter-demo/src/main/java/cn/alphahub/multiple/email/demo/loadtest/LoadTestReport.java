@@ -0,0 +1,51 @@
+package cn.alphahub.multiple.email.demo.loadtest;
+
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import lombok.Data;
+
+/**
+ * 压测结果
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@Data
+public class LoadTestReport {
+    /**
+     * 请求总数
+     */
+    private int requests;
+    /**
+     * 并发请求数
+     */
+    private int concurrency;
+    /**
+     * 返回2xx的请求数
+     */
+    private int succeeded;
+    /**
+     * 返回非2xx或请求异常的请求数
+     */
+    private int failed;
+    /**
+     * 总耗时（毫秒）
+     */
+    private long elapsedMillis;
+    /**
+     * 吞吐量（请求/秒）
+     */
+    private double throughput;
+    /**
+     * 请求延迟百分位（毫秒）
+     */
+    private double p50Millis;
+    private double p90Millis;
+    private double p99Millis;
+    private double p999Millis;
+    private double maxMillis;
+    /**
+     * 压测期间假SMTP服务器的计数变化
+     */
+    private FakeSmtpServer.Stats smtp;
+}
@@ -0,0 +1,40 @@
+package cn.alphahub.multiple.email.demo.loadtest;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+/**
+ * 压测参数
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+@Data
+public class LoadTestRequest {
+    /**
+     * 被压测的{@code EmailController}接口路径，请求体为简单邮件消息
+     */
+    @NotBlank
+    private String path = "/site/email/simple/send/async";
+    /**
+     * 请求总数
+     */
+    @Min(1)
+    private int requests = 1000;
+    /**
+     * 并发请求数
+     */
+    @Min(1)
+    private int concurrency = 32;
+    /**
+     * 正式计时前的预热请求数，不计入结果
+     */
+    @Min(0)
+    private int warmup = 100;
+    /**
+     * 收件人的邮箱
+     */
+    private String to = "load-test@example.com";
+}
@@ -1,19 +1,75 @@
 package cn.alphahub.multiple.email;
 
 import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.aspect.EmailAspect.ResolvedTemplate;
+import cn.alphahub.multiple.email.attachment.AttachmentCache;
+import cn.alphahub.multiple.email.attachment.FileAttachment;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRecipientProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolProperties;
+import cn.alphahub.multiple.email.config.EmailContext;
+import cn.alphahub.multiple.email.config.EmailTemplatesReloadedEvent;
+import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.dispatch.DemandSubscriber;
+import cn.alphahub.multiple.email.dispatch.EmailDispatcher;
+import cn.alphahub.multiple.email.dispatch.EmailDispatcher.Lane;
+import cn.alphahub.multiple.email.dispatch.MailDeadlineExceededException;
+import cn.alphahub.multiple.email.dispatch.MailPriority;
+import cn.alphahub.multiple.email.dispatch.PrioritizedTask;
+import cn.alphahub.multiple.email.dispatch.TimerWheel;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import cn.alphahub.multiple.email.idempotency.IdempotencyIndex;
+import cn.alphahub.multiple.email.merge.MailMerge;
+import cn.alphahub.multiple.email.metrics.EmailMetrics;
+import cn.alphahub.multiple.email.outbox.EmailOutbox;
+import cn.alphahub.multiple.email.recipient.EnvelopeMimeMessage;
+import cn.alphahub.multiple.email.recipient.RecipientResult;
+import cn.alphahub.multiple.email.render.CompiledMailTemplate;
+import cn.alphahub.multiple.email.render.MailTemplateEngine;
+import cn.alphahub.multiple.email.retry.DeadLetter;
+import cn.alphahub.multiple.email.retry.DeadLetterHandler;
+import cn.alphahub.multiple.email.retry.RetryPolicy;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import cn.alphahub.multiple.email.transport.SmtpReplies;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
-import java.io.File;
+import jakarta.validation.constraints.NotEmpty;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -21,14 +77,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.context.event.EventListener;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.lang.Nullable;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMailMessage;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
@@ -59,107 +118,1664 @@ public class EmailTemplate {
     @Autowired(required = false)
     private JavaMailSender defaultJavaMailSender;
     /**
-     * thread pool executor
+     * multiple mail template client wrapper
      */
     @Autowired
-    @Qualifier("emailThreadPoolExecutor")
-    private ThreadPoolExecutor emailThreadPoolExecutor;
+    private MailWrapper mailWrapper;
+    /**
+     * admission control in front of the email task executor
+     */
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+    /**
+     * timer wheel for mail with a future {@code sentDate}, sent immediately when absent
+     */
+    @Autowired(required = false)
+    private TimerWheel timerWheel;
+    /**
+     * retry policy for transient send failures, never retries when absent
+     */
+    @Autowired(required = false)
+    private RetryPolicy retryPolicy = RetryPolicy.NONE;
+    /**
+     * handler of mail that failed permanently or ran out of retries, only logged when absent
+     */
+    @Autowired(required = false)
+    private DeadLetterHandler deadLetterHandler;
+    /**
+     * encoded attachment cache for files referenced by path, attachments are streamed from disk when absent
+     */
+    @Autowired(required = false)
+    private AttachmentCache attachmentCache = AttachmentCache.NONE;
+    /**
+     * deduplication index of idempotency keys, keys are ignored when absent
+     */
+    @Autowired(required = false)
+    private IdempotencyIndex idempotencyIndex = IdempotencyIndex.NONE;
+    /**
+     * delivery status records, sends are not tracked when absent
+     */
+    @Autowired(required = false)
+    private DeliveryTracker deliveryTracker = DeliveryTracker.NONE;
+    /**
+     * durable outbox, present when {@code spring.mail.outbox.enabled=true}
+     */
+    @Autowired(required = false)
+    private EmailOutbox emailOutbox;
+    /**
+     * mail body template engine
+     */
+    @Autowired
+    private MailTemplateEngine mailTemplateEngine;
+    /**
+     * thread pool properties
+     */
+    @Autowired
+    private EmailThreadPoolProperties emailThreadPoolProperties;
+    /**
+     * recipient properties
+     */
+    @Autowired
+    private EmailRecipientProperties emailRecipientProperties;
+    /**
+     * email metrics, no-op when Micrometer is absent
+     */
+    @Autowired(required = false)
+    private EmailMetrics emailMetrics = EmailMetrics.NOOP;
+    /**
+     * observation registry for send spans, no-op when tracing is not configured
+     */
+    @Autowired(required = false)
+    private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+    /**
+     * default mail template context, resolved on first use
+     */
+    private volatile EmailContext defaultContext;
+    /**
+     * template senders returned by {@link #using(String)}
+     */
+    private final Map<String, TemplateSender> templateSenders = new ConcurrentHashMap<>();
+    /**
+     * template group senders returned by {@link #usingGroup(String)}
+     */
+    private final Map<String, TemplateSender> groupSenders = new ConcurrentHashMap<>();
+
+    /**
+     * 获取邮件模板上下文
+     * <p>未指定邮件模板或指定的邮件模板未配置时，使用默认邮件模板。</p>
+     *
+     * @param target Nullable, 选定的邮件模板
+     * @return EmailContext
+     */
+    private EmailContext getContext(@Nullable ResolvedTemplate target) {
+        if (Objects.nonNull(target) && Objects.nonNull(target.context())) {
+            return target.context();
+        }
+        return this.getDefaultContext();
+    }
+
+    /**
+     * 获取默认邮件模板上下文
+     *
+     * @return EmailContext
+     */
+    private EmailContext getDefaultContext() {
+        EmailContext context = this.defaultContext;
+        if (Objects.isNull(context)) {
+            context = this.mailWrapper.getContext(cn.alphahub.multiple.email.annotation.Email.DEFAULT_TEMPLATE);
+            if (Objects.isNull(context)) {
+                context = new EmailContext(cn.alphahub.multiple.email.annotation.Email.DEFAULT_TEMPLATE, this.defaultJavaMailSender, this.defaultMailProperties);
+            }
+            this.defaultContext = context;
+        }
+        return context;
+    }
+
+    /**
+     * 获取邮件模板组
+     *
+     * @param target Nullable, 选定的邮件模板
+     * @return TemplateGroup, null if no template group is selected
+     */
+    private static TemplateGroup getTemplateGroup(@Nullable ResolvedTemplate target) {
+        return Objects.isNull(target) ? null : target.group();
+    }
+
+    /**
+     * 获取绑定到指定邮件模板的发送句柄
+     * <p>
+     * 不依赖{@code @Email}注解和切面，适用于类内自调用、后台任务和非Spring Bean调用方；
+     * 句柄按邮件模板名称缓存，配置重新加载后自动使用新的发送实例，发送时不读写ThreadLocal。
+     *
+     * @param templateName 邮件模板名称
+     * @return template sender
+     * @throws IllegalArgumentException 邮件模板未配置
+     */
+    public TemplateSender using(String templateName) {
+        TemplateSender sender = this.templateSenders.get(templateName);
+        if (Objects.isNull(sender)) {
+            sender = this.templateSenders.computeIfAbsent(templateName, name -> {
+                EmailContext context = this.mailWrapper.getContext(name);
+                if (Objects.isNull(context)) {
+                    throw new IllegalArgumentException("Mail template '" + name + "' is not configured");
+                }
+                return new TemplateSender(new ResolvedTemplate(name, context, null));
+            });
+        }
+        return sender;
+    }
+
+    /**
+     * 获取绑定到指定邮件模板组的发送句柄
+     * <p>与{@code @Email(group)}相同，由组内多个邮件模板分担发送并在失败时切换。</p>
+     *
+     * @param groupName 邮件模板组名称
+     * @return template sender
+     * @throws IllegalArgumentException 邮件模板组未配置
+     */
+    public TemplateSender usingGroup(String groupName) {
+        TemplateSender sender = this.groupSenders.get(groupName);
+        if (Objects.isNull(sender)) {
+            sender = this.groupSenders.computeIfAbsent(groupName, name -> {
+                TemplateGroup group = this.mailWrapper.getTemplateGroup(name);
+                if (Objects.isNull(group)) {
+                    throw new IllegalArgumentException("Mail template group '" + name + "' is not configured");
+                }
+                return new TemplateSender(new ResolvedTemplate(name, null, group));
+            });
+        }
+        return sender;
+    }
+
+    /**
+     * 邮件模板配置重新加载后丢弃缓存的默认邮件模板上下文，并让已获取的发送句柄使用新的发送实例
+     * <p>邮件模板被删除后，已获取的句柄仍绑定原发送实例，直到其在{@code spring.mail.reload.drain-timeout}后关闭。</p>
+     *
+     * @param event reloaded event
+     */
+    @EventListener
+    public void onTemplatesReloaded(EmailTemplatesReloadedEvent event) {
+        this.defaultContext = null;
+        this.templateSenders.forEach((name, sender) -> {
+            EmailContext context = this.mailWrapper.getContext(name);
+            if (Objects.isNull(context)) {
+                this.templateSenders.remove(name, sender);
+            } else {
+                sender.target = new ResolvedTemplate(name, context, null);
+            }
+        });
+        this.groupSenders.forEach((name, sender) -> {
+            TemplateGroup group = this.mailWrapper.getTemplateGroup(name);
+            if (Objects.isNull(group)) {
+                this.groupSenders.remove(name, sender);
+            } else {
+                sender.target = new ResolvedTemplate(name, null, group);
+            }
+        });
+    }
+
+    /**
+     * 发送给定的简单邮件消息
+     *
+     * @param data the message to send
+     * @throws MailException Base class for all mail exceptions
+     */
+    public void send(@Valid SimpleMailMessageDomain data) throws Exception {
+        try {
+            this.sendAsync(data).get();
+        } catch (ExecutionException e) {
+            log.error("发送给定的简单邮件消息失败: {}", data, e.getCause());
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * 发送带附件的邮件
+     *
+     * @param data metadata of message to send
+     * @param file Nullable, support for spring MVC upload file received in the request, can be null.
+     * @throws MessagingException messaging exception
+     */
+    public void send(@Valid MimeMessageDomain data, @Nullable MultipartFile file) throws Exception {
+        this.send(data, Objects.isNull(file) ? new MultipartFile[0] : new MultipartFile[]{file});
+    }
+
+    /**
+     * 发送带附件的邮件
+     *
+     * @param data  metadata of message to send
+     * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+     * @throws MessagingException messaging exception
+     */
+    public void send(@Valid MimeMessageDomain data, @Nullable MultipartFile... files) throws Exception {
+        try {
+            this.sendAsync(data, files).get();
+        } catch (ExecutionException e) {
+            log.error("发送带附件的邮件失败: {}", data, e.getCause());
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * 使用正文模板发送HTML邮件
+     *
+     * @param templateId 正文模板ID
+     * @param model      模板变量
+     * @param to         收件人的邮箱
+     * @throws MailException Base class for all mail exceptions
+     */
+    public void send(String templateId, Map<String, ?> model, String... to) throws Exception {
+        try {
+            this.sendAsync(templateId, model, to).get();
+        } catch (ExecutionException e) {
+            log.error("使用正文模板'{}'发送邮件失败: {}", templateId, Arrays.toString(to), e.getCause());
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * 使用正文模板异步发送HTML邮件
+     * <p>
+     * 正文模板在调用线程中取出（首次使用时编译），邮件主题取自模板的{@code <title>}；
+     * 正文在SMTP DATA阶段直接渲染到MIME输出流，{@code model}在返回的future完成前不应被修改。
+     *
+     * @param templateId 正文模板ID
+     * @param model      模板变量
+     * @param to         收件人的邮箱
+     * @return 发送结果的future
+     */
+    public CompletableFuture<SendResult> sendAsync(String templateId, Map<String, ?> model, String... to) {
+        return this.sendAsync(EmailAspect.MAIL_TEMPLATE_TL.get(), templateId, model, to);
+    }
+
+    private CompletableFuture<SendResult> sendAsync(@Nullable ResolvedTemplate target, String templateId, Map<String, ?> model, String... to) {
+        CompiledMailTemplate template;
+        try {
+            template = this.mailTemplateEngine.getTemplate(templateId);
+        } catch (MailException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return this.submitToRecipients(target, context -> this.createMimeMessage(context.mailSender(), context.mailProperties(), template, model, to),
+                Arrays.asList(to), SendOptions.DEFAULT, null, null);
+    }
+
+    /**
+     * 异步发送给定的简单邮件消息
+     * <p>调用线程只负责构建邮件并提交到邮件线程池，不等待SMTP交互完成；发送失败时返回的future以异常结束。</p>
+     * <p>携带{@code idempotencyKey}时，窗口期内的重复请求直接返回第一次发送的结果，不再发送。</p>
+     *
+     * @param data the message to send
+     * @return 发送结果的future
+     */
+    public CompletableFuture<SendResult> sendAsync(@Valid SimpleMailMessageDomain data) {
+        return this.sendAsync(data, (Duration) null);
+    }
+
+    /**
+     * 异步发送给定的简单邮件消息
+     *
+     * @param data    the message to send
+     * @param timeout Nullable, 超时时间，超时后future以{@link TimeoutException}结束并取消尚未执行的发送任务
+     * @return 发送结果的future
+     */
+    public CompletableFuture<SendResult> sendAsync(@Valid SimpleMailMessageDomain data, @Nullable Duration timeout) {
+        return this.sendAsync(EmailAspect.MAIL_TEMPLATE_TL.get(), data, timeout);
+    }
+
+    private CompletableFuture<SendResult> sendAsync(@Nullable ResolvedTemplate target, SimpleMailMessageDomain data, @Nullable Duration timeout) {
+        return this.idempotencyIndex.deduplicate(data.getIdempotencyKey(), () -> this.submitToRecipients(target,
+                context -> this.createMimeMessage(context.mailSender(), context.mailProperties(), data), recipients(data),
+                SendOptions.of(data, Lane.TRANSACTIONAL), timeout, null));
+    }
+
+    /**
+     * 异步发送带附件的邮件
+     *
+     * @param data  metadata of message to send
+     * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+     * @return 发送结果的future
+     */
+    public CompletableFuture<SendResult> sendAsync(@Valid MimeMessageDomain data, @Nullable MultipartFile... files) {
+        return this.sendAsync(data, null, files);
+    }
+
+    /**
+     * 异步发送带附件的邮件
+     * <p>
+     * 上传的附件在返回前转存为临时文件（已落盘的上传文件直接移动），请求结束后上传临时文件被清理也不影响发送；
+     * 附件在SMTP DATA阶段才从磁盘按块读取并编码，发送结束后删除转存的临时文件。
+     *
+     * @param data    metadata of message to send
+     * @param timeout Nullable, 超时时间，超时后future以{@link TimeoutException}结束并取消尚未执行的发送任务
+     * @param files   Nullable, support for spring MVC upload files received in the request, can be null.
+     * @return 发送结果的future
+     */
+    public CompletableFuture<SendResult> sendAsync(@Valid MimeMessageDomain data, @Nullable Duration timeout, @Nullable MultipartFile... files) {
+        return this.sendAsync(EmailAspect.MAIL_TEMPLATE_TL.get(), data, timeout, files);
+    }
+
+    private CompletableFuture<SendResult> sendAsync(@Nullable ResolvedTemplate target, MimeMessageDomain data, @Nullable Duration timeout, @Nullable MultipartFile... files) {
+        // 重复请求不转存上传的附件
+        return this.idempotencyIndex.deduplicate(data.getIdempotencyKey(), () -> {
+            List<FileAttachment> attachments;
+            try {
+                attachments = FileAttachment.spool(files);
+            } catch (MailException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return this.submitToRecipients(target, context -> this.createMimeMessage(context.mailSender(), context.mailProperties(), data, attachments), recipients(data),
+                    SendOptions.of(data, Lane.TRANSACTIONAL), timeout, attachments.isEmpty() ? null : () -> FileAttachment.release(attachments));
+        });
+    }
+
+    /**
+     * 异步发送附件已转存到磁盘的邮件，发送结束或重复请求时删除转存的临时文件
+     *
+     * @param target      Nullable, 选定的邮件模板
+     * @param data        metadata of message to send
+     * @param timeout     Nullable, 超时时间
+     * @param attachments 已转存的附件
+     * @return 发送结果的future
+     */
+    private CompletableFuture<SendResult> sendAsync(@Nullable ResolvedTemplate target, MimeMessageDomain data, @Nullable Duration timeout, List<FileAttachment> attachments) {
+        boolean[] submitted = {false};
+        try {
+            return this.idempotencyIndex.deduplicate(data.getIdempotencyKey(), () -> {
+                submitted[0] = true;
+                return this.submitToRecipients(target, context -> this.createMimeMessage(context.mailSender(), context.mailProperties(), data, attachments), recipients(data),
+                        SendOptions.of(data, Lane.TRANSACTIONAL), timeout, attachments.isEmpty() ? null : () -> FileAttachment.release(attachments));
+            });
+        } finally {
+            if (!submitted[0]) {
+                FileAttachment.release(attachments);
+            }
+        }
+    }
+
+    /**
+     * 尝试异步发送给定的简单邮件消息，不阻塞调用线程
+     * <p>邮件发送执行器饱和时不按{@code spring.mail.thread.overload-policy}等待或进入溢出队列，直接返回空，由调用方决定降级方式。</p>
+     *
+     * @param data the message to send
+     * @return 发送结果的future，执行器饱和时为空
+     */
+    public Optional<CompletableFuture<SendResult>> trySendAsync(@Valid SimpleMailMessageDomain data) {
+        return this.trySendAsync(EmailAspect.MAIL_TEMPLATE_TL.get(), data);
+    }
+
+    private Optional<CompletableFuture<SendResult>> trySendAsync(@Nullable ResolvedTemplate target, SimpleMailMessageDomain data) {
+        if (emailDispatcher.available(Lane.TRANSACTIONAL) == 0) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(this.idempotencyIndex.deduplicate(data.getIdempotencyKey(),
+                () -> this.submitToRecipients(target, context -> this.createMimeMessage(context.mailSender(), context.mailProperties(), data),
+                        recipients(data), SendOptions.of(data, Lane.TRANSACTIONAL), null, null, true)));
+    }
+
+    /**
+     * 尝试异步发送带附件的邮件，不阻塞调用线程
+     *
+     * @param data  metadata of message to send
+     * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+     * @return 发送结果的future，执行器饱和时为空
+     * @see #trySendAsync(SimpleMailMessageDomain)
+     */
+    public Optional<CompletableFuture<SendResult>> trySendAsync(@Valid MimeMessageDomain data, @Nullable MultipartFile... files) {
+        return this.trySendAsync(EmailAspect.MAIL_TEMPLATE_TL.get(), data, files);
+    }
+
+    private Optional<CompletableFuture<SendResult>> trySendAsync(@Nullable ResolvedTemplate target, MimeMessageDomain data, @Nullable MultipartFile... files) {
+        if (emailDispatcher.available(Lane.TRANSACTIONAL) == 0) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(this.idempotencyIndex.deduplicate(data.getIdempotencyKey(), () -> {
+            List<FileAttachment> attachments;
+            try {
+                attachments = FileAttachment.spool(files);
+            } catch (MailException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return this.submitToRecipients(target, context -> this.createMimeMessage(context.mailSender(), context.mailProperties(), data, attachments),
+                    recipients(data), SendOptions.of(data, Lane.TRANSACTIONAL), null, attachments.isEmpty() ? null : () -> FileAttachment.release(attachments), true);
+        }));
+    }
+
+    /**
+     * 发送发布者产生的全部邮件
+     * <p>
+     * 按邮件发送执行器的可用名额向上游请求邮件，每发送完成一封再请求一封，走批量邮件通道；
+     * Reactor的{@code Flux}可通过{@code JdkFlowAdapter.publisherToFlowPublisher(flux)}转换后传入。
+     *
+     * @param publisher 邮件发布者，{@link SimpleMailMessageDomain}或{@link MimeMessageDomain}
+     * @param onResult  每封邮件发送结束后回调
+     * @return 全部邮件发送结束后以发送数量完成的future
+     */
+    public CompletableFuture<Long> sendAll(Flow.Publisher<? extends MailDomain> publisher, Consumer<SendResult> onResult) {
+        return this.sendAll(EmailAspect.MAIL_TEMPLATE_TL.get(), publisher, onResult);
+    }
+
+    private CompletableFuture<Long> sendAll(@Nullable ResolvedTemplate target, Flow.Publisher<? extends MailDomain> publisher, Consumer<SendResult> onResult) {
+        String templateName = Objects.nonNull(target) ? target.name() : cn.alphahub.multiple.email.annotation.Email.DEFAULT_TEMPLATE;
+        DemandSubscriber<MailDomain, SendResult> subscriber = new DemandSubscriber<>(
+                data -> this.submit(target, context -> this.createMimeMessage(context.mailSender(), context.mailProperties(), data), SendOptions.of(data, Lane.BULK), null, null)
+                        .exceptionally(e -> SendResult.failure(templateName, e)),
+                (data, result) -> onResult.accept(result),
+                () -> emailDispatcher.available(Lane.BULK),
+                Math.max(1, emailThreadPoolProperties.getBatchSize()));
+        publisher.subscribe(subscriber);
+        return subscriber.getCompletion();
+    }
+
+    /**
+     * 将简单邮件写入持久化发件箱，由后台投递
+     * <p>邮件落盘后立即返回，进程重启后未投递的邮件会重新投递，需开启{@code spring.mail.outbox.enabled}。</p>
+     *
+     * @param data the message to send
+     * @return 发件箱记录序号
+     */
+    public long enqueue(@Valid SimpleMailMessageDomain data) {
+        return this.enqueue(EmailAspect.MAIL_TEMPLATE_TL.get(), data);
+    }
+
+    private long enqueue(@Nullable ResolvedTemplate target, SimpleMailMessageDomain data) {
+        EmailContext context = this.getEnqueueContext(target);
+        return this.getEmailOutbox().enqueue(context.templateName(), this.createMimeMessage(context.mailSender(), context.mailProperties(), data));
+    }
+
+    /**
+     * 将带附件的邮件写入持久化发件箱，由后台投递
+     * <p>附件内容随邮件一起写入发件箱，需开启{@code spring.mail.outbox.enabled}。</p>
+     *
+     * @param data  metadata of message to send
+     * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+     * @return 发件箱记录序号
+     */
+    public long enqueue(@Valid MimeMessageDomain data, @Nullable MultipartFile... files) {
+        return this.enqueue(EmailAspect.MAIL_TEMPLATE_TL.get(), data, files);
+    }
+
+    private long enqueue(@Nullable ResolvedTemplate target, MimeMessageDomain data, @Nullable MultipartFile... files) {
+        EmailContext context = this.getEnqueueContext(target);
+        List<FileAttachment> attachments = FileAttachment.spool(files);
+        try {
+            return this.getEmailOutbox().enqueue(context.templateName(), this.createMimeMessage(context.mailSender(), context.mailProperties(), data, attachments));
+        } finally {
+            FileAttachment.release(attachments);
+        }
+    }
+
+    /**
+     * 获取写入发件箱的邮件模板，使用邮件模板组时在写入时选定组成员
+     *
+     * @param target Nullable, 选定的邮件模板
+     * @return EmailContext
+     */
+    private EmailContext getEnqueueContext(@Nullable ResolvedTemplate target) {
+        TemplateGroup group = getTemplateGroup(target);
+        if (Objects.isNull(group)) {
+            return this.getContext(target);
+        }
+        TemplateGroup.Member member = group.select(Collections.emptySet());
+        if (Objects.isNull(member)) {
+            throw new MailSendException("No available mail template in group '" + group.getGroupName() + "'");
+        }
+        return this.mailWrapper.getContext(member.getTemplateName());
+    }
+
+    /**
+     * 获取持久化发件箱
+     *
+     * @return email outbox
+     */
+    private EmailOutbox getEmailOutbox() {
+        if (Objects.isNull(this.emailOutbox)) {
+            throw new IllegalStateException("Email outbox is disabled, set 'spring.mail.outbox.enabled=true' to enable it");
+        }
+        return this.emailOutbox;
+    }
+
+    /**
+     * 批量发送邮件
+     * <p>
+     * 邮件按{@code spring.mail.thread.batch-size}分组，每组在邮件线程池中并行构建，
+     * 然后通过{@link JavaMailSender#send(MimeMessage...)}在同一个SMTP连接上依次发送。
+     * 返回结果与入参顺序一一对应，单封邮件失败不影响其他邮件。
+     * 每组按组内最高的邮件优先级排队（未指定时为{@link MailPriority#LOW}），超过截止时间的邮件不再发送；批量发送不按{@code sentDate}定时。
+     *
+     * @param messages 待发送的邮件，{@link SimpleMailMessageDomain}或{@link MimeMessageDomain}
+     * @return 每封邮件的发送结果
+     */
+    public CompletableFuture<List<SendResult>> sendBatch(@Valid Collection<? extends MailDomain> messages) {
+        return this.sendBatch(EmailAspect.MAIL_TEMPLATE_TL.get(), messages);
+    }
+
+    private CompletableFuture<List<SendResult>> sendBatch(@Nullable ResolvedTemplate target, Collection<? extends MailDomain> messages) {
+        List<Function<EmailContext, MimeMessage>> messageFactories = new ArrayList<>(messages.size());
+        MailPriority priority = MailPriority.LOW;
+        for (MailDomain data : messages) {
+            SendOptions options = SendOptions.of(data, Lane.BULK);
+            if (options.priority().compareTo(priority) < 0) {
+                priority = options.priority();
+            }
+            messageFactories.add(context -> {
+                if (options.isExpired()) {
+                    emailMetrics.recordExpired(context.templateName());
+                    throw new MailDeadlineExceededException("Mail to '" + data.getTo() + "' missed its deadline " + options.deadline());
+                }
+                return this.createMimeMessage(context.mailSender(), context.mailProperties(), data);
+            });
+        }
+        return this.submitBatch(target, messageFactories, priority);
+    }
+
+    /**
+     * 邮件合并：按收件人批量发送个性化邮件
+     * <p>
+     * 正文模板、附件和内嵌图片在调用线程中只准备一次（附件只编码一次），所有收件人共享；
+     * 每个收件人的邮件只渲染自己的主题和正文，然后按{@link #sendBatch(Collection)}的方式分组在同一个SMTP连接上发送。
+     *
+     * @param data  邮件合并消息
+     * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+     * @return 每个收件人的发送结果，与{@code data.recipients}顺序一一对应
+     */
+    public CompletableFuture<List<SendResult>> sendMerge(@Valid MailMergeDomain data, @Nullable MultipartFile... files) {
+        return this.sendMerge(EmailAspect.MAIL_TEMPLATE_TL.get(), data, files);
+    }
+
+    private CompletableFuture<List<SendResult>> sendMerge(@Nullable ResolvedTemplate target, MailMergeDomain data, @Nullable MultipartFile... files) {
+        MailMerge mailMerge;
+        try {
+            mailMerge = this.prepareMailMerge(data, files);
+        } catch (MailException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        List<Function<EmailContext, MimeMessage>> messageFactories = new ArrayList<>(data.getRecipients().size());
+        for (MailMergeRecipient recipient : data.getRecipients()) {
+            Map<String, ?> model = Objects.isNull(recipient.getModel()) ? Collections.emptyMap() : recipient.getModel();
+            messageFactories.add(context -> mailMerge.createMimeMessage(context.mailSender().createMimeMessage().getSession(),
+                    context.mailProperties().getUsername(), recipient.getTo(), model));
+        }
+        return this.submitBatch(target, messageFactories, MailPriority.LOW);
+    }
+
+    /**
+     * 准备邮件合并共享的MIME结构
+     *
+     * @param data  邮件合并消息
+     * @param files Nullable, 上传的附件
+     * @return prepared mail merge
+     */
+    private MailMerge prepareMailMerge(MailMergeDomain data, @Nullable MultipartFile... files) {
+        CompiledMailTemplate body;
+        if (StringUtils.isNotBlank(data.getTemplateId())) {
+            body = this.mailTemplateEngine.getTemplate(data.getTemplateId());
+        } else if (StringUtils.isNotBlank(data.getText())) {
+            body = this.compile("mail-merge-text", data.getText());
+        } else {
+            throw new MailPreparationException("Either templateId or text of mail merge is required");
+        }
+        CompiledMailTemplate subject = StringUtils.isNotBlank(data.getSubject()) ? this.compile("mail-merge-subject", data.getSubject()) : null;
+        Map<String, FileAttachment> inlineImages = new LinkedHashMap<>();
+        if (ObjectUtils.isNotEmpty(data.getInlineImages())) {
+            data.getInlineImages().forEach((contentId, path) -> inlineImages.put(contentId, FileAttachment.of(Paths.get(path))));
+        }
+        List<FileAttachment> attachments = new ArrayList<>(FileAttachment.spool(files));
+        try {
+            if (StringUtils.isNotBlank(data.getFilepath())) {
+                attachments.add(FileAttachment.of(Paths.get(data.getFilepath())));
+            }
+            return MailMerge.prepare(body, subject, attachments, inlineImages, this.attachmentCache);
+        } finally {
+            FileAttachment.release(attachments);
+        }
+    }
+
+    /**
+     * 编译调用方传入的模板文本
+     *
+     * @param templateId 模板ID，用于错误信息
+     * @param source     模板文本
+     * @return compiled template
+     */
+    private CompiledMailTemplate compile(String templateId, String source) {
+        try {
+            return CompiledMailTemplate.compile(templateId, source);
+        } catch (IllegalArgumentException e) {
+            throw new MailPreparationException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 分组提交批量发送任务
+     *
+     * @param target           Nullable, 选定的邮件模板
+     * @param messageFactories 按邮件模板构建待发送的邮件，每个元素对应一封邮件
+     * @param priority         每组发送任务的优先级
+     * @return 每封邮件的发送结果
+     */
+    private CompletableFuture<List<SendResult>> submitBatch(@Nullable ResolvedTemplate target, List<Function<EmailContext, MimeMessage>> messageFactories, MailPriority priority) {
+        TemplateGroup group = getTemplateGroup(target);
+        EmailContext context = Objects.isNull(group) ? this.getContext(target) : null;
+        String templateName = Objects.isNull(group) ? context.templateName() : group.getGroupName();
+        SendResult[] results = new SendResult[messageFactories.size()];
+        String[] trackingIds = new String[messageFactories.size()];
+        for (int i = 0; i < trackingIds.length; i++) {
+            trackingIds[i] = this.deliveryTracker.queued(templateName);
+        }
+        int batchSize = Math.max(1, emailThreadPoolProperties.getBatchSize());
+        RequestAttributes mainThreadRequestAttributes = RequestContextHolder.getRequestAttributes();
+
+        List<CompletableFuture<Void>> batchFutures = new ArrayList<>();
+        for (int from = 0; from < messageFactories.size(); from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, messageFactories.size());
+            long submitNanos = System.nanoTime();
+            try {
+                batchFutures.add(CompletableFuture.runAsync(() -> {
+                    emailMetrics.recordQueueWait(templateName, System.nanoTime() - submitNanos);
+                    RequestContextHolder.setRequestAttributes(mainThreadRequestAttributes);
+                    for (int i = start; i < end; i++) {
+                        deliveryTracker.sending(trackingIds[i], 1);
+                    }
+                    try {
+                        if (Objects.isNull(group)) {
+                            this.sendBatch(context, messageFactories, start, end, results);
+                        } else {
+                            this.deliver(group, member -> this.sendBatch(member, messageFactories, start, end, results));
+                        }
+                    } catch (RuntimeException e) {
+                        for (int i = start; i < end; i++) {
+                            results[i] = SendResult.failure(templateName, e);
+                        }
+                    } finally {
+                        RequestContextHolder.resetRequestAttributes();
+                        this.track(trackingIds, results, start, end);
+                    }
+                }, task -> emailDispatcher.execute(PrioritizedTask.of(task, priority, Long.MAX_VALUE), Lane.BULK)));
+            } catch (RejectedExecutionException e) {
+                for (int i = start; i < end; i++) {
+                    emailMetrics.recordRejected(templateName);
+                    results[i] = SendResult.failure(templateName, e);
+                }
+                this.track(trackingIds, results, start, end);
+            }
+        }
+        return CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(unused -> Arrays.asList(results));
+    }
+
+    /**
+     * 按一组邮件的发送结果结束投递记录
+     *
+     * @param trackingIds 投递记录ID，按下标对应
+     * @param results     发送结果
+     * @param start       本组起始下标（包含）
+     * @param end         本组结束下标（不包含）
+     */
+    private void track(String[] trackingIds, SendResult[] results, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (Objects.nonNull(results[i])) {
+                results[i].setTrackingId(trackingIds[i]);
+                this.deliveryTracker.finished(trackingIds[i], results[i]);
+            }
+        }
+    }
+
+    /**
+     * 在同一个SMTP连接上发送一组邮件
+     * <p>整组因连接、认证失败或被限流而发送失败时抛出异常，由邮件模板组切换到下一个邮件模板重发整组。</p>
+     *
+     * @param context          邮件模板上下文
+     * @param messageFactories 全部待发送邮件的构建函数
+     * @param start            本组起始下标（包含）
+     * @param end              本组结束下标（不包含）
+     * @param results          发送结果，按下标写入
+     * @return results
+     */
+    private SendResult[] sendBatch(EmailContext context, List<Function<EmailContext, MimeMessage>> messageFactories, int start, int end, SendResult[] results) {
+        return Observation.createNotStarted("email.send.batch", this.observationRegistry)
+                .lowCardinalityKeyValue("template", context.templateName())
+                .highCardinalityKeyValue("size", String.valueOf(end - start))
+                .observe(() -> this.doSendBatch(context, messageFactories, start, end, results));
+    }
+
+    private SendResult[] doSendBatch(EmailContext context, List<Function<EmailContext, MimeMessage>> messageFactories, int start, int end, SendResult[] results) {
+        String templateName = context.templateName();
+        JavaMailSender mailSender = context.mailSender();
+        List<MimeMessage> mimeMessages = new ArrayList<>(end - start);
+        List<Integer> indexes = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            long buildStart = System.nanoTime();
+            try {
+                mimeMessages.add(messageFactories.get(i).apply(context));
+                indexes.add(i);
+            } catch (MailException e) {
+                emailMetrics.recordResult(templateName, false);
+                results[i] = SendResult.failure(templateName, e);
+            }
+            emailMetrics.recordBuild(templateName, System.nanoTime() - buildStart);
+        }
+        if (mimeMessages.isEmpty()) {
+            return results;
+        }
+        long startTime = System.currentTimeMillis();
+        Map<Object, Exception> failedMessages = Collections.emptyMap();
+        Exception sendFailure = null;
+        Exception batchFailure = null;
+        try {
+            mailSender.send(mimeMessages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            sendFailure = e;
+            failedMessages = e.getFailedMessages();
+            if (failedMessages.isEmpty()) {
+                batchFailure = e;
+            }
+        } catch (Exception e) {
+            sendFailure = e;
+            batchFailure = e;
+        }
+        boolean allFailed = Objects.nonNull(batchFailure) || failedMessages.size() == mimeMessages.size();
+        if (allFailed && SmtpReplies.isConnectionFailure(sendFailure)) {
+            for (int i = 0; i < mimeMessages.size(); i++) {
+                emailMetrics.recordResult(templateName, false);
+            }
+            throw sendFailure instanceof MailException mailException ? mailException : new MailSendException("Failed to send mail batch", sendFailure);
+        }
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+        for (int i = 0; i < mimeMessages.size(); i++) {
+            MimeMessage mimeMessage = mimeMessages.get(i);
+            Exception failure = Objects.nonNull(batchFailure) ? batchFailure : failedMessages.get(mimeMessage);
+            SendFailedException partial = Objects.isNull(failure) ? null : SmtpReplies.partialDelivery(failure);
+            emailMetrics.recordResult(templateName, Objects.isNull(failure) || Objects.nonNull(partial));
+            if (Objects.isNull(failure)) {
+                results[indexes.get(i)] = SendResult.success(templateName, getMessageId(mimeMessage), elapsedMillis, RecipientResult.accepted(mimeMessage));
+            } else if (Objects.nonNull(partial)) {
+                results[indexes.get(i)] = SendResult.success(templateName, getMessageId(mimeMessage), elapsedMillis, RecipientResult.of(partial));
+            } else {
+                results[indexes.get(i)] = SendResult.failure(templateName, failure);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 构建待发送的邮件
+     *
+     * @param mailSender     邮件发送实例
+     * @param mailProperties 邮件配置属性
+     * @param data           邮件消息
+     * @return mime message
+     */
+    private MimeMessage createMimeMessage(JavaMailSender mailSender, MailProperties mailProperties, MailDomain data) {
+        if (data instanceof MimeMessageDomain mimeMessageDomain) {
+            return this.createMimeMessage(mailSender, mailProperties, mimeMessageDomain, Collections.emptyList());
+        }
+        if (data instanceof SimpleMailMessageDomain simpleMailMessageDomain) {
+            return this.createMimeMessage(mailSender, mailProperties, simpleMailMessageDomain);
+        }
+        throw new MailPreparationException("Unsupported mail message type: " + data.getClass().getName());
+    }
+
+    /**
+     * 构建简单文本邮件
+     *
+     * @param mailSender     邮件发送实例
+     * @param mailProperties 邮件配置属性
+     * @param data           简单邮件消息
+     * @return mime message
+     */
+    private MimeMessage createMimeMessage(JavaMailSender mailSender, MailProperties mailProperties, SimpleMailMessageDomain data) {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        SimpleMailMessage simpleMessage = new SimpleMailMessage();
+        simpleMessage.setFrom(mailProperties.getUsername());
+        simpleMessage.setTo(data.getTo());
+        if (ObjectUtils.isNotEmpty(data.getCc())) {
+            simpleMessage.setCc(data.getCc());
+        }
+        simpleMessage.setSentDate(Objects.nonNull(data.getSentDate()) ? Date.from(data.getSentDate().atZone(ZoneId.systemDefault()).toInstant()) : new Date());
+        simpleMessage.setSubject(data.getSubject());
+        simpleMessage.setText(data.getText());
+        simpleMessage.copyTo(new MimeMailMessage(mimeMessage));
+        return mimeMessage;
+    }
+
+    /**
+     * 构建带附件的邮件
+     *
+     * @param mailSender     邮件发送实例
+     * @param mailProperties 邮件配置属性
+     * @param data           带附件邮件消息
+     * @param attachments    转存的上传附件
+     * @return mime message
+     */
+    private MimeMessage createMimeMessage(JavaMailSender mailSender, MailProperties mailProperties, MimeMessageDomain data, List<FileAttachment> attachments) {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        try {
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            helper.setFrom(mailProperties.getUsername());
+            helper.setTo(data.getTo());
+            if (ObjectUtils.isNotEmpty(data.getCc())) {
+                helper.setCc(data.getCc());
+            }
+            helper.setSentDate(Objects.nonNull(data.getSentDate()) ? Date.from(data.getSentDate().atZone(ZoneId.systemDefault()).toInstant()) : new Date());
+            helper.setSubject(data.getSubject());
+            helper.setText(data.getText(), true);
+            for (FileAttachment attachment : attachments) {
+                this.attachmentCache.addAttachment(helper, attachment);
+            }
+            if (StringUtils.isNoneBlank(data.getFilepath())) {
+                this.attachmentCache.addAttachment(helper, FileAttachment.of(Paths.get(data.getFilepath())));
+            }
+        } catch (MessagingException e) {
+            throw new MailPreparationException(e);
+        }
+        return mimeMessage;
+    }
+
+    /**
+     * 构建正文模板渲染的HTML邮件
+     *
+     * @param mailSender     邮件发送实例
+     * @param mailProperties 邮件配置属性
+     * @param template       正文模板
+     * @param model          模板变量
+     * @param to             收件人的邮箱
+     * @return mime message
+     */
+    private MimeMessage createMimeMessage(JavaMailSender mailSender, MailProperties mailProperties, CompiledMailTemplate template, Map<String, ?> model, String... to) {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        try {
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "UTF-8");
+            helper.setFrom(mailProperties.getUsername());
+            helper.setTo(to);
+            helper.setSentDate(new Date());
+            helper.setSubject(template.renderSubject(model));
+            mimeMessage.setDataHandler(template.toDataHandler(model));
+        } catch (MessagingException e) {
+            throw new MailPreparationException(e);
+        }
+        return mimeMessage;
+    }
+
+    /**
+     * 获取邮件的Message-ID
+     *
+     * @param mimeMessage mime message
+     * @return Message-ID, 获取失败时为null
+     */
+    @Nullable
+    private static String getMessageId(MimeMessage mimeMessage) {
+        try {
+            return mimeMessage.getMessageID();
+        } catch (MessagingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 邮件的全部收件人：收件人和抄送
+     *
+     * @param data 邮件消息
+     * @return recipients
+     */
+    private static List<String> recipients(MailDomain data) {
+        List<String> recipients = new ArrayList<>();
+        if (StringUtils.isNotBlank(data.getTo())) {
+            recipients.add(data.getTo());
+        }
+        if (ObjectUtils.isNotEmpty(data.getCc())) {
+            Collections.addAll(recipients, data.getCc());
+        }
+        return recipients;
+    }
+
+    /**
+     * 按收件人数拆分信封并提交
+     * <p>
+     * 收件人不超过{@code spring.mail.recipient.max-per-message}时与{@link #submit}相同；
+     * 超过时按上限拆分为多个SMTP信封，每个信封作为独立的发送任务并行发送（各自重试），邮件头与不拆分时一致。
+     * 合并后的结果包含每个收件人的接收情况，全部收件人均未被接收时返回的future以第一个失败的异常结束。
+     *
+     * @param target         Nullable, 选定的邮件模板，为null时使用默认邮件模板
+     * @param messageFactory 按邮件模板构建待发送的邮件
+     * @param recipients     邮件的全部收件人
+     * @param options        调度参数
+     * @param timeout        Nullable, 每个信封的超时时间
+     * @param cleanup        Nullable, 全部信封的发送任务结束后执行
+     * @return 发送结果的future
+     */
+    private CompletableFuture<SendResult> submitToRecipients(@Nullable ResolvedTemplate target, Function<EmailContext, MimeMessage> messageFactory, List<String> recipients,
+                                                             SendOptions options, @Nullable Duration timeout, @Nullable Runnable cleanup) {
+        return this.submitToRecipients(target, messageFactory, recipients, options, timeout, cleanup, false);
+    }
+
+    /**
+     * 按收件人数拆分信封并提交
+     * <p>{@code tryOnly}时任一信封因执行器饱和未被接受，已提交且尚未开始发送的信封随之取消，整封邮件返回null。</p>
+     *
+     * @param target         Nullable, 选定的邮件模板，为null时使用默认邮件模板
+     * @param messageFactory 按邮件模板构建待发送的邮件
+     * @param recipients     邮件的全部收件人
+     * @param options        调度参数
+     * @param timeout        Nullable, 每个信封的超时时间
+     * @param cleanup        Nullable, 全部信封的发送任务结束后执行
+     * @param tryOnly        为true时执行器饱和立即返回null，不按过载策略等待或进入溢出队列
+     * @return 发送结果的future，{@code tryOnly}且执行器饱和时为null
+     */
+    private CompletableFuture<SendResult> submitToRecipients(@Nullable ResolvedTemplate target, Function<EmailContext, MimeMessage> messageFactory, List<String> recipients,
+                                                             SendOptions options, @Nullable Duration timeout, @Nullable Runnable cleanup, boolean tryOnly) {
+        int maxPerMessage = Math.max(1, this.emailRecipientProperties.getMaxPerMessage());
+        if (recipients.size() <= maxPerMessage) {
+            return this.submit(target, messageFactory, options, timeout, cleanup, tryOnly);
+        }
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < recipients.size(); from += maxPerMessage) {
+            chunks.add(recipients.subList(from, Math.min(from + maxPerMessage, recipients.size())));
+        }
+        AtomicInteger remaining = new AtomicInteger(chunks.size());
+        Runnable chunkCleanup = Objects.isNull(cleanup) ? null : () -> {
+            if (remaining.decrementAndGet() == 0) {
+                cleanup.run();
+            }
+        };
+        List<CompletableFuture<SendResult>> chunkFutures = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            CompletableFuture<SendResult> chunkFuture = this.submit(target, context -> envelope(messageFactory.apply(context), chunk), options, timeout,
+                    chunkCleanup, tryOnly);
+            if (Objects.isNull(chunkFuture)) {
+                // 被拒绝的信封已执行清理，未提交的信封在此计数，已提交的信封取消后由其自身清理
+                for (int i = chunkFutures.size() + 1; i < chunks.size(); i++) {
+                    runQuietly(chunkCleanup);
+                }
+                chunkFutures.forEach(submitted -> submitted.cancel(false));
+                return null;
+            }
+            chunkFutures.add(chunkFuture);
+        }
+        return CompletableFuture.allOf(chunkFutures.toArray(new CompletableFuture<?>[0]))
+                .handle((unused, ignored) -> mergeChunks(chunks, chunkFutures));
+    }
+
+    /**
+     * 把邮件的SMTP信封限制为部分收件人
+     *
+     * @param mimeMessage 完整的邮件
+     * @param recipients  信封收件人
+     * @return envelope message
+     */
+    private static MimeMessage envelope(MimeMessage mimeMessage, List<String> recipients) {
+        try {
+            InternetAddress[] addresses = new InternetAddress[recipients.size()];
+            for (int i = 0; i < addresses.length; i++) {
+                addresses[i] = new InternetAddress(recipients.get(i));
+            }
+            return new EnvelopeMimeMessage(mimeMessage, addresses);
+        } catch (MessagingException e) {
+            throw new MailPreparationException(e);
+        }
+    }
+
+    /**
+     * 合并各信封的发送结果
+     *
+     * @param chunks       各信封的收件人
+     * @param chunkFutures 各信封已结束的发送结果
+     * @return merged send result
+     * @throws CompletionException 全部信封均发送失败
+     */
+    private static SendResult mergeChunks(List<List<String>> chunks, List<CompletableFuture<SendResult>> chunkFutures) {
+        SendResult merged = null;
+        Throwable firstFailure = null;
+        List<RecipientResult> recipientResults = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            try {
+                SendResult result = chunkFutures.get(i).join();
+                recipientResults.addAll(result.getRecipients());
+                if (Objects.isNull(merged)) {
+                    merged = result;
+                } else {
+                    merged.setElapsedMillis(Math.max(merged.getElapsedMillis(), result.getElapsedMillis()));
+                }
+            } catch (CompletionException | CancellationException e) {
+                Throwable failure = e instanceof CompletionException && Objects.nonNull(e.getCause()) ? e.getCause() : e;
+                firstFailure = Objects.isNull(firstFailure) ? failure : firstFailure;
+                recipientResults.addAll(RecipientResult.rejected(chunks.get(i), failure));
+            }
+        }
+        if (Objects.isNull(merged)) {
+            throw new CompletionException(firstFailure);
+        }
+        merged.setRecipients(recipientResults);
+        return merged;
+    }
+
+    /**
+     * 提交邮件到邮件线程池
+     * <p>
+     * 邮件在发送线程中按选定的邮件模板构建：未使用邮件模板组时使用选定的邮件模板；
+     * 使用邮件模板组时由组选择邮件模板，连接、认证失败或被限流时切换到组内下一个邮件模板重新构建并发送。
+     * 取消或超时返回的future时，同时取消尚未开始执行的发送任务。
+     *
+     * @param target         Nullable, 选定的邮件模板，为null时使用默认邮件模板
+     * @param messageFactory 按邮件模板构建待发送的邮件
+     * @param options        调度参数
+     * @param timeout        Nullable, 超时时间
+     * @param cleanup        Nullable, 发送任务结束或被取消、拒绝后执行，用于删除转存的附件
+     * @return 发送结果的future
+     */
+    private CompletableFuture<SendResult> submit(@Nullable ResolvedTemplate target, Function<EmailContext, MimeMessage> messageFactory, SendOptions options,
+                                                 @Nullable Duration timeout, @Nullable Runnable cleanup) {
+        return this.submit(target, messageFactory, options, timeout, cleanup, false);
+    }
 
     /**
-     * 获取邮件是发送实例
+     * 提交邮件到邮件线程池
+     * <p>
+     * 任务按{@code options}的优先级和截止时间排队；定时发送的邮件先放入时间轮，到期后才占用执行器名额。
+     * 每次发送尝试、重试和死信处理由{@link MailSendTask}执行：超过截止时间仍未开始发送的邮件不再发送，返回的future以{@link MailDeadlineExceededException}结束；
+     * 4xx应答、连接失败等暂时性失败按{@link RetryPolicy}退避后在时间轮上等待重试，不占用发送线程；
+     * 永久失败或重试次数用尽时交给{@link DeadLetterHandler}，返回的future以最后一次发送的异常结束。
+     * 每次提交在{@link DeliveryTracker}中生成一条投递记录，记录ID随发送结果返回。
+     * 应用关闭时仍在时间轮上等待的定时发送以{@link CancellationException}结束，等待重试的邮件交给死信处理器，都不会被提前发出。
      *
-     * @return JavaMailSender
+     * @param target         Nullable, 选定的邮件模板，为null时使用默认邮件模板
+     * @param messageFactory 按邮件模板构建待发送的邮件
+     * @param options        调度参数
+     * @param timeout        Nullable, 超时时间，从提交时开始计算，包括定时发送的等待时间
+     * @param cleanup        Nullable, 发送任务结束或被取消、拒绝后执行，用于删除转存的附件
+     * @param tryOnly        为true时执行器饱和立即返回null，不按过载策略等待或进入溢出队列
+     * @return 发送结果的future，{@code tryOnly}且执行器饱和时为null
      */
-    private JavaMailSender getMailSender() {
-        JavaMailSender mailSender = EmailAspect.MAIL_SENDER_TL.get();
-        if (Objects.isNull(mailSender)) {
-            return this.defaultJavaMailSender;
+    private CompletableFuture<SendResult> submit(@Nullable ResolvedTemplate target, Function<EmailContext, MimeMessage> messageFactory, SendOptions options,
+                                                 @Nullable Duration timeout, @Nullable Runnable cleanup, boolean tryOnly) {
+        TemplateGroup group = getTemplateGroup(target);
+        EmailContext context = Objects.isNull(group) ? this.getContext(target) : null;
+        String templateName = Objects.isNull(group) ? context.templateName() : group.getGroupName();
+        MailSendTask sendTask = new MailSendTask(this, emailDispatcher, emailMetrics, deliveryTracker, templateName,
+                factory -> Objects.isNull(group) ? this.send(context, factory) : this.deliver(group, member -> this.send(member, factory)),
+                messageFactory, options, cleanup);
+        CompletableFuture<SendResult> sendResultFuture = sendTask.getFuture();
+        FutureTask<Void> task = new FutureTask<>(sendTask, null);
+        Runnable prioritized = PrioritizedTask.of(task, options.priority(), options.deadlineMillis());
+        try {
+            if (Objects.nonNull(options.sendAt()) && Objects.nonNull(this.timerWheel)) {
+                this.timerWheel.schedule(options.sendAt(), () -> {
+                    if (sendResultFuture.isDone()) {
+                        return;
+                    }
+                    sendTask.dispatched();
+                    try {
+                        emailDispatcher.executeDue(prioritized, options.lane());
+                    } catch (RejectedExecutionException e) {
+                        log.warn("Rejected scheduled mail for template '{}': {}", templateName, e.getMessage());
+                        emailMetrics.recordRejected(templateName);
+                        // 由下方whenComplete取消任务并清理
+                        sendResultFuture.completeExceptionally(e);
+                    }
+                }, () -> sendResultFuture.completeExceptionally(new CancellationException(
+                        "Scheduled mail for template '" + templateName + "' was not sent before shutdown")));
+            } else if (!tryOnly) {
+                emailDispatcher.execute(prioritized, options.lane());
+            } else if (!emailDispatcher.tryExecute(prioritized, options.lane())) {
+                emailMetrics.recordRejected(templateName);
+                sendTask.cleanup();
+                this.deliveryTracker.discard(sendTask.getTrackingId());
+                return null;
+            }
+        } catch (RejectedExecutionException | IllegalStateException e) {
+            log.warn("Rejected mail for template '{}': {}", templateName, e.getMessage());
+            emailMetrics.recordRejected(templateName);
+            sendTask.cleanup();
+            sendResultFuture.completeExceptionally(e);
+            return sendResultFuture;
         }
-        return mailSender;
+        if (Objects.nonNull(timeout)) {
+            sendResultFuture.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        sendResultFuture.whenComplete((result, throwable) -> {
+            // 取消成功说明任务不会再执行，由此处清理；任务已开始时由任务自身清理
+            if (Objects.nonNull(throwable) && task.cancel(false)) {
+                sendTask.cleanup();
+            }
+        });
+        return sendResultFuture;
     }
 
     /**
-     * 获取电子邮件支持的配置属性
+     * 暂时性失败时安排重试
+     * <p>重试在时间轮上等待，到期后才重新占用执行器名额；重试时间晚于截止时间、时间轮不可用时不再重试。</p>
      *
-     * @return MailProperties
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     * @param failure      本次发送的异常
+     * @param attempts     已尝试次数
+     * @param options      调度参数
+     * @param retry        重新提交发送任务
+     * @param cancel       应用关闭时结束仍在等待的重试
+     * @return 是否已安排重试
      */
-    private MailProperties getMailProperties() {
-        MailProperties properties = EmailAspect.MAIL_PROPERTIES_TL.get();
-        if (Objects.isNull(properties)) {
-            return this.defaultMailProperties;
+    boolean retryLater(String templateName, Exception failure, int attempts, SendOptions options, Runnable retry, Runnable cancel) {
+        if (Objects.isNull(this.timerWheel) || !this.retryPolicy.shouldRetry(failure, attempts)) {
+            return false;
+        }
+        Duration backoff = this.retryPolicy.backoff(attempts);
+        Instant due = Instant.now().plus(backoff);
+        if (Objects.nonNull(options.deadline()) && due.isAfter(options.deadline())) {
+            return false;
+        }
+        try {
+            this.timerWheel.schedule(due, retry, cancel);
+        } catch (IllegalStateException e) {
+            return false;
         }
-        return properties;
+        log.warn("Mail for template '{}' failed on attempt {}/{}, retrying in {} ms: {}", templateName, attempts, this.retryPolicy.getMaxAttempts(),
+                backoff.toMillis(), failure.getMessage());
+        emailMetrics.recordRetry(templateName);
+        return true;
     }
 
     /**
-     * 发送给定的简单邮件消息
+     * 把永久失败或重试次数用尽的邮件交给死信处理器
      *
-     * @param data the message to send
-     * @throws MailException Base class for all mail exceptions
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     * @param message      Nullable, 最后一次尝试构建的邮件
+     * @param failure      最后一次发送的异常
+     * @param attempts     已尝试次数
      */
-    public void send(@Valid SimpleMailMessageDomain data) throws Exception {
-        SimpleMailMessage simpleMessage = new SimpleMailMessage();
-        simpleMessage.setFrom(this.getMailProperties().getUsername());
-        simpleMessage.setTo(data.getTo());
-        if (ObjectUtils.isNotEmpty(data.getCc())) {
-            simpleMessage.setCc(data.getCc());
+    void deadLetter(String templateName, @Nullable MimeMessage message, Exception failure, int attempts) {
+        boolean permanent = !SmtpReplies.isTransient(failure);
+        log.error("Mail for template '{}' failed {} after {} attempt(s): {}", templateName, permanent ? "permanently" : "transiently", attempts, failure.getMessage());
+        emailMetrics.recordDeadLetter(templateName);
+        if (Objects.isNull(this.deadLetterHandler)) {
+            return;
         }
-        simpleMessage.setSentDate(Objects.nonNull(data.getSentDate()) ? Date.from(data.getSentDate().atZone(ZoneId.systemDefault()).toInstant()) : new Date());
-        simpleMessage.setSubject(data.getSubject());
-        simpleMessage.setText(data.getText());
-        JavaMailSender mailSender = this.getMailSender();
+        try {
+            this.deadLetterHandler.handle(new DeadLetter(templateName, message, failure, SmtpReplies.replyCodes(failure), attempts, permanent, Instant.now()));
+        } catch (RuntimeException e) {
+            log.warn("Dead letter handler failed for template '{}'", templateName, e);
+        }
+    }
 
-        RequestAttributes mainThreadRequestAttributes = RequestContextHolder.getRequestAttributes();
-        CompletableFuture<Void> sendResponseFuture = CompletableFuture.runAsync(() -> {
-            log.info("Current send simple message thread info: '{}' '{}' '{}'", Thread.currentThread().getId(), Thread.currentThread().getThreadGroup().getName(), Thread.currentThread().getName());
-            RequestContextHolder.setRequestAttributes(mainThreadRequestAttributes);
-            mailSender.send(simpleMessage);
-        }, emailThreadPoolExecutor);
+    /**
+     * 取出异步发送失败的原始异常，同步发送方法直接抛出发送失败的{@link MailException}
+     *
+     * @param e execution exception
+     * @return cause of the failure
+     */
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
 
+    /**
+     * 执行清理动作，异常只记录日志
+     *
+     * @param cleanup Nullable, cleanup action
+     */
+    static void runQuietly(@Nullable Runnable cleanup) {
+        if (Objects.isNull(cleanup)) {
+            return;
+        }
         try {
-            CompletableFuture.allOf(sendResponseFuture).get();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("发送给定的简单邮件消息失败: {}", data, e);
-            Thread.currentThread().interrupt();
+            cleanup.run();
+        } catch (RuntimeException e) {
+            log.warn("Failed to clean up after sending mail", e);
         }
     }
 
     /**
-     * 发送带附件的邮件
+     * 使用指定邮件模板构建并发送一封邮件
+     * <p>部分收件人被拒绝而邮件已投递给其余收件人时视为发送成功，不重试，被拒绝的收件人记录在{@code SendResult#getRecipients()}中。</p>
      *
-     * @param data metadata of message to send
-     * @param file Nullable, support for spring MVC upload file received in the request, can be null.
-     * @throws MessagingException messaging exception
+     * @param context        邮件模板上下文
+     * @param messageFactory 按邮件模板构建待发送的邮件
+     * @return 发送结果
      */
-    public void send(@Valid MimeMessageDomain data, @Nullable MultipartFile file) throws Exception {
-        JavaMailSender mailSender = this.getMailSender();
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-        helper.setFrom(this.getMailProperties().getUsername());
-        helper.setTo(data.getTo());
-        helper.setCc(data.getCc());
-        helper.setSentDate(Objects.nonNull(data.getSentDate()) ? Date.from(data.getSentDate().atZone(ZoneId.systemDefault()).toInstant()) : new Date());
-        helper.setSubject(data.getSubject());
-        helper.setText(data.getText(), true);
-        if (Objects.nonNull(file) && !file.isEmpty()) {
-            helper.addAttachment(Objects.requireNonNull(file.getOriginalFilename(), "The attachment file name (including file suffix) cannot be empty"), file);
-        }
-        if (StringUtils.isNoneBlank(data.getFilepath())) {
-            File newFile = new File(data.getFilepath());
-            helper.addAttachment(newFile.getName(), newFile);
+    private SendResult send(EmailContext context, Function<EmailContext, MimeMessage> messageFactory) {
+        return Observation.createNotStarted("email.send", this.observationRegistry)
+                .lowCardinalityKeyValue("template", context.templateName())
+                .observe(() -> {
+                    String templateName = context.templateName();
+                    boolean success = false;
+                    try {
+                        long buildStart = System.nanoTime();
+                        MimeMessage mimeMessage = messageFactory.apply(context);
+                        long sendStart = System.nanoTime();
+                        emailMetrics.recordBuild(templateName, sendStart - buildStart);
+                        // 清除直接使用发送实例时遗留的应答
+                        SmtpReplies.takeResponse();
+                        try {
+                            context.mailSender().send(mimeMessage);
+                        } catch (MailSendException e) {
+                            SendFailedException partial = SmtpReplies.partialDelivery(e);
+                            if (Objects.isNull(partial)) {
+                                throw e;
+                            }
+                            success = true;
+                            return SendResult.success(templateName, getMessageId(mimeMessage), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendStart),
+                                    RecipientResult.of(partial));
+                        }
+                        success = true;
+                        SendResult result = SendResult.success(templateName, getMessageId(mimeMessage), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendStart),
+                                RecipientResult.accepted(mimeMessage));
+                        result.setSmtpResponse(SmtpReplies.takeResponse());
+                        return result;
+                    } finally {
+                        emailMetrics.recordResult(templateName, success);
+                    }
+                });
+    }
+
+    /**
+     * 在邮件模板组内发送，失败时切换邮件模板
+     * <p>
+     * 只有连接失败、认证失败或被限流才计入组成员的熔断器并切换到下一个邮件模板，
+     * 收件人地址错误等与发件账号无关的失败直接抛出。
+     *
+     * @param group  邮件模板组
+     * @param action 使用选定的邮件模板执行发送
+     * @param <T>    发送结果类型
+     * @return 发送结果
+     */
+    private <T> T deliver(TemplateGroup group, Function<EmailContext, T> action) {
+        Set<String> tried = new HashSet<>();
+        RuntimeException lastFailure = null;
+        TemplateGroup.Member member;
+        while (Objects.nonNull(member = group.select(tried))) {
+            tried.add(member.getTemplateName());
+            EmailContext context = this.mailWrapper.getContext(member.getTemplateName());
+            boolean healthy = true;
+            member.begin();
+            try {
+                return action.apply(context);
+            } catch (RuntimeException e) {
+                healthy = !SmtpReplies.isConnectionFailure(e);
+                if (healthy) {
+                    throw e;
+                }
+                log.warn("Mail template '{}' of group '{}' failed, trying next template: {}", member.getTemplateName(), group.getGroupName(), e.getMessage());
+                lastFailure = e;
+            } finally {
+                member.end(healthy);
+            }
         }
-        RequestAttributes mainThreadRequestAttributes = RequestContextHolder.getRequestAttributes();
-        CompletableFuture<Void> sendResponseFuture = CompletableFuture.runAsync(() -> {
-            log.info("Current send mime mime message thread info: '{}' '{}' '{}'", Thread.currentThread().getId(), Thread.currentThread().getThreadGroup().getName(), Thread.currentThread().getName());
-            RequestContextHolder.setRequestAttributes(mainThreadRequestAttributes);
-            mailSender.send(mimeMessage);
-        }, emailThreadPoolExecutor);
+        if (Objects.nonNull(lastFailure)) {
+            throw lastFailure;
+        }
+        throw new MailSendException("No available mail template in group '" + group.getGroupName() + "'");
+    }
 
-        try {
-            CompletableFuture.allOf(sendResponseFuture).get();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("发送带附件的邮件失败: {}", data, e);
-            Thread.currentThread().interrupt();
+    /**
+     * 绑定到邮件模板或邮件模板组的发送句柄
+     * <p>
+     * 由{@link #using(String)}、{@link #usingGroup(String)}创建，发送时直接使用绑定的邮件模板，
+     * 不经过{@code @Email}切面，也不读写ThreadLocal；方法与{@link EmailTemplate}的同名方法行为一致，
+     * 但不经过{@code @Validated}代理，入参需由调用方保证有效。
+     */
+    public final class TemplateSender {
+        private volatile ResolvedTemplate target;
+
+        private TemplateSender(ResolvedTemplate target) {
+            this.target = target;
+        }
+
+        /**
+         * 绑定的邮件模板或邮件模板组名称
+         *
+         * @return template or group name
+         */
+        public String getName() {
+            return this.target.name();
+        }
+
+        /**
+         * 使用正文模板异步发送HTML邮件
+         *
+         * @param templateId 正文模板ID
+         * @param model      模板变量
+         * @param to         收件人的邮箱
+         * @return 发送结果的future
+         * @see EmailTemplate#sendAsync(String, Map, String...)
+         */
+        public CompletableFuture<SendResult> sendAsync(String templateId, Map<String, ?> model, String... to) {
+            return EmailTemplate.this.sendAsync(this.target, templateId, model, to);
+        }
+
+        /**
+         * 异步发送给定的简单邮件消息
+         *
+         * @param data the message to send
+         * @return 发送结果的future
+         */
+        public CompletableFuture<SendResult> sendAsync(SimpleMailMessageDomain data) {
+            return EmailTemplate.this.sendAsync(this.target, data, null);
+        }
+
+        /**
+         * 异步发送给定的简单邮件消息
+         *
+         * @param data    the message to send
+         * @param timeout Nullable, 超时时间
+         * @return 发送结果的future
+         */
+        public CompletableFuture<SendResult> sendAsync(SimpleMailMessageDomain data, @Nullable Duration timeout) {
+            return EmailTemplate.this.sendAsync(this.target, data, timeout);
+        }
+
+        /**
+         * 异步发送带附件的邮件
+         *
+         * @param data  metadata of message to send
+         * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+         * @return 发送结果的future
+         */
+        public CompletableFuture<SendResult> sendAsync(MimeMessageDomain data, @Nullable MultipartFile... files) {
+            return EmailTemplate.this.sendAsync(this.target, data, null, files);
+        }
+
+        /**
+         * 异步发送带附件的邮件
+         *
+         * @param data    metadata of message to send
+         * @param timeout Nullable, 超时时间
+         * @param files   Nullable, support for spring MVC upload files received in the request, can be null.
+         * @return 发送结果的future
+         * @see EmailTemplate#sendAsync(MimeMessageDomain, Duration, MultipartFile...)
+         */
+        public CompletableFuture<SendResult> sendAsync(MimeMessageDomain data, @Nullable Duration timeout, @Nullable MultipartFile... files) {
+            return EmailTemplate.this.sendAsync(this.target, data, timeout, files);
+        }
+
+        /**
+         * 异步发送附件已转存到磁盘的邮件，供{@link ReactiveEmailTemplate}发送{@code FilePart}附件
+         *
+         * @param data        metadata of message to send
+         * @param attachments 已转存的附件，发送结束后删除临时文件
+         * @return 发送结果的future
+         */
+        CompletableFuture<SendResult> sendAsync(MimeMessageDomain data, List<FileAttachment> attachments) {
+            return EmailTemplate.this.sendAsync(this.target, data, null, attachments);
+        }
+
+        /**
+         * 按批量邮件通道提交一封邮件，与{@link #sendAll(Flow.Publisher, Consumer)}的单封邮件相同
+         *
+         * @param data 邮件消息
+         * @return 发送结果的future
+         */
+        CompletableFuture<SendResult> submitBulk(MailDomain data) {
+            return EmailTemplate.this.submit(this.target, context -> EmailTemplate.this.createMimeMessage(context.mailSender(), context.mailProperties(), data),
+                    SendOptions.of(data, Lane.BULK), null, null);
+        }
+
+        /**
+         * 尝试异步发送给定的简单邮件消息，不阻塞调用线程
+         *
+         * @param data the message to send
+         * @return 发送结果的future，执行器饱和时为空
+         * @see EmailTemplate#trySendAsync(SimpleMailMessageDomain)
+         */
+        public Optional<CompletableFuture<SendResult>> trySendAsync(SimpleMailMessageDomain data) {
+            return EmailTemplate.this.trySendAsync(this.target, data);
+        }
+
+        /**
+         * 尝试异步发送带附件的邮件，不阻塞调用线程
+         *
+         * @param data  metadata of message to send
+         * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+         * @return 发送结果的future，执行器饱和时为空
+         */
+        public Optional<CompletableFuture<SendResult>> trySendAsync(MimeMessageDomain data, @Nullable MultipartFile... files) {
+            return EmailTemplate.this.trySendAsync(this.target, data, files);
+        }
+
+        /**
+         * 发送发布者产生的全部邮件
+         *
+         * @param publisher 邮件发布者
+         * @param onResult  每封邮件发送结束后回调
+         * @return 全部邮件发送结束后以发送数量完成的future
+         * @see EmailTemplate#sendAll(Flow.Publisher, Consumer)
+         */
+        public CompletableFuture<Long> sendAll(Flow.Publisher<? extends MailDomain> publisher, Consumer<SendResult> onResult) {
+            return EmailTemplate.this.sendAll(this.target, publisher, onResult);
+        }
+
+        /**
+         * 将简单邮件写入持久化发件箱，由后台投递
+         *
+         * @param data the message to send
+         * @return 发件箱记录序号
+         */
+        public long enqueue(SimpleMailMessageDomain data) {
+            return EmailTemplate.this.enqueue(this.target, data);
+        }
+
+        /**
+         * 将带附件的邮件写入持久化发件箱，由后台投递
+         *
+         * @param data  metadata of message to send
+         * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+         * @return 发件箱记录序号
+         */
+        public long enqueue(MimeMessageDomain data, @Nullable MultipartFile... files) {
+            return EmailTemplate.this.enqueue(this.target, data, files);
+        }
+
+        /**
+         * 批量发送邮件
+         *
+         * @param messages 待发送的邮件
+         * @return 每封邮件的发送结果
+         * @see EmailTemplate#sendBatch(Collection)
+         */
+        public CompletableFuture<List<SendResult>> sendBatch(Collection<? extends MailDomain> messages) {
+            return EmailTemplate.this.sendBatch(this.target, messages);
+        }
+
+        /**
+         * 邮件合并：按收件人批量发送个性化邮件
+         *
+         * @param data  邮件合并消息
+         * @param files Nullable, support for spring MVC upload files received in the request, can be null.
+         * @return 每个收件人的发送结果
+         * @see EmailTemplate#sendMerge(MailMergeDomain, MultipartFile...)
+         */
+        public CompletableFuture<List<SendResult>> sendMerge(MailMergeDomain data, @Nullable MultipartFile... files) {
+            return EmailTemplate.this.sendMerge(this.target, data, files);
+        }
+    }
+
+    /**
+     * 邮件发送结果
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SendResult {
+        /**
+         * 发送邮件使用的邮件模板名称
+         */
+        private String templateName;
+        /**
+         * 邮件的Message-ID
+         */
+        private String messageId;
+        /**
+         * 发送完成时刻
+         */
+        private LocalDateTime sentTime;
+        /**
+         * SMTP发送耗时（毫秒）
+         */
+        private long elapsedMillis;
+        /**
+         * 是否发送成功
+         */
+        private boolean success;
+        /**
+         * 发送失败原因
+         */
+        private String errorMessage;
+        /**
+         * 每个收件人的接收情况，部分收件人被拒绝时发送仍视为成功
+         */
+        private List<RecipientResult> recipients = Collections.emptyList();
+        /**
+         * 服务器对邮件数据的应答，例如：{@code 250 2.0.0 Ok: queued as 4F1A2B}，未使用连接池发送时为null
+         */
+        private String smtpResponse;
+        /**
+         * 投递记录ID，通过{@link DeliveryTracker#find(String)}或{@code /actuator/emaildeliveries/{id}}查询；拆分信封发送时为第一个信封的记录
+         */
+        private String trackingId;
+
+        public SendResult(String templateName, String messageId, LocalDateTime sentTime, long elapsedMillis, boolean success, String errorMessage) {
+            this(templateName, messageId, sentTime, elapsedMillis, success, errorMessage, Collections.emptyList());
+        }
+
+        public SendResult(String templateName, String messageId, LocalDateTime sentTime, long elapsedMillis, boolean success, String errorMessage,
+                          List<RecipientResult> recipients) {
+            this(templateName, messageId, sentTime, elapsedMillis, success, errorMessage, recipients, null, null);
+        }
+
+        /**
+         * 发送成功的结果
+         *
+         * @param templateName  邮件模板名称
+         * @param messageId     Message-ID
+         * @param elapsedMillis SMTP发送耗时（毫秒）
+         * @return send result
+         */
+        public static SendResult success(String templateName, String messageId, long elapsedMillis) {
+            return new SendResult(templateName, messageId, LocalDateTime.now(), elapsedMillis, true, null);
+        }
+
+        /**
+         * 发送成功的结果
+         *
+         * @param templateName  邮件模板名称
+         * @param messageId     Message-ID
+         * @param elapsedMillis SMTP发送耗时（毫秒）
+         * @param recipients    每个收件人的接收情况
+         * @return send result
+         */
+        public static SendResult success(String templateName, String messageId, long elapsedMillis, List<RecipientResult> recipients) {
+            return new SendResult(templateName, messageId, LocalDateTime.now(), elapsedMillis, true, null, recipients);
+        }
+
+        /**
+         * 发送失败的结果
+         *
+         * @param templateName 邮件模板名称
+         * @param cause        失败原因
+         * @return send result
+         */
+        public static SendResult failure(String templateName, Throwable cause) {
+            return new SendResult(templateName, null, null, 0L, false, cause.getMessage());
+        }
+    }
+
+    /**
+     * 邮件消息公共属性
+     */
+    public interface MailDomain {
+        /**
+         * 收件人的邮箱
+         *
+         * @return 收件人的邮箱
+         */
+        String getTo();
+
+        /**
+         * 抄送邮箱
+         *
+         * @return 抄送邮箱
+         */
+        String[] getCc();
+
+        /**
+         * 邮件发送日期
+         *
+         * @return 邮件发送日期
+         */
+        LocalDateTime getSentDate();
+
+        /**
+         * 邮件主题
+         *
+         * @return 邮件主题
+         */
+        String getSubject();
+
+        /**
+         * 邮件正文
+         *
+         * @return 邮件正文
+         */
+        String getText();
+
+        /**
+         * 邮件优先级
+         *
+         * @return 邮件优先级，为null时单封发送为{@link MailPriority#NORMAL}，批量发送为{@link MailPriority#LOW}
+         */
+        default MailPriority getPriority() {
+            return null;
+        }
+
+        /**
+         * 截止时间，超过后仍未开始发送的邮件被丢弃
+         *
+         * @return 截止时间，为null时不限制
+         */
+        default LocalDateTime getDeadline() {
+            return null;
+        }
+
+        /**
+         * 幂等键，相同幂等键的邮件在{@code spring.mail.idempotency.window}内只发送一次
+         *
+         * @return 幂等键，为null时不去重
+         */
+        default String getIdempotencyKey() {
+            return null;
+        }
+    }
+
+    /**
+     * 单封邮件的调度参数
+     *
+     * @param lane     任务通道
+     * @param priority 邮件优先级
+     * @param deadline Nullable, 截止时间
+     * @param sendAt   Nullable, 定时发送时间，为null时立即发送
+     */
+    record SendOptions(Lane lane, MailPriority priority, @Nullable Instant deadline, @Nullable Instant sendAt) {
+        /**
+         * 使用正文模板发送等没有调度参数的邮件
+         */
+        static final SendOptions DEFAULT = new SendOptions(Lane.TRANSACTIONAL, MailPriority.NORMAL, null, null);
+
+        /**
+         * 按邮件消息的优先级、截止时间和发送日期确定调度参数
+         *
+         * @param data 邮件消息
+         * @param lane 任务通道
+         * @return send options
+         */
+        static SendOptions of(MailDomain data, Lane lane) {
+            MailPriority priority = Objects.nonNull(data.getPriority()) ? data.getPriority() : (lane == Lane.BULK ? MailPriority.LOW : MailPriority.NORMAL);
+            Instant deadline = Objects.nonNull(data.getDeadline()) ? data.getDeadline().atZone(ZoneId.systemDefault()).toInstant() : null;
+            Instant sentDate = Objects.nonNull(data.getSentDate()) ? data.getSentDate().atZone(ZoneId.systemDefault()).toInstant() : null;
+            return new SendOptions(lane, priority, deadline, Objects.nonNull(sentDate) && sentDate.isAfter(Instant.now()) ? sentDate : null);
+        }
+
+        boolean isExpired() {
+            return Objects.nonNull(this.deadline) && Instant.now().isAfter(this.deadline);
+        }
+
+        long deadlineMillis() {
+            return Objects.nonNull(this.deadline) ? this.deadline.toEpochMilli() : Long.MAX_VALUE;
         }
     }
 
@@ -170,7 +1786,7 @@ public class EmailTemplate {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class SimpleMailMessageDomain {
+    public static class SimpleMailMessageDomain implements MailDomain {
         /**
          * 收件人的邮箱
          */
@@ -182,7 +1798,7 @@ public class EmailTemplate {
          */
         private String[] cc;
         /**
-         * 邮件发送日期, 默认当前时刻: {@code new Date()} 提交格式: yyyy-MM-dd HH:mm:ss
+         * 邮件发送日期, 默认当前时刻: {@code new Date()} 提交格式: yyyy-MM-dd HH:mm:ss；晚于当前时刻时到该时刻才发送
          */
         @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
         private LocalDateTime sentDate;
@@ -196,6 +1812,23 @@ public class EmailTemplate {
          */
         @NotBlank(message = "邮件正文不能为空")
         private String text;
+        /**
+         * 邮件优先级（非必填），默认：{@code NORMAL}
+         */
+        private MailPriority priority;
+        /**
+         * 截止时间（非必填），超过后仍未开始发送的邮件被丢弃，提交格式: yyyy-MM-dd HH:mm:ss
+         */
+        @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime deadline;
+        /**
+         * 幂等键（非必填），客户端重试时携带相同的值，邮件只发送一次，重复请求返回第一次发送的结果
+         */
+        private String idempotencyKey;
+
+        public SimpleMailMessageDomain(String to, String[] cc, LocalDateTime sentDate, String subject, String text) {
+            this(to, cc, sentDate, subject, text, null, null, null);
+        }
     }
 
     /**
@@ -205,7 +1838,7 @@ public class EmailTemplate {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class MimeMessageDomain {
+    public static class MimeMessageDomain implements MailDomain {
         /**
          * 收件人的邮箱
          */
@@ -217,7 +1850,7 @@ public class EmailTemplate {
          */
         private String[] cc;
         /**
-         * 邮件发送日期, 默认当前时刻: {@code new Date()} 提交格式: yyyy-MM-dd HH:mm:ss
+         * 邮件发送日期, 默认当前时刻: {@code new Date()} 提交格式: yyyy-MM-dd HH:mm:ss；晚于当前时刻时到该时刻才发送
          */
         @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
         private LocalDateTime sentDate;
@@ -235,5 +1868,77 @@ public class EmailTemplate {
          * 附件文件的路径 （没有附件文件不用还传）
          */
         private String filepath;
+        /**
+         * 邮件优先级（非必填），默认：{@code NORMAL}
+         */
+        private MailPriority priority;
+        /**
+         * 截止时间（非必填），超过后仍未开始发送的邮件被丢弃，提交格式: yyyy-MM-dd HH:mm:ss
+         */
+        @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime deadline;
+        /**
+         * 幂等键（非必填），客户端重试时携带相同的值，邮件只发送一次，重复请求返回第一次发送的结果
+         */
+        private String idempotencyKey;
+
+        public MimeMessageDomain(String to, String[] cc, LocalDateTime sentDate, String subject, String text, String filepath) {
+            this(to, cc, sentDate, subject, text, filepath, null, null, null);
+        }
+    }
+
+    /**
+     * 邮件合并消息对象
+     * <p>一封邮件发给多个收件人，每个收件人的主题、正文按各自的模板变量渲染，附件和内嵌图片所有收件人共享</p>
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MailMergeDomain {
+        /**
+         * 正文模板ID，与{@code text}二选一
+         */
+        private String templateId;
+        /**
+         * 邮件主题，支持{@code ${name}}变量；为空时使用正文模板的{@code <title>}
+         */
+        private String subject;
+        /**
+         * 邮件正文（html），支持{@code ${name}}变量，与{@code templateId}二选一
+         */
+        private String text;
+        /**
+         * 附件文件的路径 （没有附件文件不用还传）
+         */
+        private String filepath;
+        /**
+         * 内嵌图片，key为Content-ID，value为图片文件路径，正文中以{@code <img src="cid:Content-ID">}引用（非必填）
+         */
+        private Map<String, String> inlineImages;
+        /**
+         * 收件人列表
+         */
+        @Valid
+        @NotEmpty(message = "收件人列表不能为空")
+        private List<MailMergeRecipient> recipients;
+    }
+
+    /**
+     * 邮件合并收件人
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MailMergeRecipient {
+        /**
+         * 收件人的邮箱
+         */
+        @NotBlank(message = "收件人邮箱不能为空")
+        @Email(regexp = "^([A-Za-z0-9_\\-\\.])+\\@([A-Za-z0-9_\\-\\.])+\\.([A-Za-z]{2,4})$", message = "收件人邮箱格式不正确")
+        private String to;
+        /**
+         * 收件人的模板变量
+         */
+        private Map<String, Object> model;
     }
 }
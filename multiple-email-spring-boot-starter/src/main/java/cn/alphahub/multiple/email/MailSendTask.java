@@ -0,0 +1,198 @@
+package cn.alphahub.multiple.email;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendOptions;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.config.EmailContext;
+import cn.alphahub.multiple.email.dispatch.EmailDispatcher;
+import cn.alphahub.multiple.email.dispatch.MailDeadlineExceededException;
+import cn.alphahub.multiple.email.dispatch.PrioritizedTask;
+import cn.alphahub.multiple.email.metrics.EmailMetrics;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import jakarta.mail.internet.MimeMessage;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * 一封邮件的发送流程
+ * <p>
+ * 由{@link EmailTemplate}创建并提交到邮件线程池，每次执行为一次发送尝试：
+ * <ul>
+ *     <li>返回的future已结束（超时、被取消或拒绝）时不再发送，只执行清理；超过截止时间时以{@link MailDeadlineExceededException}结束</li>
+ *     <li>发送成功时完成future，投递记录更新为已发送</li>
+ *     <li>暂时性失败时在时间轮上等待重试，到期后再次提交本任务，不占用发送线程；
+ *     永久失败或重试次数用尽时交给死信处理器，future以最后一次发送的异常结束</li>
+ * </ul>
+ * 同一封邮件的各次尝试依次执行，但重试可能在上一次尝试的异常处理结束前开始。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-17
+ */
+@Slf4j
+final class MailSendTask implements Runnable {
+    private final EmailTemplate emailTemplate;
+    private final EmailDispatcher emailDispatcher;
+    private final EmailMetrics emailMetrics;
+    private final DeliveryTracker deliveryTracker;
+    private final String templateName;
+    private final Function<Function<EmailContext, MimeMessage>, SendResult> transport;
+    private final Function<EmailContext, MimeMessage> messageFactory;
+    private final SendOptions options;
+    private final Runnable cleanup;
+    private final CompletableFuture<SendResult> future = new CompletableFuture<>();
+    private final String trackingId;
+    private final RequestAttributes requestAttributes;
+    private final AtomicInteger attempts = new AtomicInteger();
+    /**
+     * 进入执行器队列的时刻，定时发送或重试时为到期时刻
+     */
+    private volatile long dispatchNanos = System.nanoTime();
+    /**
+     * 最后一次尝试构建的邮件，交给死信处理器和投递记录
+     */
+    private volatile MimeMessage lastMessage;
+
+    /**
+     * @param emailTemplate   重试和死信处理
+     * @param emailDispatcher 重新提交到期的重试
+     * @param emailMetrics    email metrics
+     * @param deliveryTracker delivery tracker
+     * @param templateName    邮件模板名称，使用邮件模板组时为组名称
+     * @param transport       使用给定的邮件构建方式发送一次，邮件模板组时包括组内故障转移
+     * @param messageFactory  按邮件模板构建待发送的邮件
+     * @param options         调度参数
+     * @param cleanup         Nullable, 发送流程结束或被取消、拒绝后执行，用于删除转存的附件
+     */
+    MailSendTask(EmailTemplate emailTemplate, EmailDispatcher emailDispatcher, EmailMetrics emailMetrics, DeliveryTracker deliveryTracker,
+                 String templateName, Function<Function<EmailContext, MimeMessage>, SendResult> transport,
+                 Function<EmailContext, MimeMessage> messageFactory, SendOptions options, @Nullable Runnable cleanup) {
+        this.emailTemplate = emailTemplate;
+        this.emailDispatcher = emailDispatcher;
+        this.emailMetrics = emailMetrics;
+        this.deliveryTracker = deliveryTracker;
+        this.templateName = templateName;
+        this.transport = transport;
+        this.messageFactory = messageFactory;
+        this.options = options;
+        this.cleanup = cleanup;
+        this.trackingId = deliveryTracker.queued(templateName);
+        this.requestAttributes = RequestContextHolder.getRequestAttributes();
+        // 超过截止时间、被拒绝、超时、取消和最终失败都以异常结束
+        this.future.whenComplete((result, throwable) -> {
+            if (Objects.nonNull(throwable)) {
+                deliveryTracker.failed(this.trackingId, throwable, this.lastMessage);
+            }
+        });
+    }
+
+    /**
+     * @return 发送结果的future
+     */
+    CompletableFuture<SendResult> getFuture() {
+        return this.future;
+    }
+
+    /**
+     * @return 投递记录ID，不记录投递状态时为null
+     */
+    @Nullable
+    String getTrackingId() {
+        return this.trackingId;
+    }
+
+    /**
+     * 记录进入执行器队列的时刻，定时发送到期时调用
+     */
+    void dispatched() {
+        this.dispatchNanos = System.nanoTime();
+    }
+
+    /**
+     * 执行清理动作，未配置时忽略
+     */
+    void cleanup() {
+        EmailTemplate.runQuietly(this.cleanup);
+    }
+
+    /**
+     * 一次发送尝试
+     */
+    @Override
+    public void run() {
+        if (this.future.isDone()) {
+            this.cleanup();
+            return;
+        }
+        if (this.options.isExpired()) {
+            this.emailMetrics.recordExpired(this.templateName);
+            this.future.completeExceptionally(new MailDeadlineExceededException("Mail for template '" + this.templateName + "' missed its deadline " + this.options.deadline()));
+            this.cleanup();
+            return;
+        }
+        this.emailMetrics.recordQueueWait(this.templateName, System.nanoTime() - this.dispatchNanos);
+        log.debug("Current send mime message thread info: '{}' '{}' '{}'", Thread.currentThread().getId(), Thread.currentThread().getThreadGroup().getName(), Thread.currentThread().getName());
+        RequestContextHolder.setRequestAttributes(this.requestAttributes);
+        boolean finished = true;
+        // 重试可能在本次尝试的异常处理结束前开始，之后只使用attempt
+        int attempt = this.attempts.incrementAndGet();
+        try {
+            this.lastMessage = null;
+            this.deliveryTracker.sending(this.trackingId, attempt);
+            SendResult result = this.transport.apply(member -> this.lastMessage = this.messageFactory.apply(member));
+            result.setTrackingId(this.trackingId);
+            this.deliveryTracker.sent(this.trackingId, result);
+            this.future.complete(result);
+        } catch (Exception e) {
+            finished = !this.emailTemplate.retryLater(this.templateName, e, attempt, this.options, () -> this.retry(e), () -> {
+                this.giveUp(e, attempt);
+                this.cleanup();
+            });
+            if (finished) {
+                this.giveUp(e, attempt);
+            } else {
+                this.deliveryTracker.retrying(this.trackingId, attempt, e);
+            }
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            if (finished) {
+                this.cleanup();
+            }
+        }
+    }
+
+    /**
+     * 重试到期，重新提交到执行器
+     *
+     * @param failure 上一次发送的异常，重试被拒绝时future以此结束
+     */
+    private void retry(Exception failure) {
+        if (this.future.isDone()) {
+            this.cleanup();
+            return;
+        }
+        this.dispatched();
+        try {
+            this.emailDispatcher.executeDue(PrioritizedTask.of(this, this.options.priority(), this.options.deadlineMillis()), this.options.lane());
+        } catch (RejectedExecutionException ex) {
+            log.warn("Rejected mail retry for template '{}': {}", this.templateName, ex.getMessage());
+            this.emailMetrics.recordRejected(this.templateName);
+            this.future.completeExceptionally(failure);
+            this.cleanup();
+        }
+    }
+
+    /**
+     * 不再重试，交给死信处理器后以最后一次发送的异常结束
+     */
+    private void giveUp(Exception failure, int attempt) {
+        this.emailTemplate.deadLetter(this.templateName, this.lastMessage, failure, attempt);
+        this.future.completeExceptionally(failure);
+    }
+}
@@ -0,0 +1,258 @@
+package cn.alphahub.multiple.email;
+
+import cn.alphahub.multiple.email.EmailTemplate.MailDomain;
+import cn.alphahub.multiple.email.EmailTemplate.MimeMessageDomain;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.EmailTemplate.TemplateSender;
+import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.attachment.FileAttachment;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.StringUtils;
+import org.reactivestreams.Publisher;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailPreparationException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * 响应式邮件模板
+ * <p>
+ * 供WebFlux应用使用，不依赖{@code RequestContextHolder}、{@link org.springframework.web.multipart.MultipartFile}和阻塞的{@code Future#get()}：
+ * <ul>
+ *     <li>邮件构建和SMTP交互仍在邮件线程池中执行，与{@link EmailTemplate}共用准入控制、重试、速率限制和幂等去重，结果以{@link Mono}返回</li>
+ *     <li>提交到邮件线程池（{@code overload-policy=wait}时可能等待名额）、编译正文模板在{@code scheduler}上执行，不占用事件循环线程</li>
+ *     <li>{@link FilePart}附件以非阻塞方式写入临时文件，发送结束后删除</li>
+ *     <li>{@link #sendAll(Publisher)}最多同时发送{@code batch-size}封邮件，每发送完成一封再向上游请求一封</li>
+ *     <li>取消返回的{@link Mono}时同时取消尚未开始执行的发送任务</li>
+ * </ul>
+ * 邮件模板通过Reactor {@link Context}选择，不使用{@code @Email}切面和ThreadLocal：
+ * <pre>{@code
+ * reactiveEmailTemplate.send(message).contextWrite(ReactiveEmailTemplate.withTemplate("EmailQQ"));
+ * reactiveEmailTemplate.sendAll(messages).contextWrite(ReactiveEmailTemplate.withGroup("bulk"));
+ * }</pre>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class ReactiveEmailTemplate {
+    /**
+     * Reactor Context中邮件模板名称的键
+     */
+    public static final String TEMPLATE_KEY = ReactiveEmailTemplate.class.getName() + ".template";
+    /**
+     * Reactor Context中邮件模板组名称的键
+     */
+    public static final String GROUP_KEY = ReactiveEmailTemplate.class.getName() + ".group";
+
+    private final EmailTemplate emailTemplate;
+    private final Scheduler scheduler;
+    private final int concurrency;
+    private final Validator validator;
+
+    /**
+     * @param emailTemplate email template
+     * @param scheduler     执行提交、附件转存等可能阻塞操作的调度器
+     * @param concurrency   {@link #sendAll(Publisher)}同时发送的最大邮件数量
+     * @param validator     Nullable, 校验邮件消息，为空时不校验
+     */
+    public ReactiveEmailTemplate(EmailTemplate emailTemplate, Scheduler scheduler, int concurrency, @Nullable Validator validator) {
+        this.emailTemplate = emailTemplate;
+        this.scheduler = scheduler;
+        this.concurrency = Math.max(1, concurrency);
+        this.validator = validator;
+    }
+
+    /**
+     * 使用指定邮件模板发送，与{@code @Email(name)}相同
+     *
+     * @param templateName 邮件模板名称
+     * @return context to write with {@code contextWrite}
+     */
+    public static Context withTemplate(String templateName) {
+        return Context.of(TEMPLATE_KEY, templateName);
+    }
+
+    /**
+     * 使用指定邮件模板组发送，与{@code @Email(group)}相同
+     *
+     * @param groupName 邮件模板组名称
+     * @return context to write with {@code contextWrite}
+     */
+    public static Context withGroup(String groupName) {
+        return Context.of(GROUP_KEY, groupName);
+    }
+
+    /**
+     * 发送简单邮件
+     *
+     * @param data the message to send
+     * @return 发送结果
+     */
+    public Mono<SendResult> send(SimpleMailMessageDomain data) {
+        return this.send(Mono.just(data));
+    }
+
+    /**
+     * 发送简单邮件
+     *
+     * @param data the message to send
+     * @return 发送结果，{@code data}为空时为空
+     */
+    public Mono<SendResult> send(Mono<SimpleMailMessageDomain> data) {
+        return Mono.deferContextual(context -> {
+            TemplateSender sender = this.sender(context);
+            return data.map(this::validate)
+                    .flatMap(message -> this.submit(() -> Mono.fromFuture(() -> sender.sendAsync(message))));
+        });
+    }
+
+    /**
+     * 发送带附件的邮件
+     *
+     * @param data  metadata of message to send
+     * @param files 上传的附件，可以为空
+     * @return 发送结果，{@code data}为空时为空
+     */
+    public Mono<SendResult> sendMime(Mono<MimeMessageDomain> data, Flux<FilePart> files) {
+        return Mono.deferContextual(context -> {
+            TemplateSender sender = this.sender(context);
+            return data.map(this::validate).flatMap(message -> this.spool(files).flatMap(attachments -> {
+                // 转存后、提交前被取消时由此删除临时文件，提交后由发送任务删除
+                AtomicBoolean submitted = new AtomicBoolean();
+                return this.submit(() -> Mono.fromFuture(() -> {
+                    submitted.set(true);
+                    return sender.sendAsync(message, attachments);
+                })).doFinally(signal -> {
+                    if (!submitted.get()) {
+                        FileAttachment.release(attachments);
+                    }
+                });
+            }));
+        });
+    }
+
+    /**
+     * 发送带附件的邮件，附件由{@code filepath}指定或没有附件
+     *
+     * @param data metadata of message to send
+     * @return 发送结果，{@code data}为空时为空
+     */
+    public Mono<SendResult> sendMime(Mono<MimeMessageDomain> data) {
+        return this.sendMime(data, Flux.empty());
+    }
+
+    /**
+     * 使用正文模板发送HTML邮件
+     *
+     * @param templateId 正文模板ID
+     * @param model      模板变量，在返回的{@link Mono}完成前不应被修改
+     * @param to         收件人的邮箱
+     * @return 发送结果
+     * @see EmailTemplate#sendAsync(String, Map, String...)
+     */
+    public Mono<SendResult> send(String templateId, Map<String, ?> model, String... to) {
+        return Mono.deferContextual(context -> {
+            TemplateSender sender = this.sender(context);
+            return this.submit(() -> Mono.fromFuture(() -> sender.sendAsync(templateId, model, to)));
+        });
+    }
+
+    /**
+     * 发送发布者产生的全部邮件
+     * <p>
+     * 走批量邮件通道，最多同时发送{@code concurrency}封邮件，未完成的邮件达到上限时不再向上游请求；
+     * 单封邮件失败不会终止发送，以{@code SendResult#isSuccess()}为false的结果发出。结果按发送完成的顺序发出。
+     *
+     * @param messages 邮件发布者，{@link SimpleMailMessageDomain}或{@link MimeMessageDomain}
+     * @return 每封邮件的发送结果
+     */
+    public Flux<SendResult> sendAll(Publisher<? extends MailDomain> messages) {
+        return Flux.deferContextual(context -> {
+            TemplateSender sender = this.sender(context);
+            return Flux.<MailDomain>from(messages).flatMap(message -> this.submit(() -> Mono.fromFuture(() -> sender.submitBulk(this.validate(message))))
+                    .onErrorResume(e -> Mono.just(SendResult.failure(sender.getName(), e))), this.concurrency);
+        });
+    }
+
+    /**
+     * 按Reactor Context选择邮件模板，未指定时使用默认邮件模板
+     *
+     * @param context reactor context
+     * @return template sender
+     * @throws IllegalArgumentException 邮件模板或邮件模板组未配置
+     */
+    private TemplateSender sender(ContextView context) {
+        String group = context.getOrDefault(GROUP_KEY, null);
+        if (StringUtils.isNotBlank(group)) {
+            return this.emailTemplate.usingGroup(group);
+        }
+        String template = context.getOrDefault(TEMPLATE_KEY, null);
+        return this.emailTemplate.using(StringUtils.isNotBlank(template) ? template : Email.DEFAULT_TEMPLATE);
+    }
+
+    /**
+     * 在调度器上提交发送任务，提交可能按过载策略等待名额
+     *
+     * @param submission 提交发送任务
+     * @return 发送结果
+     */
+    private Mono<SendResult> submit(Supplier<Mono<SendResult>> submission) {
+        return Mono.defer(submission).subscribeOn(this.scheduler);
+    }
+
+    /**
+     * 把附件写入临时文件，失败或被取消时删除已写入的文件
+     *
+     * @param files 上传的附件
+     * @return 转存后的附件
+     */
+    private Mono<List<FileAttachment>> spool(Flux<FilePart> files) {
+        List<FileAttachment> spooled = new CopyOnWriteArrayList<>();
+        return files.filter(part -> StringUtils.isNotBlank(part.filename()))
+                .concatMap(part -> Mono.fromCallable(() -> Files.createTempFile("multi-email-attachment-", ".tmp"))
+                        .subscribeOn(this.scheduler)
+                        .flatMap(path -> {
+                            FileAttachment attachment = FileAttachment.temporary(part.filename(), path);
+                            spooled.add(attachment);
+                            return part.transferTo(path).thenReturn(attachment);
+                        }))
+                .then(Mono.fromSupplier(() -> List.copyOf(spooled)))
+                .onErrorMap(e -> !(e instanceof MailPreparationException), e -> new MailPreparationException("Failed to spool mail attachment", e))
+                .doOnError(e -> FileAttachment.release(spooled))
+                .doOnCancel(() -> FileAttachment.release(spooled));
+    }
+
+    /**
+     * 校验邮件消息
+     *
+     * @param data 邮件消息
+     * @param <T>  邮件消息类型
+     * @return 校验通过的邮件消息
+     * @throws ConstraintViolationException 校验失败
+     */
+    private <T> T validate(T data) {
+        if (Objects.nonNull(this.validator)) {
+            Set<ConstraintViolation<T>> violations = this.validator.validate(data);
+            if (!violations.isEmpty()) {
+                throw new ConstraintViolationException(violations);
+            }
+        }
+        return data;
+    }
+}
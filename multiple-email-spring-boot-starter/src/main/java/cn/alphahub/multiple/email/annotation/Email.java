@@ -29,4 +29,11 @@ public @interface Email {
      * @return 邮件模板名称
      */
     String name() default DEFAULT_TEMPLATE;
+
+    /**
+     * 邮件模板组名称，指定后忽略{@link #name()}，由组内多个邮件模板分担发送并在失败时切换
+     *
+     * @return 邮件模板组名称
+     */
+    String group() default "";
 }
@@ -1,15 +1,23 @@
 package cn.alphahub.multiple.email.aspect;
 
 import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.config.EmailContext;
+import cn.alphahub.multiple.email.config.EmailTemplatesReloadedEvent;
 import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.group.TemplateGroup;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Component;
@@ -32,19 +40,33 @@ import org.springframework.stereotype.Component;
 @Aspect
 @Component
 public class EmailAspect {
+    /**
+     * Mail template thread local, bundles the template context or template group resolved for the advised method
+     */
+    public static final ThreadLocal<ResolvedTemplate> MAIL_TEMPLATE_TL = new ThreadLocal<>();
     /**
      * Mail sender thread local
+     *
+     * @deprecated 使用{@link #MAIL_TEMPLATE_TL}，邮件模板组或未配置的邮件模板时为null
      */
+    @Deprecated
     public static final ThreadLocal<JavaMailSender> MAIL_SENDER_TL = new ThreadLocal<>();
     /**
      * Mail properties thread local
+     *
+     * @deprecated 使用{@link #MAIL_TEMPLATE_TL}，邮件模板组或未配置的邮件模板时为null
      */
+    @Deprecated
     public static final ThreadLocal<MailProperties> MAIL_PROPERTIES_TL = new ThreadLocal<>();
 
     /**
      * 邮件发送器
      */
     private final MailWrapper mailWrapper;
+    /**
+     * 每个方法解析出的邮件模板，只在首次调用时查找注解和邮件模板
+     */
+    private final Map<Method, ResolvedTemplate> resolvedTemplateCache = new ConcurrentHashMap<>();
 
     public EmailAspect(MailWrapper mailWrapper) {
         this.mailWrapper = mailWrapper;
@@ -60,7 +82,7 @@ public class EmailAspect {
 
     /**
      * 环绕通知
-     * <p>在方法执行前后进行织入，并控制目标方法的执行</p>
+     * <p>在方法执行前后进行织入，并控制目标方法的执行；嵌套调用结束后恢复外层方法的邮件模板</p>
      *
      * @param point ProceedingJoinPoint
      * @return 目标方法的返回值
@@ -68,54 +90,105 @@ public class EmailAspect {
      */
     @Around("emailPointcut()")
     public Object around(ProceedingJoinPoint point) throws Throwable {
-        Email email = getEmailAnnotation(point);
-        if (email == null) {
+        MethodSignature signature = (MethodSignature) point.getSignature();
+        ResolvedTemplate template = this.resolvedTemplateCache.get(signature.getMethod());
+        if (template == null) {
+            template = this.resolvedTemplateCache.computeIfAbsent(signature.getMethod(), method -> this.resolve(signature));
+        }
+        if (template == ResolvedTemplate.NONE) {
             // 理论上不会发生，因为切点已经限制了必须有注解
             return point.proceed();
         }
 
-        String methodName = point.getSignature().getName();
-        String className = point.getTarget().getClass().getSimpleName();
-
+        ResolvedTemplate outer = MAIL_TEMPLATE_TL.get();
+        bind(template);
+        long startTime = log.isDebugEnabled() ? System.nanoTime() : 0L;
         try {
-            // 设置邮件配置
-            MAIL_SENDER_TL.set(mailWrapper.getMailSender(email.name()));
-            MAIL_PROPERTIES_TL.set(mailWrapper.getMailProperties(email.name()));
-            log.debug("Switched to email client [{}].", email.name());
-
-            // 记录开始时间
-            long startTime = System.currentTimeMillis();
-            log.debug("开始执行邮件方法: {}.{}", className, methodName);
-
-            // 执行目标方法
             Object result = point.proceed();
-
-            // 记录执行时间
-            long duration = System.currentTimeMillis() - startTime;
-            log.info("邮件方法执行完成: {}.{}, 耗时: {}ms", className, methodName, duration);
-
+            // 记录执行时间，发送各阶段耗时见EmailMetrics
+            if (log.isDebugEnabled()) {
+                log.debug("邮件方法执行完成: {}.{}, 邮件模板: {}, 耗时: {}ms", point.getTarget().getClass().getSimpleName(), signature.getName(),
+                        template.name(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            }
             return result;
-
         } catch (Exception e) {
-            log.error("邮件方法执行异常: {}.{}, 错误信息: {}", className, methodName, e.getMessage(), e);
+            log.error("邮件方法执行异常: {}.{}, 错误信息: {}", point.getTarget().getClass().getSimpleName(), signature.getName(), e.getMessage(), e);
             throw e;
         } finally {
-            // 清理ThreadLocal，避免内存泄漏
+            // 恢复外层方法的邮件模板，最外层时清理ThreadLocal，避免内存泄漏
+            bind(outer);
+        }
+    }
+
+    /**
+     * 设置当前线程的邮件模板，同时设置已废弃的发送实例和配置属性ThreadLocal
+     *
+     * @param template Nullable, 邮件模板，为null时清理ThreadLocal
+     */
+    @SuppressWarnings("deprecation")
+    private static void bind(ResolvedTemplate template) {
+        EmailContext context = template != null ? template.context() : null;
+        if (template == null) {
+            MAIL_TEMPLATE_TL.remove();
+        } else {
+            MAIL_TEMPLATE_TL.set(template);
+        }
+        if (context == null) {
             MAIL_SENDER_TL.remove();
             MAIL_PROPERTIES_TL.remove();
-            log.debug("Cleaned up email client ThreadLocal.");
+        } else {
+            MAIL_SENDER_TL.set(context.mailSender());
+            MAIL_PROPERTIES_TL.set(context.mailProperties());
+        }
+    }
+
+    /**
+     * 清空方法与邮件模板的解析缓存，邮件模板配置变更后调用
+     */
+    public void clearCache() {
+        this.resolvedTemplateCache.clear();
+    }
+
+    /**
+     * 邮件模板配置重新加载后清空解析缓存
+     *
+     * @param event reloaded event
+     */
+    @EventListener
+    public void onTemplatesReloaded(EmailTemplatesReloadedEvent event) {
+        this.clearCache();
+    }
+
+    /**
+     * 解析方法使用的邮件模板
+     *
+     * @param signature MethodSignature
+     * @return 解析出的邮件模板，没有注解时为{@link ResolvedTemplate#NONE}
+     */
+    private ResolvedTemplate resolve(MethodSignature signature) {
+        Email email = getEmailAnnotation(signature);
+        if (email == null) {
+            return ResolvedTemplate.NONE;
         }
+        if (StringUtils.isNotBlank(email.group())) {
+            TemplateGroup group = mailWrapper.getTemplateGroup(email.group());
+            if (group == null) {
+                throw new IllegalArgumentException("Mail template group '" + email.group() + "' is not configured");
+            }
+            return new ResolvedTemplate(email.group(), null, group);
+        }
+        // 未配置的邮件模板context为null，发送时使用默认邮件模板
+        return new ResolvedTemplate(email.name(), mailWrapper.getContext(email.name()), null);
     }
 
     /**
      * 获取Email注解实例
      * <p>优先级：方法 > 类</p>
      *
-     * @param point ProceedingJoinPoint
+     * @param signature MethodSignature
      * @return Email注解实例，可能为null
      */
-    private Email getEmailAnnotation(ProceedingJoinPoint point) {
-        MethodSignature signature = (MethodSignature) point.getSignature();
+    private Email getEmailAnnotation(MethodSignature signature) {
         Method method = signature.getMethod();
 
         // 优先从方法上获取注解
@@ -127,4 +200,19 @@ public class EmailAspect {
         // 如果方法上没有，则从类上获取注解
         return AnnotationUtils.findAnnotation(signature.getDeclaringType(), Email.class);
     }
+
+    /**
+     * 方法上解析出的邮件模板
+     * <p>{@code context}和{@code group}至多一个不为null：使用邮件模板组时为{@code group}，否则为邮件模板上下文。</p>
+     *
+     * @param name    邮件模板或邮件模板组名称
+     * @param context Nullable, 邮件模板上下文，邮件模板未配置时为null
+     * @param group   Nullable, 邮件模板组
+     */
+    public record ResolvedTemplate(String name, EmailContext context, TemplateGroup group) {
+        /**
+         * 方法和类上都没有{@code @Email}注解
+         */
+        static final ResolvedTemplate NONE = new ResolvedTemplate("", null, null);
+    }
 }
@@ -0,0 +1,440 @@
+package cn.alphahub.multiple.email.attachment;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.activation.FileTypeMap;
+import jakarta.mail.EncodingAware;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+/**
+ * 附件编码结果缓存
+ * <p>
+ * 大量邮件引用同一个磁盘文件（条款PDF、Logo、报表模板）时，每次发送都重新读取文件并做Base64编码。
+ * 本缓存以文件路径为键、以修改时间和文件大小校验版本，保存Base64编码后的字节（堆外{@link ByteBuffer#allocateDirect(int)}），
+ * 命中时以{@link PreencodedMimeBodyPart}直接写出，不再读取文件内容也不再编码；文件被修改后下次发送自动重新加载。
+ * <ul>
+ *     <li>按编码后的总字节数限制大小，超出时淘汰最久未使用的附件</li>
+ *     <li>同一文件并发未命中时只加载一次，其余发送等待加载结果</li>
+ *     <li>超过{@code max-entry-size}的文件和上传的临时附件不缓存，仍按{@link FileChannelDataSource}流式发送</li>
+ * </ul>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class AttachmentCache {
+    /**
+     * 不缓存，所有附件都从磁盘流式读取并编码
+     */
+    public static final AttachmentCache NONE = new AttachmentCache(0L, 0L);
+
+    /**
+     * 57字节原文恰好编码为一行76个字符，按57的整数倍分块编码可与整体编码的换行位置一致
+     */
+    private static final int CHUNK_SIZE = 57 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long size;
+
+    /**
+     * @param maxBytes      编码后的总字节数上限，不大于0时不缓存
+     * @param maxEntryBytes 单个文件（编码前）的大小上限，超过时不缓存
+     */
+    public AttachmentCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    }
+
+    /**
+     * 添加附件，可缓存时使用编码后的字节
+     *
+     * @param helper     mime message helper
+     * @param attachment 附件
+     * @throws MessagingException 添加附件失败
+     */
+    public void addAttachment(MimeMessageHelper helper, FileAttachment attachment) throws MessagingException {
+        PreencodedMimeBodyPart part = this.bodyPart(attachment);
+        if (Objects.isNull(part)) {
+            helper.addAttachment(attachment.getFilename(), attachment.getDataSource());
+            return;
+        }
+        part.setDisposition(Part.ATTACHMENT);
+        try {
+            part.setFileName(helper.isEncodeFilenames() ? MimeUtility.encodeText(attachment.getFilename()) : attachment.getFilename());
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Failed to encode attachment filename", e);
+        }
+        helper.getRootMimeMultipart().addBodyPart(part);
+    }
+
+    /**
+     * 添加内嵌资源，可缓存时使用编码后的字节
+     *
+     * @param helper     mime message helper
+     * @param contentId  Content-ID，正文中以{@code cid:Content-ID}引用
+     * @param attachment 内嵌资源文件
+     * @throws MessagingException 添加内嵌资源失败
+     */
+    public void addInline(MimeMessageHelper helper, String contentId, FileAttachment attachment) throws MessagingException {
+        PreencodedMimeBodyPart part = this.bodyPart(attachment);
+        if (Objects.isNull(part)) {
+            helper.addInline(contentId, attachment.getDataSource());
+            return;
+        }
+        part.setDisposition(Part.INLINE);
+        part.setContentID("<" + contentId + ">");
+        helper.getMimeMultipart().addBodyPart(part);
+    }
+
+    /**
+     * 命中次数
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * 未命中（加载）次数
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * 淘汰次数
+     *
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * 缓存的编码后字节数
+     *
+     * @return cached bytes
+     */
+    public long getSize() {
+        this.lock.lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存的附件数量
+     *
+     * @return entry count
+     */
+    public int getEntryCount() {
+        this.lock.lock();
+        try {
+            return this.entries.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        this.lock.lock();
+        try {
+            this.entries.clear();
+            this.size = 0L;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 创建使用编码后字节的附件，不可缓存或读取失败时返回null，由调用方按原方式流式发送
+     */
+    @Nullable
+    private PreencodedMimeBodyPart bodyPart(FileAttachment attachment) throws MessagingException {
+        if (this.maxBytes <= 0L || attachment.isTemporary()) {
+            return null;
+        }
+        ByteBuffer encoded;
+        try {
+            encoded = this.encoded(attachment.getPath().toAbsolutePath().normalize());
+        } catch (IOException e) {
+            // 文件不存在等错误在发送时由流式数据源按原方式报告
+            log.debug("Attachment {} is not cached: {}", attachment.getPath(), e.getMessage());
+            return null;
+        }
+        if (Objects.isNull(encoded)) {
+            return null;
+        }
+        PreencodedMimeBodyPart part = new PreencodedMimeBodyPart("base64");
+        part.setDataHandler(new DataHandler(new EncodedDataSource(encoded, attachment.getFilename())));
+        return part;
+    }
+
+    /**
+     * 获取文件编码后的字节
+     *
+     * @param path 绝对路径
+     * @return 只读的编码后字节，文件超过单个文件大小上限时为null
+     * @throws IOException 读取文件失败
+     */
+    @Nullable
+    private ByteBuffer encoded(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile() || attributes.size() > this.maxEntryBytes) {
+            return null;
+        }
+        Entry entry;
+        boolean load = false;
+        this.lock.lock();
+        try {
+            entry = this.entries.get(path);
+            if (Objects.isNull(entry) || !entry.matches(attributes)) {
+                if (Objects.nonNull(entry)) {
+                    this.size -= entry.bytes;
+                }
+                entry = new Entry(attributes.lastModifiedTime(), attributes.size());
+                this.entries.put(path, entry);
+                load = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        if (!load) {
+            this.hits.increment();
+            try {
+                return entry.content.join().duplicate();
+            } catch (CompletionException e) {
+                throw new IOException("Failed to load attachment " + path, e.getCause());
+            }
+        }
+        this.misses.increment();
+        ByteBuffer content;
+        try {
+            content = encode(path, attributes.size());
+        } catch (IOException | RuntimeException e) {
+            entry.content.completeExceptionally(e);
+            this.lock.lock();
+            try {
+                this.entries.remove(path, entry);
+            } finally {
+                this.lock.unlock();
+            }
+            throw e;
+        }
+        entry.content.complete(content);
+        this.lock.lock();
+        try {
+            if (this.entries.get(path) == entry) {
+                entry.bytes = content.capacity();
+                this.size += entry.bytes;
+                this.evict();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return content.duplicate();
+    }
+
+    /**
+     * 淘汰最久未使用的附件直到不超过总字节数上限，调用方持有锁
+     */
+    private void evict() {
+        Iterator<Map.Entry<Path, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.bytes == 0L) {
+                // 正在加载，尚未计入大小
+                continue;
+            }
+            iterator.remove();
+            this.size -= entry.bytes;
+            this.evictions.increment();
+        }
+    }
+
+    /**
+     * 按块读取文件并编码为MIME Base64（每行76个字符，CRLF换行）
+     *
+     * @param path     文件路径
+     * @param fileSize 文件大小
+     * @return 只读的堆外缓冲区
+     * @throws IOException 读取失败或读取过程中文件大小发生变化
+     */
+    private static ByteBuffer encode(Path path, long fileSize) throws IOException {
+        long base64 = 4L * ((fileSize + 2) / 3);
+        long lines = (base64 + 75) / 76;
+        long encodedSize = base64 + 2L * Math.max(0L, lines - 1);
+        if (encodedSize > Integer.MAX_VALUE) {
+            throw new IOException("Attachment " + path + " is too large to cache");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) encodedSize);
+        Base64.Encoder encoder = Base64.getMimeEncoder();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof) {
+                chunk.clear();
+                while (chunk.hasRemaining()) {
+                    if (channel.read(chunk) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                if (chunk.position() == 0) {
+                    break;
+                }
+                if (buffer.position() > 0) {
+                    buffer.put(CRLF);
+                }
+                chunk.flip();
+                buffer.put(encoder.encode(chunk));
+            }
+        } catch (BufferOverflowException e) {
+            throw new IOException("Attachment " + path + " changed while it was being cached", e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Attachment " + path + " changed while it was being cached");
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * 缓存的附件
+     */
+    private static final class Entry {
+        private final FileTime lastModified;
+        private final long fileSize;
+        private final CompletableFuture<ByteBuffer> content = new CompletableFuture<>();
+        /**
+         * 编码后的字节数，加载完成前为0
+         */
+        private long bytes;
+
+        private Entry(FileTime lastModified, long fileSize) {
+            this.lastModified = lastModified;
+            this.fileSize = fileSize;
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return this.fileSize == attributes.size() && this.lastModified.equals(attributes.lastModifiedTime());
+        }
+    }
+
+    /**
+     * 已编码附件的数据源，每次读取都从缓冲区开头开始
+     * <p>实现{@link EncodingAware}，{@code saveChanges()}时不扫描内容判断编码。</p>
+     */
+    private static final class EncodedDataSource implements DataSource, EncodingAware {
+        private final ByteBuffer content;
+        private final String name;
+        private final String contentType;
+
+        private EncodedDataSource(ByteBuffer content, String name) {
+            this.content = content;
+            this.name = name;
+            this.contentType = FileTypeMap.getDefaultFileTypeMap().getContentType(name);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteBufferInputStream(this.content.duplicate());
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Attachment data source is read-only");
+        }
+
+        @Override
+        public String getContentType() {
+            return this.contentType;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public String getEncoding() {
+            return "base64";
+        }
+    }
+
+    /**
+     * 读取堆外缓冲区的输入流
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package cn.alphahub.multiple.email.attachment;
+
+import jakarta.activation.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * 磁盘上的邮件附件
+ * <p>
+ * 上传的附件通过{@link MultipartFile#transferTo(File)}转存到临时文件：已落盘的上传文件直接移动，不复制内容，
+ * 请求结束后容器清理上传临时文件也不影响异步发送；发送结束后调用{@link #release()}删除转存的临时文件。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public final class FileAttachment {
+    private final String filename;
+    private final Path path;
+    private final boolean temporary;
+
+    private FileAttachment(String filename, Path path, boolean temporary) {
+        this.filename = filename;
+        this.path = path;
+        this.temporary = temporary;
+    }
+
+    /**
+     * 引用磁盘上已有的文件，发送结束后不删除
+     *
+     * @param path 文件路径
+     * @return file attachment
+     */
+    public static FileAttachment of(Path path) {
+        return new FileAttachment(path.getFileName().toString(), path, false);
+    }
+
+    /**
+     * 引用已转存的临时文件，发送结束后删除
+     *
+     * @param filename 附件文件名
+     * @param path     临时文件路径
+     * @return file attachment
+     */
+    public static FileAttachment temporary(String filename, Path path) {
+        return new FileAttachment(filename, path, true);
+    }
+
+    /**
+     * 转存上传的附件，忽略为null或为空的文件
+     *
+     * @param files Nullable, 上传的附件
+     * @return 转存后的附件
+     */
+    public static List<FileAttachment> spool(@Nullable MultipartFile... files) {
+        List<FileAttachment> attachments = new ArrayList<>();
+        if (Objects.isNull(files)) {
+            return attachments;
+        }
+        try {
+            for (MultipartFile file : files) {
+                if (Objects.isNull(file) || file.isEmpty()) {
+                    continue;
+                }
+                String filename = Objects.requireNonNull(file.getOriginalFilename(), "The attachment file name (including file suffix) cannot be empty");
+                Path path = Files.createTempFile("multi-email-attachment-", ".tmp");
+                attachments.add(new FileAttachment(filename, path, true));
+                file.transferTo(path.toFile());
+            }
+        } catch (IOException | RuntimeException e) {
+            release(attachments);
+            throw new MailPreparationException("Failed to spool mail attachment", e);
+        }
+        return attachments;
+    }
+
+    /**
+     * 删除转存的临时文件
+     *
+     * @param attachments attachments
+     */
+    public static void release(Collection<FileAttachment> attachments) {
+        attachments.forEach(FileAttachment::release);
+    }
+
+    /**
+     * 附件文件名
+     *
+     * @return filename
+     */
+    public String getFilename() {
+        return this.filename;
+    }
+
+    /**
+     * 附件文件路径
+     *
+     * @return path
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * 是否为转存上传附件的临时文件
+     *
+     * @return true if the file is deleted after sending
+     */
+    public boolean isTemporary() {
+        return this.temporary;
+    }
+
+    /**
+     * 附件数据源，每次调用都重新打开文件，切换邮件模板重新构建邮件时可重复读取
+     *
+     * @return data source
+     */
+    public DataSource getDataSource() {
+        return new FileChannelDataSource(this.path, this.filename);
+    }
+
+    /**
+     * 删除转存的临时文件，引用的已有文件不删除
+     */
+    public void release() {
+        if (!this.temporary) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete spooled mail attachment {}", this.path, e);
+        }
+    }
+}
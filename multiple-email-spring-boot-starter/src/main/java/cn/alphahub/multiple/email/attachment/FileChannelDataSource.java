@@ -0,0 +1,59 @@
+package cn.alphahub.multiple.email.attachment;
+
+import jakarta.activation.DataSource;
+import jakarta.activation.FileTypeMap;
+import jakarta.mail.EncodingAware;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于{@link FileChannel}的附件数据源
+ * <p>
+ * SMTP DATA阶段才打开文件，按块读取并经Base64编码流写出，附件内容不会整体读入堆内存。
+ * 实现{@link EncodingAware}直接声明{@code base64}编码，避免JavaMail在{@code saveChanges()}时为判断编码而完整扫描一遍附件。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class FileChannelDataSource implements DataSource, EncodingAware {
+    private final Path path;
+    private final String name;
+    private final String contentType;
+
+    public FileChannelDataSource(Path path, String name) {
+        this.path = path;
+        this.name = name;
+        this.contentType = FileTypeMap.getDefaultFileTypeMap().getContentType(name);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Channels.newInputStream(FileChannel.open(this.path, StandardOpenOption.READ));
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Attachment data source is read-only");
+    }
+
+    @Override
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String getEncoding() {
+        return "base64";
+    }
+}
@@ -0,0 +1,88 @@
+package cn.alphahub.multiple.email.cluster;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * 集群协调SPI
+ * <p>
+ * 同一服务部署多个节点时，各节点的邮件线程池、发送实例相互独立，需要通过共享存储协调：
+ * <ul>
+ *     <li>配额：同一邮件账号在所有节点上的发送总量不超过服务商限制，见{@link ClusterQuota}</li>
+ *     <li>分区：发件箱划分为固定数量的分区，每个分区同一时刻只由一个节点投递，节点下线后由其他节点接管</li>
+ *     <li>去重：幂等键在集群内只被标记一次</li>
+ * </ul>
+ * 内置{@link FileClusterCoordinator}基于共享目录和文件锁实现，不依赖外部服务；
+ * 使用Redis、数据库等其他存储时在容器中注册此类型的Bean即可替换。所有方法可能被多个线程同时调用。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public interface ClusterCoordinator {
+
+    /**
+     * 当前节点ID，集群内唯一
+     *
+     * @return node id
+     */
+    String getNodeId();
+
+    /**
+     * 从集群共享的配额中申请许可
+     * <p>配额按固定时间窗口计数，窗口按{@code window}对齐到纪元时间，所有节点对窗口边界的划分一致。</p>
+     *
+     * @param name    配额名称
+     * @param permits 申请的许可数
+     * @param limit   每个窗口内所有节点合计的许可上限
+     * @param window  窗口长度
+     * @return 实际获得的许可数（可能少于申请数或为0）和当前窗口的结束时间
+     */
+    QuotaGrant acquireQuota(String name, int permits, long limit, Duration window);
+
+    /**
+     * 续约本节点持有的分区并认领空闲或租约过期的分区
+     * <p>
+     * 调用同时作为本节点在该分组中的心跳；分区在存活节点间均分，节点持有的分区超过均分数量时释放多余分区，
+     * 新节点加入后在下一次续约时获得分区。调用间隔应明显短于{@code leaseTime}。
+     *
+     * @param group      分组名称
+     * @param partitions 分区总数
+     * @param leaseTime  租约时长，超过后未续约的分区可被其他节点认领
+     * @return 本节点当前持有的分区，从0开始编号
+     */
+    Set<Integer> claimPartitions(String group, int partitions, Duration leaseTime);
+
+    /**
+     * 释放本节点在分组中持有的所有分区并退出分组，节点停止时调用
+     *
+     * @param group 分组名称
+     */
+    void releasePartitions(String group);
+
+    /**
+     * 标记幂等键，集群内在有效期内只有第一次标记成功
+     *
+     * @param key 幂等键
+     * @param ttl 有效期，过期后可再次标记
+     * @return true if this call marked the key, false if it was already marked and has not expired
+     */
+    boolean markIfAbsent(String key, Duration ttl);
+
+    /**
+     * 移除幂等键标记，标记后的操作失败、允许重试时调用
+     *
+     * @param key 幂等键
+     */
+    void unmark(String key);
+
+    /**
+     * 配额申请结果
+     *
+     * @param granted   获得的许可数
+     * @param windowEnd 当前窗口结束时间，许可只在窗口内有效
+     */
+    record QuotaGrant(int granted, Instant windowEnd) {
+    }
+}
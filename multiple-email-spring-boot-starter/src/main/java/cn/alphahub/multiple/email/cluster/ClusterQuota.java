@@ -0,0 +1,81 @@
+package cn.alphahub.multiple.email.cluster;
+
+import cn.alphahub.multiple.email.cluster.ClusterCoordinator.QuotaGrant;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 邮件模板的集群发送配额
+ * <p>
+ * 每个节点一次从{@link ClusterCoordinator}租借{@code leaseSize}个许可在本地消耗，不必每封邮件都访问共享存储；
+ * 本窗口的配额用尽时等待到下一个窗口。租借的许可只在所属窗口内有效，窗口结束时未用完的许可作废，
+ * 因此实际发送量可能略低于上限，但不会超过。协调存储不可用时记录警告并放行，只受本节点的速率限制约束。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class ClusterQuota {
+    private final ClusterCoordinator coordinator;
+    private final String name;
+    private final long limit;
+    private final Duration window;
+    private final int leaseSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int leased;
+    private long leaseExpiresMillis;
+
+    /**
+     * @param coordinator 集群协调
+     * @param name        配额名称
+     * @param limit       每个窗口内所有节点合计的发送上限
+     * @param window      窗口长度
+     * @param leaseSize   每次租借的许可数
+     */
+    public ClusterQuota(ClusterCoordinator coordinator, String name, long limit, Duration window, int leaseSize) {
+        this.coordinator = coordinator;
+        this.name = name;
+        this.limit = limit;
+        this.window = window;
+        this.leaseSize = Math.max(1, leaseSize);
+    }
+
+    /**
+     * 获取一个许可，本窗口配额用尽时阻塞到下一个窗口
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitMillis;
+            this.lock.lock();
+            try {
+                long now = System.currentTimeMillis();
+                if (this.leased > 0 && now < this.leaseExpiresMillis) {
+                    this.leased--;
+                    return;
+                }
+                QuotaGrant grant;
+                try {
+                    grant = this.coordinator.acquireQuota(this.name, this.leaseSize, this.limit, this.window);
+                } catch (RuntimeException e) {
+                    log.warn("Cluster quota '{}' is unavailable, sending without it: {}", this.name, e.getMessage());
+                    return;
+                }
+                this.leaseExpiresMillis = grant.windowEnd().toEpochMilli();
+                if (grant.granted() > 0) {
+                    this.leased = grant.granted() - 1;
+                    return;
+                }
+                this.leased = 0;
+                waitMillis = Math.max(1L, this.leaseExpiresMillis - now);
+            } finally {
+                this.lock.unlock();
+            }
+            TimeUnit.MILLISECONDS.sleep(waitMillis);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package cn.alphahub.multiple.email.cluster;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * 基于共享目录的集群协调
+ * <p>
+ * 所有节点挂载同一个目录（同一台机器上的多个进程，或NFS等共享存储），每类状态由一个锁文件保护，
+ * 修改时先获取进程内锁再获取{@link FileLock}，状态文件整体写入临时文件后原子替换，进程崩溃不会留下半个文件：
+ * <ul>
+ *     <li>{@code quotas/}：每个配额一个文件，记录当前窗口和已用许可数</li>
+ *     <li>{@code partitions/}：每个分组一个文件，记录节点心跳和分区租约</li>
+ *     <li>{@code keys/}：每个幂等键一个文件，按键的SHA-256分为256个子目录，文件修改时间即过期时间，过期文件定期清理</li>
+ * </ul>
+ * 过期判断使用各节点的系统时间，节点间的时钟需保持同步。适用于节点数量不多、不引入外部服务的部署和本机测试，
+ * 吞吐要求更高时可实现基于Redis等存储的{@link ClusterCoordinator}。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class FileClusterCoordinator implements ClusterCoordinator, DisposableBean {
+    private static final String QUOTAS = "quotas";
+    private static final String PARTITIONS = "partitions";
+    private static final String KEYS = "keys";
+    private static final String NODE_PREFIX = "node.";
+    private static final String PARTITION_PREFIX = "partition.";
+
+    private final Path directory;
+    private final String nodeId;
+    /**
+     * 同一JVM内对同一文件重复加锁会抛出OverlappingFileLockException，先在进程内串行
+     */
+    private final ReentrantLock localLock = new ReentrantLock();
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * @param directory     共享目录，不存在时创建
+     * @param nodeId        节点ID，为空时使用主机名和进程号
+     * @param sweepInterval 过期幂等键的清理间隔
+     * @throws IOException 创建目录失败
+     */
+    public FileClusterCoordinator(Path directory, String nodeId, Duration sweepInterval) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        Files.createDirectories(directory.resolve(QUOTAS));
+        Files.createDirectories(directory.resolve(PARTITIONS));
+        Files.createDirectories(directory.resolve(KEYS));
+        this.nodeId = (nodeId == null || nodeId.isBlank()) ? defaultNodeId() : nodeId;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("multi-email-cluster-sweeper-"));
+        long sweepMillis = Math.max(1000L, sweepInterval.toMillis());
+        this.sweeper.scheduleWithFixedDelay(this::sweepExpiredKeys, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getNodeId() {
+        return this.nodeId;
+    }
+
+    @Override
+    public QuotaGrant acquireQuota(String name, int permits, long limit, Duration window) {
+        long now = System.currentTimeMillis();
+        long windowMillis = Math.max(1L, window.toMillis());
+        long windowStart = now - now % windowMillis;
+        Instant windowEnd = Instant.ofEpochMilli(windowStart + windowMillis);
+        Path file = this.directory.resolve(QUOTAS).resolve(fileName(name));
+        return this.locked(QUOTAS, () -> {
+            Properties state = read(file);
+            long used = windowStart == Long.parseLong(state.getProperty("window", "0")) ? Long.parseLong(state.getProperty("used", "0")) : 0L;
+            int granted = (int) Math.min(permits, Math.max(0L, limit - used));
+            if (granted > 0) {
+                state.setProperty("window", Long.toString(windowStart));
+                state.setProperty("used", Long.toString(used + granted));
+                write(file, state);
+            }
+            return new QuotaGrant(granted, windowEnd);
+        });
+    }
+
+    @Override
+    public Set<Integer> claimPartitions(String group, int partitions, Duration leaseTime) {
+        Path file = this.directory.resolve(PARTITIONS).resolve(fileName(group));
+        return this.locked(PARTITIONS, () -> {
+            Properties state = read(file);
+            long now = System.currentTimeMillis();
+            long expiresAt = now + leaseTime.toMillis();
+            state.setProperty(NODE_PREFIX + this.nodeId, Long.toString(expiresAt));
+            int liveNodes = 0;
+            for (String key : state.stringPropertyNames()) {
+                if (!key.startsWith(NODE_PREFIX)) {
+                    continue;
+                }
+                if (Long.parseLong(state.getProperty(key)) <= now) {
+                    state.remove(key);
+                } else {
+                    liveNodes++;
+                }
+            }
+            int fairShare = (partitions + liveNodes - 1) / liveNodes;
+
+            TreeSet<Integer> owned = new TreeSet<>();
+            for (int partition = 0; partition < partitions; partition++) {
+                Lease lease = Lease.parse(state.getProperty(PARTITION_PREFIX + partition));
+                if (lease != null && lease.nodeId().equals(this.nodeId)) {
+                    owned.add(partition);
+                }
+            }
+            while (owned.size() > fairShare) {
+                state.remove(PARTITION_PREFIX + owned.pollLast());
+            }
+            for (int partition = 0; partition < partitions && owned.size() < fairShare; partition++) {
+                Lease lease = Lease.parse(state.getProperty(PARTITION_PREFIX + partition));
+                if (lease == null || lease.expiresAt() <= now) {
+                    owned.add(partition);
+                }
+            }
+            for (int partition : owned) {
+                state.setProperty(PARTITION_PREFIX + partition, this.nodeId + "," + expiresAt);
+            }
+            write(file, state);
+            return Set.copyOf(owned);
+        });
+    }
+
+    @Override
+    public void releasePartitions(String group) {
+        Path file = this.directory.resolve(PARTITIONS).resolve(fileName(group));
+        this.locked(PARTITIONS, () -> {
+            Properties state = read(file);
+            state.remove(NODE_PREFIX + this.nodeId);
+            for (String key : state.stringPropertyNames()) {
+                Lease lease = key.startsWith(PARTITION_PREFIX) ? Lease.parse(state.getProperty(key)) : null;
+                if (lease != null && lease.nodeId().equals(this.nodeId)) {
+                    state.remove(key);
+                }
+            }
+            write(file, state);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean markIfAbsent(String key, Duration ttl) {
+        String hash = sha256(key);
+        Path file = this.directory.resolve(KEYS).resolve(hash.substring(0, 2)).resolve(hash);
+        return this.locked(KEYS, () -> {
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            if (Files.exists(file) && Files.getLastModifiedTime(file).compareTo(now) > 0) {
+                return false;
+            }
+            Files.createDirectories(file.getParent());
+            Files.write(file, new byte[0]);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now.toMillis() + ttl.toMillis()));
+            return true;
+        });
+    }
+
+    @Override
+    public void unmark(String key) {
+        String hash = sha256(key);
+        Path file = this.directory.resolve(KEYS).resolve(hash.substring(0, 2)).resolve(hash);
+        this.locked(KEYS, () -> Files.deleteIfExists(file));
+    }
+
+    /**
+     * 删除已过期的幂等键文件
+     */
+    private void sweepExpiredKeys() {
+        try (DirectoryStream<Path> buckets = Files.newDirectoryStream(this.directory.resolve(KEYS))) {
+            for (Path bucket : buckets) {
+                this.locked(KEYS, () -> {
+                    long now = System.currentTimeMillis();
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket)) {
+                        for (Path file : files) {
+                            if (Files.getLastModifiedTime(file).toMillis() <= now) {
+                                Files.deleteIfExists(file);
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to sweep expired idempotency keys in {}", this.directory, e);
+        }
+    }
+
+    /**
+     * 持有进程内锁和文件锁执行操作
+     */
+    private <T> T locked(String area, LockedAction<T> action) {
+        this.localLock.lock();
+        try (FileChannel channel = FileChannel.open(this.directory.resolve(area + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                return action.run();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cluster coordination in " + this.directory + " failed", e);
+        } finally {
+            this.localLock.unlock();
+        }
+    }
+
+    private static Properties read(Path file) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    private static void write(Path file, Properties properties) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String fileName(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8) + ".properties";
+    }
+
+    private static String sha256(String key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * 停止清理任务，不释放分区，分区由持有者在停止时释放或等待租约过期
+     */
+    @Override
+    public void destroy() {
+        this.sweeper.shutdownNow();
+    }
+
+    /**
+     * 持有锁时执行的操作
+     */
+    @FunctionalInterface
+    private interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * 分区租约：{@code nodeId,expiresAt}
+     */
+    private record Lease(String nodeId, long expiresAt) {
+
+        static Lease parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            int index = value.lastIndexOf(',');
+            return new Lease(value.substring(0, index), Long.parseLong(value.substring(index + 1)));
+        }
+    }
+}
@@ -1,33 +1,76 @@
 package cn.alphahub.multiple.email.config;
 
 import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.attachment.AttachmentCache;
+import cn.alphahub.multiple.email.cluster.ClusterCoordinator;
+import cn.alphahub.multiple.email.cluster.ClusterQuota;
+import cn.alphahub.multiple.email.cluster.FileClusterCoordinator;
+import cn.alphahub.multiple.email.dispatch.BoundedPriorityBlockingQueue;
+import cn.alphahub.multiple.email.dispatch.EmailDispatcher;
+import cn.alphahub.multiple.email.dispatch.PrioritizedTask;
+import cn.alphahub.multiple.email.dispatch.TimerWheel;
+import cn.alphahub.multiple.email.group.CircuitBreaker;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import cn.alphahub.multiple.email.idempotency.IdempotencyIndex;
+import cn.alphahub.multiple.email.metrics.EmailMetrics;
+import cn.alphahub.multiple.email.outbox.EmailOutbox;
+import cn.alphahub.multiple.email.render.MailTemplateEngine;
+import cn.alphahub.multiple.email.retry.DeadLetterHandler;
+import cn.alphahub.multiple.email.retry.RetryPolicy;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import cn.alphahub.multiple.email.transport.SmtpRateLimiter;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.mail.MailProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.lang.Nullable;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailAttachmentCacheProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailClusterProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailIdempotencyProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailOutboxProperties;
 import static cn.alphahub.multiple.email.config.EmailConfig.EmailProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailRecipientProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailReloadProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailRenderProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailRetryProperties;
 import static cn.alphahub.multiple.email.config.EmailConfig.EmailTemplateProperties;
 import static cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolProperties;
+import static cn.alphahub.multiple.email.config.EmailConfig.EmailTrackingProperties;
 
 /**
  * 邮件配置类
@@ -36,9 +79,12 @@ import static cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolPrope
  * @version 1.0
  * @date 2021-09-06
  */
+@Slf4j
 @Configuration(proxyBeanMethods = false)
 @ConfigurationPropertiesScan({"cn.alphahub.multiple.email.config"})
-@EnableConfigurationProperties({MailProperties.class, EmailProperties.class, EmailTemplateProperties.class, EmailThreadPoolProperties.class})
+@EnableConfigurationProperties({MailProperties.class, EmailProperties.class, EmailTemplateProperties.class, EmailThreadPoolProperties.class, EmailOutboxProperties.class, EmailRenderProperties.class, EmailRetryProperties.class,
+        EmailRecipientProperties.class, EmailReloadProperties.class, EmailAttachmentCacheProperties.class, EmailClusterProperties.class,
+        EmailIdempotencyProperties.class, EmailTrackingProperties.class})
 public class EmailConfig {
 
     /**
@@ -50,6 +96,17 @@ public class EmailConfig {
      */
     @Bean
     public Map<String, MailProperties> emailPropertiesMap(@Valid MailProperties mailProperties, @Valid EmailTemplateProperties emailTemplateProperties) {
+        return mailPropertiesMap(mailProperties, emailTemplateProperties);
+    }
+
+    /**
+     * 按邮件模板名称汇总邮件配置属性，默认邮件模板使用{@code spring.mail}
+     *
+     * @param mailProperties          spring原生电子邮件支持的配置属性
+     * @param emailTemplateProperties 多邮件模板配置列表元数据属性
+     * @return 邮件模板名称到配置属性的Map
+     */
+    static Map<String, MailProperties> mailPropertiesMap(MailProperties mailProperties, EmailTemplateProperties emailTemplateProperties) {
         Map<String, MailProperties> mailPropertiesMap = new ConcurrentHashMap<>();
         mailPropertiesMap.put(Email.DEFAULT_TEMPLATE, mailProperties);
 
@@ -64,52 +121,136 @@ public class EmailConfig {
 
     /**
      * 邮件发送对象Map
-     * <p>spring初始化时把所有邮件模板的发送对象实例创建好注入IOC，对象只创建一次</p>
+     * <p>spring初始化时把所有邮件模板的发送对象实例创建好注入IOC；重新加载配置时由{@link EmailTemplateReloader}替换{@link MailWrapper}中的实例，此Map不再更新</p>
      *
-     * @param emailPropertiesMap 填充邮件模板配置列表元数据Map
+     * @param emailPropertiesMap        填充邮件模板配置列表元数据Map
+     * @param emailTemplateProperties   多邮件模板配置列表元数据属性
+     * @param emailThreadPoolProperties 线程池配置参数
+     * @param emailRecipientProperties  收件人配置参数
+     * @param emailMetrics              发送指标，classpath中没有Micrometer时不记录
+     * @param clusterCoordinator        集群协调，未启用时为空
      * @return javaMailSenderMap邮件发送对象实例
      */
     @Bean
-    public Map<String, JavaMailSender> javaMailSenderMap(@Qualifier("emailPropertiesMap") Map<String, MailProperties> emailPropertiesMap) {
+    public Map<String, JavaMailSender> javaMailSenderMap(@Qualifier("emailPropertiesMap") Map<String, MailProperties> emailPropertiesMap,
+                                                         EmailTemplateProperties emailTemplateProperties,
+                                                         EmailThreadPoolProperties emailThreadPoolProperties,
+                                                         EmailRecipientProperties emailRecipientProperties,
+                                                         ObjectProvider<EmailMetrics> emailMetrics,
+                                                         ObjectProvider<ClusterCoordinator> clusterCoordinator) {
+        EmailMetrics metrics = emailMetrics.getIfAvailable(() -> EmailMetrics.NOOP);
+        ClusterCoordinator coordinator = clusterCoordinator.getIfAvailable();
         Map<String, JavaMailSender> javaMailSenderMap = new ConcurrentHashMap<>(emailPropertiesMap.size());
-        emailPropertiesMap.forEach((templateName, properties) -> {
-            JavaMailSenderImpl sender = new JavaMailSenderImpl();
-            sender.setHost(properties.getHost());
-            if (properties.getPort() != null) {
-                sender.setPort(properties.getPort());
-            }
-            sender.setUsername(properties.getUsername());
-            sender.setPassword(properties.getPassword());
-            sender.setProtocol(properties.getProtocol());
-            if (properties.getDefaultEncoding() != null) {
-                sender.setDefaultEncoding(properties.getDefaultEncoding().name());
-            }
-            if (!properties.getProperties().isEmpty()) {
-                Properties asProperties = new Properties();
-                asProperties.putAll(properties.getProperties());
-                sender.setJavaMailProperties(asProperties);
-            }
-            javaMailSenderMap.put(templateName, sender);
-        });
+        emailPropertiesMap.forEach((templateName, properties) -> javaMailSenderMap.put(templateName,
+                createMailSender(templateName, properties, emailTemplateProperties, emailThreadPoolProperties, emailRecipientProperties, metrics, coordinator)));
         return javaMailSenderMap;
     }
 
+    /**
+     * 创建邮件模板的发送实例
+     *
+     * @param templateName              邮件模板名称
+     * @param properties                邮件模板配置属性
+     * @param emailTemplateProperties   多邮件模板配置列表元数据属性
+     * @param emailThreadPoolProperties 线程池配置参数
+     * @param emailRecipientProperties  收件人配置参数
+     * @param metrics                   发送指标
+     * @param coordinator               集群协调，为空时不限制集群配额
+     * @return 邮件发送实例
+     */
+    static PooledJavaMailSender createMailSender(String templateName, MailProperties properties, EmailTemplateProperties emailTemplateProperties,
+                                                 EmailThreadPoolProperties emailThreadPoolProperties, EmailRecipientProperties emailRecipientProperties,
+                                                 EmailMetrics metrics, @Nullable ClusterCoordinator coordinator) {
+        PooledJavaMailSender sender = new PooledJavaMailSender(emailTemplateProperties.getPoolProperties(templateName));
+        sender.setMetrics(templateName, metrics);
+        metrics.bindMailSender(templateName, sender);
+        if (emailThreadPoolProperties.getMode() == ThreadMode.VIRTUAL) {
+            sender.setConcurrencyLimit(emailThreadPoolProperties.getMaxConcurrencyPerTemplate());
+        }
+        EmailRateLimitProperties rateLimitProperties = emailTemplateProperties.getRateLimitProperties(templateName);
+        if (rateLimitProperties.isEnabled()) {
+            SmtpRateLimiter rateLimiter = new SmtpRateLimiter(rateLimitProperties);
+            if (Objects.nonNull(coordinator) && Objects.nonNull(rateLimitProperties.getClusterQuota())) {
+                // 每次租借配额的1/20，不超过突发数量，节点间分配不均时浪费的配额较少
+                int leaseSize = Math.min(rateLimitProperties.getBurst(), Math.max(1, rateLimitProperties.getClusterQuota() / 20));
+                rateLimiter.setClusterQuota(new ClusterQuota(coordinator, templateName, rateLimitProperties.getClusterQuota(),
+                        rateLimitProperties.getClusterQuotaWindow(), leaseSize));
+            }
+            sender.setRateLimiter(rateLimiter);
+        }
+        sender.setHost(properties.getHost());
+        if (properties.getPort() != null) {
+            sender.setPort(properties.getPort());
+        }
+        sender.setUsername(properties.getUsername());
+        sender.setPassword(properties.getPassword());
+        sender.setProtocol(properties.getProtocol());
+        if (properties.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(properties.getDefaultEncoding().name());
+        }
+        Properties asProperties = new Properties();
+        if (emailRecipientProperties.isSendPartial()) {
+            // 部分收件人被拒绝时仍投递给其余收件人，模板中显式配置的值优先
+            asProperties.put("mail." + properties.getProtocol() + ".sendpartial", "true");
+        }
+        asProperties.putAll(properties.getProperties());
+        if (!asProperties.isEmpty()) {
+            sender.setJavaMailProperties(asProperties);
+        }
+        return sender;
+    }
+
 
     /**
      * client wrapper
      *
-     * @param emailPropertiesMap emailPropertiesMap
-     * @param javaMailSenderMap  MailWrapper
+     * @param emailPropertiesMap      emailPropertiesMap
+     * @param javaMailSenderMap       MailWrapper
+     * @param emailTemplateProperties emailTemplateProperties
      * @return MailWrapper
      */
     @Bean
     public MailWrapper clientWrapper(@Qualifier("emailPropertiesMap") Map<String, MailProperties> emailPropertiesMap,
-                                     @Qualifier("javaMailSenderMap") Map<String, JavaMailSender> javaMailSenderMap) {
-        return new MailWrapper(emailPropertiesMap, javaMailSenderMap);
+                                     @Qualifier("javaMailSenderMap") Map<String, JavaMailSender> javaMailSenderMap,
+                                     EmailTemplateProperties emailTemplateProperties) {
+        return new MailWrapper(emailPropertiesMap, javaMailSenderMap, templateGroupMap(emailTemplateProperties, javaMailSenderMap));
+    }
+
+    /**
+     * 构建邮件模板组
+     *
+     * @param emailTemplateProperties 多邮件模板配置列表元数据属性
+     * @param javaMailSenderMap       邮件发送对象Map
+     * @return 邮件模板组Map
+     */
+    static Map<String, TemplateGroup> templateGroupMap(EmailTemplateProperties emailTemplateProperties, Map<String, JavaMailSender> javaMailSenderMap) {
+        Map<String, TemplateGroup> templateGroupMap = new ConcurrentHashMap<>();
+        if (CollectionUtils.isEmpty(emailTemplateProperties.getEmailGroups())) {
+            return templateGroupMap;
+        }
+        for (EmailGroupProperties group : emailTemplateProperties.getEmailGroups()) {
+            EmailCircuitBreakerProperties circuitBreaker = group.getCircuitBreaker();
+            List<TemplateGroup.Member> members = group.getMembers().stream()
+                    .map(member -> {
+                        if (!javaMailSenderMap.containsKey(member.getTemplateName())) {
+                            throw new IllegalArgumentException("Mail template group '" + group.getGroupName() + "' refers to unknown template '" + member.getTemplateName() + "'");
+                        }
+                        return new TemplateGroup.Member(member.getTemplateName(), member.getWeight(),
+                                new CircuitBreaker(circuitBreaker.getFailureThreshold(), circuitBreaker.getOpenDuration()));
+                    })
+                    .toList();
+            templateGroupMap.put(group.getGroupName(), new TemplateGroup(group.getGroupName(), group.getStrategy(), members));
+        }
+        return templateGroupMap;
     }
 
     /**
      * 线程池
+     * <p>
+     * 队列按邮件优先级和截止时间排序({@link PrioritizedTask#COMPARATOR})，验证码等高优先级邮件不排在批量邮件之后。
+     * 队列长度以{@code capacity}为上限({@link BoundedPriorityBlockingQueue})，队列已满时线程池扩容到{@code maximumPoolSize}，
+     * 仍然饱和时按{@link ThreadPoolExecutor.AbortPolicy}拒绝，与使用{@code LinkedBlockingQueue}时一致；
+     * 经过{@link EmailDispatcher}提交的任务不超过{@code maximumPoolSize + capacity}个，不会被拒绝。
      *
      * @param emailThreadPoolProperties thread pool properties
      * @return thread pool executor
@@ -121,11 +262,235 @@ public class EmailConfig {
                 emailThreadPoolProperties.getMaximumPoolSize(),
                 emailThreadPoolProperties.getKeepAliveTime(),
                 emailThreadPoolProperties.getTimeUnit(),
-                new LinkedBlockingQueue<>(emailThreadPoolProperties.getCapacity()),
+                new BoundedPriorityBlockingQueue<>(emailThreadPoolProperties.getCapacity(), PrioritizedTask.COMPARATOR),
                 new CustomizableThreadFactory("multi-email-pool-"),
                 new ThreadPoolExecutor.AbortPolicy());
     }
 
+    /**
+     * 邮件发送任务执行器
+     * <p>
+     * {@code spring.mail.thread.mode=virtual}时每个发送任务运行在独立的虚拟线程上，并发数由每个邮件模板的信号量限制；
+     * 当前JDK低于21时启动失败，不会静默退回线程池。
+     *
+     * @param emailThreadPoolProperties thread pool properties
+     * @param emailThreadPoolExecutor   thread pool executor
+     * @return email task executor
+     * @throws IllegalStateException 配置了虚拟线程但JDK低于21
+     */
+    @Bean
+    public Executor emailTaskExecutor(EmailThreadPoolProperties emailThreadPoolProperties,
+                                      @Qualifier("emailThreadPoolExecutor") ThreadPoolExecutor emailThreadPoolExecutor) {
+        if (emailThreadPoolProperties.getMode() == ThreadMode.VIRTUAL) {
+            checkVirtualThreadSupport(Runtime.version());
+            return new VirtualThreadTaskExecutor("multi-email-virtual-");
+        }
+        return emailThreadPoolExecutor;
+    }
+
+    /**
+     * 检查JDK是否支持虚拟线程
+     *
+     * @param version JDK版本
+     * @throws IllegalStateException JDK低于21
+     */
+    static void checkVirtualThreadSupport(Runtime.Version version) {
+        if (version.feature() < 21) {
+            throw new IllegalStateException("spring.mail.thread.mode=virtual requires Java 21 or later, but the application is running on Java "
+                    + version.feature() + "; remove the setting or use mode=platform");
+        }
+    }
+
+    /**
+     * 邮件发送任务准入控制
+     *
+     * @param emailThreadPoolProperties thread pool properties
+     * @param emailTaskExecutor         email task executor
+     * @return email dispatcher
+     */
+    @Bean
+    public EmailDispatcher emailDispatcher(EmailThreadPoolProperties emailThreadPoolProperties,
+                                           @Qualifier("emailTaskExecutor") Executor emailTaskExecutor) {
+        return new EmailDispatcher(emailThreadPoolProperties, emailTaskExecutor);
+    }
+
+    /**
+     * 定时发送时间轮
+     *
+     * @param emailThreadPoolProperties thread pool properties
+     * @return timer wheel
+     */
+    @Bean
+    public TimerWheel emailTimerWheel(EmailThreadPoolProperties emailThreadPoolProperties) {
+        return new TimerWheel(emailThreadPoolProperties.getTimerTick(), emailThreadPoolProperties.getTimerWheelSize());
+    }
+
+    /**
+     * 发送失败重试策略
+     *
+     * @param emailRetryProperties retry properties
+     * @return retry policy
+     */
+    @Bean
+    public RetryPolicy emailRetryPolicy(EmailRetryProperties emailRetryProperties) {
+        return RetryPolicy.of(emailRetryProperties);
+    }
+
+    /**
+     * 邮件模板配置重新加载
+     *
+     * @param environment               environment
+     * @param mailWrapper               client wrapper
+     * @param emailTemplateProperties   多邮件模板配置列表元数据属性
+     * @param emailThreadPoolProperties thread pool properties
+     * @param emailRecipientProperties  recipient properties
+     * @param emailReloadProperties     reload properties
+     * @param emailThreadPoolExecutor   thread pool executor
+     * @param emailDispatcher           email dispatcher
+     * @param emailTimerWheel           timer wheel
+     * @param emailMetrics              发送指标，classpath中没有Micrometer时不记录
+     * @param clusterCoordinator        集群协调，未启用时为空
+     * @param eventPublisher            event publisher
+     * @param beanFactory               bean factory, 重新加载的配置类经过与启动时相同的{@code BeanPostProcessor}处理
+     * @return email template reloader
+     */
+    @Bean
+    public EmailTemplateReloader emailTemplateReloader(Environment environment, MailWrapper mailWrapper,
+                                                       EmailTemplateProperties emailTemplateProperties,
+                                                       EmailThreadPoolProperties emailThreadPoolProperties,
+                                                       EmailRecipientProperties emailRecipientProperties,
+                                                       EmailReloadProperties emailReloadProperties,
+                                                       @Qualifier("emailThreadPoolExecutor") ObjectProvider<ThreadPoolExecutor> emailThreadPoolExecutor,
+                                                       EmailDispatcher emailDispatcher, TimerWheel emailTimerWheel,
+                                                       ObjectProvider<EmailMetrics> emailMetrics, ObjectProvider<ClusterCoordinator> clusterCoordinator,
+                                                       ApplicationEventPublisher eventPublisher, AutowireCapableBeanFactory beanFactory) {
+        return new EmailTemplateReloader(environment, mailWrapper, emailTemplateProperties, emailThreadPoolProperties, emailRecipientProperties,
+                emailReloadProperties, emailThreadPoolExecutor.getIfAvailable(), emailDispatcher, emailTimerWheel,
+                emailMetrics.getIfAvailable(() -> EmailMetrics.NOOP), clusterCoordinator.getIfAvailable(), eventPublisher, beanFactory);
+    }
+
+    /**
+     * 基于共享目录的集群协调，注册了其他{@link ClusterCoordinator}实现时不创建
+     *
+     * @param emailClusterProperties cluster properties
+     * @return cluster coordinator
+     * @throws IOException 创建共享目录失败
+     */
+    @Bean
+    @ConditionalOnMissingBean(ClusterCoordinator.class)
+    @ConditionalOnProperty(prefix = "spring.mail.cluster", name = "enabled", havingValue = "true")
+    public FileClusterCoordinator emailClusterCoordinator(EmailClusterProperties emailClusterProperties) throws IOException {
+        return new FileClusterCoordinator(Paths.get(emailClusterProperties.getDirectory()), emailClusterProperties.getNodeId(),
+                emailClusterProperties.getKeySweepInterval());
+    }
+
+    /**
+     * 持久化邮件发件箱
+     * <p>发件箱投递的邮件走批量邮件通道，不占用为事务邮件预留的名额；启用集群协调时发件箱分区在节点间分配。
+     * 启用{@code spring.mail.retry}时暂时性失败的尝试次数受其限制，未启用时按{@code retry-interval}持续重新投递；
+     * 永久失败和尝试次数用尽的记录交给{@link DeadLetterHandler}。</p>
+     *
+     * @param emailOutboxProperties  outbox properties
+     * @param mailWrapper            client wrapper
+     * @param emailDispatcher        email dispatcher
+     * @param emailClusterProperties cluster properties
+     * @param clusterCoordinator     集群协调，未启用时为空
+     * @param emailRetryProperties   retry properties
+     * @param emailRetryPolicy       retry policy
+     * @param deadLetterHandler      死信处理器，未注册时只记录错误日志
+     * @param emailDeliveryTracker   delivery tracker
+     * @return email outbox
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.mail.outbox", name = "enabled", havingValue = "true")
+    public EmailOutbox emailOutbox(EmailOutboxProperties emailOutboxProperties, MailWrapper mailWrapper, EmailDispatcher emailDispatcher,
+                                   EmailClusterProperties emailClusterProperties, ObjectProvider<ClusterCoordinator> clusterCoordinator,
+                                   EmailRetryProperties emailRetryProperties, RetryPolicy emailRetryPolicy,
+                                   ObjectProvider<DeadLetterHandler> deadLetterHandler, DeliveryTracker emailDeliveryTracker) {
+        // 未启用重试时发件箱不限制暂时性失败的尝试次数，记录保留在磁盘上按retry-interval重新投递
+        RetryPolicy outboxRetryPolicy = emailRetryProperties.isEnabled() ? emailRetryPolicy
+                : new RetryPolicy(Integer.MAX_VALUE, Duration.ZERO, 1.0, Duration.ZERO, 0.0);
+        return new EmailOutbox(emailOutboxProperties, mailWrapper, task -> emailDispatcher.execute(task, EmailDispatcher.Lane.BULK),
+                clusterCoordinator.getIfAvailable(), emailClusterProperties.getOutboxPartitions(), emailClusterProperties.getLeaseTime(),
+                outboxRetryPolicy, deadLetterHandler.getIfAvailable(), emailDeliveryTracker);
+    }
+
+    /**
+     * 附件编码结果缓存
+     *
+     * @param emailAttachmentCacheProperties attachment cache properties
+     * @param emailMetrics                   发送指标，classpath中没有Micrometer时不记录
+     * @return attachment cache
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AttachmentCache emailAttachmentCache(EmailAttachmentCacheProperties emailAttachmentCacheProperties, ObjectProvider<EmailMetrics> emailMetrics) {
+        if (!emailAttachmentCacheProperties.isEnabled()) {
+            return AttachmentCache.NONE;
+        }
+        AttachmentCache attachmentCache = new AttachmentCache(emailAttachmentCacheProperties.getMaxSize().toBytes(),
+                emailAttachmentCacheProperties.getMaxEntrySize().toBytes());
+        emailMetrics.getIfAvailable(() -> EmailMetrics.NOOP).bindAttachmentCache(attachmentCache);
+        return attachmentCache;
+    }
+
+    /**
+     * 幂等发送去重索引
+     *
+     * @param emailIdempotencyProperties idempotency properties
+     * @param clusterCoordinator         集群协调，未启用时只在本节点去重
+     * @param emailMetrics               发送指标，classpath中没有Micrometer时不记录
+     * @return idempotency index
+     * @throws IOException 读取日志目录失败
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public IdempotencyIndex emailIdempotencyIndex(EmailIdempotencyProperties emailIdempotencyProperties,
+                                                  ObjectProvider<ClusterCoordinator> clusterCoordinator,
+                                                  ObjectProvider<EmailMetrics> emailMetrics) throws IOException {
+        if (!emailIdempotencyProperties.isEnabled()) {
+            return IdempotencyIndex.NONE;
+        }
+        String directory = emailIdempotencyProperties.getDirectory();
+        IdempotencyIndex idempotencyIndex = new IdempotencyIndex(emailIdempotencyProperties.getWindow(), emailIdempotencyProperties.getMaxKeys(),
+                emailIdempotencyProperties.getGenerations(), StringUtils.hasText(directory) ? Paths.get(directory) : null, clusterCoordinator.getIfAvailable());
+        emailMetrics.getIfAvailable(() -> EmailMetrics.NOOP).bindIdempotencyIndex(idempotencyIndex);
+        return idempotencyIndex;
+    }
+
+    /**
+     * 邮件投递记录
+     *
+     * @param emailTrackingProperties tracking properties
+     * @param emailMetrics            发送指标，classpath中没有Micrometer时不记录
+     * @return delivery tracker
+     * @throws IOException 读取日志目录失败
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public DeliveryTracker emailDeliveryTracker(EmailTrackingProperties emailTrackingProperties, ObjectProvider<EmailMetrics> emailMetrics) throws IOException {
+        if (!emailTrackingProperties.isEnabled()) {
+            return DeliveryTracker.NONE;
+        }
+        String directory = emailTrackingProperties.getDirectory();
+        DeliveryTracker deliveryTracker = new DeliveryTracker(emailTrackingProperties.getMaxRecords(), StringUtils.hasText(directory) ? Paths.get(directory) : null);
+        emailMetrics.getIfAvailable(() -> EmailMetrics.NOOP).bindDeliveryTracker(deliveryTracker);
+        return deliveryTracker;
+    }
+
+    /**
+     * 邮件正文模板引擎
+     *
+     * @param emailRenderProperties render properties
+     * @param resourceLoader        resource loader
+     * @return mail template engine
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public MailTemplateEngine mailTemplateEngine(EmailRenderProperties emailRenderProperties, ResourceLoader resourceLoader) {
+        return new MailTemplateEngine(emailRenderProperties, resourceLoader);
+    }
+
     /**
      * 多邮件模板配置列表元数据属性
      */
@@ -136,6 +501,54 @@ public class EmailConfig {
          * 多邮件模板配置列表
          */
         private List<EmailProperties> emailTemplates;
+        /**
+         * 邮件模板组配置列表
+         */
+        private List<EmailGroupProperties> emailGroups;
+        /**
+         * 默认邮件模板的SMTP连接池配置，同时作为未单独配置连接池的邮件模板的默认值
+         */
+        @NestedConfigurationProperty
+        private EmailPoolProperties pool = new EmailPoolProperties();
+        /**
+         * 默认邮件模板的发送速率限制，同时作为未单独配置速率限制的邮件模板的默认值
+         */
+        @NestedConfigurationProperty
+        private EmailRateLimitProperties rateLimit = new EmailRateLimitProperties();
+
+        /**
+         * 获取邮件模板的SMTP连接池配置
+         *
+         * @param templateName 邮件模板名称
+         * @return SMTP连接池配置
+         */
+        public EmailPoolProperties getPoolProperties(String templateName) {
+            if (!CollectionUtils.isEmpty(this.emailTemplates)) {
+                for (EmailProperties template : this.emailTemplates) {
+                    if (Objects.equals(template.getTemplateName(), templateName) && Objects.nonNull(template.getPool())) {
+                        return template.getPool();
+                    }
+                }
+            }
+            return this.pool;
+        }
+
+        /**
+         * 获取邮件模板的发送速率限制配置
+         *
+         * @param templateName 邮件模板名称
+         * @return 发送速率限制配置
+         */
+        public EmailRateLimitProperties getRateLimitProperties(String templateName) {
+            if (!CollectionUtils.isEmpty(this.emailTemplates)) {
+                for (EmailProperties template : this.emailTemplates) {
+                    if (Objects.equals(template.getTemplateName(), templateName) && Objects.nonNull(template.getRateLimit())) {
+                        return template.getRateLimit();
+                    }
+                }
+            }
+            return this.rateLimit;
+        }
     }
 
     /**
@@ -153,6 +566,163 @@ public class EmailConfig {
          */
         @NestedConfigurationProperty
         private MailProperties mailProperties;
+        /**
+         * SMTP连接池配置，未配置时使用{@code spring.mail.pool}
+         */
+        @NestedConfigurationProperty
+        private EmailPoolProperties pool;
+        /**
+         * 发送速率限制，未配置时使用{@code spring.mail.rate-limit}
+         */
+        @NestedConfigurationProperty
+        private EmailRateLimitProperties rateLimit;
+    }
+
+    /**
+     * 发送速率限制配置参数
+     * <p>邮件服务商对单个账号有发送频率限制，超过后返回421/450/451等应答并暂时封禁账号。</p>
+     */
+    @Data
+    public static class EmailRateLimitProperties {
+        /**
+         * 是否限制发送速率，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 每秒发送的邮件数量
+         */
+        private double permitsPerSecond = 10;
+        /**
+         * 最多允许突发发送的邮件数量
+         */
+        private int burst = 10;
+        /**
+         * 收到限流应答后速率的乘数
+         */
+        private double backoffFactor = 0.5;
+        /**
+         * 限流后的最低速率
+         */
+        private double minPermitsPerSecond = 0.2;
+        /**
+         * 限流后每次发送成功增加的速率
+         */
+        private double recoveryStep = 0.1;
+        /**
+         * 收到限流应答后暂停发送的时间
+         */
+        private Duration throttlePause = Duration.ofSeconds(5);
+        /**
+         * 所有节点合计每个窗口内的发送上限，为空时不限制；需启用{@code spring.mail.cluster}
+         */
+        private Integer clusterQuota;
+        /**
+         * 集群发送上限的计数窗口，按窗口长度对齐到整点
+         */
+        private Duration clusterQuotaWindow = Duration.ofMinutes(1);
+    }
+
+    /**
+     * 邮件模板组配置元数据
+     */
+    @Data
+    public static class EmailGroupProperties {
+        /**
+         * 邮件模板组名称
+         */
+        private String groupName;
+        /**
+         * 负载均衡策略，默认：{@code LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN}
+         */
+        private LoadBalanceStrategy strategy = LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN;
+        /**
+         * 组成员
+         */
+        private List<EmailGroupMemberProperties> members = new ArrayList<>();
+        /**
+         * 组成员熔断配置
+         */
+        @NestedConfigurationProperty
+        private EmailCircuitBreakerProperties circuitBreaker = new EmailCircuitBreakerProperties();
+    }
+
+    /**
+     * 邮件模板组成员配置
+     */
+    @Data
+    public static class EmailGroupMemberProperties {
+        /**
+         * 邮件模板名称
+         */
+        private String templateName;
+        /**
+         * 权重
+         */
+        private int weight = 1;
+    }
+
+    /**
+     * 熔断配置参数
+     */
+    @Data
+    public static class EmailCircuitBreakerProperties {
+        /**
+         * 连续失败多少次后熔断
+         */
+        private int failureThreshold = 3;
+        /**
+         * 熔断持续时间，到期后放行一次试探发送
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+
+    /**
+     * 邮件模板组负载均衡策略
+     */
+    public enum LoadBalanceStrategy {
+        /**
+         * 平滑加权轮询
+         */
+        WEIGHTED_ROUND_ROBIN,
+        /**
+         * 最少在途请求（按权重折算）
+         */
+        LEAST_IN_FLIGHT
+    }
+
+    /**
+     * SMTP连接池配置参数
+     */
+    @Data
+    public static class EmailPoolProperties {
+        /**
+         * 是否复用SMTP连接，默认：false（每次发送新建连接）
+         */
+        private boolean enabled = false;
+        /**
+         * 最大连接数
+         */
+        private int maxSize = 4;
+        /**
+         * 等待可用连接的最长时间
+         */
+        private Duration maxWait = Duration.ofSeconds(30);
+        /**
+         * 连接最大空闲时间，超过后关闭
+         */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        /**
+         * 连接最大存活时间，超过后关闭
+         */
+        private Duration maxLifetime = Duration.ofMinutes(10);
+        /**
+         * 单个连接最多发送的邮件数量
+         */
+        private int maxMessagesPerConnection = 100;
+        /**
+         * 连接空闲超过此时间后，借出前发送NOOP检测连接
+         */
+        private Duration validationInterval = Duration.ofSeconds(5);
     }
 
     /**
@@ -180,8 +750,308 @@ public class EmailConfig {
          */
         private TimeUnit timeUnit = TimeUnit.SECONDS;
         /**
-         * 最大任务数量
+         * 最大排队任务数量：线程池优先级队列的容量，未配置{@code maxPendingTasks}时{@link EmailDispatcher}的名额为{@code maximumPoolSize + capacity}
          */
         private Integer capacity = 50;
+        /**
+         * 批量发送时每个SMTP连接上连续发送的邮件数量
+         */
+        private Integer batchSize = 100;
+        /**
+         * 发送任务执行模式，默认：{@code ThreadMode.PLATFORM}；{@code ThreadMode.VIRTUAL}需要JDK 21+，低于21时启动失败
+         */
+        private ThreadMode mode = ThreadMode.PLATFORM;
+        /**
+         * 虚拟线程模式下单个邮件模板同时进行SMTP交互的最大数量
+         */
+        private Integer maxConcurrencyPerTemplate = 16;
+        /**
+         * 同时提交到执行器的最大发送任务数，为空时平台线程池为{@code maximumPoolSize + capacity}，虚拟线程不限制
+         */
+        private Integer maxPendingTasks;
+        /**
+         * 发送任务名额用尽时的处理策略，默认：{@code OverloadPolicy.ABORT}
+         */
+        private OverloadPolicy overloadPolicy = OverloadPolicy.ABORT;
+        /**
+         * {@code OverloadPolicy.WAIT}时调用线程等待名额的最长时间
+         */
+        private Duration submitTimeout = Duration.ofSeconds(5);
+        /**
+         * {@code OverloadPolicy.SPILL}时溢出队列的容量
+         */
+        private Integer spillCapacity = 1000;
+        /**
+         * 为单封发送的事务邮件预留的名额，批量发送和邮件合并不能占用
+         */
+        private Integer reservedCapacity = 10;
+        /**
+         * 定时发送（{@code sentDate}晚于当前时间）时间轮每格的时长，即定时发送的精度
+         */
+        private Duration timerTick = Duration.ofMillis(100);
+        /**
+         * 定时发送时间轮的槽位数量
+         */
+        private Integer timerWheelSize = 512;
+    }
+
+    /**
+     * 持久化发件箱配置参数
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.outbox")
+    public static class EmailOutboxProperties {
+        /**
+         * 是否启用持久化发件箱，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 发件箱日志目录
+         */
+        private String directory = "email-outbox";
+        /**
+         * 单个段文件大小，超过此大小的邮件单独占用一个段文件
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        /**
+         * 每次写入后是否将映射内存刷入磁盘，开启后可防止操作系统崩溃丢失邮件，但写入延迟更高
+         */
+        private boolean forceOnAppend = false;
+        /**
+         * 暂时性失败后重新投递的最短间隔，重试策略的退避时间更长时以退避时间为准；
+         * 启用{@code spring.mail.retry}时尝试次数受{@code max-attempts}限制，未启用时不限制
+         */
+        private Duration retryInterval = Duration.ofSeconds(30);
+        /**
+         * 同时投递中的最大邮件数量
+         */
+        private int maxInFlight = 16;
+    }
+
+    /**
+     * 发送失败重试配置
+     * <p>只重试4xx应答、连接失败等暂时性失败，重试在时间轮上等待，不占用发送线程。</p>
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.retry")
+    public static class EmailRetryProperties {
+        /**
+         * 是否启用重试，默认：false，发送失败时直接结束并交给死信处理器
+         */
+        private boolean enabled = false;
+        /**
+         * 最多尝试次数，包括第一次发送
+         */
+        private int maxAttempts = 3;
+        /**
+         * 第一次重试前的等待时间
+         */
+        private Duration initialBackoff = Duration.ofSeconds(1);
+        /**
+         * 每次重试等待时间的倍数
+         */
+        private double multiplier = 2.0;
+        /**
+         * 等待时间上限
+         */
+        private Duration maxBackoff = Duration.ofMinutes(5);
+        /**
+         * 等待时间随机抖动的比例，0到1之间，0.5表示在计算值的50%~100%之间随机
+         */
+        private double jitter = 0.5;
+    }
+
+    /**
+     * 收件人配置
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.recipient")
+    public static class EmailRecipientProperties {
+        /**
+         * 单封邮件SMTP信封中的最大收件人数（收件人和抄送合计），超过时拆分为多个信封并行发送；
+         * 多数服务商限制每封邮件的收件人数（如50或100）
+         */
+        private int maxPerMessage = 50;
+        /**
+         * 部分收件人被服务器拒绝时是否仍投递给其余收件人（{@code mail.smtp.sendpartial}），默认：false，与JavaMail一致，任一收件人被拒绝时整封邮件失败
+         */
+        private boolean sendPartial = false;
+    }
+
+    /**
+     * 附件编码结果缓存配置
+     * <p>只缓存按路径引用的磁盘文件（{@code filepath}、内嵌图片），上传的附件每次都不相同，不缓存。</p>
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.attachment-cache")
+    public static class EmailAttachmentCacheProperties {
+        /**
+         * 是否缓存附件的Base64编码结果，默认：false，未启用时每次发送都从磁盘读取并编码
+         */
+        private boolean enabled = false;
+        /**
+         * 缓存的编码后总大小（堆外内存），超出时淘汰最久未使用的附件
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+        /**
+         * 单个附件文件的大小上限，更大的文件每次从磁盘流式读取
+         */
+        private DataSize maxEntrySize = DataSize.ofMegabytes(8);
+    }
+
+    /**
+     * 邮件模板配置重新加载参数
+     * <p>通过{@code /actuator/emailtemplates}、Spring Cloud的{@code EnvironmentChangeEvent}或{@link EmailTemplateReloader#reload()}触发。</p>
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.reload")
+    public static class EmailReloadProperties {
+        /**
+         * 收到Spring Cloud的{@code EnvironmentChangeEvent}时是否重新加载，默认：true
+         */
+        private boolean onEnvironmentChange = true;
+        /**
+         * 被替换的发送实例等待进行中的发送结束的时间，超过后关闭
+         */
+        private Duration drainTimeout = Duration.ofSeconds(60);
+    }
+
+    /**
+     * 幂等发送配置
+     * <p>携带{@code idempotencyKey}的邮件在窗口期内只发送一次，重复请求返回第一次发送的结果。</p>
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.idempotency")
+    public static class EmailIdempotencyProperties {
+        /**
+         * 是否按幂等键去重，默认：false，未启用时忽略邮件的幂等键
+         */
+        private boolean enabled = false;
+        /**
+         * 幂等键的保留时间
+         */
+        private Duration window = Duration.ofHours(24);
+        /**
+         * 最多保存的幂等键数量，超出时最早的幂等键被提前丢弃
+         */
+        private int maxKeys = 1_000_000;
+        /**
+         * 分代数量，每经过{@code window / generations}开始新的一代，过期时整代丢弃
+         */
+        private int generations = 4;
+        /**
+         * 发送结果的日志目录，为空时只保存在内存中，重启后丢失
+         */
+        private String directory;
+    }
+
+    /**
+     * 邮件投递记录配置
+     * <p>每次发送生成一条投递记录，可通过{@link DeliveryTracker}或{@code /actuator/emaildeliveries}按记录ID查询、按状态列出。</p>
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.tracking")
+    public static class EmailTrackingProperties {
+        /**
+         * 是否记录投递状态，默认：false，未启用时{@code SendResult#getTrackingId()}为null
+         */
+        private boolean enabled = false;
+        /**
+         * 最多保存的投递记录数量，超出时最早的记录被覆盖
+         */
+        private int maxRecords = 100_000;
+        /**
+         * 已结束的投递记录的日志目录，为空时只保存在内存中，重启后丢失
+         */
+        private String directory;
+    }
+
+    /**
+     * 集群协调配置
+     * <p>多个节点共享发送配额、发件箱分区和幂等键，内置实现要求所有节点能访问同一目录并且时钟同步。</p>
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.cluster")
+    public static class EmailClusterProperties {
+        /**
+         * 是否启用集群协调，默认：false
+         */
+        private boolean enabled = false;
+        /**
+         * 节点ID，为空时使用主机名和进程号
+         */
+        private String nodeId;
+        /**
+         * 所有节点共享的协调目录
+         */
+        private String directory = "email-cluster";
+        /**
+         * 发件箱分区租约时长，节点停止续约超过此时间后其分区由其他节点接管
+         */
+        private Duration leaseTime = Duration.ofSeconds(30);
+        /**
+         * 发件箱分区数量，所有节点必须一致，决定最多能有多少个节点同时投递
+         */
+        private int outboxPartitions = 16;
+        /**
+         * 过期幂等键的清理间隔
+         */
+        private Duration keySweepInterval = Duration.ofMinutes(1);
+    }
+
+    /**
+     * 邮件正文模板配置
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.mail.render")
+    public static class EmailRenderProperties {
+        /**
+         * 正文模板所在位置，按顺序查找，支持{@code classpath:}和{@code file:}前缀
+         */
+        private List<String> locations = new ArrayList<>(List.of("classpath:/templates/email/"));
+        /**
+         * 正文模板文件后缀
+         */
+        private String suffix = ".html";
+        /**
+         * 最多缓存的编译结果数量，超出时淘汰最久未使用的模板
+         */
+        private int cacheSize = 256;
+        /**
+         * 文件系统中模板的修改检查间隔，0表示不检查（关闭热加载）
+         */
+        private Duration checkInterval = Duration.ofSeconds(2);
+    }
+
+    /**
+     * 发送任务名额用尽时的处理策略
+     */
+    public enum OverloadPolicy {
+        /**
+         * 立即拒绝，返回的future以{@link java.util.concurrent.RejectedExecutionException}结束
+         */
+        ABORT,
+        /**
+         * 调用线程最多等待{@code submit-timeout}，超时后拒绝
+         */
+        WAIT,
+        /**
+         * 暂存到容量为{@code spill-capacity}的溢出队列，溢出队列已满时拒绝
+         */
+        SPILL
+    }
+
+    /**
+     * 发送任务执行模式
+     */
+    public enum ThreadMode {
+        /**
+         * 平台线程池
+         */
+        PLATFORM,
+        /**
+         * 虚拟线程（JDK 21+，低于21时启动失败）
+         */
+        VIRTUAL
     }
 }
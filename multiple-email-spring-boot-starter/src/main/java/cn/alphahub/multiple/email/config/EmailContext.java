@@ -0,0 +1,18 @@
+package cn.alphahub.multiple.email.config;
+
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.mail.javamail.JavaMailSender;
+
+/**
+ * 邮件模板上下文
+ * <p>一次发送使用的邮件模板名称、发送实例及配置属性。</p>
+ *
+ * @param templateName   邮件模板名称
+ * @param mailSender     邮件发送实例
+ * @param mailProperties 邮件配置属性
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public record EmailContext(String templateName, JavaMailSender mailSender, MailProperties mailProperties) {
+}
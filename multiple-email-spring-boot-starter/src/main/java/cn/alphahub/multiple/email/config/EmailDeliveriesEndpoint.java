@@ -0,0 +1,74 @@
+package cn.alphahub.multiple.email.config;
+
+import cn.alphahub.multiple.email.tracking.DeliveryRecord;
+import cn.alphahub.multiple.email.tracking.DeliveryStatus;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+
+/**
+ * 邮件投递记录端点
+ * <ul>
+ *     <li>{@code GET /actuator/emaildeliveries?status=failed&limit=50}：按提交时间从新到老列出最近的投递记录，以及各状态的记录数量</li>
+ *     <li>{@code GET /actuator/emaildeliveries/{id}}：按{@code SendResult#getTrackingId()}查询投递记录，不存在或已被覆盖时返回404</li>
+ * </ul>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Endpoint(id = "emaildeliveries")
+public class EmailDeliveriesEndpoint {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private final DeliveryTracker deliveryTracker;
+
+    public EmailDeliveriesEndpoint(DeliveryTracker deliveryTracker) {
+        this.deliveryTracker = deliveryTracker;
+    }
+
+    /**
+     * 最近的投递记录
+     *
+     * @param status 投递状态，为空时列出全部状态
+     * @param limit  最多返回的记录数量，默认100，最大1000
+     * @return 各状态的记录数量和最近的投递记录
+     */
+    @ReadOperation
+    public DeliveriesDescriptor deliveries(@Nullable DeliveryStatus status, @Nullable Integer limit) {
+        Map<DeliveryStatus, Long> counts = new TreeMap<>();
+        for (DeliveryStatus value : DeliveryStatus.values()) {
+            counts.put(value, this.deliveryTracker.getCount(value));
+        }
+        int max = Objects.isNull(limit) ? DEFAULT_LIMIT : Math.min(Math.max(limit, 0), MAX_LIMIT);
+        return new DeliveriesDescriptor(this.deliveryTracker.getCapacity(), counts, this.deliveryTracker.list(status, max));
+    }
+
+    /**
+     * 按记录ID查询投递记录
+     *
+     * @param id 记录ID
+     * @return 投递记录，不存在时为null
+     */
+    @ReadOperation
+    public DeliveryRecord delivery(@Selector String id) {
+        return this.deliveryTracker.find(id).orElse(null);
+    }
+
+    /**
+     * 投递记录列表
+     *
+     * @param capacity   最多保存的记录数量，未记录投递状态时为0
+     * @param counts     各状态的记录数量
+     * @param deliveries 最近的投递记录，从新到老
+     */
+    public record DeliveriesDescriptor(int capacity, Map<DeliveryStatus, Long> counts, List<DeliveryRecord> deliveries) {
+    }
+}
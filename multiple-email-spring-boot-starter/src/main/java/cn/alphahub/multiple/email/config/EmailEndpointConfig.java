@@ -0,0 +1,49 @@
+package cn.alphahub.multiple.email.config;
+
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 邮件模板Actuator端点配置类
+ * <p>classpath中存在{@code spring-boot-actuator}时生效，需通过{@code management.endpoints.web.exposure.include}暴露{@code emailtemplates}、{@code emaildeliveries}。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(Endpoint.class)
+public class EmailEndpointConfig {
+
+    /**
+     * 邮件模板端点
+     *
+     * @param mailWrapper           client wrapper
+     * @param emailTemplateReloader email template reloader
+     * @return email templates endpoint
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(EmailTemplateReloader.class)
+    public EmailTemplatesEndpoint emailTemplatesEndpoint(MailWrapper mailWrapper, EmailTemplateReloader emailTemplateReloader) {
+        return new EmailTemplatesEndpoint(mailWrapper, emailTemplateReloader);
+    }
+
+    /**
+     * 邮件投递记录端点
+     *
+     * @param deliveryTracker delivery tracker
+     * @return email deliveries endpoint
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(DeliveryTracker.class)
+    public EmailDeliveriesEndpoint emailDeliveriesEndpoint(DeliveryTracker deliveryTracker) {
+        return new EmailDeliveriesEndpoint(deliveryTracker);
+    }
+}
@@ -0,0 +1,46 @@
+package cn.alphahub.multiple.email.config;
+
+import cn.alphahub.multiple.email.metrics.EmailMetrics;
+import cn.alphahub.multiple.email.metrics.MicrometerEmailMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 邮件发送指标配置类
+ * <p>classpath中存在Micrometer时生效，引入{@code spring-boot-starter-actuator}后指标可通过{@code /actuator/metrics}查看。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(MeterRegistry.class)
+public class EmailMetricsConfig {
+
+    /**
+     * 邮件发送指标
+     * <p>容器中没有{@link MeterRegistry}时不记录指标。</p>
+     *
+     * @param meterRegistry           meter registry
+     * @param emailThreadPoolExecutor email thread pool executor
+     * @return email metrics
+     */
+    @Bean
+    @ConditionalOnMissingBean(EmailMetrics.class)
+    public EmailMetrics emailMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                                     @Qualifier("emailThreadPoolExecutor") ObjectProvider<ThreadPoolExecutor> emailThreadPoolExecutor) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return EmailMetrics.NOOP;
+        }
+        EmailMetrics emailMetrics = new MicrometerEmailMetrics(registry);
+        emailThreadPoolExecutor.ifAvailable(emailMetrics::bindExecutor);
+        return emailMetrics;
+    }
+}
@@ -0,0 +1,42 @@
+package cn.alphahub.multiple.email.config;
+
+import cn.alphahub.multiple.email.EmailTemplate;
+import cn.alphahub.multiple.email.ReactiveEmailTemplate;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolProperties;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 响应式邮件模板配置类
+ * <p>classpath中存在Reactor（如引入{@code spring-boot-starter-webflux}）时生效。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(Mono.class)
+public class EmailReactiveConfig {
+
+    /**
+     * 响应式邮件模板
+     * <p>提交发送任务、转存附件在{@link Schedulers#boundedElastic()}上执行，{@code sendAll}同时发送的邮件数量为{@code spring.mail.thread.batch-size}。</p>
+     *
+     * @param emailTemplate             email template
+     * @param emailThreadPoolProperties thread pool properties
+     * @param validator                 bean validator, messages are not validated when absent
+     * @return reactive email template
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactiveEmailTemplate reactiveEmailTemplate(EmailTemplate emailTemplate, EmailThreadPoolProperties emailThreadPoolProperties,
+                                                       ObjectProvider<Validator> validator) {
+        return new ReactiveEmailTemplate(emailTemplate, Schedulers.boundedElastic(), emailThreadPoolProperties.getBatchSize(), validator.getIfAvailable());
+    }
+}
@@ -0,0 +1,299 @@
+package cn.alphahub.multiple.email.config;
+
+import cn.alphahub.multiple.email.cluster.ClusterCoordinator;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailGroupProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRecipientProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailReloadProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailTemplateProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.ThreadMode;
+import cn.alphahub.multiple.email.dispatch.BoundedPriorityBlockingQueue;
+import cn.alphahub.multiple.email.dispatch.EmailDispatcher;
+import cn.alphahub.multiple.email.dispatch.TimerWheel;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import cn.alphahub.multiple.email.metrics.EmailMetrics;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * 邮件模板配置重新加载
+ * <p>
+ * 不重启应用上下文，从{@link Environment}重新绑定{@code spring.mail}下的配置，
+ * 并与启动时一样经过容器中{@code BeanPostProcessor}的处理（如改写SMTP服务器地址）后应用：
+ * <ul>
+ *     <li>配置未变化的邮件模板沿用原发送实例和连接池；新增或配置变化的邮件模板创建新发送实例，
+ *     与邮件模板配置、邮件模板组一起在{@link MailWrapper}中整体替换</li>
+ *     <li>被替换或删除的发送实例立即停止复用连接，已选定它的发送任务照常完成，{@code spring.mail.reload.drain-timeout}后关闭</li>
+ *     <li>按{@code spring.mail.thread}调整线程池大小和{@link EmailDispatcher}的名额，已排队和溢出的任务不会丢失；
+ *     {@code mode}在平台线程和虚拟线程之间切换需要重启</li>
+ * </ul>
+ * 完成后发布{@link EmailTemplatesReloadedEvent}。可通过{@code /actuator/emailtemplates}、
+ * Spring Cloud的{@code EnvironmentChangeEvent}（{@code /actuator/refresh}、配置中心推送）或直接调用{@link #reload()}触发。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class EmailTemplateReloader implements ApplicationListener<ApplicationEvent> {
+    /**
+     * Spring Cloud配置变化事件，按类名匹配，不依赖Spring Cloud
+     */
+    private static final String ENVIRONMENT_CHANGE_EVENT = "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+    private final Environment environment;
+    private final MailWrapper mailWrapper;
+    private final EmailReloadProperties reloadProperties;
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final EmailDispatcher emailDispatcher;
+    private final TimerWheel timerWheel;
+    private final EmailMetrics metrics;
+    private final ClusterCoordinator clusterCoordinator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AutowireCapableBeanFactory beanFactory;
+    /**
+     * 当前生效的配置，均在synchronized内读写；配置类可能被Spring Cloud原地重新绑定，比较用的指纹是构建时的快照
+     */
+    private EmailTemplateProperties templateProperties;
+    private EmailThreadPoolProperties threadPoolProperties;
+    private Map<String, Fingerprint> fingerprints;
+    private Map<String, String> groupFingerprints;
+
+    public EmailTemplateReloader(Environment environment, MailWrapper mailWrapper, EmailTemplateProperties templateProperties,
+                                 EmailThreadPoolProperties threadPoolProperties, EmailRecipientProperties recipientProperties,
+                                 EmailReloadProperties reloadProperties, @Nullable ThreadPoolExecutor threadPoolExecutor,
+                                 EmailDispatcher emailDispatcher, TimerWheel timerWheel, EmailMetrics metrics,
+                                 @Nullable ClusterCoordinator clusterCoordinator, ApplicationEventPublisher eventPublisher,
+                                 @Nullable AutowireCapableBeanFactory beanFactory) {
+        this.environment = environment;
+        this.mailWrapper = mailWrapper;
+        this.reloadProperties = reloadProperties;
+        this.threadPoolExecutor = threadPoolExecutor;
+        this.emailDispatcher = emailDispatcher;
+        this.timerWheel = timerWheel;
+        this.metrics = metrics;
+        this.clusterCoordinator = clusterCoordinator;
+        this.eventPublisher = eventPublisher;
+        this.beanFactory = beanFactory;
+        this.templateProperties = templateProperties;
+        this.threadPoolProperties = threadPoolProperties;
+        this.fingerprints = fingerprints(mailWrapper.getEmailPropertiesMap(), templateProperties, threadPoolProperties, recipientProperties);
+        this.groupFingerprints = groupFingerprints(templateProperties);
+    }
+
+    /**
+     * 重新加载邮件模板配置
+     * <p>配置无效（如邮件模板组引用了不存在的邮件模板）时抛出异常，当前配置保持不变。</p>
+     *
+     * @return 重新加载结果，同时作为事件发布
+     */
+    public synchronized EmailTemplatesReloadedEvent reload() {
+        Binder binder = Binder.get(this.environment);
+        MailProperties mailProperties = this.postProcess(binder.bind("spring.mail", MailProperties.class).orElseGet(MailProperties::new),
+                "spring.mail-" + MailProperties.class.getName());
+        EmailTemplateProperties newTemplateProperties = this.postProcess(
+                binder.bind("spring.mail", EmailTemplateProperties.class).orElseGet(EmailTemplateProperties::new),
+                "spring.mail-" + EmailTemplateProperties.class.getName());
+        EmailThreadPoolProperties newThreadPoolProperties = binder.bind("spring.mail.thread", EmailThreadPoolProperties.class).orElseGet(EmailThreadPoolProperties::new);
+        EmailRecipientProperties recipientProperties = binder.bind("spring.mail.recipient", EmailRecipientProperties.class).orElseGet(EmailRecipientProperties::new);
+
+        Map<String, MailProperties> propertiesMap = EmailConfig.mailPropertiesMap(mailProperties, newTemplateProperties);
+        Map<String, Fingerprint> newFingerprints = fingerprints(propertiesMap, newTemplateProperties, newThreadPoolProperties, recipientProperties);
+        Map<String, JavaMailSender> currentSenders = this.mailWrapper.getJavaMailSenderMap();
+        Map<String, JavaMailSender> senders = new ConcurrentHashMap<>(propertiesMap.size());
+        Set<String> added = new TreeSet<>();
+        Set<String> updated = new TreeSet<>();
+        Set<String> removed = new TreeSet<>(currentSenders.keySet());
+        removed.removeAll(propertiesMap.keySet());
+        List<PooledJavaMailSender> created = new ArrayList<>();
+        Map<String, TemplateGroup> groups;
+        try {
+            propertiesMap.forEach((templateName, properties) -> {
+                JavaMailSender existing = currentSenders.get(templateName);
+                if (Objects.nonNull(existing) && Objects.equals(newFingerprints.get(templateName), this.fingerprints.get(templateName))) {
+                    senders.put(templateName, existing);
+                    return;
+                }
+                PooledJavaMailSender sender = EmailConfig.createMailSender(templateName, properties, newTemplateProperties,
+                        newThreadPoolProperties, recipientProperties, this.metrics, this.clusterCoordinator);
+                created.add(sender);
+                senders.put(templateName, sender);
+                (Objects.isNull(existing) ? added : updated).add(templateName);
+            });
+            groups = this.templateGroups(newTemplateProperties, senders);
+        } catch (RuntimeException e) {
+            created.forEach(PooledJavaMailSender::destroy);
+            currentSenders.forEach((templateName, sender) -> {
+                if (sender instanceof PooledJavaMailSender pooled) {
+                    this.metrics.bindMailSender(templateName, pooled);
+                }
+            });
+            throw e;
+        }
+
+        this.mailWrapper.swap(propertiesMap, senders, groups);
+        updated.forEach(templateName -> this.drain(templateName, currentSenders.get(templateName)));
+        removed.forEach(templateName -> this.drain(templateName, currentSenders.get(templateName)));
+        this.resizeExecutor(newThreadPoolProperties);
+        this.emailDispatcher.resize(newThreadPoolProperties);
+
+        this.templateProperties = newTemplateProperties;
+        this.threadPoolProperties = newThreadPoolProperties;
+        this.fingerprints = newFingerprints;
+        this.groupFingerprints = groupFingerprints(newTemplateProperties);
+
+        EmailTemplatesReloadedEvent event = new EmailTemplatesReloadedEvent(this, added, updated, removed);
+        if (event.hasChanges()) {
+            log.info("Mail templates reloaded: added {}, updated {}, removed {}", added, updated, removed);
+        }
+        this.eventPublisher.publishEvent(event);
+        return event;
+    }
+
+    /**
+     * 当前生效的多邮件模板配置
+     *
+     * @return email template properties
+     */
+    public synchronized EmailTemplateProperties getTemplateProperties() {
+        return this.templateProperties;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (!ENVIRONMENT_CHANGE_EVENT.equals(event.getClass().getName()) || !this.reloadProperties.isOnEnvironmentChange()) {
+            return;
+        }
+        try {
+            this.reload();
+        } catch (RuntimeException e) {
+            log.error("Failed to reload mail templates after environment change, keeping the current configuration.", e);
+        }
+    }
+
+    /**
+     * 对重新绑定的配置类应用容器中的{@code BeanPostProcessor}，与启动时创建的配置类Bean保持一致
+     *
+     * @param properties 重新绑定的配置类
+     * @param beanName   配置类Bean的名称
+     * @param <T>        配置类类型
+     * @return 处理后的配置类
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T postProcess(T properties, String beanName) {
+        if (Objects.isNull(this.beanFactory)) {
+            return properties;
+        }
+        return (T) this.beanFactory.initializeBean(properties, beanName);
+    }
+
+    /**
+     * 构建邮件模板组，配置未变化的组沿用原实例以保留熔断和负载均衡状态
+     */
+    private Map<String, TemplateGroup> templateGroups(EmailTemplateProperties newTemplateProperties, Map<String, JavaMailSender> senders) {
+        Map<String, TemplateGroup> groups = EmailConfig.templateGroupMap(newTemplateProperties, senders);
+        groupFingerprints(newTemplateProperties).forEach((groupName, fingerprint) -> {
+            TemplateGroup current = this.mailWrapper.getTemplateGroup(groupName);
+            if (Objects.nonNull(current) && fingerprint.equals(this.groupFingerprints.get(groupName))) {
+                groups.put(groupName, current);
+            }
+        });
+        return groups;
+    }
+
+    /**
+     * 停止复用被替换的发送实例的连接，等待进行中的发送结束后关闭
+     */
+    private void drain(String templateName, @Nullable JavaMailSender sender) {
+        if (!(sender instanceof PooledJavaMailSender pooled)) {
+            return;
+        }
+        pooled.retire();
+        try {
+            this.timerWheel.schedule(Instant.now().plus(this.reloadProperties.getDrainTimeout()), () -> {
+                log.debug("Closing replaced mail sender of template '{}'", templateName);
+                pooled.destroy();
+            });
+        } catch (IllegalStateException e) {
+            pooled.destroy();
+        }
+    }
+
+    /**
+     * 调整线程池大小和队列容量，先扩大最大线程数再扩大核心线程数（缩小时相反），队列中的任务不受影响
+     */
+    private void resizeExecutor(EmailThreadPoolProperties properties) {
+        if (properties.getMode() != this.threadPoolProperties.getMode()) {
+            log.warn("spring.mail.thread.mode changed from {} to {}, restart the application to apply it.", this.threadPoolProperties.getMode(), properties.getMode());
+        }
+        if (Objects.isNull(this.threadPoolExecutor)) {
+            return;
+        }
+        if (properties.getMaximumPoolSize() >= this.threadPoolExecutor.getMaximumPoolSize()) {
+            this.threadPoolExecutor.setMaximumPoolSize(properties.getMaximumPoolSize());
+            this.threadPoolExecutor.setCorePoolSize(properties.getCorePoolSize());
+        } else {
+            this.threadPoolExecutor.setCorePoolSize(properties.getCorePoolSize());
+            this.threadPoolExecutor.setMaximumPoolSize(properties.getMaximumPoolSize());
+        }
+        this.threadPoolExecutor.setKeepAliveTime(properties.getKeepAliveTime(), properties.getTimeUnit());
+        if (this.threadPoolExecutor.getQueue() instanceof BoundedPriorityBlockingQueue<Runnable> queue) {
+            queue.setCapacity(properties.getCapacity());
+        }
+    }
+
+    private static Map<String, Fingerprint> fingerprints(Map<String, MailProperties> propertiesMap, EmailTemplateProperties templateProperties,
+                                                         EmailThreadPoolProperties threadPoolProperties, EmailRecipientProperties recipientProperties) {
+        Map<String, Fingerprint> fingerprints = new HashMap<>(propertiesMap.size());
+        propertiesMap.forEach((templateName, properties) -> fingerprints.put(templateName,
+                Fingerprint.of(templateName, properties, templateProperties, threadPoolProperties, recipientProperties)));
+        return fingerprints;
+    }
+
+    private static Map<String, String> groupFingerprints(EmailTemplateProperties templateProperties) {
+        Map<String, String> fingerprints = new HashMap<>();
+        if (!CollectionUtils.isEmpty(templateProperties.getEmailGroups())) {
+            for (EmailGroupProperties group : templateProperties.getEmailGroups()) {
+                fingerprints.put(group.getGroupName(), group.toString());
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * 影响发送实例的配置，相同时沿用原发送实例
+     */
+    private record Fingerprint(String host, Integer port, String username, String password, String protocol, Charset defaultEncoding,
+                               Map<String, String> properties, String pool, String rateLimit,
+                               ThreadMode mode, Integer maxConcurrencyPerTemplate, boolean sendPartial) {
+
+        static Fingerprint of(String templateName, MailProperties properties, EmailTemplateProperties templateProperties,
+                              EmailThreadPoolProperties threadPoolProperties, EmailRecipientProperties recipientProperties) {
+            return new Fingerprint(properties.getHost(), properties.getPort(), properties.getUsername(), properties.getPassword(),
+                    properties.getProtocol(), properties.getDefaultEncoding(), new HashMap<>(properties.getProperties()),
+                    String.valueOf(templateProperties.getPoolProperties(templateName)), String.valueOf(templateProperties.getRateLimitProperties(templateName)),
+                    threadPoolProperties.getMode(), threadPoolProperties.getMaxConcurrencyPerTemplate(), recipientProperties.isSendPartial());
+        }
+    }
+}
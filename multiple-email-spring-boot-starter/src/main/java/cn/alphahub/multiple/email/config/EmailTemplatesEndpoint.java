@@ -0,0 +1,109 @@
+package cn.alphahub.multiple.email.config;
+
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.mail.javamail.JavaMailSender;
+
+/**
+ * 邮件模板端点
+ * <ul>
+ *     <li>{@code GET /actuator/emailtemplates}：当前生效的邮件模板、连接池状态和邮件模板组，不含密码</li>
+ *     <li>{@code POST /actuator/emailtemplates}：从{@code Environment}重新加载邮件模板配置，见{@link EmailTemplateReloader}</li>
+ * </ul>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Endpoint(id = "emailtemplates")
+public class EmailTemplatesEndpoint {
+    private final MailWrapper mailWrapper;
+    private final EmailTemplateReloader emailTemplateReloader;
+
+    public EmailTemplatesEndpoint(MailWrapper mailWrapper, EmailTemplateReloader emailTemplateReloader) {
+        this.mailWrapper = mailWrapper;
+        this.emailTemplateReloader = emailTemplateReloader;
+    }
+
+    /**
+     * 当前生效的邮件模板
+     *
+     * @return templates and groups
+     */
+    @ReadOperation
+    public TemplatesDescriptor templates() {
+        Map<String, TemplateDescriptor> templates = new TreeMap<>();
+        Map<String, JavaMailSender> senders = this.mailWrapper.getJavaMailSenderMap();
+        this.mailWrapper.getEmailPropertiesMap().forEach((name, properties) -> templates.put(name, describe(properties, senders.get(name))));
+        Map<String, Set<String>> groups = new TreeMap<>();
+        this.mailWrapper.getTemplateGroupMap().forEach((name, group) -> groups.put(name, memberNames(group)));
+        return new TemplatesDescriptor(templates, groups);
+    }
+
+    /**
+     * 重新加载邮件模板配置
+     *
+     * @return 新增、更新和删除的邮件模板
+     */
+    @WriteOperation
+    public ReloadDescriptor reload() {
+        EmailTemplatesReloadedEvent event = this.emailTemplateReloader.reload();
+        return new ReloadDescriptor(event.getAdded(), event.getUpdated(), event.getRemoved());
+    }
+
+    private static TemplateDescriptor describe(MailProperties properties, JavaMailSender sender) {
+        Integer idle = null;
+        Integer active = null;
+        if (sender instanceof PooledJavaMailSender pooled) {
+            idle = pooled.getIdleCount();
+            active = pooled.getActiveCount();
+        }
+        return new TemplateDescriptor(properties.getHost(), properties.getPort(), properties.getUsername(), properties.getProtocol(), idle, active);
+    }
+
+    private static Set<String> memberNames(TemplateGroup group) {
+        Set<String> names = new TreeSet<>();
+        group.getMembers().forEach(member -> names.add(member.getTemplateName()));
+        return names;
+    }
+
+    /**
+     * 邮件模板和邮件模板组
+     *
+     * @param templates 邮件模板名称到配置的Map
+     * @param groups    邮件模板组名称到成员的Map
+     */
+    public record TemplatesDescriptor(Map<String, TemplateDescriptor> templates, Map<String, Set<String>> groups) {
+    }
+
+    /**
+     * 单个邮件模板
+     *
+     * @param host              SMTP服务器
+     * @param port              端口
+     * @param username          用户名
+     * @param protocol          协议
+     * @param idleConnections   空闲连接数
+     * @param activeConnections 借出的连接数
+     */
+    public record TemplateDescriptor(String host, Integer port, String username, String protocol, Integer idleConnections, Integer activeConnections) {
+    }
+
+    /**
+     * 重新加载结果
+     *
+     * @param added   新增的邮件模板
+     * @param updated 配置变化、发送实例已替换的邮件模板
+     * @param removed 已删除的邮件模板
+     */
+    public record ReloadDescriptor(Set<String> added, Set<String> updated, Set<String> removed) {
+    }
+}
@@ -0,0 +1,73 @@
+package cn.alphahub.multiple.email.config;
+
+import java.util.Set;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 邮件模板配置重新加载完成事件
+ * <p>{@link MailWrapper}已切换到新配置后发布，缓存了邮件模板上下文的组件收到后应丢弃缓存。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class EmailTemplatesReloadedEvent extends ApplicationEvent {
+    private static final long serialVersionUID = 1L;
+    private final Set<String> added;
+    private final Set<String> updated;
+    private final Set<String> removed;
+
+    /**
+     * @param source  reloader
+     * @param added   新增的邮件模板
+     * @param updated 配置变化、发送实例已替换的邮件模板
+     * @param removed 已删除的邮件模板
+     */
+    public EmailTemplatesReloadedEvent(Object source, Set<String> added, Set<String> updated, Set<String> removed) {
+        super(source);
+        this.added = Set.copyOf(added);
+        this.updated = Set.copyOf(updated);
+        this.removed = Set.copyOf(removed);
+    }
+
+    /**
+     * 新增的邮件模板
+     *
+     * @return template names
+     */
+    public Set<String> getAdded() {
+        return this.added;
+    }
+
+    /**
+     * 配置变化、发送实例已替换的邮件模板
+     *
+     * @return template names
+     */
+    public Set<String> getUpdated() {
+        return this.updated;
+    }
+
+    /**
+     * 已删除的邮件模板
+     *
+     * @return template names
+     */
+    public Set<String> getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * 是否有邮件模板发生变化
+     *
+     * @return true if any template was added, updated or removed
+     */
+    public boolean hasChanges() {
+        return !this.added.isEmpty() || !this.updated.isEmpty() || !this.removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "EmailTemplatesReloadedEvent{added=" + this.added + ", updated=" + this.updated + ", removed=" + this.removed + "}";
+    }
+}
@@ -1,32 +1,96 @@
 package cn.alphahub.multiple.email.config;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import cn.alphahub.multiple.email.transport.SmtpRateLimiter;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.mail.MailProperties;
 import org.springframework.mail.javamail.JavaMailSender;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
  * Client Wrapper
+ * <p>
+ * 邮件模板配置、发送实例和邮件模板组保存在同一个不可变快照中，重新加载配置时整体替换，
+ * 同一次查询得到的发送实例和配置属性总是来自同一版本的配置。
  *
  * @author weasley
  * @version 1.0
  * @date 2022/7/15
  */
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class MailWrapper {
+public class MailWrapper implements DisposableBean {
+    /**
+     * current mail templates
+     */
+    private volatile Templates templates;
+
+    public MailWrapper() {
+        this(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    public MailWrapper(Map<String, MailProperties> emailPropertiesMap, Map<String, JavaMailSender> javaMailSenderMap) {
+        this(emailPropertiesMap, javaMailSenderMap, Collections.emptyMap());
+    }
+
+    public MailWrapper(Map<String, MailProperties> emailPropertiesMap, Map<String, JavaMailSender> javaMailSenderMap, Map<String, TemplateGroup> templateGroupMap) {
+        this.templates = new Templates(emailPropertiesMap, javaMailSenderMap, templateGroupMap);
+    }
+
     /**
      * email properties map
+     *
+     * @return email properties map
      */
-    private Map<String, MailProperties> emailPropertiesMap;
+    public Map<String, MailProperties> getEmailPropertiesMap() {
+        return this.templates.emailPropertiesMap();
+    }
+
     /**
      * java mail sender map
+     *
+     * @return java mail sender map
+     */
+    public Map<String, JavaMailSender> getJavaMailSenderMap() {
+        return this.templates.javaMailSenderMap();
+    }
+
+    /**
+     * mail template group map
+     *
+     * @return mail template group map
+     */
+    public Map<String, TemplateGroup> getTemplateGroupMap() {
+        return this.templates.templateGroupMap();
+    }
+
+    public synchronized void setEmailPropertiesMap(Map<String, MailProperties> emailPropertiesMap) {
+        Templates current = this.templates;
+        this.templates = new Templates(emailPropertiesMap, current.javaMailSenderMap(), current.templateGroupMap());
+    }
+
+    public synchronized void setJavaMailSenderMap(Map<String, JavaMailSender> javaMailSenderMap) {
+        Templates current = this.templates;
+        this.templates = new Templates(current.emailPropertiesMap(), javaMailSenderMap, current.templateGroupMap());
+    }
+
+    public synchronized void setTemplateGroupMap(Map<String, TemplateGroup> templateGroupMap) {
+        Templates current = this.templates;
+        this.templates = new Templates(current.emailPropertiesMap(), current.javaMailSenderMap(), templateGroupMap);
+    }
+
+    /**
+     * 整体替换邮件模板配置、发送实例和邮件模板组
+     * <p>替换后新的发送任务使用新配置；被替换的发送实例由调用方关闭。</p>
+     *
+     * @param emailPropertiesMap email properties map
+     * @param javaMailSenderMap  java mail sender map
+     * @param templateGroupMap   mail template group map
      */
-    private Map<String, JavaMailSender> javaMailSenderMap;
+    public synchronized void swap(Map<String, MailProperties> emailPropertiesMap, Map<String, JavaMailSender> javaMailSenderMap, Map<String, TemplateGroup> templateGroupMap) {
+        this.templates = new Templates(emailPropertiesMap, javaMailSenderMap, templateGroupMap);
+    }
 
     /**
      * get email properties
@@ -35,7 +99,7 @@ public class MailWrapper {
      * @return MailProperties
      */
     public MailProperties getMailProperties(String name) {
-        return this.emailPropertiesMap.get(name);
+        return this.templates.emailPropertiesMap().get(name);
     }
 
     /**
@@ -45,6 +109,67 @@ public class MailWrapper {
      * @return JavaMailSender
      */
     public JavaMailSender getMailSender(String name) {
-        return this.javaMailSenderMap.get(name);
+        return this.templates.javaMailSenderMap().get(name);
+    }
+
+    /**
+     * get mail template context
+     *
+     * @param name name
+     * @return EmailContext, null if the template does not exist
+     */
+    public EmailContext getContext(String name) {
+        Templates current = this.templates;
+        JavaMailSender mailSender = current.javaMailSenderMap().get(name);
+        if (mailSender == null) {
+            return null;
+        }
+        return new EmailContext(name, mailSender, current.emailPropertiesMap().get(name));
+    }
+
+    /**
+     * get mail template group
+     *
+     * @param name group name
+     * @return TemplateGroup, null if the group does not exist
+     */
+    public TemplateGroup getTemplateGroup(String name) {
+        return this.templates.templateGroupMap().get(name);
+    }
+
+    /**
+     * get rate limiter in front of the java mail sender
+     *
+     * @param name name
+     * @return SmtpRateLimiter, null if the template is not rate limited
+     */
+    public SmtpRateLimiter getRateLimiter(String name) {
+        if (this.getMailSender(name) instanceof PooledJavaMailSender sender) {
+            return sender.getRateLimiter();
+        }
+        return null;
+    }
+
+    /**
+     * close pooled smtp connections
+     */
+    @Override
+    public void destroy() throws Exception {
+        for (JavaMailSender sender : this.templates.javaMailSenderMap().values()) {
+            if (sender instanceof DisposableBean disposableBean) {
+                disposableBean.destroy();
+            }
+        }
+    }
+
+    /**
+     * 一个版本的邮件模板
+     *
+     * @param emailPropertiesMap email properties map
+     * @param javaMailSenderMap  java mail sender map
+     * @param templateGroupMap   mail template group map
+     */
+    private record Templates(Map<String, MailProperties> emailPropertiesMap, Map<String, JavaMailSender> javaMailSenderMap,
+                             Map<String, TemplateGroup> templateGroupMap) {
     }
 }
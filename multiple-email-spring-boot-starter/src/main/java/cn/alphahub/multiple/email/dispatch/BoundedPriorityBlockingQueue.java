@@ -0,0 +1,91 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界的优先级阻塞队列
+ * <p>
+ * {@link PriorityBlockingQueue}不限长度，用作{@link java.util.concurrent.ThreadPoolExecutor}的工作队列时线程池既不会扩容也不会拒绝任务。
+ * 此队列元素数达到{@code capacity}时{@link #offer(Object)}返回false，线程池与使用{@code LinkedBlockingQueue(capacity)}时一样
+ * 先扩容到最大线程数，再按拒绝策略处理，同时保留按优先级出队。
+ * <p>
+ * {@link #put(Object)}和{@link #add(Object)}在队列已满时抛出{@link IllegalStateException}，不会阻塞。
+ *
+ * @param <E> 元素类型
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-17
+ */
+public class BoundedPriorityBlockingQueue<E> extends PriorityBlockingQueue<E> {
+    private static final long serialVersionUID = 1L;
+    /**
+     * 保证容量检查和入队的原子性，出队只会让队列变短，不需要加锁
+     */
+    private final ReentrantLock offerLock = new ReentrantLock();
+    /**
+     * 队列容量，可由配置热加载修改
+     */
+    private volatile int capacity;
+
+    public BoundedPriorityBlockingQueue(int capacity, Comparator<? super E> comparator) {
+        super(Math.max(1, Math.min(capacity, 1024)), comparator);
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * 队列容量
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * 修改队列容量，已在队列中的元素不受影响
+     *
+     * @param capacity 新容量
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        this.offerLock.lock();
+        try {
+            if (this.size() >= this.capacity) {
+                return false;
+            }
+            return super.offer(e);
+        } finally {
+            this.offerLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return this.offer(e);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (!this.offer(e)) {
+            throw new IllegalStateException("Queue full");
+        }
+        return true;
+    }
+
+    @Override
+    public void put(E e) {
+        this.add(e);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, this.capacity - this.size());
+    }
+}
@@ -0,0 +1,112 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按发送能力请求数据的订阅者
+ * <p>
+ * 订阅时按执行器当前可用名额（不超过{@code maxInFlight}）请求邮件，此后每发送完成一封再请求一封，
+ * 上游发布的速度不会超过邮件发送的速度，也不会因执行器饱和而被拒绝。
+ * 可通过{@code JdkFlowAdapter}、{@code FlowAdapters}与Reactor、RxJava等Reactive Streams实现互通。
+ *
+ * @param <T> 邮件类型
+ * @param <R> 发送结果类型
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class DemandSubscriber<T, R> implements Flow.Subscriber<T> {
+    private final Function<? super T, CompletableFuture<R>> sender;
+    private final BiConsumer<? super T, ? super R> onResult;
+    private final IntSupplier available;
+    private final int maxInFlight;
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean upstreamDone;
+
+    /**
+     * @param sender      发送一封邮件，返回的future不应以异常结束
+     * @param onResult    每封邮件发送结束后回调
+     * @param available   执行器当前可用的名额
+     * @param maxInFlight 同时发送的最大邮件数
+     */
+    public DemandSubscriber(Function<? super T, CompletableFuture<R>> sender, BiConsumer<? super T, ? super R> onResult,
+                            IntSupplier available, int maxInFlight) {
+        this.sender = sender;
+        this.onResult = onResult;
+        this.available = available;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * 全部邮件发送结束后以发送数量完成，上游出错时以异常结束
+     *
+     * @return completion future
+     */
+    public CompletableFuture<Long> getCompletion() {
+        return this.completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (Objects.nonNull(this.subscription)) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(Math.max(1, Math.min(this.maxInFlight, this.available.getAsInt())));
+    }
+
+    @Override
+    public void onNext(T item) {
+        this.inFlight.incrementAndGet();
+        CompletableFuture<R> future;
+        try {
+            future = this.sender.apply(item);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, throwable) -> {
+            if (Objects.isNull(throwable)) {
+                try {
+                    this.onResult.accept(item, result);
+                } catch (RuntimeException e) {
+                    log.warn("Mail result callback failed", e);
+                }
+            } else {
+                log.warn("Mail send from publisher failed: {}", throwable.getMessage());
+            }
+            this.sent.incrementAndGet();
+            if (this.inFlight.decrementAndGet() == 0 && this.upstreamDone) {
+                this.completion.complete(this.sent.get());
+            } else if (!this.upstreamDone) {
+                this.subscription.request(1);
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.upstreamDone = true;
+        this.completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        this.upstreamDone = true;
+        if (this.inFlight.get() == 0) {
+            this.completion.complete(this.sent.get());
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.OverloadPolicy;
+import cn.alphahub.multiple.email.config.EmailConfig.ThreadMode;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 邮件发送任务准入控制
+ * <p>
+ * 提交到邮件发送执行器前先占用一个名额，任务结束后归还，执行器本身不会因队列已满而拒绝任务。
+ * 名额用尽时按{@code spring.mail.thread.overload-policy}处理：
+ * <ul>
+ *     <li>{@link OverloadPolicy#ABORT}：立即拒绝</li>
+ *     <li>{@link OverloadPolicy#WAIT}：调用线程最多等待{@code submit-timeout}，超时后拒绝</li>
+ *     <li>{@link OverloadPolicy#SPILL}：暂存到溢出队列，有名额归还时按先事务邮件、后批量邮件的顺序提交，溢出队列已满时拒绝</li>
+ * </ul>
+ * 溢出队列按{@link PrioritizedTask#COMPARATOR}排序，高优先级、截止时间早的任务先提交。
+ * 批量邮件({@link Lane#BULK})不能占用为事务邮件预留的{@code reserved-capacity}个名额，大批量发送不会让验证码等事务邮件排不上队。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class EmailDispatcher {
+    private final Executor executor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = this.lock.newCondition();
+    private final PriorityQueue<Runnable> transactionalSpill = new PriorityQueue<>(PrioritizedTask.COMPARATOR);
+    private final PriorityQueue<Runnable> bulkSpill = new PriorityQueue<>(PrioritizedTask.COMPARATOR);
+    private int inFlight;
+    private int bulkInFlight;
+    // 以下配置可由resize修改，均在lock内读写
+    private OverloadPolicy overloadPolicy;
+    private long submitTimeoutNanos;
+    private int capacity;
+    private int bulkCapacity;
+    private int spillCapacity;
+
+    public EmailDispatcher(EmailThreadPoolProperties threadPoolProperties, Executor executor) {
+        this.executor = executor;
+        this.configure(threadPoolProperties);
+    }
+
+    /**
+     * 按新的线程池配置调整名额和过载策略
+     * <p>
+     * 已提交和溢出队列中的任务不受影响：名额增加时立即提交溢出队列中的任务并唤醒等待名额的线程；
+     * 名额减少时已提交的任务继续执行，结束后才按新的名额接收任务。
+     *
+     * @param threadPoolProperties thread pool properties
+     */
+    public void resize(EmailThreadPoolProperties threadPoolProperties) {
+        this.lock.lock();
+        try {
+            this.configure(threadPoolProperties);
+            this.released.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        this.dispatchSpilled();
+    }
+
+    private void configure(EmailThreadPoolProperties threadPoolProperties) {
+        this.overloadPolicy = threadPoolProperties.getOverloadPolicy();
+        this.submitTimeoutNanos = Objects.requireNonNullElse(threadPoolProperties.getSubmitTimeout(), Duration.ZERO).toNanos();
+        this.capacity = capacity(threadPoolProperties);
+        this.bulkCapacity = Math.max(1, this.capacity - Math.max(0, threadPoolProperties.getReservedCapacity()));
+        this.spillCapacity = Math.max(0, threadPoolProperties.getSpillCapacity());
+    }
+
+    /**
+     * 同时提交到执行器的最大任务数
+     * <p>平台线程池为最大线程数加队列容量；虚拟线程未配置{@code max-pending-tasks}时不限制。</p>
+     *
+     * @param properties thread pool properties
+     * @return capacity
+     */
+    private static int capacity(EmailThreadPoolProperties properties) {
+        if (Objects.nonNull(properties.getMaxPendingTasks())) {
+            return Math.max(1, properties.getMaxPendingTasks());
+        }
+        if (properties.getMode() == ThreadMode.VIRTUAL) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(1, properties.getMaximumPoolSize() + properties.getCapacity());
+    }
+
+    /**
+     * 按过载策略提交任务
+     *
+     * @param task 发送任务
+     * @param lane 任务通道
+     * @throws RejectedExecutionException 名额用尽且按过载策略拒绝
+     */
+    public void execute(Runnable task, Lane lane) {
+        this.lock.lock();
+        try {
+            if (!this.tryAcquire(lane)) {
+                switch (this.overloadPolicy) {
+                    case WAIT -> this.awaitPermit(lane);
+                    case SPILL -> {
+                        this.spill(task, lane);
+                        return;
+                    }
+                    default -> throw this.saturated(lane);
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.dispatch(task, lane);
+    }
+
+    /**
+     * 提交到期的定时任务，不阻塞调用线程
+     * <p>{@link OverloadPolicy#WAIT}时改为进入溢出队列，避免阻塞时间轮线程。</p>
+     *
+     * @param task 发送任务
+     * @param lane 任务通道
+     * @throws RejectedExecutionException 名额用尽且按过载策略拒绝
+     */
+    public void executeDue(Runnable task, Lane lane) {
+        this.lock.lock();
+        try {
+            if (!this.tryAcquire(lane)) {
+                if (this.overloadPolicy == OverloadPolicy.ABORT) {
+                    throw this.saturated(lane);
+                }
+                this.spill(task, lane);
+                return;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.dispatch(task, lane);
+    }
+
+    /**
+     * 尝试提交任务，名额用尽时不等待也不进入溢出队列
+     *
+     * @param task 发送任务
+     * @param lane 任务通道
+     * @return 是否已提交
+     */
+    public boolean tryExecute(Runnable task, Lane lane) {
+        this.lock.lock();
+        try {
+            if (!this.tryAcquire(lane)) {
+                return false;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            this.dispatch(task, lane);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 通道当前可用的名额
+     *
+     * @param lane 任务通道
+     * @return 可用名额，溢出队列中有等待的任务时为0
+     */
+    public int available(Lane lane) {
+        this.lock.lock();
+        try {
+            if (!this.transactionalSpill.isEmpty() || (lane == Lane.BULK && !this.bulkSpill.isEmpty())) {
+                return 0;
+            }
+            int free = this.capacity - this.inFlight;
+            if (lane == Lane.BULK) {
+                free = Math.min(free, this.bulkCapacity - this.bulkInFlight);
+            }
+            return Math.max(0, free);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 溢出队列中等待的任务数
+     *
+     * @return spilled tasks
+     */
+    public int getSpilled() {
+        this.lock.lock();
+        try {
+            return this.transactionalSpill.size() + this.bulkSpill.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean tryAcquire(Lane lane) {
+        // 溢出队列中有等待的任务时新任务不插队
+        if (this.inFlight >= this.capacity || !this.transactionalSpill.isEmpty()) {
+            return false;
+        }
+        if (lane == Lane.BULK) {
+            if (this.bulkInFlight >= this.bulkCapacity || !this.bulkSpill.isEmpty()) {
+                return false;
+            }
+            this.bulkInFlight++;
+        }
+        this.inFlight++;
+        return true;
+    }
+
+    private void awaitPermit(Lane lane) {
+        long remaining = this.submitTimeoutNanos;
+        try {
+            while (!this.tryAcquire(lane)) {
+                if (remaining <= 0L) {
+                    throw this.saturated(lane);
+                }
+                remaining = this.released.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for email executor capacity", e);
+        }
+    }
+
+    private void spill(Runnable task, Lane lane) {
+        if (this.transactionalSpill.size() + this.bulkSpill.size() >= this.spillCapacity) {
+            throw this.saturated(lane);
+        }
+        (lane == Lane.BULK ? this.bulkSpill : this.transactionalSpill).offer(task);
+    }
+
+    private RejectedExecutionException saturated(Lane lane) {
+        return new RejectedExecutionException("Email executor is saturated (" + lane + " lane, in-flight " + this.inFlight + "/" + this.capacity
+                + ", spilled " + (this.transactionalSpill.size() + this.bulkSpill.size()) + "/" + this.spillCapacity + ", policy " + this.overloadPolicy + ")");
+    }
+
+    /**
+     * 提交已占用名额的任务，任务结束后归还名额
+     *
+     * @param task 发送任务
+     * @param lane 任务通道
+     */
+    private void dispatch(Runnable task, Lane lane) {
+        try {
+            this.executor.execute(this.releasing(task, lane));
+        } catch (RejectedExecutionException e) {
+            this.release(lane);
+            throw e;
+        }
+    }
+
+    private Runnable releasing(Runnable task, Lane lane) {
+        return PrioritizedTask.inherit(task, () -> {
+            try {
+                task.run();
+            } finally {
+                this.release(lane);
+            }
+        });
+    }
+
+    /**
+     * 归还名额，并把溢出队列中的任务提交到执行器
+     *
+     * @param lane 任务通道
+     */
+    private void release(Lane lane) {
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            if (lane == Lane.BULK) {
+                this.bulkInFlight--;
+            }
+            this.released.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        this.dispatchSpilled();
+    }
+
+    /**
+     * 在名额允许的范围内按先事务邮件、后批量邮件的顺序提交溢出队列中的任务
+     * <p>执行器拒绝溢出的任务时（如执行器已关闭）在当前线程执行，保证任务的future总会结束。</p>
+     */
+    private void dispatchSpilled() {
+        while (true) {
+            Runnable next;
+            Lane nextLane;
+            this.lock.lock();
+            try {
+                if (!this.transactionalSpill.isEmpty() && this.inFlight < this.capacity) {
+                    next = this.transactionalSpill.poll();
+                    nextLane = Lane.TRANSACTIONAL;
+                } else if (this.transactionalSpill.isEmpty() && !this.bulkSpill.isEmpty()
+                        && this.inFlight < this.capacity && this.bulkInFlight < this.bulkCapacity) {
+                    next = this.bulkSpill.poll();
+                    nextLane = Lane.BULK;
+                    this.bulkInFlight++;
+                } else {
+                    return;
+                }
+                this.inFlight++;
+            } finally {
+                this.lock.unlock();
+            }
+            try {
+                this.executor.execute(this.releasing(next, nextLane));
+            } catch (RejectedExecutionException e) {
+                log.warn("Email executor rejected a spilled task, running it in the current thread: {}", e.getMessage());
+                try {
+                    next.run();
+                } catch (RuntimeException ex) {
+                    log.error("Spilled email task failed", ex);
+                }
+                this.lock.lock();
+                try {
+                    this.inFlight--;
+                    if (nextLane == Lane.BULK) {
+                        this.bulkInFlight--;
+                    }
+                    this.released.signalAll();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 任务通道
+     */
+    public enum Lane {
+        /**
+         * 单封发送的事务邮件，可以使用预留名额
+         */
+        TRANSACTIONAL,
+        /**
+         * 批量发送、邮件合并等批量邮件
+         */
+        BULK
+    }
+}
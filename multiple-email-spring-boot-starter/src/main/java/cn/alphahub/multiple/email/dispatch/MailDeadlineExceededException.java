@@ -0,0 +1,18 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import org.springframework.mail.MailSendException;
+
+/**
+ * 邮件在截止时间前未能开始发送，已丢弃
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class MailDeadlineExceededException extends MailSendException {
+    private static final long serialVersionUID = 1L;
+
+    public MailDeadlineExceededException(String msg) {
+        super(msg);
+    }
+}
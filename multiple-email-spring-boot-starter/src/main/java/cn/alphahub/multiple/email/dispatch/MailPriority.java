@@ -0,0 +1,28 @@
+package cn.alphahub.multiple.email.dispatch;
+
+/**
+ * 邮件优先级
+ * <p>邮件线程池队列和溢出队列按优先级取出任务，同一优先级内截止时间早的先发送，其余按提交顺序。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public enum MailPriority {
+    /**
+     * 验证码、登录提醒等必须立即送达的邮件
+     */
+    CRITICAL,
+    /**
+     * 订单、账单等事务邮件
+     */
+    HIGH,
+    /**
+     * 默认优先级
+     */
+    NORMAL,
+    /**
+     * 营销、通知等批量邮件，批量发送和邮件合并默认使用
+     */
+    LOW
+}
@@ -0,0 +1,78 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带优先级的发送任务
+ * <p>按优先级、截止时间、提交顺序排序，用于邮件线程池的{@link java.util.concurrent.PriorityBlockingQueue}和溢出队列。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public final class PrioritizedTask implements Runnable {
+    /**
+     * 任务排序规则，不是{@code PrioritizedTask}的任务视为{@link MailPriority#NORMAL}
+     */
+    public static final Comparator<Runnable> COMPARATOR = Comparator
+            .comparingInt(PrioritizedTask::priorityOf)
+            .thenComparingLong(PrioritizedTask::deadlineOf)
+            .thenComparingLong(PrioritizedTask::sequenceOf);
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private final Runnable delegate;
+    private final MailPriority priority;
+    private final long deadlineMillis;
+    private final long sequence;
+
+    private PrioritizedTask(Runnable delegate, MailPriority priority, long deadlineMillis, long sequence) {
+        this.delegate = delegate;
+        this.priority = priority;
+        this.deadlineMillis = deadlineMillis;
+        this.sequence = sequence;
+    }
+
+    /**
+     * 创建带优先级的任务
+     *
+     * @param delegate       发送任务
+     * @param priority       Nullable, 优先级，为null时为{@link MailPriority#NORMAL}
+     * @param deadlineMillis 截止时间（epoch毫秒），没有截止时间为{@link Long#MAX_VALUE}
+     * @return prioritized task
+     */
+    public static PrioritizedTask of(Runnable delegate, MailPriority priority, long deadlineMillis) {
+        return new PrioritizedTask(delegate, Objects.requireNonNullElse(priority, MailPriority.NORMAL), deadlineMillis, SEQUENCE.getAndIncrement());
+    }
+
+    /**
+     * 用新的任务体包装，保留原任务的排序信息
+     *
+     * @param task     原任务
+     * @param delegate 新的任务体
+     * @return 与原任务排序相同的任务
+     */
+    public static Runnable inherit(Runnable task, Runnable delegate) {
+        if (task instanceof PrioritizedTask prioritized) {
+            return new PrioritizedTask(delegate, prioritized.priority, prioritized.deadlineMillis, prioritized.sequence);
+        }
+        return delegate;
+    }
+
+    @Override
+    public void run() {
+        this.delegate.run();
+    }
+
+    private static int priorityOf(Runnable task) {
+        return task instanceof PrioritizedTask prioritized ? prioritized.priority.ordinal() : MailPriority.NORMAL.ordinal();
+    }
+
+    private static long deadlineOf(Runnable task) {
+        return task instanceof PrioritizedTask prioritized ? prioritized.deadlineMillis : Long.MAX_VALUE;
+    }
+
+    private static long sequenceOf(Runnable task) {
+        return task instanceof PrioritizedTask prioritized ? prioritized.sequence : Long.MAX_VALUE;
+    }
+}
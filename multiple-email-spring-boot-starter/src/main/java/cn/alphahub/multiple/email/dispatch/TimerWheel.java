@@ -0,0 +1,230 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+
+/**
+ * 定时发送使用的时间轮
+ * <p>
+ * 哈希时间轮：{@code wheelSize}个槽位，每{@code tick}前进一格，定时任务按到期时间放入对应槽位并记录剩余圈数，
+ * 添加任务是O(1)，数万封定时邮件也只需要一个后台线程，不占用邮件线程池的线程和名额。
+ * 到期精度为一个{@code tick}，到期的任务在时间轮线程中执行，任务本身应只做提交等轻量操作。
+ * 后台线程在第一次添加任务时启动；停止时尚未到期的任务不再执行，只调用其取消回调。
+ * 槽位只由后台线程读写，停止时由后台线程在退出前取消剩余任务；停止后或与停止并发添加的任务要么被拒绝，要么被取消，不会悬空。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class TimerWheel implements DisposableBean {
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<Timeout>[] buckets;
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private final Object startLock = new Object();
+    private volatile Thread worker;
+    private volatile boolean stopped;
+    private long tick;
+
+    /**
+     * @param tick      时间轮前进一格的时间
+     * @param wheelSize 槽位数量，向上取整为2的幂
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(Duration tick, int wheelSize) {
+        this.tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), tick.toNanos());
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.mask = size - 1;
+        this.buckets = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[size];
+        for (int i = 0; i < size; i++) {
+            this.buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * 在指定时间执行任务，时间已过时在下一格执行
+     *
+     * @param due  到期时间
+     * @param task 任务
+     * @throws IllegalStateException 时间轮已停止
+     */
+    public void schedule(Instant due, Runnable task) {
+        this.schedule(due, task, null);
+    }
+
+    /**
+     * 在指定时间执行任务，时间已过时在下一格执行；时间轮在到期前停止时不执行任务，改为调用取消回调
+     *
+     * @param due      到期时间
+     * @param task     任务
+     * @param onCancel Nullable, 取消回调，用于结束提交方的future
+     * @throws IllegalStateException 时间轮已停止
+     */
+    public void schedule(Instant due, Runnable task, @Nullable Runnable onCancel) {
+        if (this.stopped) {
+            throw new IllegalStateException("Timer wheel is stopped");
+        }
+        long delayNanos = Math.max(0L, Duration.between(Instant.now(), due).toNanos());
+        Timeout timeout = new Timeout(System.nanoTime() + delayNanos - this.startNanos, task, onCancel);
+        this.pending.incrementAndGet();
+        this.added.offer(timeout);
+        // 与停止并发：任务若未被停止时的清理取走，由这里撤回并拒绝；已被取走的任务会调用取消回调
+        if (this.stopped && this.added.remove(timeout)) {
+            this.pending.decrementAndGet();
+            throw new IllegalStateException("Timer wheel is stopped");
+        }
+        this.start();
+    }
+
+    /**
+     * 等待到期的任务数
+     *
+     * @return pending timeouts
+     */
+    public int getPending() {
+        return this.pending.get();
+    }
+
+    private void start() {
+        if (this.worker != null) {
+            return;
+        }
+        synchronized (this.startLock) {
+            if (this.worker == null && !this.stopped) {
+                Thread thread = new Thread(this::work, "multi-email-timer-wheel");
+                thread.setDaemon(true);
+                thread.start();
+                this.worker = thread;
+            }
+        }
+    }
+
+    private void work() {
+        try {
+            while (!this.stopped) {
+                long deadline = (this.tick + 1) * this.tickNanos;
+                long sleepNanos;
+                while (!this.stopped && (sleepNanos = deadline - (System.nanoTime() - this.startNanos)) > 0) {
+                    LockSupport.parkNanos(this, sleepNanos);
+                }
+                if (this.stopped) {
+                    return;
+                }
+                this.transferAdded();
+                this.expire(this.buckets[(int) (this.tick & this.mask)]);
+                this.tick++;
+            }
+        } finally {
+            this.cancelRemaining();
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = this.added.poll()) != null) {
+            long dueTick = Math.max(this.tick, (timeout.dueNanos + this.tickNanos - 1) / this.tickNanos);
+            timeout.rounds = (dueTick - this.tick) / this.buckets.length;
+            this.buckets[(int) (dueTick & this.mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                continue;
+            }
+            iterator.remove();
+            this.pending.decrementAndGet();
+            run(timeout.task);
+        }
+    }
+
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Scheduled email task failed", e);
+        }
+    }
+
+    /**
+     * 停止时间轮，尚未到期的任务不再执行：定时发送时间未到的邮件不会在应用关闭时提前发出，
+     * 改为调用取消回调，保证提交方的future总会结束
+     * <p>后台线程退出前取消剩余任务；后台线程正在执行到期任务、5秒内未退出时不等待，剩余任务在其退出时取消。</p>
+     */
+    @Override
+    public void destroy() throws Exception {
+        Thread thread;
+        synchronized (this.startLock) {
+            this.stopped = true;
+            thread = this.worker;
+        }
+        if (thread == null) {
+            // 后台线程从未启动，槽位为空，只需取消刚添加的任务
+            this.cancelRemaining();
+            return;
+        }
+        LockSupport.unpark(thread);
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        if (thread.isAlive()) {
+            log.warn("Timer wheel thread did not stop within 5s, pending scheduled emails are cancelled when it exits.");
+        }
+    }
+
+    /**
+     * 取消尚未到期的任务，只在后台线程退出时或后台线程从未启动时调用
+     */
+    private void cancelRemaining() {
+        List<Timeout> remaining = new ArrayList<>();
+        Timeout timeout;
+        while ((timeout = this.added.poll()) != null) {
+            remaining.add(timeout);
+        }
+        for (ArrayDeque<Timeout> bucket : this.buckets) {
+            remaining.addAll(bucket);
+            bucket.clear();
+        }
+        if (!remaining.isEmpty()) {
+            log.warn("Timer wheel stopped with {} scheduled emails pending, cancelling them.", remaining.size());
+        }
+        this.pending.addAndGet(-remaining.size());
+        for (Timeout cancelled : remaining) {
+            if (cancelled.onCancel != null) {
+                run(cancelled.onCancel);
+            }
+        }
+    }
+
+    /**
+     * 定时任务
+     */
+    private static final class Timeout {
+        private final long dueNanos;
+        private final Runnable task;
+        private final Runnable onCancel;
+        private long rounds;
+
+        private Timeout(long dueNanos, Runnable task, @Nullable Runnable onCancel) {
+            this.dueNanos = dueNanos;
+            this.task = task;
+            this.onCancel = onCancel;
+        }
+    }
+}
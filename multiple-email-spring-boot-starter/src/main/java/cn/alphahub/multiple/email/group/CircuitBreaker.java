@@ -0,0 +1,77 @@
+package cn.alphahub.multiple.email.group;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 邮件模板熔断器
+ * <p>
+ * 连续失败{@code failure-threshold}次后熔断，熔断期间该邮件模板不参与选择；
+ * 熔断{@code open-duration}后放行一次试探发送，成功则恢复，失败则继续熔断。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAtNanos = new AtomicLong(-1L);
+    private final AtomicLong trialAtNanos = new AtomicLong(-1L);
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * 是否允许发送，熔断到期后只放行一次试探
+     *
+     * @return true if a send may be attempted
+     */
+    public boolean tryAcquire() {
+        long openedAt = this.openedAtNanos.get();
+        if (openedAt < 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (now - openedAt < this.openNanos) {
+            return false;
+        }
+        long trialAt = this.trialAtNanos.get();
+        if (trialAt >= 0 && now - trialAt < this.openNanos) {
+            return false;
+        }
+        return this.trialAtNanos.compareAndSet(trialAt, now);
+    }
+
+    /**
+     * 是否处于熔断状态
+     *
+     * @return true if open
+     */
+    public boolean isOpen() {
+        return this.openedAtNanos.get() >= 0;
+    }
+
+    /**
+     * 发送成功
+     */
+    public void onSuccess() {
+        this.consecutiveFailures.set(0);
+        this.openedAtNanos.set(-1L);
+        this.trialAtNanos.set(-1L);
+    }
+
+    /**
+     * 发送失败
+     */
+    public void onFailure() {
+        if (this.consecutiveFailures.incrementAndGet() >= this.failureThreshold) {
+            this.openedAtNanos.set(System.nanoTime());
+            this.trialAtNanos.set(-1L);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package cn.alphahub.multiple.email.group;
+
+import cn.alphahub.multiple.email.config.EmailConfig.LoadBalanceStrategy;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+/**
+ * 邮件模板组
+ * <p>
+ * 把多个邮件模板（多个发件账号）组成一组，按加权轮询或最少在途请求分配发送流量，
+ * 单个账号连接失败、认证失败或被服务商限流时由调用方切换到组内下一个邮件模板，连续失败的邮件模板由熔断器暂时剔除。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class TemplateGroup {
+    /**
+     * 邮件模板组名称
+     */
+    @Getter
+    private final String groupName;
+    /**
+     * 负载均衡策略
+     */
+    @Getter
+    private final LoadBalanceStrategy strategy;
+    /**
+     * 组成员
+     */
+    @Getter
+    private final List<Member> members;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public TemplateGroup(String groupName, LoadBalanceStrategy strategy, List<Member> members) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("Mail template group '" + groupName + "' has no members");
+        }
+        this.groupName = groupName;
+        this.strategy = strategy;
+        this.members = List.copyOf(members);
+    }
+
+    /**
+     * 选择一个邮件模板
+     * <p>熔断到期的成员优先获得一次试探机会，其余流量在未熔断的成员间分配。</p>
+     *
+     * @param excluded 本次发送已尝试过的邮件模板名称
+     * @return Nullable, 没有可用成员时返回null
+     */
+    @Nullable
+    public Member select(Collection<String> excluded) {
+        for (Member member : this.members) {
+            if (member.circuitBreaker.isOpen() && !excluded.contains(member.templateName) && member.circuitBreaker.tryAcquire()) {
+                return member;
+            }
+        }
+        return this.strategy == LoadBalanceStrategy.LEAST_IN_FLIGHT ? this.selectLeastInFlight(excluded) : this.selectWeightedRoundRobin(excluded);
+    }
+
+    /**
+     * 平滑加权轮询
+     *
+     * @param excluded 已尝试过的邮件模板名称
+     * @return Nullable, selected member
+     */
+    @Nullable
+    private Member selectWeightedRoundRobin(Collection<String> excluded) {
+        this.lock.lock();
+        try {
+            Member best = null;
+            int totalWeight = 0;
+            for (Member member : this.members) {
+                if (member.circuitBreaker.isOpen() || excluded.contains(member.templateName)) {
+                    continue;
+                }
+                member.currentWeight += member.weight;
+                totalWeight += member.weight;
+                if (best == null || member.currentWeight > best.currentWeight) {
+                    best = member;
+                }
+            }
+            if (best != null) {
+                best.currentWeight -= totalWeight;
+            }
+            return best;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 在途请求数与权重之比最小的成员
+     *
+     * @param excluded 已尝试过的邮件模板名称
+     * @return Nullable, selected member
+     */
+    @Nullable
+    private Member selectLeastInFlight(Collection<String> excluded) {
+        Member best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (Member member : this.members) {
+            if (member.circuitBreaker.isOpen() || excluded.contains(member.templateName)) {
+                continue;
+            }
+            double load = (member.inFlight.get() + 1) / (double) member.weight;
+            if (load < bestLoad) {
+                best = member;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 邮件模板组成员
+     */
+    public static class Member {
+        /**
+         * 邮件模板名称
+         */
+        @Getter
+        private final String templateName;
+        /**
+         * 权重
+         */
+        @Getter
+        private final int weight;
+        /**
+         * 熔断器
+         */
+        @Getter
+        private final CircuitBreaker circuitBreaker;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private int currentWeight;
+
+        public Member(String templateName, int weight, CircuitBreaker circuitBreaker) {
+            this.templateName = templateName;
+            this.weight = Math.max(1, weight);
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        /**
+         * 在途请求数
+         *
+         * @return in-flight count
+         */
+        public int getInFlight() {
+            return this.inFlight.get();
+        }
+
+        /**
+         * 开始发送
+         */
+        public void begin() {
+            this.inFlight.incrementAndGet();
+        }
+
+        /**
+         * 发送结束
+         *
+         * @param healthy 邮件模板是否可用：发送成功或失败原因与账号无关
+         */
+        public void end(boolean healthy) {
+            this.inFlight.decrementAndGet();
+            if (healthy) {
+                this.circuitBreaker.onSuccess();
+            } else {
+                this.circuitBreaker.onFailure();
+            }
+        }
+    }
+}
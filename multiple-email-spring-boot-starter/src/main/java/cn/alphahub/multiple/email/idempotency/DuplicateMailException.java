@@ -0,0 +1,18 @@
+package cn.alphahub.multiple.email.idempotency;
+
+import org.springframework.mail.MailSendException;
+
+/**
+ * 幂等键已被集群中的其他节点使用，本节点没有原始发送结果，邮件未发送
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class DuplicateMailException extends MailSendException {
+    private static final long serialVersionUID = 1L;
+
+    public DuplicateMailException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,509 @@
+package cn.alphahub.multiple.email.idempotency;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.cluster.ClusterCoordinator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+
+/**
+ * 幂等发送去重索引
+ * <p>
+ * 客户端超时重试同一请求时，携带相同幂等键的邮件只发送一次，重复请求直接得到第一次发送的结果，不再访问SMTP服务器；
+ * 第一次发送仍在进行时，重复请求等待同一个结果。发送失败的键被移除，客户端可以用同一个键重试。
+ * <p>
+ * 索引按时间分为{@code generations}代，每代一张开放寻址哈希表，只保存键的128位摘要（SHA-256前16字节）和发送结果，
+ * 不保存键字符串，也没有逐条目的节点对象：
+ * <ul>
+ *     <li>每经过{@code window / generations}开始新的一代，最老的一代在其结束{@code window}后整体丢弃，键至少保留{@code window}</li>
+ *     <li>每代最多保存{@code max-keys / generations}个键，写满时提前开始新的一代，超出总量时最老的一代被提前丢弃</li>
+ *     <li>配置了目录时每代对应一个追加写的日志文件，记录发送成功的结果，重启后加载未过期的代；整代丢弃时删除文件</li>
+ * </ul>
+ * 配置了{@link ClusterCoordinator}时，本节点没有记录的键还需在集群内标记，已被其他节点标记的键以{@link DuplicateMailException}拒绝。
+ * 幂等键在所有调用方之间共享，调用方应自行加上用户、业务等前缀避免不同调用方的键冲突。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class IdempotencyIndex implements DisposableBean {
+    /**
+     * 不去重，幂等键被忽略
+     */
+    public static final IdempotencyIndex NONE = new IdempotencyIndex();
+
+    /**
+     * 集群幂等键前缀
+     */
+    private static final String CLUSTER_KEY_PREFIX = "idempotency:";
+    private static final String JOURNAL_SUFFIX = ".idx";
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * 发送失败后被移除的键
+     */
+    private static final Object REMOVED = new Object();
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final boolean enabled;
+    private final Duration window;
+    private final long windowMillis;
+    private final long sliceMillis;
+    private final int generationCount;
+    private final int maxPerGeneration;
+    private final Path directory;
+    private final ClusterCoordinator coordinator;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 从新到老排列，第一个为当前写入的一代
+     */
+    private final ArrayDeque<Generation> generations = new ArrayDeque<>();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private IdempotencyIndex() {
+        this.enabled = false;
+        this.window = Duration.ZERO;
+        this.windowMillis = 0L;
+        this.sliceMillis = 0L;
+        this.generationCount = 0;
+        this.maxPerGeneration = 0;
+        this.directory = null;
+        this.coordinator = null;
+    }
+
+    /**
+     * @param window      键的保留时间
+     * @param maxKeys     最多保存的键数量
+     * @param generations 分代数量，越多过期键释放得越及时，查找时需检查的表也越多
+     * @param directory   Nullable, 日志目录，为空时不持久化
+     * @param coordinator Nullable, 集群协调，为空时只在本节点去重
+     * @throws IOException 读取日志目录失败
+     */
+    public IdempotencyIndex(Duration window, int maxKeys, int generations, @Nullable Path directory, @Nullable ClusterCoordinator coordinator) throws IOException {
+        this.enabled = true;
+        this.window = window;
+        this.windowMillis = Math.max(1L, window.toMillis());
+        this.generationCount = Math.max(1, generations);
+        this.sliceMillis = Math.max(1L, this.windowMillis / this.generationCount);
+        this.maxPerGeneration = Math.max(INITIAL_CAPACITY / 2, maxKeys / this.generationCount);
+        this.directory = Objects.nonNull(directory) ? Files.createDirectories(directory) : null;
+        this.coordinator = coordinator;
+        this.load(System.currentTimeMillis());
+    }
+
+    /**
+     * 按幂等键去重发送
+     *
+     * @param key  Nullable, 幂等键，为空时直接发送
+     * @param send 发送邮件，返回null表示未被接受（执行器饱和）
+     * @return 第一次发送时为{@code send}返回的future；重复请求时为第一次发送结果的副本，取消副本不影响第一次发送
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<SendResult> deduplicate(@Nullable String key, Supplier<CompletableFuture<SendResult>> send) {
+        if (!this.enabled || StringUtils.isEmpty(key)) {
+            return send.get();
+        }
+        byte[] digest = SHA_256.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        long hi = buffer.getLong(0);
+        // 全0表示空槽
+        long lo = buffer.getLong(Long.BYTES) | (hi == 0L ? 1L : 0L);
+
+        CompletableFuture<SendResult> placeholder = new CompletableFuture<>();
+        Generation generation;
+        this.lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            this.rotate(now);
+            for (Generation g : this.generations) {
+                int index = g.find(hi, lo);
+                if (index >= 0) {
+                    this.duplicates.increment();
+                    Object value = g.values[index];
+                    return value instanceof SendResult result ? CompletableFuture.completedFuture(result) : ((CompletableFuture<SendResult>) value).copy();
+                }
+            }
+            this.misses.increment();
+            Generation current = this.generations.getFirst();
+            generation = current.size >= this.maxPerGeneration ? this.startGeneration(now) : current;
+            generation.put(hi, lo, placeholder);
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (Objects.nonNull(this.coordinator) && !this.markInCluster(key)) {
+            DuplicateMailException duplicate = new DuplicateMailException("Idempotency key '" + key + "' has been used on another node");
+            this.remove(generation, hi, lo);
+            this.duplicates.increment();
+            placeholder.completeExceptionally(duplicate);
+            return CompletableFuture.failedFuture(duplicate);
+        }
+        CompletableFuture<SendResult> future;
+        try {
+            future = send.get();
+        } catch (RuntimeException e) {
+            this.release(generation, hi, lo, key);
+            placeholder.completeExceptionally(e);
+            throw e;
+        }
+        if (Objects.isNull(future)) {
+            this.release(generation, hi, lo, key);
+            placeholder.completeExceptionally(new RejectedExecutionException("Mail with idempotency key '" + key + "' was not accepted"));
+            return null;
+        }
+        future.whenComplete((result, throwable) -> {
+            if (Objects.isNull(throwable)) {
+                this.store(generation, hi, lo, result);
+                placeholder.complete(result);
+            } else {
+                this.release(generation, hi, lo, key);
+                placeholder.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 保存的键数量，包括发送中的键
+     *
+     * @return key count
+     */
+    public long getKeyCount() {
+        this.lock.lock();
+        try {
+            long count = 0L;
+            for (Generation generation : this.generations) {
+                count += generation.live;
+            }
+            return count;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 命中已有幂等键的次数
+     *
+     * @return duplicate count
+     */
+    public long getDuplicateCount() {
+        return this.duplicates.sum();
+    }
+
+    /**
+     * 新幂等键的次数
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * 在集群内标记幂等键，协调存储不可用时放行
+     */
+    private boolean markInCluster(String key) {
+        try {
+            return this.coordinator.markIfAbsent(CLUSTER_KEY_PREFIX + key, this.window);
+        } catch (RuntimeException e) {
+            log.warn("Failed to mark idempotency key '{}' in cluster, deduplicating on this node only: {}", key, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * 发送失败或未被接受，移除幂等键，客户端可以用同一个键重试
+     */
+    private void release(Generation generation, long hi, long lo, String key) {
+        this.remove(generation, hi, lo);
+        if (Objects.nonNull(this.coordinator)) {
+            try {
+                this.coordinator.unmark(CLUSTER_KEY_PREFIX + key);
+            } catch (RuntimeException e) {
+                log.warn("Failed to unmark idempotency key '{}' in cluster: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    private void remove(Generation generation, long hi, long lo) {
+        this.lock.lock();
+        try {
+            int index = generation.find(hi, lo);
+            if (index >= 0) {
+                generation.values[index] = REMOVED;
+                generation.live--;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 保存发送结果，所在的一代已被丢弃时忽略；日志在索引锁外写入，不阻塞其他请求的去重
+     */
+    private void store(Generation generation, long hi, long lo, SendResult result) {
+        this.lock.lock();
+        try {
+            int index = generation.find(hi, lo);
+            if (index < 0 || generation.closed) {
+                return;
+            }
+            generation.values[index] = result;
+        } finally {
+            this.lock.unlock();
+        }
+        if (Objects.nonNull(this.directory)) {
+            try {
+                generation.journal(hi, lo, result);
+            } catch (IOException e) {
+                log.warn("Failed to persist idempotency key to {}", generation.file, e);
+            }
+        }
+    }
+
+    /**
+     * 按时间开始新的一代并丢弃过期或超出数量的代，持有锁时调用
+     */
+    private void rotate(long now) {
+        if (this.generations.isEmpty() || now - this.generations.getFirst().start >= this.sliceMillis) {
+            this.startGeneration(now);
+        }
+        while (this.generations.size() > 1 && this.generations.getLast().end <= now - this.windowMillis) {
+            this.generations.removeLast().close(true);
+        }
+    }
+
+    /**
+     * 开始新的一代，超出数量时提前丢弃最老的一代，持有锁时调用
+     */
+    private Generation startGeneration(long now) {
+        Generation current = this.generations.peekFirst();
+        if (Objects.nonNull(current)) {
+            current.end = now;
+        }
+        Generation generation = new Generation(now, Objects.nonNull(this.directory) ? this.directory.resolve(now + JOURNAL_SUFFIX) : null);
+        this.generations.addFirst(generation);
+        while (this.generations.size() > this.generationCount + 1) {
+            Generation evicted = this.generations.removeLast();
+            log.warn("Idempotency index is full, dropping {} keys before their window ends", evicted.live);
+            evicted.close(true);
+        }
+        return generation;
+    }
+
+    /**
+     * 加载日志目录中未过期的代，日志末尾不完整的记录被忽略
+     */
+    private void load(long now) throws IOException {
+        if (Objects.isNull(this.directory)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(this.directory)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(JOURNAL_SUFFIX))
+                    .sorted(Comparator.comparingLong(IdempotencyIndex::start))
+                    .toList();
+        }
+        List<Generation> loaded = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            long end = i + 1 < files.size() ? start(files.get(i + 1)) : Files.getLastModifiedTime(file).toMillis();
+            if (end <= now - this.windowMillis) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            Generation generation = new Generation(start(file), file);
+            generation.end = end;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    long hi = in.readLong();
+                    long lo = in.readLong();
+                    String templateName = in.readUTF();
+                    String messageId = in.readUTF();
+                    long sentMillis = in.readLong();
+                    long elapsedMillis = in.readLong();
+                    LocalDateTime sentTime = sentMillis < 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(sentMillis), ZoneId.systemDefault());
+                    generation.put(hi, lo, new SendResult(templateName, messageId.isEmpty() ? null : messageId, sentTime, elapsedMillis, true, null));
+                }
+            } catch (EOFException e) {
+                // 日志末尾
+            }
+            loaded.add(generation);
+        }
+        for (Generation generation : loaded) {
+            this.generations.addFirst(generation);
+        }
+        while (this.generations.size() > this.generationCount + 1) {
+            this.generations.removeLast().close(true);
+        }
+        if (!loaded.isEmpty()) {
+            log.info("Loaded {} idempotency keys from {}", this.getKeyCount(), this.directory);
+        }
+    }
+
+    private static long start(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - JOURNAL_SUFFIX.length()));
+    }
+
+    /**
+     * 关闭日志文件，保留文件供重启后加载
+     */
+    @Override
+    public void destroy() {
+        this.lock.lock();
+        try {
+            this.generations.forEach(generation -> generation.close(false));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 一代键：开放寻址（线性探测）哈希表，键为128位摘要，值为发送中的future、发送结果或{@link #REMOVED}
+     * <p>哈希表在索引锁内读写；日志文件的写入和关闭以本对象同步，不持有索引锁。</p>
+     */
+    private static final class Generation {
+        private final long start;
+        private final Path file;
+        private long end = Long.MAX_VALUE;
+        private long[] his = new long[INITIAL_CAPACITY];
+        private long[] los = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        /**
+         * 已占用的槽数量，包括已移除的键
+         */
+        private int size;
+        private int live;
+        private DataOutputStream journal;
+        private volatile boolean closed;
+
+        Generation(long start, @Nullable Path file) {
+            this.start = start;
+            this.file = file;
+        }
+
+        /**
+         * @return 未移除的键所在的槽，不存在时为-1
+         */
+        int find(long hi, long lo) {
+            int mask = this.his.length - 1;
+            for (int index = (int) lo & mask; ; index = (index + 1) & mask) {
+                if (this.his[index] == 0L && this.los[index] == 0L) {
+                    return -1;
+                }
+                if (this.his[index] == hi && this.los[index] == lo && this.values[index] != REMOVED) {
+                    return index;
+                }
+            }
+        }
+
+        void put(long hi, long lo, Object value) {
+            if ((this.size + 1) * 2 > this.his.length) {
+                this.resize();
+            }
+            int mask = this.his.length - 1;
+            int index = (int) lo & mask;
+            while (this.his[index] != 0L || this.los[index] != 0L) {
+                if (this.his[index] == hi && this.los[index] == lo && this.values[index] == REMOVED) {
+                    this.values[index] = value;
+                    this.live++;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            this.his[index] = hi;
+            this.los[index] = lo;
+            this.values[index] = value;
+            this.size++;
+            this.live++;
+        }
+
+        /**
+         * 扩容并丢弃已移除的键，负载因子不超过0.5
+         */
+        private void resize() {
+            long[] oldHis = this.his;
+            long[] oldLos = this.los;
+            Object[] oldValues = this.values;
+            int capacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, this.live * 4) - 1) << 1;
+            this.his = new long[capacity];
+            this.los = new long[capacity];
+            this.values = new Object[capacity];
+            this.size = 0;
+            this.live = 0;
+            for (int i = 0; i < oldHis.length; i++) {
+                if ((oldHis[i] != 0L || oldLos[i] != 0L) && oldValues[i] != REMOVED) {
+                    this.put(oldHis[i], oldLos[i], oldValues[i]);
+                }
+            }
+        }
+
+        synchronized void journal(long hi, long lo, SendResult result) throws IOException {
+            if (this.closed) {
+                return;
+            }
+            if (Objects.isNull(this.journal)) {
+                this.journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+            }
+            this.journal.writeLong(hi);
+            this.journal.writeLong(lo);
+            this.journal.writeUTF(StringUtils.defaultString(result.getTemplateName()));
+            this.journal.writeUTF(StringUtils.defaultString(result.getMessageId()));
+            this.journal.writeLong(Objects.nonNull(result.getSentTime()) ? result.getSentTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1L);
+            this.journal.writeLong(result.getElapsedMillis());
+            this.journal.flush();
+        }
+
+        synchronized void close(boolean delete) {
+            this.closed = true;
+            try {
+                if (Objects.nonNull(this.journal)) {
+                    this.journal.close();
+                }
+                if (delete && Objects.nonNull(this.file)) {
+                    Files.deleteIfExists(this.file);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to close idempotency journal {}", this.file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package cn.alphahub.multiple.email.merge;
+
+import cn.alphahub.multiple.email.attachment.AttachmentCache;
+import cn.alphahub.multiple.email.attachment.FileAttachment;
+import cn.alphahub.multiple.email.render.CompiledMailTemplate;
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.mail.EncodingAware;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.UUID;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+/**
+ * 邮件合并（批量个性化发送）
+ * <p>
+ * 同一批邮件中只有收件人、主题和正文随收件人变化，附件和内嵌图片完全相同。
+ * 准备阶段用{@link MimeMessageHelper}构建一封原型邮件，把正文以外的MIME结构（含Base64编码后的附件、内嵌图片和分隔符）
+ * 序列化为正文前、正文后两段字节，所有收件人共享；每封邮件只渲染自己的HTML正文并按quoted-printable编码写在两段字节之间，
+ * 不再为每封邮件创建{@code MimeMultipart}、{@code MimeBodyPart}，也不再重复编码附件。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public final class MailMerge {
+    private final CompiledMailTemplate body;
+    @Nullable
+    private final CompiledMailTemplate subject;
+    private final String contentType;
+    private final byte[] prefix;
+    private final byte[] suffix;
+
+    private MailMerge(CompiledMailTemplate body, @Nullable CompiledMailTemplate subject, String contentType, byte[] prefix, byte[] suffix) {
+        this.body = body;
+        this.subject = subject;
+        this.contentType = contentType;
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * 构建所有收件人共享的MIME结构
+     * <p>附件和内嵌图片在此时读取并完成编码，返回后即可删除附件文件。</p>
+     *
+     * @param body         正文模板
+     * @param subject      Nullable, 主题模板，为null时使用正文模板的{@code <title>}
+     * @param attachments  附件
+     * @param inlineImages 内嵌图片，key为Content-ID，正文中以{@code cid:Content-ID}引用
+     * @return prepared mail merge
+     */
+    public static MailMerge prepare(CompiledMailTemplate body, @Nullable CompiledMailTemplate subject,
+                                    List<FileAttachment> attachments, Map<String, FileAttachment> inlineImages) {
+        return prepare(body, subject, attachments, inlineImages, AttachmentCache.NONE);
+    }
+
+    /**
+     * 构建所有收件人共享的MIME结构，磁盘上已有的附件和内嵌图片使用缓存的编码结果
+     *
+     * @param body            正文模板
+     * @param subject         Nullable, 主题模板，为null时使用正文模板的{@code <title>}
+     * @param attachments     附件
+     * @param inlineImages    内嵌图片，key为Content-ID，正文中以{@code cid:Content-ID}引用
+     * @param attachmentCache 附件编码结果缓存
+     * @return prepared mail merge
+     */
+    public static MailMerge prepare(CompiledMailTemplate body, @Nullable CompiledMailTemplate subject,
+                                    List<FileAttachment> attachments, Map<String, FileAttachment> inlineImages,
+                                    AttachmentCache attachmentCache) {
+        String marker = "MAIL-MERGE-BODY-" + UUID.randomUUID();
+        MimeMessage prototype = new MimeMessage(Session.getInstance(new Properties()));
+        try {
+            MimeMessageHelper helper = new MimeMessageHelper(prototype, MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED, "UTF-8");
+            helper.setText(marker, true);
+            helper.getMimeMultipart().getBodyPart(0).setHeader("Content-Transfer-Encoding", "quoted-printable");
+            for (Map.Entry<String, FileAttachment> inline : inlineImages.entrySet()) {
+                attachmentCache.addInline(helper, inline.getKey(), inline.getValue());
+            }
+            for (FileAttachment attachment : attachments) {
+                attachmentCache.addAttachment(helper, attachment);
+            }
+            prototype.saveChanges();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ((Multipart) prototype.getContent()).writeTo(bytes);
+            byte[] content = bytes.toByteArray();
+            int index = indexOf(content, marker.getBytes(StandardCharsets.US_ASCII));
+            if (index < 0) {
+                throw new MailPreparationException("Failed to locate mail body in merged message structure");
+            }
+            return new MailMerge(body, subject, MimeUtility.unfold(prototype.getContentType()),
+                    Arrays.copyOfRange(content, 0, index), Arrays.copyOfRange(content, index + marker.length(), content.length));
+        } catch (MessagingException | IOException e) {
+            throw new MailPreparationException("Failed to prepare mail merge", e);
+        }
+    }
+
+    /**
+     * 构建一个收件人的邮件
+     *
+     * @param session 邮件会话
+     * @param from    发件人
+     * @param to      收件人
+     * @param model   收件人的模板变量
+     * @return mime message
+     */
+    public MimeMessage createMimeMessage(Session session, String from, String to, Map<String, ?> model) {
+        MergedMimeMessage mimeMessage = new MergedMimeMessage(session, this.contentType);
+        try {
+            mimeMessage.setFrom(new InternetAddress(from));
+            mimeMessage.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+            mimeMessage.setSubject(Objects.isNull(this.subject) ? this.body.renderSubject(model) : this.subject.renderText(model), "UTF-8");
+            mimeMessage.setSentDate(new Date());
+            mimeMessage.setDataHandler(new MergedBodyDataHandler(new MergedBodyDataSource(this, model)));
+        } catch (MessagingException e) {
+            throw new MailPreparationException(e);
+        }
+        return mimeMessage;
+    }
+
+    /**
+     * 写出一封邮件的正文：共享前缀 + 个性化HTML + 共享后缀
+     *
+     * @param model 收件人的模板变量
+     * @param os    输出
+     * @throws IOException 写出失败
+     */
+    private void writeTo(Map<String, ?> model, OutputStream os) throws IOException {
+        os.write(this.prefix);
+        OutputStream encoded;
+        try {
+            encoded = MimeUtility.encode(os, "quoted-printable");
+        } catch (MessagingException e) {
+            throw new IOException(e);
+        }
+        Writer writer = new OutputStreamWriter(encoded, StandardCharsets.UTF_8);
+        this.body.render(model, writer);
+        writer.flush();
+        os.write(this.suffix);
+    }
+
+    private static int indexOf(byte[] content, byte[] target) {
+        outer:
+        for (int i = 0; i <= content.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (content[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 正文为预先序列化的multipart结构的邮件
+     * <p>跳过JavaMail在{@code saveChanges()}时对multipart内容的遍历，只生成顶层邮件头。</p>
+     */
+    private static final class MergedMimeMessage extends MimeMessage {
+        private final String contentType;
+
+        MergedMimeMessage(Session session, String contentType) {
+            super(session);
+            this.contentType = contentType;
+        }
+
+        @Override
+        protected void updateHeaders() throws MessagingException {
+            setHeader("MIME-Version", "1.0");
+            setHeader("Content-Type", this.contentType);
+            setHeader("Content-Transfer-Encoding", "7bit");
+            if (getHeader("Date") == null) {
+                setSentDate(new Date());
+            }
+            updateMessageID();
+        }
+    }
+
+    /**
+     * 写出时直接拼接正文的{@link DataHandler}
+     */
+    private static final class MergedBodyDataHandler extends DataHandler {
+        private final MergedBodyDataSource dataSource;
+
+        MergedBodyDataHandler(MergedBodyDataSource dataSource) {
+            super(dataSource);
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public void writeTo(OutputStream os) throws IOException {
+            this.dataSource.mailMerge.writeTo(this.dataSource.model, os);
+        }
+    }
+
+    /**
+     * 邮件合并正文数据源，内容全部为7bit ASCII
+     */
+    private static final class MergedBodyDataSource implements DataSource, EncodingAware {
+        private final MailMerge mailMerge;
+        private final Map<String, ?> model;
+
+        MergedBodyDataSource(MailMerge mailMerge, Map<String, ?> model) {
+            this.mailMerge = mailMerge;
+            this.model = model;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.mailMerge.prefix.length + this.mailMerge.suffix.length + 4096);
+            this.mailMerge.writeTo(this.model, bytes);
+            return new ByteArrayInputStream(bytes.toByteArray());
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Merged mail body is read-only");
+        }
+
+        @Override
+        public String getContentType() {
+            return this.mailMerge.contentType;
+        }
+
+        @Override
+        public String getName() {
+            return "mail-merge";
+        }
+
+        @Override
+        public String getEncoding() {
+            return "7bit";
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package cn.alphahub.multiple.email.metrics;
+
+import cn.alphahub.multiple.email.attachment.AttachmentCache;
+import cn.alphahub.multiple.email.idempotency.IdempotencyIndex;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 邮件发送指标
+ * <p>
+ * 发送链路各阶段的耗时与结果，按邮件模板名称记录；默认实现{@link #NOOP}不记录任何指标，
+ * classpath中存在Micrometer时由{@link MicrometerEmailMetrics}输出到{@code MeterRegistry}。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public interface EmailMetrics {
+    /**
+     * 不记录任何指标
+     */
+    EmailMetrics NOOP = new EmailMetrics() {
+    };
+
+    /**
+     * 发送任务在执行器队列中的等待时间
+     *
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     * @param nanos        等待时间（纳秒）
+     */
+    default void recordQueueWait(String templateName, long nanos) {
+    }
+
+    /**
+     * 构建MIME邮件的耗时
+     *
+     * @param templateName 邮件模板名称
+     * @param nanos        耗时（纳秒）
+     */
+    default void recordBuild(String templateName, long nanos) {
+    }
+
+    /**
+     * 建立SMTP连接（TCP+TLS+AUTH）的耗时
+     *
+     * @param templateName 邮件模板名称
+     * @param nanos        耗时（纳秒）
+     * @param success      是否连接成功
+     */
+    default void recordConnect(String templateName, long nanos, boolean success) {
+    }
+
+    /**
+     * 单封邮件SMTP交互（MAIL FROM至DATA结束）的耗时
+     *
+     * @param templateName 邮件模板名称
+     * @param nanos        耗时（纳秒）
+     * @param success      是否发送成功
+     */
+    default void recordSend(String templateName, long nanos, boolean success) {
+    }
+
+    /**
+     * 邮件发送结果
+     *
+     * @param templateName 邮件模板名称
+     * @param success      是否发送成功
+     */
+    default void recordResult(String templateName, boolean success) {
+    }
+
+    /**
+     * 发送任务被执行器拒绝
+     *
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     */
+    default void recordRejected(String templateName) {
+    }
+
+    /**
+     * 邮件超过截止时间仍未开始发送而被丢弃
+     *
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     */
+    default void recordExpired(String templateName) {
+    }
+
+    /**
+     * 发送失败后安排了一次重试
+     *
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     */
+    default void recordRetry(String templateName) {
+    }
+
+    /**
+     * 邮件永久失败或重试次数用尽，交给死信处理器
+     *
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     */
+    default void recordDeadLetter(String templateName) {
+    }
+
+    /**
+     * 注册邮件模板的连接池指标
+     *
+     * @param templateName 邮件模板名称
+     * @param mailSender   邮件发送实例
+     */
+    default void bindMailSender(String templateName, PooledJavaMailSender mailSender) {
+    }
+
+    /**
+     * 注册附件编码结果缓存指标
+     *
+     * @param attachmentCache 附件编码结果缓存
+     */
+    default void bindAttachmentCache(AttachmentCache attachmentCache) {
+    }
+
+    /**
+     * 注册幂等去重索引指标
+     *
+     * @param idempotencyIndex 幂等去重索引
+     */
+    default void bindIdempotencyIndex(IdempotencyIndex idempotencyIndex) {
+    }
+
+    /**
+     * 注册投递记录指标
+     *
+     * @param deliveryTracker 投递记录
+     */
+    default void bindDeliveryTracker(DeliveryTracker deliveryTracker) {
+    }
+
+    /**
+     * 注册邮件线程池指标
+     *
+     * @param executor 邮件线程池
+     */
+    default void bindExecutor(ThreadPoolExecutor executor) {
+    }
+}
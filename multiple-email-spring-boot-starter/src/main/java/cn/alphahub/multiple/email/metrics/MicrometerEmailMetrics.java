@@ -0,0 +1,230 @@
+package cn.alphahub.multiple.email.metrics;
+
+import cn.alphahub.multiple.email.attachment.AttachmentCache;
+import cn.alphahub.multiple.email.idempotency.IdempotencyIndex;
+import cn.alphahub.multiple.email.tracking.DeliveryStatus;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于Micrometer的邮件发送指标
+ * <ul>
+ *     <li>{@code email.queue.wait}：发送任务在执行器队列中的等待时间</li>
+ *     <li>{@code email.message.build}：构建MIME邮件的耗时</li>
+ *     <li>{@code email.smtp.connect}：建立SMTP连接的耗时，{@code outcome}区分成功与失败</li>
+ *     <li>{@code email.smtp.send}：单封邮件SMTP交互的耗时，{@code outcome}区分成功与失败</li>
+ *     <li>{@code email.messages}：邮件发送结果计数，{@code outcome}为success、failure、rejected、expired或dead-letter</li>
+ *     <li>{@code email.retries}：发送失败后安排的重试次数</li>
+ *     <li>{@code email.smtp.connections}：连接池空闲、借出连接数</li>
+ *     <li>{@code email.attachment.cache.requests}、{@code email.attachment.cache.evictions}、{@code email.attachment.cache.size}：附件编码结果缓存命中、淘汰和占用的堆外字节数</li>
+ *     <li>{@code email.executor.queue.size}、{@code email.executor.active}、{@code email.executor.pool.size}：邮件线程池状态</li>
+ * </ul>
+ * 邮件模板相关的指标都带有{@code template}标签，Meter按邮件模板缓存，发送时不重复创建。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class MicrometerEmailMetrics implements EmailMetrics {
+    private static final String TAG_TEMPLATE = "template";
+    private static final String TAG_OUTCOME = "outcome";
+
+    private final MeterRegistry registry;
+    private final Map<String, TemplateMeters> templateMeters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicReference<PooledJavaMailSender>> mailSenders = new ConcurrentHashMap<>();
+
+    public MicrometerEmailMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordQueueWait(String templateName, long nanos) {
+        this.meters(templateName).queueWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordBuild(String templateName, long nanos) {
+        this.meters(templateName).build.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordConnect(String templateName, long nanos, boolean success) {
+        TemplateMeters meters = this.meters(templateName);
+        (success ? meters.connectSuccess : meters.connectFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordSend(String templateName, long nanos, boolean success) {
+        TemplateMeters meters = this.meters(templateName);
+        (success ? meters.sendSuccess : meters.sendFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordResult(String templateName, boolean success) {
+        TemplateMeters meters = this.meters(templateName);
+        (success ? meters.succeeded : meters.failed).increment();
+    }
+
+    @Override
+    public void recordRejected(String templateName) {
+        this.meters(templateName).rejected.increment();
+    }
+
+    @Override
+    public void recordExpired(String templateName) {
+        this.meters(templateName).expired.increment();
+    }
+
+    @Override
+    public void recordRetry(String templateName) {
+        this.meters(templateName).retried.increment();
+    }
+
+    @Override
+    public void recordDeadLetter(String templateName) {
+        this.meters(templateName).deadLettered.increment();
+    }
+
+    @Override
+    public void bindMailSender(String templateName, PooledJavaMailSender mailSender) {
+        // 重新加载配置后同一邮件模板的发送实例会被替换，Gauge读取当前绑定的实例
+        this.mailSenders.computeIfAbsent(templateName, name -> {
+            AtomicReference<PooledJavaMailSender> current = new AtomicReference<>(mailSender);
+            Gauge.builder("email.smtp.connections", current, ref -> ref.get().getIdleCount())
+                    .description("SMTP connections in the pool")
+                    .tag(TAG_TEMPLATE, name).tag("state", "idle")
+                    .register(this.registry);
+            Gauge.builder("email.smtp.connections", current, ref -> ref.get().getActiveCount())
+                    .description("SMTP connections in the pool")
+                    .tag(TAG_TEMPLATE, name).tag("state", "active")
+                    .register(this.registry);
+            return current;
+        }).set(mailSender);
+    }
+
+    @Override
+    public void bindAttachmentCache(AttachmentCache attachmentCache) {
+        FunctionCounter.builder("email.attachment.cache.requests", attachmentCache, AttachmentCache::getHitCount)
+                .description("Attachment cache lookups")
+                .tag("result", "hit")
+                .register(this.registry);
+        FunctionCounter.builder("email.attachment.cache.requests", attachmentCache, AttachmentCache::getMissCount)
+                .description("Attachment cache lookups")
+                .tag("result", "miss")
+                .register(this.registry);
+        FunctionCounter.builder("email.attachment.cache.evictions", attachmentCache, AttachmentCache::getEvictionCount)
+                .description("Attachments evicted from the cache")
+                .register(this.registry);
+        Gauge.builder("email.attachment.cache.size", attachmentCache, AttachmentCache::getSize)
+                .description("Encoded attachment bytes held off-heap by the cache")
+                .baseUnit("bytes")
+                .register(this.registry);
+        Gauge.builder("email.attachment.cache.entries", attachmentCache, AttachmentCache::getEntryCount)
+                .description("Attachments held by the cache")
+                .register(this.registry);
+    }
+
+    @Override
+    public void bindIdempotencyIndex(IdempotencyIndex idempotencyIndex) {
+        FunctionCounter.builder("email.idempotency.requests", idempotencyIndex, IdempotencyIndex::getDuplicateCount)
+                .description("Sends carrying an idempotency key")
+                .tag("result", "duplicate")
+                .register(this.registry);
+        FunctionCounter.builder("email.idempotency.requests", idempotencyIndex, IdempotencyIndex::getMissCount)
+                .description("Sends carrying an idempotency key")
+                .tag("result", "new")
+                .register(this.registry);
+        Gauge.builder("email.idempotency.keys", idempotencyIndex, IdempotencyIndex::getKeyCount)
+                .description("Idempotency keys held by the deduplication index")
+                .register(this.registry);
+    }
+
+    @Override
+    public void bindDeliveryTracker(DeliveryTracker deliveryTracker) {
+        for (DeliveryStatus status : DeliveryStatus.values()) {
+            Gauge.builder("email.deliveries", deliveryTracker, tracker -> tracker.getCount(status))
+                    .description("Delivery records held by the tracker")
+                    .tag("status", status.name().toLowerCase(Locale.ROOT))
+                    .register(this.registry);
+        }
+    }
+
+    @Override
+    public void bindExecutor(ThreadPoolExecutor executor) {
+        Gauge.builder("email.executor.queue.size", executor, e -> e.getQueue().size())
+                .description("Send tasks waiting in the email thread pool queue")
+                .register(this.registry);
+        Gauge.builder("email.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Email thread pool threads actively sending")
+                .register(this.registry);
+        Gauge.builder("email.executor.pool.size", executor, ThreadPoolExecutor::getPoolSize)
+                .description("Current email thread pool size")
+                .register(this.registry);
+    }
+
+    private TemplateMeters meters(String templateName) {
+        return this.templateMeters.computeIfAbsent(templateName, name -> new TemplateMeters(this.registry, name));
+    }
+
+    /**
+     * 单个邮件模板的Meter
+     */
+    private static final class TemplateMeters {
+        private final Timer queueWait;
+        private final Timer build;
+        private final Timer connectSuccess;
+        private final Timer connectFailure;
+        private final Timer sendSuccess;
+        private final Timer sendFailure;
+        private final Counter succeeded;
+        private final Counter failed;
+        private final Counter rejected;
+        private final Counter expired;
+        private final Counter deadLettered;
+        private final Counter retried;
+
+        private TemplateMeters(MeterRegistry registry, String templateName) {
+            this.queueWait = Timer.builder("email.queue.wait").description("Time send tasks wait in the executor queue")
+                    .tag(TAG_TEMPLATE, templateName).register(registry);
+            this.build = Timer.builder("email.message.build").description("Time to build the MIME message")
+                    .tag(TAG_TEMPLATE, templateName).register(registry);
+            this.connectSuccess = connectTimer(registry, templateName, "success");
+            this.connectFailure = connectTimer(registry, templateName, "failure");
+            this.sendSuccess = sendTimer(registry, templateName, "success");
+            this.sendFailure = sendTimer(registry, templateName, "failure");
+            this.succeeded = messageCounter(registry, templateName, "success");
+            this.failed = messageCounter(registry, templateName, "failure");
+            this.rejected = messageCounter(registry, templateName, "rejected");
+            this.expired = messageCounter(registry, templateName, "expired");
+            this.deadLettered = messageCounter(registry, templateName, "dead-letter");
+            this.retried = Counter.builder("email.retries").description("Retries scheduled after transient send failures")
+                    .tag(TAG_TEMPLATE, templateName).register(registry);
+        }
+
+        private static Timer connectTimer(MeterRegistry registry, String templateName, String outcome) {
+            return Timer.builder("email.smtp.connect").description("Time to connect and authenticate to the SMTP server")
+                    .tag(TAG_TEMPLATE, templateName).tag(TAG_OUTCOME, outcome).register(registry);
+        }
+
+        private static Timer sendTimer(MeterRegistry registry, String templateName, String outcome) {
+            return Timer.builder("email.smtp.send").description("Time to transfer one message over an SMTP connection")
+                    .tag(TAG_TEMPLATE, templateName).tag(TAG_OUTCOME, outcome).register(registry);
+        }
+
+        private static Counter messageCounter(MeterRegistry registry, String templateName, String outcome) {
+            return Counter.builder("email.messages").description("Email send results")
+                    .tag(TAG_TEMPLATE, templateName).tag(TAG_OUTCOME, outcome).register(registry);
+        }
+    }
+}
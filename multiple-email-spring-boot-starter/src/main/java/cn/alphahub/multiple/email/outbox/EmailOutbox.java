@@ -0,0 +1,439 @@
+package cn.alphahub.multiple.email.outbox;
+
+import cn.alphahub.multiple.email.cluster.ClusterCoordinator;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailOutboxProperties;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.outbox.OutboxSegmentLog.OutboxRecord;
+import cn.alphahub.multiple.email.recipient.RecipientResult;
+import cn.alphahub.multiple.email.retry.DeadLetter;
+import cn.alphahub.multiple.email.retry.DeadLetterHandler;
+import cn.alphahub.multiple.email.retry.RetryPolicy;
+import cn.alphahub.multiple.email.tracking.DeliveryTracker;
+import cn.alphahub.multiple.email.transport.SmtpReplies;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * 持久化邮件发件箱
+ * <p>
+ * 邮件以原始MIME格式追加写入本地磁盘的{@link OutboxSegmentLog}后立即返回，由后台投递线程提交到邮件发送执行器发送，
+ * 发送成功后确认记录。按{@link SmtpReplies#isTransient(Throwable)}区分失败：暂时性失败按{@link RetryPolicy}限制尝试次数，
+ * 间隔{@code retry-interval}与重试策略退避时间中的较大值后重新投递；永久失败、重试次数用尽以及记录无法解析、
+ * 邮件模板已不存在的记录被确认并交给{@link DeadLetterHandler}，不再阻塞日志检查点。
+ * 尝试次数只保存在内存中，应用重启时重放所有未确认的记录并重新计数，保证邮件至少投递一次(at-least-once)。
+ * <p>
+ * 配置了{@link ClusterCoordinator}时，发件箱目录需位于所有节点共享的存储上，划分为{@code partitions}个分区，
+ * 每个分区一个独立的日志目录，同一时刻只由持有租约的节点写入和投递；节点下线后其分区由其他节点认领并重放，
+ * 接管前已发送但未确认的邮件会再次发送。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class EmailOutbox implements SmartLifecycle {
+    private static final String UNKNOWN_TEMPLATE = "unknown";
+
+    private final EmailOutboxProperties outboxProperties;
+    private final MailWrapper mailWrapper;
+    private final Executor emailTaskExecutor;
+    private final ClusterCoordinator coordinator;
+    private final int partitionCount;
+    private final Duration leaseTime;
+    private final RetryPolicy retryPolicy;
+    private final DeadLetterHandler deadLetterHandler;
+    private final DeliveryTracker deliveryTracker;
+    private final LinkedBlockingQueue<Delivery> pending = new LinkedBlockingQueue<>();
+    private final Semaphore inFlight;
+    private final Map<Integer, Partition> partitions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    private volatile List<Partition> owned = List.of();
+    private ScheduledExecutorService scheduler;
+    private Thread drainThread;
+    private volatile boolean running;
+
+    public EmailOutbox(EmailOutboxProperties outboxProperties, MailWrapper mailWrapper, Executor emailTaskExecutor) {
+        this(outboxProperties, mailWrapper, emailTaskExecutor, null, 1, Duration.ZERO, RetryPolicy.NONE, null, DeliveryTracker.NONE);
+    }
+
+    /**
+     * 按分区在集群节点间分担投递
+     *
+     * @param outboxProperties  outbox properties
+     * @param mailWrapper       client wrapper
+     * @param emailTaskExecutor 邮件发送执行器
+     * @param coordinator       集群协调，null时只使用一个本地日志
+     * @param partitionCount    分区数量，所有节点必须一致
+     * @param leaseTime         分区租约时长
+     * @param retryPolicy       暂时性失败的重试策略
+     * @param deadLetterHandler 最终投递失败记录的处理器，null时只记录错误日志
+     * @param deliveryTracker   投递状态记录
+     */
+    public EmailOutbox(EmailOutboxProperties outboxProperties, MailWrapper mailWrapper, Executor emailTaskExecutor,
+                       ClusterCoordinator coordinator, int partitionCount, Duration leaseTime,
+                       RetryPolicy retryPolicy, @Nullable DeadLetterHandler deadLetterHandler, DeliveryTracker deliveryTracker) {
+        this.outboxProperties = outboxProperties;
+        this.mailWrapper = mailWrapper;
+        this.emailTaskExecutor = emailTaskExecutor;
+        this.coordinator = coordinator;
+        this.partitionCount = Math.max(1, partitionCount);
+        this.leaseTime = leaseTime;
+        this.retryPolicy = retryPolicy;
+        this.deadLetterHandler = deadLetterHandler;
+        this.deliveryTracker = deliveryTracker;
+        this.inFlight = new Semaphore(Math.max(1, outboxProperties.getMaxInFlight()));
+    }
+
+    /**
+     * 将邮件写入发件箱
+     *
+     * @param templateName 邮件模板名称
+     * @param mimeMessage  待发送的邮件
+     * @return 发件箱记录序号
+     */
+    public long enqueue(String templateName, MimeMessage mimeMessage) {
+        if (!this.running) {
+            throw new IllegalStateException("Email outbox is not running");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(templateName);
+            mimeMessage.saveChanges();
+            mimeMessage.writeTo(out);
+        } catch (IOException | MessagingException e) {
+            throw new MailPreparationException("Failed to serialize mail message into outbox", e);
+        }
+        List<Partition> owned = this.owned;
+        if (owned.isEmpty()) {
+            throw new IllegalStateException("Email outbox owns no partition on node " + this.coordinator.getNodeId());
+        }
+        Partition partition = owned.get(Math.floorMod(this.nextPartition.getAndIncrement(), owned.size()));
+        try {
+            OutboxRecord record = partition.append(bytes.toByteArray());
+            this.pending.offer(new Delivery(partition, record, this.deliveryTracker.queued(templateName), 0));
+            return record.sequence();
+        } catch (IOException e) {
+            throw new MailPreparationException("Failed to append mail message to outbox", e);
+        }
+    }
+
+    /**
+     * 待投递的记录数量
+     *
+     * @return pending count
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * 投递循环：取出记录，提交到邮件发送执行器
+     */
+    private void drain() {
+        while (this.running) {
+            Delivery delivery;
+            try {
+                delivery = this.pending.take();
+                if (!delivery.partition().active) {
+                    continue;
+                }
+                this.inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                this.emailTaskExecutor.execute(() -> this.deliver(delivery));
+            } catch (RejectedExecutionException e) {
+                this.inFlight.release();
+                this.redeliverLater(delivery, this.outboxProperties.getRetryInterval());
+            }
+        }
+    }
+
+    /**
+     * 投递一条记录，所属分区已被其他节点接管时跳过
+     *
+     * @param delivery 发件箱记录及其分区
+     */
+    private void deliver(Delivery delivery) {
+        Partition partition = delivery.partition();
+        OutboxRecord record = delivery.record();
+        if (!partition.active) {
+            this.inFlight.release();
+            return;
+        }
+        int attempt = delivery.attempts() + 1;
+        String templateName = null;
+        String trackingId = delivery.trackingId();
+        MimeMessage mimeMessage = null;
+        // 开始与SMTP服务器交互前的失败（记录损坏、邮件模板不存在、邮件解析失败）重试也不会成功
+        boolean sending = false;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.payload()));
+            templateName = in.readUTF();
+            if (delivery.attempts() == 0 && Objects.isNull(trackingId)) {
+                // 重启后重放的记录
+                trackingId = this.deliveryTracker.queued(templateName);
+            }
+            this.deliveryTracker.sending(trackingId, attempt);
+            JavaMailSender mailSender = this.mailWrapper.getMailSender(templateName);
+            if (Objects.isNull(mailSender)) {
+                throw new MailPreparationException("Mail template '" + templateName + "' no longer exists");
+            }
+            mimeMessage = mailSender.createMimeMessage(in);
+            sending = true;
+            SmtpReplies.takeResponse();
+            long sendStart = System.nanoTime();
+            SendResult result;
+            try {
+                mailSender.send(mimeMessage);
+                result = SendResult.success(templateName, mimeMessage.getMessageID(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendStart),
+                        RecipientResult.accepted(mimeMessage));
+                result.setSmtpResponse(SmtpReplies.takeResponse());
+            } catch (MailSendException e) {
+                // 部分收件人被拒绝时重新投递会让已接收的收件人收到重复邮件
+                SendFailedException partial = SmtpReplies.partialDelivery(e);
+                if (Objects.isNull(partial)) {
+                    throw e;
+                }
+                result = SendResult.success(templateName, mimeMessage.getMessageID(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendStart),
+                        RecipientResult.of(partial));
+            }
+            partition.acknowledge(record.sequence());
+            result.setTrackingId(trackingId);
+            this.deliveryTracker.sent(trackingId, result);
+        } catch (Exception e) {
+            Delivery failed = new Delivery(partition, record, trackingId, attempt);
+            if (sending && this.retryPolicy.shouldRetry(e, attempt)) {
+                Duration delay = this.retryPolicy.backoff(attempt);
+                if (delay.compareTo(this.outboxProperties.getRetryInterval()) < 0) {
+                    delay = this.outboxProperties.getRetryInterval();
+                }
+                log.warn("Failed to deliver outbox record {} on attempt {}/{}, retrying in {}: {}", record.sequence(), attempt,
+                        this.retryPolicy.getMaxAttempts(), delay, e.getMessage());
+                this.deliveryTracker.retrying(trackingId, attempt, e);
+                this.redeliverLater(failed, delay);
+            } else {
+                this.deadLetter(failed, Objects.requireNonNullElse(templateName, UNKNOWN_TEMPLATE), mimeMessage, e, !sending || !SmtpReplies.isTransient(e));
+            }
+        } finally {
+            this.inFlight.release();
+        }
+    }
+
+    /**
+     * 确认永久失败或重试次数用尽的记录，交给死信处理器
+     *
+     * @param delivery     发件箱记录及其已尝试次数
+     * @param templateName 邮件模板名称，记录无法解析时为{@value #UNKNOWN_TEMPLATE}
+     * @param message      Nullable, 从记录解析出的邮件
+     * @param failure      最后一次投递的异常
+     * @param permanent    是否为永久失败
+     */
+    private void deadLetter(Delivery delivery, String templateName, @Nullable MimeMessage message, Exception failure, boolean permanent) {
+        long sequence = delivery.record().sequence();
+        log.error("Outbox record {} for template '{}' failed {} after {} attempt(s), acknowledging it: {}", sequence, templateName,
+                permanent ? "permanently" : "transiently", delivery.attempts(), failure.getMessage());
+        delivery.partition().acknowledge(sequence);
+        this.deliveryTracker.failed(delivery.trackingId(), failure, message);
+        if (Objects.isNull(this.deadLetterHandler)) {
+            return;
+        }
+        try {
+            this.deadLetterHandler.handle(new DeadLetter(templateName, message, failure, SmtpReplies.replyCodes(failure), delivery.attempts(), permanent,
+                    Instant.now()));
+        } catch (RuntimeException e) {
+            log.warn("Dead letter handler failed for outbox record {}", sequence, e);
+        }
+    }
+
+    /**
+     * 等待一段时间后重新投递，停止后不再投递，记录在下次启动时重放
+     *
+     * @param delivery 发件箱记录及其分区
+     * @param delay    等待时间
+     */
+    private void redeliverLater(Delivery delivery, Duration delay) {
+        if (this.running) {
+            this.scheduler.schedule(() -> this.pending.offer(delivery), delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 续约分区租约：打开并重放新认领的分区，关闭已被其他节点接管的分区
+     */
+    private void rebalance() {
+        Set<Integer> claimed;
+        try {
+            claimed = this.coordinator.claimPartitions(this.outboxProperties.getDirectory(), this.partitionCount, this.leaseTime);
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew email outbox partition leases on node {}", this.coordinator.getNodeId(), e);
+            return;
+        }
+        for (Partition partition : this.partitions.values()) {
+            if (!claimed.contains(partition.index)) {
+                this.partitions.remove(partition.index);
+                partition.close();
+                log.info("Email outbox partition {} released by node {}.", partition.index, this.coordinator.getNodeId());
+            }
+        }
+        for (int index : claimed) {
+            if (!this.partitions.containsKey(index)) {
+                this.open(index);
+            }
+        }
+        this.owned = List.copyOf(this.partitions.values());
+    }
+
+    /**
+     * 打开分区日志并重放未确认的记录
+     *
+     * @param index 分区序号
+     */
+    private void open(int index) {
+        Path directory = Paths.get(this.outboxProperties.getDirectory());
+        if (this.coordinator != null) {
+            directory = directory.resolve(String.format("partition-%02d", index));
+        }
+        OutboxSegmentLog segmentLog;
+        try {
+            segmentLog = new OutboxSegmentLog(directory, (int) this.outboxProperties.getSegmentSize().toBytes(), this.outboxProperties.isForceOnAppend());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open email outbox at " + directory, e);
+        }
+        Partition partition = new Partition(index, segmentLog);
+        AtomicInteger replayed = new AtomicInteger();
+        segmentLog.replay(record -> {
+            this.pending.offer(new Delivery(partition, record, null, 0));
+            replayed.incrementAndGet();
+        });
+        if (replayed.get() > 0) {
+            log.info("Replaying {} undelivered messages from email outbox {}.", replayed.get(), directory);
+        }
+        this.partitions.put(index, partition);
+    }
+
+    @Override
+    public void start() {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("multi-email-outbox-retry-"));
+        if (this.coordinator == null) {
+            this.open(0);
+            this.owned = List.copyOf(this.partitions.values());
+        } else {
+            this.rebalance();
+            long renewMillis = Math.max(1L, this.leaseTime.toMillis() / 3);
+            this.scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    this.rebalance();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to rebalance email outbox partitions", e);
+                }
+            }, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        }
+        this.running = true;
+        this.drainThread = new CustomizableThreadFactory("multi-email-outbox-").newThread(this::drain);
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+        this.drainThread.interrupt();
+        this.scheduler.shutdownNow();
+        this.owned = List.of();
+        this.partitions.values().forEach(Partition::close);
+        this.partitions.clear();
+        if (this.coordinator != null) {
+            try {
+                this.coordinator.releasePartitions(this.outboxProperties.getDirectory());
+            } catch (RuntimeException e) {
+                log.warn("Failed to release email outbox partitions, they will be taken over after the lease expires", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * 发件箱分区，关闭后不再写入和确认
+     */
+    private static final class Partition {
+        private final int index;
+        private final OutboxSegmentLog segmentLog;
+        private volatile boolean active = true;
+
+        Partition(int index, OutboxSegmentLog segmentLog) {
+            this.index = index;
+            this.segmentLog = segmentLog;
+        }
+
+        synchronized OutboxRecord append(byte[] payload) throws IOException {
+            if (!this.active) {
+                throw new IOException("Email outbox partition " + this.index + " has been released");
+            }
+            return this.segmentLog.append(payload);
+        }
+
+        synchronized void acknowledge(long sequence) {
+            if (this.active) {
+                this.segmentLog.acknowledge(sequence);
+            }
+        }
+
+        synchronized void close() {
+            this.active = false;
+            try {
+                this.segmentLog.close();
+            } catch (IOException e) {
+                log.warn("Failed to close email outbox partition {}", this.index, e);
+            }
+        }
+    }
+
+    /**
+     * 待投递的记录及其所属分区
+     *
+     * @param partition  所属分区
+     * @param record     发件箱记录
+     * @param trackingId Nullable, 投递记录ID，重放的记录在第一次投递时生成
+     * @param attempts   已尝试次数
+     */
+    private record Delivery(Partition partition, OutboxRecord record, @Nullable String trackingId, int attempts) {
+    }
+}
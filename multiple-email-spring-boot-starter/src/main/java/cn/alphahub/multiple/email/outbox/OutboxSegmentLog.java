@@ -0,0 +1,303 @@
+package cn.alphahub.multiple.email.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于内存映射文件的追加写日志
+ * <p>
+ * 日志由若干固定大小的段文件组成，记录格式：{@code [int length][int crc32][long sequence][payload]}。
+ * 写入时先写记录内容，最后写长度，长度为0或校验失败的位置即为日志末尾，进程崩溃产生的半条记录在重放时被丢弃。
+ * 确认进度保存在{@code checkpoint}文件中，所有记录都已确认的段文件会被删除。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class OutboxSegmentLog implements Closeable {
+    /**
+     * 记录头长度：length + crc32 + sequence
+     */
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    /**
+     * 段文件后缀
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ConcurrentSkipListSet<Long> acknowledged = new ConcurrentSkipListSet<>();
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpointBuffer;
+    private volatile long checkpoint;
+    private long nextSequence;
+    private Segment active;
+
+    /**
+     * 打开日志目录，不存在时创建
+     *
+     * @param directory     日志目录
+     * @param segmentSize   段文件大小（字节）
+     * @param forceOnAppend 每次追加后是否将映射内存刷入磁盘
+     * @throws IOException io exception
+     */
+    public OutboxSegmentLog(Path directory, int segmentSize, boolean forceOnAppend) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+        this.checkpointChannel = FileChannel.open(directory.resolve("checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.checkpointBuffer = this.checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        this.checkpoint = this.checkpointBuffer.getLong(0);
+        this.nextSequence = this.checkpoint + 1;
+        this.openSegments();
+    }
+
+    /**
+     * 已确认的最大连续序号
+     *
+     * @return checkpoint
+     */
+    public long getCheckpoint() {
+        return this.checkpoint;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param payload 记录内容
+     * @return 记录序号
+     * @throws IOException io exception
+     */
+    public OutboxRecord append(byte[] payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.length;
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        this.appendLock.lock();
+        try {
+            if (this.active == null || this.active.remaining() < recordSize + Integer.BYTES) {
+                this.roll(recordSize + Integer.BYTES);
+            }
+            Segment segment = this.active;
+            long sequence = this.nextSequence++;
+            int offset = segment.writePosition;
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.putInt(offset + Integer.BYTES, (int) crc32.getValue());
+            buffer.putLong(offset + Integer.BYTES * 2, sequence);
+            buffer.put(offset + HEADER_SIZE, payload);
+            buffer.putInt(offset, payload.length);
+            if (this.forceOnAppend) {
+                buffer.force(offset, recordSize);
+            }
+            segment.writePosition += recordSize;
+            segment.lastSequence = sequence;
+            return new OutboxRecord(sequence, segment, offset + HEADER_SIZE, payload.length);
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    /**
+     * 遍历所有未确认的记录
+     *
+     * @param consumer record consumer
+     */
+    public void replay(Consumer<OutboxRecord> consumer) {
+        for (Segment segment : this.segments) {
+            segment.scan(this.checkpoint, consumer);
+        }
+    }
+
+    /**
+     * 确认记录已投递，推进checkpoint并删除已全部确认的段文件
+     *
+     * @param sequence 记录序号
+     */
+    public void acknowledge(long sequence) {
+        if (sequence <= this.checkpoint) {
+            return;
+        }
+        this.acknowledged.add(sequence);
+        this.appendLock.lock();
+        try {
+            long advanced = this.checkpoint;
+            while (this.acknowledged.remove(advanced + 1)) {
+                advanced++;
+            }
+            if (advanced == this.checkpoint) {
+                return;
+            }
+            this.checkpoint = advanced;
+            this.checkpointBuffer.putLong(0, advanced);
+            if (this.forceOnAppend) {
+                this.checkpointBuffer.force();
+            }
+            Iterator<Segment> iterator = this.segments.iterator();
+            while (iterator.hasNext()) {
+                Segment segment = iterator.next();
+                if (segment != this.active && segment.lastSequence <= advanced) {
+                    this.segments.remove(segment);
+                    segment.delete();
+                }
+            }
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    /**
+     * 读取目录中已有的段文件，定位写入位置
+     *
+     * @throws IOException io exception
+     */
+    private void openSegments() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(this.directory)) {
+            stream.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().forEach(paths::add);
+        }
+        for (Path path : paths) {
+            Segment segment = new Segment(path, (int) Files.size(path));
+            segment.scan(Long.MIN_VALUE, record -> {
+            });
+            if (segment.lastSequence > 0 && segment.lastSequence <= this.checkpoint) {
+                segment.delete();
+                continue;
+            }
+            this.segments.add(segment);
+            this.nextSequence = Math.max(this.nextSequence, segment.lastSequence + 1);
+            this.active = segment;
+        }
+    }
+
+    /**
+     * 创建新的段文件
+     *
+     * @param minSize 段文件最小大小
+     * @throws IOException io exception
+     */
+    private void roll(int minSize) throws IOException {
+        Path path = this.directory.resolve(String.format("%019d%s", this.nextSequence, SEGMENT_SUFFIX));
+        Segment segment = new Segment(path, Math.max(this.segmentSize, minSize));
+        this.segments.add(segment);
+        this.active = segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.appendLock.lock();
+        try {
+            for (Segment segment : this.segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            this.checkpointBuffer.force();
+            this.checkpointChannel.close();
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    /**
+     * 日志记录
+     *
+     * @param sequence 记录序号
+     * @param segment  所在段文件
+     * @param offset   内容偏移量
+     * @param length   内容长度
+     */
+    public record OutboxRecord(long sequence, Segment segment, int offset, int length) {
+
+        /**
+         * 读取记录内容
+         *
+         * @return payload
+         */
+        public byte[] payload() {
+            byte[] payload = new byte[this.length];
+            this.segment.buffer.get(this.offset, payload);
+            return payload;
+        }
+    }
+
+    /**
+     * 段文件
+     */
+    public static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private volatile long lastSequence;
+
+        private Segment(Path path, int size) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        private int remaining() {
+            return this.buffer.capacity() - this.writePosition;
+        }
+
+        /**
+         * 从头扫描段文件中的有效记录，同时定位写入位置
+         *
+         * @param after    只回调序号大于此值的记录
+         * @param consumer record consumer
+         */
+        private void scan(long after, Consumer<OutboxRecord> consumer) {
+            ByteBuffer view = this.buffer.duplicate();
+            int position = 0;
+            CRC32 crc32 = new CRC32();
+            while (position + HEADER_SIZE <= view.capacity()) {
+                int length = view.getInt(position);
+                if (length <= 0 || position + HEADER_SIZE + length > view.capacity()) {
+                    break;
+                }
+                int crc = view.getInt(position + Integer.BYTES);
+                long sequence = view.getLong(position + Integer.BYTES * 2);
+                crc32.reset();
+                crc32.update(view.slice(position + HEADER_SIZE, length));
+                if ((int) crc32.getValue() != crc) {
+                    log.warn("Outbox segment {} has a torn record at offset {}, truncating.", this.path.getFileName(), position);
+                    break;
+                }
+                this.lastSequence = sequence;
+                if (sequence > after) {
+                    consumer.accept(new OutboxRecord(sequence, this, position + HEADER_SIZE, length));
+                }
+                position += HEADER_SIZE + length;
+            }
+            this.writePosition = position;
+        }
+
+        private void delete() {
+            try {
+                this.channel.close();
+                Files.deleteIfExists(this.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete outbox segment {}", this.path, e);
+            }
+        }
+    }
+}
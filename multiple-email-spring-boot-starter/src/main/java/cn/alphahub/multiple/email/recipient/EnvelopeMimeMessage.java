@@ -0,0 +1,35 @@
+package cn.alphahub.multiple.email.recipient;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * 只投递给部分收件人的邮件
+ * <p>
+ * 邮件头（To、Cc）与原邮件相同，SMTP信封（{@code RCPT TO}）只包含指定的收件人：
+ * 发送时{@code JavaMailSender}按{@link #getAllRecipients()}确定信封收件人，
+ * 同一封邮件拆分为多个信封分别发送，收件人看到的邮件与不拆分时一致。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class EnvelopeMimeMessage extends MimeMessage {
+    private final Address[] envelope;
+
+    /**
+     * @param source   原邮件，内容被复制
+     * @param envelope 信封收件人
+     * @throws MessagingException 复制邮件失败
+     */
+    public EnvelopeMimeMessage(MimeMessage source, Address[] envelope) throws MessagingException {
+        super(source);
+        this.envelope = envelope.clone();
+    }
+
+    @Override
+    public Address[] getAllRecipients() {
+        return this.envelope.clone();
+    }
+}
@@ -0,0 +1,142 @@
+package cn.alphahub.multiple.email.recipient;
+
+import cn.alphahub.multiple.email.transport.SmtpReplies;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.springframework.lang.Nullable;
+
+/**
+ * 单个收件人的发送结果
+ * <p>收件人被拒绝时记录服务器对{@code RCPT TO}的应答码和应答内容。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipientResult {
+    /**
+     * 收件人的邮箱
+     */
+    private String address;
+    /**
+     * 服务器是否接收了此收件人
+     */
+    private boolean accepted;
+    /**
+     * 被拒绝时的SMTP应答码，未知时为null
+     */
+    private Integer replyCode;
+    /**
+     * 被拒绝时的SMTP应答内容
+     */
+    private String reply;
+
+    /**
+     * 邮件的全部收件人均被接收
+     *
+     * @param mimeMessage 已发送的邮件
+     * @return recipient results
+     */
+    public static List<RecipientResult> accepted(MimeMessage mimeMessage) {
+        Address[] recipients;
+        try {
+            recipients = mimeMessage.getAllRecipients();
+        } catch (MessagingException e) {
+            return Collections.emptyList();
+        }
+        if (Objects.isNull(recipients)) {
+            return Collections.emptyList();
+        }
+        List<RecipientResult> results = new ArrayList<>(recipients.length);
+        for (Address recipient : recipients) {
+            results.add(new RecipientResult(addressOf(recipient), true, null, null));
+        }
+        return results;
+    }
+
+    /**
+     * 部分收件人被拒绝（{@code mail.smtp.sendpartial=true}）时，按{@link SendFailedException}中的地址分类
+     * <p>被拒绝的地址取{@link SMTPAddressFailedException}中的应答码，因其他地址失败而未发送的地址没有应答码。</p>
+     *
+     * @param failure 部分发送失败的异常
+     * @return recipient results
+     */
+    public static List<RecipientResult> of(SendFailedException failure) {
+        Map<String, SMTPAddressFailedException> replies = addressReplies(failure);
+        List<RecipientResult> results = new ArrayList<>();
+        for (Address address : nullToEmpty(failure.getValidSentAddresses())) {
+            results.add(new RecipientResult(addressOf(address), true, null, null));
+        }
+        for (Address address : nullToEmpty(failure.getInvalidAddresses())) {
+            results.add(rejected(addressOf(address), replies.get(addressOf(address)), failure));
+        }
+        for (Address address : nullToEmpty(failure.getValidUnsentAddresses())) {
+            results.add(rejected(addressOf(address), replies.get(addressOf(address)), failure));
+        }
+        return results;
+    }
+
+    /**
+     * 邮件发送失败，全部收件人未被接收
+     * <p>异常中包含单个地址的{@code RCPT TO}应答时使用该应答，否则使用整封邮件的应答码和异常信息。</p>
+     *
+     * @param addresses 收件人的邮箱
+     * @param failure   发送异常
+     * @return recipient results
+     */
+    public static List<RecipientResult> rejected(Collection<String> addresses, Throwable failure) {
+        SendFailedException sendFailure = SmtpReplies.sendFailure(failure);
+        Map<String, SMTPAddressFailedException> replies = Objects.isNull(sendFailure) ? Collections.emptyMap() : addressReplies(sendFailure);
+        List<RecipientResult> results = new ArrayList<>(addresses.size());
+        for (String address : addresses) {
+            results.add(rejected(address, replies.get(address), failure));
+        }
+        return results;
+    }
+
+    private static RecipientResult rejected(String address, @Nullable SMTPAddressFailedException reply, Throwable failure) {
+        if (Objects.nonNull(reply)) {
+            return new RecipientResult(address, false, reply.getReturnCode(), reply.getMessage());
+        }
+        List<Integer> codes = SmtpReplies.replyCodes(failure);
+        return new RecipientResult(address, false, codes.isEmpty() ? null : codes.get(0), failure.getMessage());
+    }
+
+    private static Map<String, SMTPAddressFailedException> addressReplies(SendFailedException failure) {
+        Map<String, SMTPAddressFailedException> replies = new HashMap<>();
+        Exception next = failure.getNextException();
+        // SMTPTransport把每个被拒绝地址的应答串在nextException链上
+        while (next instanceof MessagingException messagingException) {
+            if (next instanceof SMTPAddressFailedException addressFailure) {
+                replies.putIfAbsent(addressOf(addressFailure.getAddress()), addressFailure);
+            }
+            next = messagingException.getNextException();
+        }
+        return replies;
+    }
+
+    private static Address[] nullToEmpty(@Nullable Address[] addresses) {
+        return Objects.isNull(addresses) ? new Address[0] : addresses;
+    }
+
+    private static String addressOf(Address address) {
+        return address instanceof InternetAddress internetAddress ? internetAddress.getAddress() : String.valueOf(address);
+    }
+}
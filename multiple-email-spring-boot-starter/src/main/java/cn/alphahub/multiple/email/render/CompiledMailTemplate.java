@@ -0,0 +1,399 @@
+package cn.alphahub.multiple.email.render;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.mail.EncodingAware;
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import org.springframework.beans.BeanUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.web.util.HtmlUtils;
+
+/**
+ * 预编译的邮件正文模板
+ * <p>
+ * 模板源码在编译时切分为字面量与占位符交替的片段，渲染时按顺序写出，不再解析模板，开销接近字符串拼接：
+ * <ul>
+ *     <li>{@code ${user.name}}：输出变量值并做HTML转义</li>
+ *     <li>{@code $!{html}}：原样输出变量值，用于已渲染好的HTML片段</li>
+ *     <li><code>\${</code>：输出字面量<code>${</code></li>
+ * </ul>
+ * 变量路径按{@code .}逐级取值，支持{@link Map}、JavaBean getter和record组件；取值为null时输出空字符串。
+ * 模板中{@code <title>}的内容作为邮件主题渲染：模板中书写的HTML实体（如{@code &amp;}）解码为对应字符，变量值不转义。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public final class CompiledMailTemplate {
+    private static final Pattern TITLE_PATTERN = Pattern.compile("<title[^>]*>(.*?)</title>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final Map<Class<?>, Map<String, Method>> ACCESSOR_CACHE = new ConcurrentHashMap<>();
+    /**
+     * 属性不存在时缓存的占位访问方法
+     */
+    private static final Method NO_ACCESSOR;
+
+    static {
+        try {
+            NO_ACCESSOR = Object.class.getMethod("hashCode");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 正文模板ID
+     */
+    @Getter
+    private final String templateId;
+    private final Segments body;
+    @Nullable
+    private final Segments subject;
+
+    private CompiledMailTemplate(String templateId, Segments body, @Nullable Segments subject) {
+        this.templateId = templateId;
+        this.body = body;
+        this.subject = subject;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param templateId 正文模板ID
+     * @param source     模板源码
+     * @return compiled template
+     * @throws IllegalArgumentException 占位符未闭合或变量路径为空
+     */
+    public static CompiledMailTemplate compile(String templateId, String source) {
+        Matcher title = TITLE_PATTERN.matcher(source);
+        Segments subject = title.find() ? Segments.parse(templateId, title.group(1).strip()).unescapeLiterals() : null;
+        return new CompiledMailTemplate(templateId, Segments.parse(templateId, source), subject);
+    }
+
+    /**
+     * 渲染邮件主题
+     *
+     * @param model 模板变量
+     * @return 邮件主题，模板中没有{@code <title>}时为空字符串
+     */
+    public String renderSubject(Map<String, ?> model) {
+        if (Objects.isNull(this.subject)) {
+            return "";
+        }
+        StringWriter writer = new StringWriter(64);
+        try {
+            this.subject.render(model, writer, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 渲染邮件正文
+     *
+     * @param model 模板变量
+     * @param out   输出
+     * @throws IOException 写出失败
+     */
+    public void render(Map<String, ?> model, Writer out) throws IOException {
+        this.body.render(model, out, true);
+    }
+
+    /**
+     * 渲染邮件正文
+     *
+     * @param model 模板变量
+     * @return 邮件正文
+     */
+    public String render(Map<String, ?> model) {
+        StringWriter writer = new StringWriter(this.body.estimatedLength());
+        try {
+            this.render(model, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 渲染为纯文本，变量值不做HTML转义，用于邮件主题等非HTML内容
+     *
+     * @param model 模板变量
+     * @return 渲染结果
+     */
+    public String renderText(Map<String, ?> model) {
+        StringWriter writer = new StringWriter(this.body.estimatedLength());
+        try {
+            this.body.render(model, writer, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 创建邮件正文的{@link DataHandler}
+     * <p>正文在SMTP DATA阶段直接渲染到MIME编码输出流，不生成中间字符串；{@code model}在发送完成前不应被修改。</p>
+     *
+     * @param model 模板变量
+     * @return data handler of {@code text/html; charset=UTF-8}
+     */
+    public DataHandler toDataHandler(Map<String, ?> model) {
+        return new RenderingDataHandler(new RenderingDataSource(this, model));
+    }
+
+    /**
+     * 字面量与占位符交替的模板片段：literals[0] expressions[0] literals[1] ... literals[n]
+     */
+    private static final class Segments {
+        private final String[] literals;
+        private final Expression[] expressions;
+
+        private Segments(String[] literals, Expression[] expressions) {
+            this.literals = literals;
+            this.expressions = expressions;
+        }
+
+        static Segments parse(String templateId, String source) {
+            List<String> literals = new ArrayList<>();
+            List<Expression> expressions = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int length = source.length();
+            int i = 0;
+            while (i < length) {
+                char c = source.charAt(i);
+                if (c == '\\' && source.startsWith("${", i + 1)) {
+                    literal.append("${");
+                    i += 3;
+                    continue;
+                }
+                boolean raw = source.startsWith("$!{", i);
+                if (raw || source.startsWith("${", i)) {
+                    int start = i + (raw ? 3 : 2);
+                    int end = source.indexOf('}', start);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unclosed placeholder at offset " + i + " of mail body template '" + templateId + "'");
+                    }
+                    String path = source.substring(start, end).strip();
+                    if (path.isEmpty()) {
+                        throw new IllegalArgumentException("Empty placeholder at offset " + i + " of mail body template '" + templateId + "'");
+                    }
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    expressions.add(new Expression(path.split("\\."), raw));
+                    i = end + 1;
+                    continue;
+                }
+                literal.append(c);
+                i++;
+            }
+            literals.add(literal.toString());
+            return new Segments(literals.toArray(new String[0]), expressions.toArray(new Expression[0]));
+        }
+
+        /**
+         * 解码字面量中的HTML实体，邮件主题是纯文本
+         *
+         * @return segments with plain text literals
+         */
+        Segments unescapeLiterals() {
+            String[] unescaped = new String[this.literals.length];
+            for (int i = 0; i < this.literals.length; i++) {
+                unescaped[i] = HtmlUtils.htmlUnescape(this.literals[i]);
+            }
+            return new Segments(unescaped, this.expressions);
+        }
+
+        void render(Map<String, ?> model, Writer out, boolean escape) throws IOException {
+            for (int i = 0; i < this.expressions.length; i++) {
+                out.write(this.literals[i]);
+                Object value = this.expressions[i].resolve(model);
+                if (Objects.nonNull(value)) {
+                    String text = value.toString();
+                    if (escape && !this.expressions[i].raw) {
+                        escapeHtml(text, out);
+                    } else {
+                        out.write(text);
+                    }
+                }
+            }
+            out.write(this.literals[this.expressions.length]);
+        }
+
+        int estimatedLength() {
+            int length = 16 * this.expressions.length;
+            for (String literal : this.literals) {
+                length += literal.length();
+            }
+            return length;
+        }
+    }
+
+    /**
+     * 占位符
+     *
+     * @param path 变量路径
+     * @param raw  是否原样输出
+     */
+    private record Expression(String[] path, boolean raw) {
+
+        @Nullable
+        Object resolve(Map<String, ?> model) {
+            Object value = model.get(this.path[0]);
+            for (int i = 1; i < this.path.length && Objects.nonNull(value); i++) {
+                value = value instanceof Map<?, ?> map ? map.get(this.path[i]) : readProperty(value, this.path[i]);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 读取JavaBean属性或record组件，访问方法按类型缓存
+     *
+     * @param target   目标对象
+     * @param property 属性名
+     * @return Nullable, 属性不存在时为null
+     */
+    @Nullable
+    private static Object readProperty(Object target, String property) {
+        Method accessor = ACCESSOR_CACHE.computeIfAbsent(target.getClass(), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(property, name -> findAccessor(target.getClass(), name));
+        if (accessor == NO_ACCESSOR) {
+            return null;
+        }
+        try {
+            return accessor.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to read property '" + property + "' of " + target.getClass().getName(), e);
+        }
+    }
+
+    private static Method findAccessor(Class<?> type, String property) {
+        if (type.isRecord()) {
+            for (RecordComponent component : type.getRecordComponents()) {
+                if (component.getName().equals(property)) {
+                    return component.getAccessor();
+                }
+            }
+        }
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, property);
+        if (Objects.nonNull(descriptor) && Objects.nonNull(descriptor.getReadMethod())) {
+            Method readMethod = descriptor.getReadMethod();
+            readMethod.trySetAccessible();
+            return readMethod;
+        }
+        return NO_ACCESSOR;
+    }
+
+    /**
+     * HTML转义，只在遇到特殊字符时分段写出
+     *
+     * @param text 文本
+     * @param out  输出
+     * @throws IOException 写出失败
+     */
+    private static void escapeHtml(String text, Writer out) throws IOException {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (Objects.nonNull(entity)) {
+                out.write(text, start, i - start);
+                out.write(entity);
+                start = i + 1;
+            }
+        }
+        out.write(text, start, text.length() - start);
+    }
+
+    /**
+     * 写出时直接渲染模板的{@link DataHandler}
+     */
+    private static final class RenderingDataHandler extends DataHandler {
+        private final RenderingDataSource dataSource;
+
+        RenderingDataHandler(RenderingDataSource dataSource) {
+            super(dataSource);
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public void writeTo(OutputStream os) throws IOException {
+            this.dataSource.writeTo(os);
+        }
+    }
+
+    /**
+     * 邮件正文数据源
+     * <p>实现{@link EncodingAware}直接声明{@code quoted-printable}编码，避免JavaMail为判断编码先渲染一遍正文。</p>
+     */
+    private static final class RenderingDataSource implements DataSource, EncodingAware {
+        private final CompiledMailTemplate template;
+        private final Map<String, ?> model;
+
+        RenderingDataSource(CompiledMailTemplate template, Map<String, ?> model) {
+            this.template = template;
+            this.model = model;
+        }
+
+        void writeTo(OutputStream os) throws IOException {
+            Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+            this.template.render(this.model, writer);
+            writer.flush();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.template.body.estimatedLength());
+            this.writeTo(bytes);
+            return new ByteArrayInputStream(bytes.toByteArray());
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Rendered mail body is read-only");
+        }
+
+        @Override
+        public String getContentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public String getName() {
+            return this.template.templateId;
+        }
+
+        @Override
+        public String getEncoding() {
+            return "quoted-printable";
+        }
+    }
+}
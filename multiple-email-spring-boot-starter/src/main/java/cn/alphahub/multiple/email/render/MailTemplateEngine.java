@@ -0,0 +1,163 @@
+package cn.alphahub.multiple.email.render;
+
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRenderProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.mail.MailPreparationException;
+
+/**
+ * 邮件正文模板引擎
+ * <p>
+ * 按{@code spring.mail.render.locations}依次查找{@code 正文模板ID + suffix}，首次使用时编译为{@link CompiledMailTemplate}，
+ * 编译结果按LRU缓存最多{@code cache-size}个。文件系统中的模板每隔{@code check-interval}检查一次修改时间，修改后重新编译（热加载）；
+ * jar包中的模板不会变化，不做检查。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class MailTemplateEngine {
+    private final EmailRenderProperties renderProperties;
+    private final ResourceLoader resourceLoader;
+    private final Map<String, CacheEntry> cache;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public MailTemplateEngine(EmailRenderProperties renderProperties, ResourceLoader resourceLoader) {
+        this.renderProperties = renderProperties;
+        this.resourceLoader = resourceLoader;
+        int cacheSize = Math.max(1, renderProperties.getCacheSize());
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * 获取编译好的正文模板
+     *
+     * @param templateId 正文模板ID，如{@code welcome}对应{@code classpath:/templates/email/welcome.html}
+     * @return compiled template
+     * @throws MailPreparationException 模板不存在、读取失败或语法错误
+     */
+    public CompiledMailTemplate getTemplate(String templateId) {
+        CacheEntry entry;
+        this.lock.lock();
+        try {
+            entry = this.cache.get(templateId);
+        } finally {
+            this.lock.unlock();
+        }
+        if (Objects.nonNull(entry) && !this.isModified(entry)) {
+            return entry.template;
+        }
+        CacheEntry loaded = this.load(templateId);
+        this.lock.lock();
+        try {
+            this.cache.put(templateId, loaded);
+        } finally {
+            this.lock.unlock();
+        }
+        return loaded.template;
+    }
+
+    /**
+     * 清空缓存，下次使用时重新编译
+     */
+    public void clearCache() {
+        this.lock.lock();
+        try {
+            this.cache.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 文件系统中的模板距上次检查超过{@code check-interval}时比较修改时间
+     *
+     * @param entry 缓存项
+     * @return true if the template file has changed
+     */
+    private boolean isModified(CacheEntry entry) {
+        long checkIntervalNanos = this.renderProperties.getCheckInterval().toNanos();
+        if (entry.lastModified < 0 || checkIntervalNanos <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long checkedAt = entry.checkedAtNanos;
+        if (now - checkedAt < checkIntervalNanos) {
+            return false;
+        }
+        entry.checkedAtNanos = now;
+        boolean modified = lastModified(entry.resource) != entry.lastModified;
+        if (modified) {
+            log.info("Mail body template '{}' changed, recompiling.", entry.template.getTemplateId());
+        }
+        return modified;
+    }
+
+    private CacheEntry load(String templateId) {
+        if (templateId.isBlank() || templateId.contains("..")) {
+            throw new MailPreparationException("Invalid mail body template id '" + templateId + "'");
+        }
+        for (String location : this.renderProperties.getLocations()) {
+            String path = location.endsWith("/") ? location : location + "/";
+            Resource resource = this.resourceLoader.getResource(path + templateId + this.renderProperties.getSuffix());
+            if (!resource.exists()) {
+                continue;
+            }
+            long lastModified = lastModified(resource);
+            try (InputStream in = resource.getInputStream()) {
+                String source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                return new CacheEntry(CompiledMailTemplate.compile(templateId, source), resource, lastModified);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new MailPreparationException("Failed to compile mail body template '" + templateId + "' from " + resource.getDescription(), e);
+            }
+        }
+        throw new MailPreparationException("Mail body template '" + templateId + "' not found in " + this.renderProperties.getLocations());
+    }
+
+    /**
+     * 文件系统中模板的修改时间
+     *
+     * @param resource 模板资源
+     * @return 修改时间，非文件系统资源为-1
+     */
+    private static long lastModified(Resource resource) {
+        if (!resource.isFile()) {
+            return -1L;
+        }
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * 模板缓存项
+     */
+    private static final class CacheEntry {
+        private final CompiledMailTemplate template;
+        private final Resource resource;
+        private final long lastModified;
+        private volatile long checkedAtNanos = System.nanoTime();
+
+        CacheEntry(CompiledMailTemplate template, Resource resource, long lastModified) {
+            this.template = template;
+            this.resource = resource;
+            this.lastModified = lastModified;
+        }
+    }
+}
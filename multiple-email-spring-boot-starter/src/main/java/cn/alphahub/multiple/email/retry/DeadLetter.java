@@ -0,0 +1,24 @@
+package cn.alphahub.multiple.email.retry;
+
+import jakarta.mail.internet.MimeMessage;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.lang.Nullable;
+
+/**
+ * 最终发送失败的邮件
+ *
+ * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+ * @param message      最后一次尝试构建的邮件，构建失败时为null
+ * @param failure      最后一次发送的异常
+ * @param replyCodes   最后一次发送的SMTP应答码
+ * @param attempts     已尝试次数
+ * @param permanent    是否为永久失败，false表示暂时性失败但重试次数已用尽或即将超过截止时间
+ * @param failedAt     放弃发送的时间
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public record DeadLetter(String templateName, @Nullable MimeMessage message, Throwable failure, List<Integer> replyCodes,
+                         int attempts, boolean permanent, Instant failedAt) {
+}
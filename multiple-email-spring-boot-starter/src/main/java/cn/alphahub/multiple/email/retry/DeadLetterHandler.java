@@ -0,0 +1,23 @@
+package cn.alphahub.multiple.email.retry;
+
+/**
+ * 最终发送失败邮件的处理器
+ * <p>
+ * 永久失败或重试次数用尽的邮件在返回的future以异常结束前交给此处理器，
+ * 可用于持久化、人工处理或标记无效收件人；容器中没有此类型的Bean时只记录错误日志。
+ * 处理器在邮件发送线程中调用，不应长时间阻塞。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@FunctionalInterface
+public interface DeadLetterHandler {
+
+    /**
+     * 处理最终发送失败的邮件
+     *
+     * @param deadLetter 最终发送失败的邮件
+     */
+    void handle(DeadLetter deadLetter);
+}
@@ -0,0 +1,94 @@
+package cn.alphahub.multiple.email.retry;
+
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRetryProperties;
+import cn.alphahub.multiple.email.transport.SmtpReplies;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 发送失败重试策略
+ * <p>
+ * 只重试{@link SmtpReplies#isTransient(Throwable)}判定的暂时性失败，第{@code n}次重试前等待
+ * {@code min(max-backoff, initial-backoff * multiplier^(n-1))}，并在其中随机抖动{@code jitter}比例，
+ * 避免大量邮件在同一时刻重试，再次触发服务器限流。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class RetryPolicy {
+    /**
+     * 不重试
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, 1.0, Duration.ZERO, 0.0);
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final double multiplier;
+    private final long maxBackoffNanos;
+    private final double jitter;
+
+    /**
+     * @param maxAttempts    最多尝试次数，包括第一次发送
+     * @param initialBackoff 第一次重试前的等待时间
+     * @param multiplier     每次重试等待时间的倍数
+     * @param maxBackoff     等待时间上限
+     * @param jitter         随机抖动比例，0到1之间
+     */
+    public RetryPolicy(int maxAttempts, Duration initialBackoff, double multiplier, Duration maxBackoff, double jitter) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffNanos = Math.max(0L, initialBackoff.toNanos());
+        this.multiplier = Math.max(1.0, multiplier);
+        this.maxBackoffNanos = Math.max(this.initialBackoffNanos, maxBackoff.toNanos());
+        this.jitter = Math.min(1.0, Math.max(0.0, jitter));
+    }
+
+    /**
+     * 按配置创建重试策略，未启用时为{@link #NONE}
+     *
+     * @param properties retry properties
+     * @return retry policy
+     */
+    public static RetryPolicy of(EmailRetryProperties properties) {
+        if (!properties.isEnabled()) {
+            return NONE;
+        }
+        return new RetryPolicy(properties.getMaxAttempts(), Objects.requireNonNullElse(properties.getInitialBackoff(), Duration.ZERO),
+                properties.getMultiplier(), Objects.requireNonNullElse(properties.getMaxBackoff(), Duration.ZERO), properties.getJitter());
+    }
+
+    /**
+     * 最多尝试次数，包括第一次发送
+     *
+     * @return max attempts
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * 第{@code attempt}次发送失败后是否重试
+     *
+     * @param failure 发送异常
+     * @param attempt 已尝试次数，从1开始
+     * @return true if the mail should be sent again
+     */
+    public boolean shouldRetry(Throwable failure, int attempt) {
+        return attempt < this.maxAttempts && SmtpReplies.isTransient(failure);
+    }
+
+    /**
+     * 第{@code attempt}次发送失败后，下一次重试前的等待时间
+     *
+     * @param attempt 已尝试次数，从1开始
+     * @return backoff with jitter applied
+     */
+    public Duration backoff(int attempt) {
+        double exponential = this.initialBackoffNanos * Math.pow(this.multiplier, Math.max(0, attempt - 1));
+        long base = (long) Math.min(this.maxBackoffNanos, exponential);
+        long spread = (long) (base * this.jitter);
+        long nanos = base - spread + (spread > 0 ? ThreadLocalRandom.current().nextLong(spread + 1) : 0L);
+        return Duration.ofNanos(nanos);
+    }
+}
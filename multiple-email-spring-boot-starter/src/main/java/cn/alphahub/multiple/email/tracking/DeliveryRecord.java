@@ -0,0 +1,42 @@
+package cn.alphahub.multiple.email.tracking;
+
+import java.time.Instant;
+import java.util.List;
+import org.springframework.lang.Nullable;
+
+/**
+ * 一次发送的投递记录，状态变化时整体替换
+ *
+ * @param id           记录ID，即{@code SendResult#getTrackingId()}
+ * @param templateName 邮件模板名称，使用邮件模板组时发送成功前为组名称，成功后为实际发送的邮件模板
+ * @param status       投递状态
+ * @param attempts     已尝试次数
+ * @param recipients   信封收件人，邮件构建前为空
+ * @param queuedAt     提交时间
+ * @param startedAt    Nullable, 第一次开始发送的时间
+ * @param finishedAt   Nullable, 发送成功或失败的时间
+ * @param messageId    Nullable, 邮件的Message-ID
+ * @param replyCode    Nullable, 失败时的SMTP应答码
+ * @param smtpResponse Nullable, 成功时服务器对邮件数据的应答，失败或等待重试时为失败原因
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public record DeliveryRecord(String id, String templateName, DeliveryStatus status, int attempts, List<String> recipients, Instant queuedAt,
+                             @Nullable Instant startedAt, @Nullable Instant finishedAt, @Nullable String messageId,
+                             @Nullable Integer replyCode, @Nullable String smtpResponse) {
+
+    DeliveryRecord sending(int attempt, Instant now) {
+        return new DeliveryRecord(id, templateName, DeliveryStatus.SENDING, attempt, recipients, queuedAt, startedAt == null ? now : startedAt,
+                null, messageId, replyCode, smtpResponse);
+    }
+
+    DeliveryRecord retrying(@Nullable Integer replyCode, @Nullable String smtpResponse) {
+        return new DeliveryRecord(id, templateName, DeliveryStatus.RETRYING, attempts, recipients, queuedAt, startedAt, null, messageId, replyCode, smtpResponse);
+    }
+
+    DeliveryRecord finish(DeliveryStatus status, String templateName, List<String> recipients, Instant now, @Nullable String messageId,
+                          @Nullable Integer replyCode, @Nullable String smtpResponse) {
+        return new DeliveryRecord(id, templateName, status, attempts, recipients, queuedAt, startedAt, now, messageId, replyCode, smtpResponse);
+    }
+}
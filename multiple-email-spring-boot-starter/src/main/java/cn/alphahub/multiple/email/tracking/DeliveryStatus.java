@@ -0,0 +1,41 @@
+package cn.alphahub.multiple.email.tracking;
+
+/**
+ * 邮件投递状态
+ * <p>序号写入投递记录日志，新增状态只能追加在末尾。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public enum DeliveryStatus {
+    /**
+     * 已提交，等待执行器名额、定时发送时间
+     */
+    QUEUED,
+    /**
+     * 正在构建邮件或与SMTP服务器交互
+     */
+    SENDING,
+    /**
+     * 服务器已接收邮件，部分收件人被拒绝时也视为已发送
+     */
+    SENT,
+    /**
+     * 永久失败、重试次数用尽、超过截止时间、被拒绝、超时或被取消
+     */
+    FAILED,
+    /**
+     * 暂时性失败，在时间轮上等待重试
+     */
+    RETRYING;
+
+    /**
+     * 是否为最终状态
+     *
+     * @return true if sent or failed
+     */
+    public boolean isFinished() {
+        return this == SENT || this == FAILED;
+    }
+}
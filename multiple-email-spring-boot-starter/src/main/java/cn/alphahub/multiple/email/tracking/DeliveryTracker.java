@@ -0,0 +1,525 @@
+package cn.alphahub.multiple.email.tracking;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.recipient.RecipientResult;
+import cn.alphahub.multiple.email.transport.SmtpReplies;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+
+/**
+ * 邮件投递记录
+ * <p>
+ * 每次发送（拆分信封时每个信封）生成一条记录，记录提交、发送、重试、成功或失败的时间、Message-ID和SMTP应答，
+ * 供客服、运维按记录ID查询投递情况，或按状态列出最近的发送，不必在各节点的日志中查找：
+ * <ul>
+ *     <li>记录保存在容量为{@code max-records}的环形数组中，记录ID由递增序号生成，序号对容量取模即为槽位，查找不需要额外的哈希表；
+ *     写满后新记录覆盖最早的记录</li>
+ *     <li>状态变化时以CAS整体替换不可变的{@link DeliveryRecord}，发送线程之间不加锁</li>
+ *     <li>配置了目录时，发送成功或失败的记录追加写入日志文件，重启后加载并从最大序号继续编号；
+ *     日志记录数达到容量时开始新文件并删除更早的文件，最多保留两个文件。未结束的记录不写日志，进程崩溃时丢失</li>
+ * </ul>
+ * 调用方等待超时或取消后，已开始的发送仍可能成功，此时失败的记录更新为{@link DeliveryStatus#SENT}。
+ * 记录只保存在本节点，集群部署时按{@code SendResult#getTrackingId()}到发送该邮件的节点查询。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class DeliveryTracker implements DisposableBean {
+    /**
+     * 不记录投递状态
+     */
+    public static final DeliveryTracker NONE = new DeliveryTracker();
+
+    private static final String JOURNAL_SUFFIX = ".dlv";
+    private static final int MAX_RESPONSE_LENGTH = 512;
+
+    private final int capacity;
+    private final AtomicReferenceArray<DeliveryRecord> records;
+    /**
+     * 各状态的记录数量，按{@link DeliveryStatus#ordinal()}索引
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(DeliveryStatus.values().length);
+    private final AtomicLong sequence;
+    private final Path directory;
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private Path journalFile;
+    private DataOutputStream journal;
+    private int journalRecords;
+
+    private DeliveryTracker() {
+        this.capacity = 0;
+        this.records = null;
+        this.sequence = new AtomicLong();
+        this.directory = null;
+    }
+
+    /**
+     * @param maxRecords 最多保存的记录数量
+     * @param directory  Nullable, 日志目录，为空时只保存在内存中
+     * @throws IOException 读取日志目录失败
+     */
+    public DeliveryTracker(int maxRecords, @Nullable Path directory) throws IOException {
+        this.capacity = Math.max(1, maxRecords);
+        this.records = new AtomicReferenceArray<>(this.capacity);
+        this.directory = Objects.nonNull(directory) ? Files.createDirectories(directory) : null;
+        long next = this.load();
+        // 没有日志时从当前时间开始编号，重启后不会重复使用上次运行的记录ID
+        this.sequence = new AtomicLong(next >= 0 ? next : System.currentTimeMillis() * 1000L);
+    }
+
+    /**
+     * 记录已提交的邮件
+     *
+     * @param templateName 邮件模板名称，使用邮件模板组时为组名称
+     * @return 记录ID，不记录投递状态时为null
+     */
+    @Nullable
+    public String queued(String templateName) {
+        if (Objects.isNull(this.records)) {
+            return null;
+        }
+        long seq = this.sequence.getAndIncrement();
+        String id = Long.toString(seq, Character.MAX_RADIX);
+        this.store(seq, new DeliveryRecord(id, templateName, DeliveryStatus.QUEUED, 0, List.of(), Instant.now(), null, null, null, null, null));
+        return id;
+    }
+
+    /**
+     * 开始一次发送尝试
+     *
+     * @param id      Nullable, 记录ID
+     * @param attempt 第几次尝试，从1开始
+     */
+    public void sending(@Nullable String id, int attempt) {
+        Instant now = Instant.now();
+        this.update(id, current -> !current.status().isFinished(), current -> current.sending(attempt, now));
+    }
+
+    /**
+     * 发送尝试暂时性失败，已安排重试
+     *
+     * @param id      Nullable, 记录ID
+     * @param attempt 失败的是第几次尝试，重试已开始时忽略
+     * @param failure 本次发送的异常
+     */
+    public void retrying(@Nullable String id, int attempt, Throwable failure) {
+        List<Integer> codes = SmtpReplies.replyCodes(failure);
+        this.update(id, current -> current.status() == DeliveryStatus.SENDING && current.attempts() == attempt,
+                current -> current.retrying(codes.isEmpty() ? null : codes.get(0), describe(failure)));
+    }
+
+    /**
+     * 发送成功
+     *
+     * @param id     Nullable, 记录ID
+     * @param result 发送结果
+     */
+    public void sent(@Nullable String id, SendResult result) {
+        Instant now = Instant.now();
+        List<String> recipients = result.getRecipients().stream().map(RecipientResult::getAddress).toList();
+        DeliveryRecord record = this.update(id, current -> current.status() != DeliveryStatus.SENT,
+                current -> current.finish(DeliveryStatus.SENT, StringUtils.defaultIfEmpty(result.getTemplateName(), current.templateName()),
+                        recipients.isEmpty() ? current.recipients() : recipients, now, result.getMessageId(), null,
+                        StringUtils.abbreviate(result.getSmtpResponse(), MAX_RESPONSE_LENGTH)));
+        this.journal(record);
+    }
+
+    /**
+     * 发送失败，不再重试
+     *
+     * @param id      Nullable, 记录ID
+     * @param failure 失败原因
+     * @param message Nullable, 最后一次尝试构建的邮件
+     */
+    public void failed(@Nullable String id, Throwable failure, @Nullable MimeMessage message) {
+        Instant now = Instant.now();
+        Throwable cause = failure instanceof CompletionException && Objects.nonNull(failure.getCause()) ? failure.getCause() : failure;
+        List<Integer> codes = SmtpReplies.replyCodes(cause);
+        List<String> recipients = recipientsOf(message);
+        String messageId = messageIdOf(message);
+        DeliveryRecord record = this.update(id, current -> !current.status().isFinished(),
+                current -> current.finish(DeliveryStatus.FAILED, current.templateName(), recipients.isEmpty() ? current.recipients() : recipients, now,
+                        Objects.nonNull(messageId) ? messageId : current.messageId(), codes.isEmpty() ? null : codes.get(0), describe(cause)));
+        this.journal(record);
+    }
+
+    /**
+     * 按发送结果结束记录，用于批量发送等没有原始异常的场景
+     *
+     * @param id     Nullable, 记录ID
+     * @param result 发送结果
+     */
+    public void finished(@Nullable String id, SendResult result) {
+        if (result.isSuccess()) {
+            this.sent(id, result);
+            return;
+        }
+        Instant now = Instant.now();
+        List<String> recipients = result.getRecipients().stream().map(RecipientResult::getAddress).toList();
+        Integer replyCode = result.getRecipients().stream().map(RecipientResult::getReplyCode).filter(Objects::nonNull).findFirst().orElse(null);
+        DeliveryRecord record = this.update(id, current -> !current.status().isFinished(),
+                current -> current.finish(DeliveryStatus.FAILED, current.templateName(), recipients.isEmpty() ? current.recipients() : recipients, now,
+                        Objects.nonNull(result.getMessageId()) ? result.getMessageId() : current.messageId(), replyCode,
+                        StringUtils.abbreviate(result.getErrorMessage(), MAX_RESPONSE_LENGTH)));
+        this.journal(record);
+    }
+
+    /**
+     * 删除未被接受的邮件的记录，例如执行器饱和时{@code trySend}返回空
+     *
+     * @param id Nullable, 记录ID
+     */
+    public void discard(@Nullable String id) {
+        long seq = parse(id);
+        if (seq < 0 || Objects.isNull(this.records)) {
+            return;
+        }
+        int slot = this.slot(seq);
+        DeliveryRecord current = this.records.get(slot);
+        if (Objects.nonNull(current) && current.id().equals(id) && this.records.compareAndSet(slot, current, null)) {
+            this.counts.decrementAndGet(current.status().ordinal());
+        }
+    }
+
+    /**
+     * 按记录ID查询
+     *
+     * @param id 记录ID
+     * @return 投递记录，不存在或已被覆盖时为空
+     */
+    public Optional<DeliveryRecord> find(String id) {
+        long seq = parse(id);
+        if (seq < 0 || Objects.isNull(this.records)) {
+            return Optional.empty();
+        }
+        DeliveryRecord record = this.records.get(this.slot(seq));
+        return Objects.nonNull(record) && record.id().equals(id) ? Optional.of(record) : Optional.empty();
+    }
+
+    /**
+     * 按提交时间从新到老列出最近的记录
+     *
+     * @param status Nullable, 投递状态，为空时列出全部状态
+     * @param limit  最多返回的记录数量
+     * @return 投递记录
+     */
+    public List<DeliveryRecord> list(@Nullable DeliveryStatus status, int limit) {
+        if (Objects.isNull(this.records) || limit <= 0) {
+            return List.of();
+        }
+        List<DeliveryRecord> result = new ArrayList<>(Math.min(limit, 64));
+        long newest = this.sequence.get() - 1;
+        for (long seq = newest; seq >= 0 && seq > newest - this.capacity && result.size() < limit; seq--) {
+            DeliveryRecord record = this.records.get(this.slot(seq));
+            if (Objects.nonNull(record) && (Objects.isNull(status) || record.status() == status) && parse(record.id()) == seq) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 保存的指定状态的记录数量
+     *
+     * @param status 投递状态
+     * @return record count
+     */
+    public long getCount(DeliveryStatus status) {
+        return this.counts.get(status.ordinal());
+    }
+
+    /**
+     * 最多保存的记录数量
+     *
+     * @return capacity, 不记录投递状态时为0
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    private int slot(long seq) {
+        return (int) Math.floorMod(seq, (long) this.capacity);
+    }
+
+    /**
+     * 放入新记录，覆盖槽位中较早的记录
+     * <p>取得序号后被挂起的线程可能晚于序号大一圈的记录写入，此时丢弃本记录，不覆盖更新的记录。</p>
+     */
+    private void store(long seq, DeliveryRecord record) {
+        int slot = this.slot(seq);
+        while (true) {
+            DeliveryRecord evicted = this.records.get(slot);
+            if (Objects.nonNull(evicted) && parse(evicted.id()) > seq) {
+                return;
+            }
+            if (this.records.compareAndSet(slot, evicted, record)) {
+                if (Objects.nonNull(evicted)) {
+                    this.counts.decrementAndGet(evicted.status().ordinal());
+                }
+                this.counts.incrementAndGet(record.status().ordinal());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 替换记录，记录已被覆盖或不满足{@code applicable}时忽略
+     *
+     * @return 替换后的记录，未替换时为null
+     */
+    @Nullable
+    private DeliveryRecord update(@Nullable String id, Predicate<DeliveryRecord> applicable, UnaryOperator<DeliveryRecord> transition) {
+        long seq = parse(id);
+        if (seq < 0 || Objects.isNull(this.records)) {
+            return null;
+        }
+        int slot = this.slot(seq);
+        while (true) {
+            DeliveryRecord current = this.records.get(slot);
+            if (Objects.isNull(current) || !current.id().equals(id) || !applicable.test(current)) {
+                return null;
+            }
+            DeliveryRecord next = transition.apply(current);
+            if (this.records.compareAndSet(slot, current, next)) {
+                this.counts.decrementAndGet(current.status().ordinal());
+                this.counts.incrementAndGet(next.status().ordinal());
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 追加写入已结束的记录，日志记录数达到容量时开始新文件
+     */
+    private void journal(@Nullable DeliveryRecord record) {
+        if (Objects.isNull(record) || Objects.isNull(this.directory)) {
+            return;
+        }
+        this.journalLock.lock();
+        try {
+            if (Objects.isNull(this.journalFile) || this.journalRecords >= this.capacity) {
+                this.rotate(parse(record.id()));
+            }
+            if (Objects.isNull(this.journal)) {
+                this.journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.journalFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+            }
+            write(this.journal, record);
+            this.journal.flush();
+            this.journalRecords++;
+        } catch (IOException e) {
+            log.warn("Failed to persist delivery record '{}' to {}", record.id(), this.journalFile, e);
+        } finally {
+            this.journalLock.unlock();
+        }
+    }
+
+    /**
+     * 开始新的日志文件，只保留上一个文件，持有锁时调用
+     */
+    private void rotate(long firstSequence) throws IOException {
+        this.closeJournal();
+        Path previous = this.journalFile;
+        for (Path file : this.journalFiles()) {
+            if (!file.equals(previous)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        this.journalFile = this.directory.resolve(firstSequence + JOURNAL_SUFFIX);
+        this.journalRecords = 0;
+    }
+
+    /**
+     * 加载日志目录中最新的两个文件，日志末尾不完整的记录被忽略
+     *
+     * @return 下一个序号，没有日志时为-1
+     */
+    private long load() throws IOException {
+        if (Objects.isNull(this.directory)) {
+            return -1L;
+        }
+        List<Path> files = this.journalFiles();
+        long next = -1L;
+        int loaded = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            if (i < files.size() - 2) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    DeliveryRecord record = read(in);
+                    long seq = parse(record.id());
+                    DeliveryRecord current = this.records.get(this.slot(seq));
+                    // 同一记录先失败后成功时写入两次，以后写入的为准
+                    if (Objects.isNull(current) || parse(current.id()) <= seq) {
+                        this.store(seq, record);
+                    }
+                    next = Math.max(next, seq + 1);
+                    loaded++;
+                }
+            } catch (EOFException e) {
+                // 日志末尾
+            }
+            this.journalFile = file;
+        }
+        // 不在可能不完整的文件末尾追加，下次写入时开始新文件
+        this.journalRecords = this.capacity;
+        if (loaded > 0) {
+            log.info("Loaded {} delivery records from {}", loaded, this.directory);
+        }
+        return next;
+    }
+
+    private List<Path> journalFiles() throws IOException {
+        try (Stream<Path> stream = Files.list(this.directory)) {
+            return stream.filter(file -> file.getFileName().toString().endsWith(JOURNAL_SUFFIX))
+                    .sorted(Comparator.comparingLong(DeliveryTracker::start))
+                    .toList();
+        }
+    }
+
+    private static long start(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - JOURNAL_SUFFIX.length()));
+    }
+
+    private static void write(DataOutputStream out, DeliveryRecord record) throws IOException {
+        out.writeLong(parse(record.id()));
+        out.writeUTF(record.templateName());
+        out.writeByte(record.status().ordinal());
+        out.writeInt(record.attempts());
+        out.writeInt(record.recipients().size());
+        for (String recipient : record.recipients()) {
+            out.writeUTF(recipient);
+        }
+        out.writeLong(record.queuedAt().toEpochMilli());
+        out.writeLong(Objects.nonNull(record.startedAt()) ? record.startedAt().toEpochMilli() : -1L);
+        out.writeLong(Objects.nonNull(record.finishedAt()) ? record.finishedAt().toEpochMilli() : -1L);
+        out.writeUTF(StringUtils.defaultString(record.messageId()));
+        out.writeInt(Objects.nonNull(record.replyCode()) ? record.replyCode() : -1);
+        out.writeUTF(StringUtils.defaultString(record.smtpResponse()));
+    }
+
+    private static DeliveryRecord read(DataInputStream in) throws IOException {
+        String id = Long.toString(in.readLong(), Character.MAX_RADIX);
+        String templateName = in.readUTF();
+        DeliveryStatus status = DeliveryStatus.values()[in.readByte()];
+        int attempts = in.readInt();
+        int recipientCount = in.readInt();
+        List<String> recipients = new ArrayList<>(recipientCount);
+        for (int i = 0; i < recipientCount; i++) {
+            recipients.add(in.readUTF());
+        }
+        Instant queuedAt = Instant.ofEpochMilli(in.readLong());
+        long startedAt = in.readLong();
+        long finishedAt = in.readLong();
+        String messageId = in.readUTF();
+        int replyCode = in.readInt();
+        String smtpResponse = in.readUTF();
+        return new DeliveryRecord(id, templateName, status, attempts, List.copyOf(recipients), queuedAt,
+                startedAt < 0 ? null : Instant.ofEpochMilli(startedAt), finishedAt < 0 ? null : Instant.ofEpochMilli(finishedAt),
+                StringUtils.defaultIfEmpty(messageId, null), replyCode < 0 ? null : replyCode, StringUtils.defaultIfEmpty(smtpResponse, null));
+    }
+
+    /**
+     * @return 记录ID对应的序号，格式不正确时为-1
+     */
+    private static long parse(@Nullable String id) {
+        if (StringUtils.isEmpty(id)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(id, Character.MAX_RADIX);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static String describe(Throwable failure) {
+        return StringUtils.abbreviate(StringUtils.defaultIfEmpty(failure.getMessage(), failure.getClass().getName()), MAX_RESPONSE_LENGTH);
+    }
+
+    private static List<String> recipientsOf(@Nullable MimeMessage message) {
+        Address[] addresses = null;
+        try {
+            addresses = Objects.nonNull(message) ? message.getAllRecipients() : null;
+        } catch (MessagingException e) {
+            // 收件人头格式错误，保留已有的收件人
+        }
+        if (Objects.isNull(addresses)) {
+            return List.of();
+        }
+        List<String> recipients = new ArrayList<>(addresses.length);
+        for (Address address : addresses) {
+            recipients.add(address instanceof InternetAddress internetAddress ? internetAddress.getAddress() : address.toString());
+        }
+        return recipients;
+    }
+
+    @Nullable
+    private static String messageIdOf(@Nullable MimeMessage message) {
+        try {
+            return Objects.nonNull(message) ? message.getMessageID() : null;
+        } catch (MessagingException e) {
+            return null;
+        }
+    }
+
+    private void closeJournal() {
+        if (Objects.isNull(this.journal)) {
+            return;
+        }
+        try {
+            this.journal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close delivery journal {}", this.journalFile, e);
+        }
+        this.journal = null;
+    }
+
+    /**
+     * 关闭日志文件，保留文件供重启后加载
+     */
+    @Override
+    public void destroy() {
+        this.journalLock.lock();
+        try {
+            this.closeJournal();
+        } finally {
+            this.journalLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package cn.alphahub.multiple.email.transport;
+
+import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailPoolProperties;
+import cn.alphahub.multiple.email.metrics.EmailMetrics;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.NoSuchProviderException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+import jakarta.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPSSLTransport;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+/**
+ * 复用SMTP连接的邮件发送实例
+ * <p>
+ * 每个邮件模板持有一个有界的已连接{@link Transport}池，发送时借出连接、发送完成后归还，
+ * 避免每封邮件都重新进行TCP+TLS+AUTH握手。
+ * <ul>
+ *     <li>1. 连接空闲超过{@code max-idle-time}或存活超过{@code max-lifetime}后关闭</li>
+ *     <li>2. 单个连接发送邮件数达到{@code max-messages-per-connection}后关闭</li>
+ *     <li>3. 连接空闲超过{@code validation-interval}时借出前发送NOOP检测连接是否可用</li>
+ *     <li>4. 复用的连接在服务器接受{@code MAIL FROM}之前断开，自动重连并重发一次；之后断开时服务器可能已收下邮件，不重发</li>
+ * </ul>
+ * 未开启连接池时每次发送新建连接，发送完成后关闭，与{@link JavaMailSenderImpl}行为一致。
+ * <p>
+ * 配置了{@link SmtpRateLimiter}时，每封邮件发送前获取许可，并根据服务器的限流应答调整速率。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+    /**
+     * 连接池配置
+     */
+    private final EmailPoolProperties poolProperties;
+    /**
+     * 空闲连接，队头为最近归还的连接
+     */
+    private final LinkedBlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+    /**
+     * 连接数许可
+     */
+    private final Semaphore permits;
+    /**
+     * 上次清理空闲连接的时刻
+     */
+    private volatile long lastEvictionNanos = System.nanoTime();
+    /**
+     * 连接池是否已关闭
+     */
+    private volatile boolean closed;
+    /**
+     * 是否已被重新加载的配置替换，替换后不再复用连接
+     */
+    private volatile boolean retired;
+    /**
+     * 同时进行SMTP交互的并发数限制，为null时不限制
+     */
+    @Nullable
+    private Semaphore concurrencyLimit;
+    /**
+     * 发送速率限制，为null时不限制
+     */
+    @Nullable
+    private SmtpRateLimiter rateLimiter;
+    /**
+     * 邮件模板名称，用于指标标签
+     */
+    private String templateName = Email.DEFAULT_TEMPLATE;
+    /**
+     * 发送指标
+     */
+    private EmailMetrics metrics = EmailMetrics.NOOP;
+
+    public PooledJavaMailSender(EmailPoolProperties poolProperties) {
+        this.poolProperties = Objects.requireNonNull(poolProperties, "poolProperties");
+        this.permits = new Semaphore(Math.max(1, poolProperties.getMaxSize()), true);
+    }
+
+    /**
+     * 限制同时进行SMTP交互的发送数量
+     * <p>
+     * 虚拟线程模式下线程数不再限制并发，由此信号量限制单个邮件模板的并发。
+     * JavaMail的{@code SMTPTransport}在{@code synchronized}方法内进行socket读写，JDK 24以前会固定(pin)载体线程，
+     * 信号量同时限制了被固定的载体线程数量；连接池本身只使用{@code java.util.concurrent}锁，不会固定载体线程。
+     *
+     * @param maxConcurrency 最大并发数
+     */
+    public void setConcurrencyLimit(int maxConcurrency) {
+        this.concurrencyLimit = new Semaphore(Math.max(1, maxConcurrency), true);
+    }
+
+    /**
+     * 发送速率限制
+     *
+     * @return Nullable, rate limiter
+     */
+    @Nullable
+    public SmtpRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * 设置发送速率限制，每封邮件发送前获取一个许可
+     *
+     * @param rateLimiter Nullable, rate limiter
+     */
+    public void setRateLimiter(@Nullable SmtpRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * 设置发送指标
+     *
+     * @param templateName 邮件模板名称
+     * @param metrics      email metrics
+     */
+    public void setMetrics(String templateName, EmailMetrics metrics) {
+        this.templateName = templateName;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 建立SMTP连接并记录连接耗时
+     *
+     * @return connected transport
+     * @throws MessagingException 连接或认证失败
+     */
+    @Override
+    protected Transport connectTransport() throws MessagingException {
+        long startTime = System.nanoTime();
+        boolean connected = false;
+        try {
+            Transport transport = super.connectTransport();
+            connected = true;
+            return transport;
+        } finally {
+            this.metrics.recordConnect(this.templateName, System.nanoTime() - startTime, connected);
+        }
+    }
+
+    /**
+     * 使用记录{@code MAIL FROM}是否已被接受的SMTP连接，其他协议的连接保持不变
+     *
+     * @param session mail session
+     * @return transport
+     * @throws NoSuchProviderException 找不到协议对应的实现
+     */
+    @Override
+    protected Transport getTransport(Session session) throws NoSuchProviderException {
+        Transport transport = super.getTransport(session);
+        if (transport.getClass() == SMTPTransport.class) {
+            return new EnvelopeTrackingTransport(session, transport.getURLName(), "smtp", false);
+        }
+        if (transport.getClass() == SMTPSSLTransport.class) {
+            return new EnvelopeTrackingTransport(session, transport.getURLName(), "smtps", true);
+        }
+        return transport;
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        Semaphore limit = this.concurrencyLimit;
+        if (limit == null) {
+            this.doSendInternal(mimeMessages, originalMessages);
+            return;
+        }
+        try {
+            limit.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while waiting for a send permit", ex);
+        }
+        try {
+            this.doSendInternal(mimeMessages, originalMessages);
+        } finally {
+            limit.release();
+        }
+    }
+
+    /**
+     * 当前空闲连接数
+     *
+     * @return idle count
+     */
+    public int getIdleCount() {
+        return this.idleTransports.size();
+    }
+
+    /**
+     * 当前借出连接数
+     *
+     * @return active count
+     */
+    public int getActiveCount() {
+        return Math.max(1, this.poolProperties.getMaxSize()) - this.permits.availablePermits();
+    }
+
+    /**
+     * 使用连接池中的连接发送邮件，未开启连接池时每次调用新建连接并在发送完成后关闭
+     *
+     * @param mimeMessages     MimeMessage objects to send
+     * @param originalMessages corresponding original message objects that the MimeMessages have been created from
+     * @throws MailException in case of failure when sending a message
+     */
+    private void doSendInternal(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        SmtpRateLimiter limiter = this.rateLimiter;
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport transport = null;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                // 先取得发送许可再借出连接，被限速等待的线程不占用连接池中的连接
+                if (limiter != null) {
+                    try {
+                        limiter.acquire();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            Object original = (originalMessages != null ? originalMessages[j] : mimeMessages[j]);
+                            failedMessages.put(original, ex);
+                        }
+                        break;
+                    }
+                }
+                if (transport == null || transport.isExhausted()) {
+                    this.release(transport);
+                    transport = null;
+                    try {
+                        transport = this.borrow();
+                    } catch (AuthenticationFailedException ex) {
+                        throw new MailAuthenticationException(ex);
+                    } catch (Exception ex) {
+                        if (ex instanceof InterruptedException) {
+                            Thread.currentThread().interrupt();
+                        }
+                        if (limiter != null && SmtpReplies.isThrottled(ex)) {
+                            limiter.onThrottled();
+                        }
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            Object original = (originalMessages != null ? originalMessages[j] : mimeMessages[j]);
+                            failedMessages.put(original, ex);
+                        }
+                        throw new MailSendException("Mail server connection failed", ex, failedMessages);
+                    }
+                }
+                MimeMessage mimeMessage = mimeMessages[i];
+                long startTime = System.nanoTime();
+                try {
+                    this.prepare(mimeMessage);
+                    try {
+                        transport.send(mimeMessage);
+                    } catch (MessagingException | IllegalStateException ex) {
+                        // 服务器接受MAIL FROM后断开时邮件可能已被收下，重发会导致重复投递
+                        if (!transport.isReused() || !isConnectionBroken(ex) || transport.isEnvelopeStarted()) {
+                            throw ex;
+                        }
+                        log.debug("Pooled SMTP connection to {} was closed by peer, reconnecting.", this.getHost());
+                        transport.broken = true;
+                        this.release(transport);
+                        transport = null;
+                        transport = this.borrowNew();
+                        transport.send(mimeMessage);
+                    }
+                    this.metrics.recordSend(this.templateName, System.nanoTime() - startTime, true);
+                    if (limiter != null) {
+                        limiter.onSuccess();
+                    }
+                } catch (Exception ex) {
+                    this.metrics.recordSend(this.templateName, System.nanoTime() - startTime, false);
+                    Object original = (originalMessages != null ? originalMessages[i] : mimeMessage);
+                    failedMessages.put(original, ex);
+                    if (limiter != null && SmtpReplies.isThrottled(ex)) {
+                        limiter.onThrottled();
+                    }
+                    if (transport != null && !transport.transport.isConnected()) {
+                        transport.broken = true;
+                    }
+                }
+            }
+        } finally {
+            this.release(transport);
+        }
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    /**
+     * 与{@link JavaMailSenderImpl}一致：补充发送日期并保留调用方指定的Message-ID
+     *
+     * @param mimeMessage mime message
+     * @throws MessagingException messaging exception
+     */
+    private void prepare(MimeMessage mimeMessage) throws MessagingException {
+        if (mimeMessage.getSentDate() == null) {
+            mimeMessage.setSentDate(new Date());
+        }
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+        if (messageId != null) {
+            mimeMessage.setHeader("Message-ID", messageId);
+        }
+    }
+
+    /**
+     * 借出一个可用连接：优先复用空闲连接，否则新建连接
+     *
+     * @return pooled transport
+     * @throws MessagingException   连接失败
+     * @throws InterruptedException 等待连接时被中断
+     */
+    private PooledTransport borrow() throws MessagingException, InterruptedException {
+        if (this.closed) {
+            throw new IllegalStateException("Mail sender connection pool has been closed");
+        }
+        if (!this.poolProperties.isEnabled()) {
+            return new PooledTransport(this.connectTransport(), false);
+        }
+        if (!this.permits.tryAcquire(this.poolProperties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new MessagingException("Timeout waiting for an idle SMTP connection to " + this.getHost());
+        }
+        try {
+            long now = System.nanoTime();
+            PooledTransport transport;
+            while ((transport = this.idleTransports.pollFirst()) != null) {
+                if (transport.isExpired(now)) {
+                    transport.close();
+                    continue;
+                }
+                if (now - transport.lastUsedNanos > this.poolProperties.getValidationInterval().toNanos()
+                        && !transport.transport.isConnected()) {
+                    transport.close();
+                    continue;
+                }
+                return transport;
+            }
+            return new PooledTransport(this.connectTransport(), true);
+        } catch (MessagingException | RuntimeException ex) {
+            this.permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * 新建一个连接，许可已由被替换的连接释放后重新获取
+     *
+     * @return pooled transport
+     * @throws MessagingException   连接失败
+     * @throws InterruptedException 等待连接时被中断
+     */
+    private PooledTransport borrowNew() throws MessagingException, InterruptedException {
+        if (!this.poolProperties.isEnabled()) {
+            return new PooledTransport(this.connectTransport(), false);
+        }
+        if (!this.permits.tryAcquire(this.poolProperties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new MessagingException("Timeout waiting for an idle SMTP connection to " + this.getHost());
+        }
+        try {
+            return new PooledTransport(this.connectTransport(), true);
+        } catch (MessagingException | RuntimeException ex) {
+            this.permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * 归还连接，不可复用的连接直接关闭
+     *
+     * @param transport Nullable, pooled transport
+     */
+    private void release(@Nullable PooledTransport transport) {
+        if (transport == null) {
+            return;
+        }
+        if (!transport.pooled) {
+            transport.close();
+            return;
+        }
+        long now = System.nanoTime();
+        if (this.closed || this.retired || transport.broken || transport.isExhausted() || transport.isExpired(now)) {
+            transport.close();
+        } else {
+            transport.lastUsedNanos = now;
+            this.idleTransports.offerFirst(transport);
+        }
+        this.permits.release();
+        this.evictIdle(now);
+    }
+
+    /**
+     * 清理空闲超时的连接，每个{@code validation-interval}最多执行一次
+     *
+     * @param now 当前时刻
+     */
+    private void evictIdle(long now) {
+        if (now - this.lastEvictionNanos < this.poolProperties.getValidationInterval().toNanos()) {
+            return;
+        }
+        this.lastEvictionNanos = now;
+        this.idleTransports.removeIf(transport -> {
+            if (transport.isExpired(now)) {
+                transport.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 判断异常是否由连接断开引起：socket读写失败、读取应答时遇到EOF（应答码-1）或连接已关闭
+     *
+     * @param ex send exception
+     * @return true if the connection was closed by peer
+     */
+    private static boolean isConnectionBroken(Exception ex) {
+        Throwable cause = ex;
+        while (cause != null) {
+            if (cause instanceof IOException || cause instanceof IllegalStateException) {
+                return true;
+            }
+            if (cause instanceof SMTPSendFailedException failed && failed.getReturnCode() == -1) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * 停止复用连接：立即关闭空闲连接，借出的连接在归还时关闭
+     * <p>邮件模板配置重新加载后旧实例进入此状态，仍可借出新连接，已选定旧实例的发送任务可以正常完成。</p>
+     */
+    public void retire() {
+        this.retired = true;
+        PooledTransport transport;
+        while ((transport = this.idleTransports.pollFirst()) != null) {
+            transport.close();
+        }
+    }
+
+    /**
+     * 关闭连接池及所有空闲连接，借出的连接在归还时关闭
+     */
+    @Override
+    public void destroy() {
+        this.closed = true;
+        PooledTransport transport;
+        while ((transport = this.idleTransports.pollFirst()) != null) {
+            transport.close();
+        }
+    }
+
+    /**
+     * 池化的SMTP连接
+     */
+    private final class PooledTransport {
+        private final Transport transport;
+        private final boolean pooled;
+        private final long createdNanos = System.nanoTime();
+        private long lastUsedNanos = createdNanos;
+        private int messageCount;
+        private boolean broken;
+
+        private PooledTransport(Transport transport, boolean pooled) {
+            this.transport = transport;
+            this.pooled = pooled;
+        }
+
+        private void send(MimeMessage mimeMessage) throws MessagingException {
+            Address[] addresses = mimeMessage.getAllRecipients();
+            this.messageCount++;
+            this.transport.sendMessage(mimeMessage, (addresses != null ? addresses : new Address[0]));
+            SmtpReplies.recordResponse(this.transport);
+        }
+
+        /**
+         * 本次发送是否已越过{@code MAIL FROM}，无法判断时视为已越过
+         *
+         * @return true if the server may have accepted the message
+         */
+        private boolean isEnvelopeStarted() {
+            return !(this.transport instanceof EnvelopeTrackingTransport tracking) || tracking.mailFromAccepted;
+        }
+
+        private boolean isReused() {
+            return this.messageCount > 1 || this.lastUsedNanos != this.createdNanos;
+        }
+
+        private boolean isExhausted() {
+            return this.pooled && this.messageCount >= poolProperties.getMaxMessagesPerConnection();
+        }
+
+        private boolean isExpired(long now) {
+            return now - this.lastUsedNanos > poolProperties.getMaxIdleTime().toNanos()
+                    || now - this.createdNanos > poolProperties.getMaxLifetime().toNanos();
+        }
+
+        private void close() {
+            try {
+                this.transport.close();
+            } catch (MessagingException ex) {
+                log.debug("Failed to close pooled SMTP connection to {}", getHost(), ex);
+            }
+        }
+    }
+
+    /**
+     * 记录本次发送的{@code MAIL FROM}是否已被服务器接受的SMTP连接
+     */
+    private static final class EnvelopeTrackingTransport extends SMTPTransport {
+        private volatile boolean mailFromAccepted;
+
+        private EnvelopeTrackingTransport(Session session, URLName urlName, String name, boolean isSSL) {
+            super(session, urlName, name, isSSL);
+        }
+
+        @Override
+        public synchronized void sendMessage(Message message, Address[] addresses) throws MessagingException {
+            this.mailFromAccepted = false;
+            super.sendMessage(message, addresses);
+        }
+
+        @Override
+        protected void mailFrom() throws MessagingException {
+            super.mailFrom();
+            this.mailFromAccepted = true;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package cn.alphahub.multiple.email.transport;
+
+import cn.alphahub.multiple.email.cluster.ClusterQuota;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRateLimitProperties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应令牌桶限流器
+ * <p>
+ * 每个邮件模板一个实例，按{@code permits-per-second}匀速补充令牌，最多累积{@code burst}个令牌。
+ * 服务器返回421/450/451限流应答时速率乘以{@code backoff-factor}并暂停发送{@code throttle-pause}，
+ * 之后每次发送成功速率增加{@code recovery-step}，直到恢复到配置的速率（AIMD）。
+ * 配置了{@code cluster-quota}时还需从{@link ClusterQuota}获取集群配额。
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public class SmtpRateLimiter {
+    private final EmailRateLimitProperties properties;
+    private final Ticker ticker;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double permitsPerSecond;
+    private double storedPermits;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private volatile ClusterQuota clusterQuota;
+
+    public SmtpRateLimiter(EmailRateLimitProperties properties) {
+        this(properties, Ticker.SYSTEM);
+    }
+
+    SmtpRateLimiter(EmailRateLimitProperties properties, Ticker ticker) {
+        this.properties = properties;
+        this.ticker = ticker;
+        this.permitsPerSecond = properties.getPermitsPerSecond();
+        this.storedPermits = properties.getBurst();
+        this.lastRefillNanos = ticker.nanoTime();
+    }
+
+    /**
+     * 当前速率（每秒许可数）
+     *
+     * @return permits per second
+     */
+    public double getRate() {
+        this.lock.lock();
+        try {
+            return this.permitsPerSecond;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 设置集群配额，本节点的令牌获取后再获取集群配额
+     *
+     * @param clusterQuota 集群配额，null表示不限制
+     */
+    public void setClusterQuota(ClusterQuota clusterQuota) {
+        this.clusterQuota = clusterQuota;
+    }
+
+    /**
+     * 获取一个许可，令牌或集群配额不足时阻塞等待
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        this.lock.lock();
+        try {
+            long now = this.ticker.nanoTime();
+            this.refill(now);
+            waitNanos = Math.max(0L, this.pausedUntilNanos - now);
+            this.storedPermits -= 1;
+            if (this.storedPermits < 0) {
+                waitNanos += (long) (-this.storedPermits / this.permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        if (waitNanos > 0) {
+            this.ticker.sleep(waitNanos);
+        }
+        ClusterQuota quota = this.clusterQuota;
+        if (quota != null) {
+            quota.acquire();
+        }
+    }
+
+    /**
+     * 发送成功，逐步恢复速率
+     */
+    public void onSuccess() {
+        this.lock.lock();
+        try {
+            if (this.permitsPerSecond < this.properties.getPermitsPerSecond()) {
+                this.refill(this.ticker.nanoTime());
+                this.permitsPerSecond = Math.min(this.properties.getPermitsPerSecond(), this.permitsPerSecond + this.properties.getRecoveryStep());
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 服务器返回限流应答，降低速率并暂停发送
+     */
+    public void onThrottled() {
+        this.lock.lock();
+        try {
+            long now = this.ticker.nanoTime();
+            this.refill(now);
+            this.permitsPerSecond = Math.max(this.properties.getMinPermitsPerSecond(), this.permitsPerSecond * this.properties.getBackoffFactor());
+            this.storedPermits = Math.min(this.storedPermits, 0);
+            this.pausedUntilNanos = Math.max(this.pausedUntilNanos, now + this.properties.getThrottlePause().toNanos());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        if (now > this.lastRefillNanos) {
+            double elapsedSeconds = (now - this.lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            this.storedPermits = Math.min(this.properties.getBurst(), this.storedPermits + elapsedSeconds * this.permitsPerSecond);
+            this.lastRefillNanos = now;
+        }
+    }
+
+    /**
+     * 时间源，测试时替换为可控的时钟
+     */
+    interface Ticker {
+        Ticker SYSTEM = new Ticker() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public void sleep(long nanos) throws InterruptedException {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            }
+        };
+
+        /**
+         * 当前时刻
+         *
+         * @return nanos
+         */
+        long nanoTime();
+
+        /**
+         * 等待指定时间
+         *
+         * @param nanos 等待时间
+         * @throws InterruptedException 等待时被中断
+         */
+        void sleep(long nanos) throws InterruptedException;
+    }
+}
@@ -0,0 +1,232 @@
+package cn.alphahub.multiple.email.transport;
+
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+import org.eclipse.angus.mail.util.MailConnectException;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+
+/**
+ * SMTP应答码解析工具
+ * <p>从{@link MailSendException}、JavaMail异常链及嵌套异常中提取SMTP服务器返回的应答码。</p>
+ *
+ * @author agent
+ * @version 3.1.0
+ * @date 2026-10-16
+ */
+public final class SmtpReplies {
+    /**
+     * 连接阶段的应答码只出现在异常信息中，例如：{@code Got bad greeting from SMTP host: ..., response: 421 ...}
+     */
+    private static final Pattern RESPONSE_PATTERN = Pattern.compile("response: \\[?(\\d{3})");
+    /**
+     * 当前线程最近一次发送成功时服务器对邮件数据的应答
+     */
+    private static final ThreadLocal<String> LAST_RESPONSE = new ThreadLocal<>();
+
+    private SmtpReplies() {
+    }
+
+    /**
+     * 提取异常中所有的SMTP应答码
+     *
+     * @param throwable 发送异常
+     * @return SMTP应答码，按出现顺序
+     */
+    public static List<Integer> replyCodes(Throwable throwable) {
+        List<Integer> codes = new ArrayList<>();
+        collect(throwable, codes, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return codes;
+    }
+
+    /**
+     * 记录当前线程刚发送成功的邮件的服务器应答，由发送实例在{@link Transport#sendMessage}返回后调用
+     *
+     * @param transport 发送邮件的连接
+     */
+    public static void recordResponse(Transport transport) {
+        LAST_RESPONSE.set(transport instanceof SMTPTransport smtpTransport ? StringUtils.trim(smtpTransport.getLastServerResponse()) : null);
+    }
+
+    /**
+     * 取出并清除当前线程最近一次发送成功时服务器的应答
+     *
+     * @return 服务器应答，没有记录时为null
+     */
+    @Nullable
+    public static String takeResponse() {
+        String response = LAST_RESPONSE.get();
+        LAST_RESPONSE.remove();
+        return response;
+    }
+
+    /**
+     * 是否为服务器限流应答：421(服务不可用/连接过多)、450(邮箱暂时不可用)、451(处理出错/频率过高)
+     *
+     * @param throwable 发送异常
+     * @return true if the server asked us to slow down
+     */
+    public static boolean isThrottled(Throwable throwable) {
+        for (Integer code : replyCodes(throwable)) {
+            if (code == 421 || code == 450 || code == 451) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为账号或服务器层面的失败：连接失败、认证失败或被限流，换一个邮件模板可能发送成功
+     *
+     * @param throwable 发送异常
+     * @return true if another mail template should be tried
+     */
+    public static boolean isConnectionFailure(Throwable throwable) {
+        return isThrottled(throwable) || anyMatch(throwable, cause -> cause instanceof MailAuthenticationException
+                || cause instanceof AuthenticationFailedException
+                || cause instanceof MailConnectException
+                || cause instanceof SocketException
+                || cause instanceof SocketTimeoutException
+                || cause instanceof UnknownHostException, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * 是否为暂时性失败，稍后重试可能发送成功
+     * <ul>
+     *     <li>有5xx应答码：永久失败（收件人不存在、内容被拒等），重试不会成功</li>
+     *     <li>只有4xx应答码：暂时失败（限流、邮箱暂时不可用、灰名单等）</li>
+     *     <li>没有应答码：连接失败、连接中断、网络超时为暂时失败；认证失败、邮件构建失败、读取附件失败等其他异常为永久失败</li>
+     * </ul>
+     * <p>读取附件的{@code FileNotFoundException}等本地I/O异常发生在写出邮件内容时，重试不会成功，不按暂时失败处理。</p>
+     *
+     * @param throwable 发送异常
+     * @return true if the send may succeed when retried later
+     */
+    public static boolean isTransient(Throwable throwable) {
+        List<Integer> codes = replyCodes(throwable);
+        if (codes.stream().anyMatch(code -> code >= 500)) {
+            return false;
+        }
+        if (codes.stream().anyMatch(code -> code >= 400)) {
+            return true;
+        }
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (anyMatch(throwable, cause -> cause instanceof MailAuthenticationException
+                || cause instanceof AuthenticationFailedException
+                || cause instanceof MailPreparationException, visited)) {
+            return false;
+        }
+        visited.clear();
+        return anyMatch(throwable, cause -> cause instanceof MailConnectException
+                || cause instanceof SocketException
+                || cause instanceof SocketTimeoutException, visited);
+    }
+
+    /**
+     * 查找异常中带有收件人分类的{@link SendFailedException}
+     *
+     * @param throwable 发送异常
+     * @return Nullable, 包含已发送、未发送和无效地址的异常
+     */
+    @Nullable
+    public static SendFailedException sendFailure(Throwable throwable) {
+        SendFailedException[] found = new SendFailedException[1];
+        anyMatch(throwable, cause -> {
+            if (cause instanceof SendFailedException e && (Objects.nonNull(e.getValidSentAddresses()) || Objects.nonNull(e.getInvalidAddresses()))) {
+                found[0] = e;
+                return true;
+            }
+            return false;
+        }, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return found[0];
+    }
+
+    /**
+     * 是否为部分发送成功：开启{@code mail.smtp.sendpartial}后部分收件人被拒绝，邮件已投递给其余收件人
+     * <p>此时不能重发整封邮件，否则已接收的收件人会收到重复邮件。</p>
+     *
+     * @param throwable 发送异常
+     * @return Nullable, 部分发送成功时为包含收件人分类的异常
+     */
+    @Nullable
+    public static SendFailedException partialDelivery(Throwable throwable) {
+        SendFailedException failure = sendFailure(throwable);
+        if (Objects.isNull(failure) || Objects.isNull(failure.getValidSentAddresses()) || failure.getValidSentAddresses().length == 0) {
+            return null;
+        }
+        return failure;
+    }
+
+    private static boolean anyMatch(Throwable throwable, Predicate<Throwable> predicate, Set<Throwable> visited) {
+        if (throwable == null || !visited.add(throwable)) {
+            return false;
+        }
+        if (predicate.test(throwable)) {
+            return true;
+        }
+        if (throwable instanceof MailSendException e) {
+            for (Exception cause : e.getFailedMessages().values()) {
+                if (anyMatch(cause, predicate, visited)) {
+                    return true;
+                }
+            }
+        }
+        if (throwable instanceof MessagingException e && anyMatch(e.getNextException(), predicate, visited)) {
+            return true;
+        }
+        return anyMatch(throwable.getCause(), predicate, visited);
+    }
+
+    /**
+     * {@link MailSendException}的异常信息由各封邮件的异常信息拼接而成，应答码从嵌套异常中提取，避免重复
+     */
+    private static boolean isAggregate(Throwable throwable) {
+        return throwable instanceof MailSendException e && !e.getFailedMessages().isEmpty();
+    }
+
+    private static void collect(Throwable throwable, List<Integer> codes, Set<Throwable> visited) {
+        if (throwable == null || !visited.add(throwable)) {
+            return;
+        }
+        if (throwable instanceof SMTPSendFailedException e) {
+            codes.add(e.getReturnCode());
+        } else if (throwable instanceof SMTPAddressFailedException e) {
+            codes.add(e.getReturnCode());
+        } else if (throwable instanceof SMTPSenderFailedException e) {
+            codes.add(e.getReturnCode());
+        } else if (throwable.getMessage() != null && !isAggregate(throwable)) {
+            Matcher matcher = RESPONSE_PATTERN.matcher(throwable.getMessage());
+            if (matcher.find()) {
+                codes.add(Integer.parseInt(matcher.group(1)));
+            }
+        }
+        if (throwable instanceof MailSendException e) {
+            e.getFailedMessages().values().forEach(cause -> collect(cause, codes, visited));
+        }
+        if (throwable instanceof MessagingException e) {
+            collect(e.getNextException(), codes, visited);
+        }
+        collect(throwable.getCause(), codes, visited);
+    }
+}
@@ -0,0 +1,96 @@
+package cn.alphahub.multiple.email;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.config.EmailConfig;
+import cn.alphahub.multiple.email.test.FakeSmtpOptions;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+class EmailTemplateBatchTests {
+    private FakeSmtpServer server;
+
+    @AfterEach
+    void close() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    void sendsEachBatchOnOneConnectionAndKeepsResultOrder() throws IOException {
+        this.contextRunner(new FakeSmtpOptions()).run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+            List<SimpleMailMessageDomain> messages = List.of(message("a@example.com"), message("b@example.com"), message("c@example.com"),
+                    message("d@example.com"), message("e@example.com"));
+
+            List<SendResult> results = emailTemplate.sendBatch(messages).get(10, TimeUnit.SECONDS);
+
+            assertThat(results).hasSize(5).allMatch(SendResult::isSuccess);
+            assertThat(results).extracting(SendResult::getMessageId).doesNotContainNull().doesNotHaveDuplicates();
+            assertThat(results).extracting(SendResult::getRecipients)
+                    .map(recipients -> recipients.get(0).getAddress())
+                    .containsExactly("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com");
+            // batch-size=2：5封邮件分3组，每组一个连接
+            assertThat(this.server.getStats().connections()).isEqualTo(3);
+            assertThat(this.server.getStats().accepted()).isEqualTo(5);
+        });
+    }
+
+    @Test
+    void expiredMessageFailsWithoutAffectingBatch() throws IOException {
+        this.contextRunner(new FakeSmtpOptions()).run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+            SimpleMailMessageDomain expired = message("b@example.com");
+            expired.setDeadline(LocalDateTime.now().minusMinutes(1));
+
+            List<SendResult> results = emailTemplate.sendBatch(List.of(message("a@example.com"), expired)).get(10, TimeUnit.SECONDS);
+
+            assertThat(results).extracting(SendResult::isSuccess).containsExactly(true, false);
+            assertThat(results.get(1).getErrorMessage()).contains("missed its deadline");
+            assertThat(this.server.getStats().accepted()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void rejectedMessagesFailIndividually() throws IOException {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setPermanentErrorRate(1.0);
+        this.contextRunner(options).run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+
+            List<SendResult> results = emailTemplate.sendBatch(List.of(message("a@example.com"), message("b@example.com"))).get(10, TimeUnit.SECONDS);
+
+            // 550不是连接故障，每封邮件各自记为失败，同一连接上继续发送下一封
+            assertThat(results).hasSize(2).noneMatch(SendResult::isSuccess);
+            assertThat(results).extracting(SendResult::getErrorMessage).allMatch(message -> message.contains("550"));
+            assertThat(this.server.getStats().permanentErrors()).isEqualTo(2);
+            assertThat(this.server.getStats().connections()).isEqualTo(1);
+        });
+    }
+
+    private ApplicationContextRunner contextRunner(FakeSmtpOptions options) throws IOException {
+        this.server = new FakeSmtpServer(options);
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class))
+                .withUserConfiguration(EmailConfig.class, EmailAspect.class, EmailTemplate.class)
+                .withPropertyValues("spring.mail.host=" + this.server.getHost(), "spring.mail.port=" + this.server.getPort(),
+                        "spring.mail.username=sender@example.com", "spring.mail.thread.batch-size=2",
+                        "spring.mail.properties.mail.smtp.connectiontimeout=5000", "spring.mail.properties.mail.smtp.timeout=5000");
+    }
+
+    private static SimpleMailMessageDomain message(String to) {
+        return new SimpleMailMessageDomain(to, null, null, "batch", "hello");
+    }
+}
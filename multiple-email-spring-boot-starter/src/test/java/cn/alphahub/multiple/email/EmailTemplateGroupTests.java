@@ -0,0 +1,124 @@
+package cn.alphahub.multiple.email;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.config.EmailConfig;
+import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import cn.alphahub.multiple.email.test.FakeSmtpOptions;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.mail.MailSendException;
+
+class EmailTemplateGroupTests {
+    private FakeSmtpServer server;
+
+    @AfterEach
+    void close() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    void failsOverToNextTemplateAndOpensCircuitBreaker() throws IOException {
+        this.contextRunner(new FakeSmtpOptions(), unusedPort()).run(context -> {
+            EmailTemplate.TemplateSender sender = context.getBean(EmailTemplate.class).usingGroup("bulk");
+
+            for (int i = 0; i < 3; i++) {
+                SendResult result = sender.sendAsync(message()).get(10, TimeUnit.SECONDS);
+                assertThat(result.isSuccess()).isTrue();
+                assertThat(result.getTemplateName()).isEqualTo("UP");
+            }
+
+            TemplateGroup group = context.getBean(MailWrapper.class).getTemplateGroup("bulk");
+            assertThat(member(group, "DOWN").getCircuitBreaker().isOpen()).isTrue();
+            assertThat(member(group, "UP").getCircuitBreaker().isOpen()).isFalse();
+            assertThat(group.getMembers()).allMatch(member -> member.getInFlight() == 0);
+            assertThat(this.server.getStats().accepted()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    void failsOverWholeBatch() throws IOException {
+        this.contextRunner(new FakeSmtpOptions(), unusedPort()).run(context -> {
+            EmailTemplate.TemplateSender sender = context.getBean(EmailTemplate.class).usingGroup("bulk");
+
+            List<SendResult> results = sender.sendBatch(List.of(message(), message(), message())).get(10, TimeUnit.SECONDS);
+
+            assertThat(results).allMatch(SendResult::isSuccess).extracting(SendResult::getTemplateName).containsOnly("UP");
+            assertThat(this.server.getStats().accepted()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    void rejectedMessageDoesNotFailOver() throws IOException {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setPermanentErrorRate(1.0);
+        this.contextRunner(options, -1).run(context -> {
+            EmailTemplate.TemplateSender sender = context.getBean(EmailTemplate.class).usingGroup("bulk");
+
+            // 550与发件账号无关，换一个邮件模板重发也会被拒绝
+            assertThatExceptionOfType(ExecutionException.class).isThrownBy(() -> sender.sendAsync(message()).get(10, TimeUnit.SECONDS))
+                    .withCauseInstanceOf(MailSendException.class);
+            assertThat(this.server.getStats().permanentErrors()).isEqualTo(1);
+            TemplateGroup group = context.getBean(MailWrapper.class).getTemplateGroup("bulk");
+            assertThat(group.getMembers()).noneMatch(member -> member.getCircuitBreaker().isOpen());
+        });
+    }
+
+    /**
+     * 组内两个邮件模板：UP指向假SMTP服务器，DOWN指向没有监听的端口（{@code downPort}为负数时同样指向假SMTP服务器）
+     */
+    private ApplicationContextRunner contextRunner(FakeSmtpOptions options, int downPort) throws IOException {
+        this.server = new FakeSmtpServer(options);
+        String host = this.server.getHost();
+        int port = this.server.getPort();
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class))
+                .withUserConfiguration(EmailConfig.class, EmailAspect.class, EmailTemplate.class)
+                .withPropertyValues("spring.mail.host=" + host, "spring.mail.port=" + port, "spring.mail.username=sender@example.com",
+                        "spring.mail.email-templates[0].template-name=DOWN",
+                        "spring.mail.email-templates[0].mail-properties.host=" + host,
+                        "spring.mail.email-templates[0].mail-properties.port=" + (downPort < 0 ? port : downPort),
+                        "spring.mail.email-templates[0].mail-properties.username=down@example.com",
+                        "spring.mail.email-templates[0].mail-properties.properties.mail.smtp.connectiontimeout=1000",
+                        "spring.mail.email-templates[1].template-name=UP",
+                        "spring.mail.email-templates[1].mail-properties.host=" + host,
+                        "spring.mail.email-templates[1].mail-properties.port=" + port,
+                        "spring.mail.email-templates[1].mail-properties.username=up@example.com",
+                        "spring.mail.email-groups[0].group-name=bulk",
+                        "spring.mail.email-groups[0].members[0].template-name=DOWN",
+                        "spring.mail.email-groups[0].members[1].template-name=UP",
+                        "spring.mail.email-groups[0].circuit-breaker.failure-threshold=1",
+                        "spring.mail.email-groups[0].circuit-breaker.open-duration=1m");
+    }
+
+    private static TemplateGroup.Member member(TemplateGroup group, String templateName) {
+        return group.getMembers().stream().filter(member -> member.getTemplateName().equals(templateName)).findFirst().orElseThrow();
+    }
+
+    private static int unusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static SimpleMailMessageDomain message() {
+        return new SimpleMailMessageDomain("alice@example.com", null, null, "group", "hello");
+    }
+}
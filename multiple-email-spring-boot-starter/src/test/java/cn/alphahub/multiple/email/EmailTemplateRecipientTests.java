@@ -0,0 +1,128 @@
+package cn.alphahub.multiple.email;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.config.EmailConfig;
+import cn.alphahub.multiple.email.recipient.RecipientResult;
+import cn.alphahub.multiple.email.test.FakeSmtpOptions;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import cn.alphahub.multiple.email.test.FakeSmtpServer.ReceivedMessage;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+class EmailTemplateRecipientTests {
+    private static final String[] CC = {"b@example.com", "c@example.com", "d@example.com", "e@example.com"};
+    private FakeSmtpServer server;
+
+    @AfterEach
+    void close() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    void splitsEnvelopeWithoutChangingHeaders() throws IOException {
+        this.contextRunner(Set.of()).run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+
+            SendResult result = emailTemplate.sendAsync(message()).get(10, TimeUnit.SECONDS);
+
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getRecipients()).allMatch(RecipientResult::isAccepted).extracting(RecipientResult::getAddress)
+                    .containsExactly("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com");
+            List<ReceivedMessage> messages = this.server.getMessages();
+            assertThat(messages).extracting(ReceivedMessage::recipients).containsExactlyInAnyOrder(
+                    List.of("a@example.com", "b@example.com"), List.of("c@example.com", "d@example.com"), List.of("e@example.com"));
+            // 每个信封的邮件头都包含全部收件人
+            for (ReceivedMessage message : messages) {
+                MimeMessage parsed = parse(message);
+                assertThat(parsed.getHeader("To", ",")).isEqualTo("a@example.com");
+                assertThat(parsed.getHeader("Cc", ",")).contains(CC);
+                assertThat(parsed.getSubject()).isEqualTo("split");
+            }
+        });
+    }
+
+    @Test
+    void failedEnvelopeMarksOnlyItsRecipients() throws IOException {
+        this.contextRunner(Set.of("d@example.com")).run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+
+            SendResult result = emailTemplate.sendAsync(message()).get(10, TimeUnit.SECONDS);
+
+            // 未开启sendpartial时被拒绝的收件人使其所在信封整体失败，其他信封照常投递
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getRecipients()).extracting(RecipientResult::getAddress, RecipientResult::isAccepted).containsExactly(
+                    tuple("a@example.com", true), tuple("b@example.com", true), tuple("c@example.com", false), tuple("d@example.com", false),
+                    tuple("e@example.com", true));
+            assertThat(this.server.getMessages()).hasSize(2);
+        });
+    }
+
+    @Test
+    void sendPartialDeliversToRemainingRecipients() throws IOException {
+        this.contextRunner(Set.of("d@example.com"), "spring.mail.recipient.send-partial=true").run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+
+            SendResult result = emailTemplate.sendAsync(message()).get(10, TimeUnit.SECONDS);
+
+            assertThat(result.isSuccess()).isTrue();
+            RecipientResult rejected = result.getRecipients().stream().filter(recipient -> !recipient.isAccepted()).findFirst().orElseThrow();
+            assertThat(rejected.getAddress()).isEqualTo("d@example.com");
+            assertThat(rejected.getReplyCode()).isEqualTo(550);
+            assertThat(result.getRecipients()).filteredOn(RecipientResult::isAccepted).hasSize(4);
+            assertThat(this.server.getMessages()).flatExtracting(ReceivedMessage::recipients)
+                    .containsExactlyInAnyOrder("a@example.com", "b@example.com", "c@example.com", "e@example.com");
+        });
+    }
+
+    @Test
+    void failsWhenEveryEnvelopeFails() throws IOException {
+        this.contextRunner(Set.of("a@example.com", "c@example.com", "e@example.com")).run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+
+            assertThatExceptionOfType(ExecutionException.class).isThrownBy(() -> emailTemplate.sendAsync(message()).get(10, TimeUnit.SECONDS));
+            assertThat(this.server.getMessages()).isEmpty();
+        });
+    }
+
+    private ApplicationContextRunner contextRunner(Set<String> rejectedRecipients, String... properties) throws IOException {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setRecordMessages(true);
+        options.setRejectedRecipients(rejectedRecipients);
+        this.server = new FakeSmtpServer(options);
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class))
+                .withUserConfiguration(EmailConfig.class, EmailAspect.class, EmailTemplate.class)
+                .withPropertyValues("spring.mail.host=" + this.server.getHost(), "spring.mail.port=" + this.server.getPort(),
+                        "spring.mail.username=sender@example.com", "spring.mail.recipient.max-per-message=2")
+                .withPropertyValues(properties);
+    }
+
+    private static MimeMessage parse(ReceivedMessage message) throws Exception {
+        return new MimeMessage(Session.getInstance(new Properties()), new ByteArrayInputStream(message.content().getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    private static SimpleMailMessageDomain message() {
+        return new SimpleMailMessageDomain("a@example.com", CC, null, "split", "hello");
+    }
+}
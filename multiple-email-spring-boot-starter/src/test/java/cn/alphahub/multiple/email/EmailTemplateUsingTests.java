@@ -0,0 +1,133 @@
+package cn.alphahub.multiple.email;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.aspect.EmailAspect.ResolvedTemplate;
+import cn.alphahub.multiple.email.config.EmailConfig;
+import cn.alphahub.multiple.email.config.EmailTemplatesReloadedEvent;
+import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.mail.javamail.JavaMailSender;
+
+class EmailTemplateUsingTests {
+    private FakeSmtpServer defaultServer;
+    private FakeSmtpServer marketingServer;
+
+    @AfterEach
+    void close() throws IOException {
+        if (this.defaultServer != null) {
+            this.defaultServer.close();
+        }
+        if (this.marketingServer != null) {
+            this.marketingServer.close();
+        }
+    }
+
+    @Test
+    void sendsThroughNamedTemplateWithoutAspect() throws IOException {
+        this.contextRunner().run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+
+            SendResult result = emailTemplate.using("MARKETING").sendAsync(message()).get(10, TimeUnit.SECONDS);
+
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getTemplateName()).isEqualTo("MARKETING");
+            assertThat(this.marketingServer.getStats().accepted()).isEqualTo(1);
+            assertThat(this.defaultServer.getStats().accepted()).isZero();
+            assertThat(emailTemplate.using("MARKETING")).isSameAs(emailTemplate.using("MARKETING"));
+            assertThat(emailTemplate.using("MARKETING").getName()).isEqualTo("MARKETING");
+        });
+    }
+
+    @Test
+    void ignoresTemplateBoundByAspect() throws IOException {
+        this.contextRunner().run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+            MailWrapper mailWrapper = context.getBean(MailWrapper.class);
+            ResolvedTemplate bound = new ResolvedTemplate(Email.DEFAULT_TEMPLATE, mailWrapper.getContext(Email.DEFAULT_TEMPLATE), null);
+            EmailAspect.MAIL_TEMPLATE_TL.set(bound);
+            try {
+                SendResult result = emailTemplate.using("MARKETING").sendAsync(message()).get(10, TimeUnit.SECONDS);
+
+                assertThat(result.getTemplateName()).isEqualTo("MARKETING");
+                assertThat(EmailAspect.MAIL_TEMPLATE_TL.get()).isSameAs(bound);
+            } finally {
+                EmailAspect.MAIL_TEMPLATE_TL.remove();
+            }
+            assertThat(this.defaultServer.getStats().accepted()).isZero();
+        });
+    }
+
+    @Test
+    void rejectsUnknownTemplateOrGroup() throws IOException {
+        this.contextRunner().run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+
+            assertThatIllegalArgumentException().isThrownBy(() -> emailTemplate.using("MISSING"))
+                    .withMessage("Mail template 'MISSING' is not configured");
+            assertThatIllegalArgumentException().isThrownBy(() -> emailTemplate.usingGroup("missing"))
+                    .withMessage("Mail template group 'missing' is not configured");
+        });
+    }
+
+    @Test
+    void cachedSenderFollowsReloadedTemplate() throws IOException {
+        this.contextRunner().run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+            MailWrapper mailWrapper = context.getBean(MailWrapper.class);
+            EmailTemplate.TemplateSender sender = emailTemplate.using("MARKETING");
+
+            // MARKETING改为指向默认邮件模板的服务器
+            Map<String, MailProperties> properties = new HashMap<>(mailWrapper.getEmailPropertiesMap());
+            Map<String, JavaMailSender> senders = new HashMap<>(mailWrapper.getJavaMailSenderMap());
+            senders.put("MARKETING", senders.get(Email.DEFAULT_TEMPLATE));
+            mailWrapper.swap(properties, senders, mailWrapper.getTemplateGroupMap());
+            emailTemplate.onTemplatesReloaded(new EmailTemplatesReloadedEvent(this, Set.of(), Set.of("MARKETING"), Set.of()));
+
+            assertThat(sender.sendAsync(message()).get(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+            assertThat(this.defaultServer.getStats().accepted()).isEqualTo(1);
+            assertThat(this.marketingServer.getStats().accepted()).isZero();
+
+            properties.remove("MARKETING");
+            senders.remove("MARKETING");
+            mailWrapper.swap(properties, senders, mailWrapper.getTemplateGroupMap());
+            emailTemplate.onTemplatesReloaded(new EmailTemplatesReloadedEvent(this, Set.of(), Set.of(), Set.of("MARKETING")));
+
+            assertThatIllegalArgumentException().isThrownBy(() -> emailTemplate.using("MARKETING"));
+        });
+    }
+
+    private ApplicationContextRunner contextRunner() throws IOException {
+        this.defaultServer = new FakeSmtpServer();
+        this.marketingServer = new FakeSmtpServer();
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class))
+                .withUserConfiguration(EmailConfig.class, EmailAspect.class, EmailTemplate.class)
+                .withPropertyValues("spring.mail.host=" + this.defaultServer.getHost(), "spring.mail.port=" + this.defaultServer.getPort(),
+                        "spring.mail.username=sender@example.com",
+                        "spring.mail.email-templates[0].template-name=MARKETING",
+                        "spring.mail.email-templates[0].mail-properties.host=" + this.marketingServer.getHost(),
+                        "spring.mail.email-templates[0].mail-properties.port=" + this.marketingServer.getPort(),
+                        "spring.mail.email-templates[0].mail-properties.username=marketing@example.com");
+    }
+
+    private static SimpleMailMessageDomain message() {
+        return new SimpleMailMessageDomain("alice@example.com", null, null, "using", "hello");
+    }
+}
@@ -0,0 +1,179 @@
+package cn.alphahub.multiple.email;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import cn.alphahub.multiple.email.EmailTemplate.MimeMessageDomain;
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.config.EmailConfig;
+import cn.alphahub.multiple.email.config.EmailReactiveConfig;
+import cn.alphahub.multiple.email.test.FakeSmtpOptions;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.mail.MailPreparationException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ReactiveEmailTemplateTests {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private final List<Path> spooled = new CopyOnWriteArrayList<>();
+    private FakeSmtpServer server;
+
+    @AfterEach
+    void close() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    void deletesSpooledFilesAfterSending() throws IOException {
+        this.contextRunner(Duration.ZERO).run(context -> {
+            ReactiveEmailTemplate reactiveEmailTemplate = context.getBean(ReactiveEmailTemplate.class);
+
+            SendResult result = reactiveEmailTemplate.sendMime(Mono.just(message()), Flux.just(this.part("a.txt", Mono.empty()), this.part("b.txt", Mono.empty())))
+                    .block(TIMEOUT);
+
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(this.spooled).hasSize(2);
+            awaitDeleted(this.spooled);
+        });
+    }
+
+    @Test
+    void deletesSpooledFilesWhenCancelledWhileSpooling() throws IOException {
+        this.contextRunner(Duration.ZERO).run(context -> {
+            ReactiveEmailTemplate reactiveEmailTemplate = context.getBean(ReactiveEmailTemplate.class);
+
+            // 第二个附件一直写不完
+            Disposable subscription = reactiveEmailTemplate.sendMime(Mono.just(message()),
+                    Flux.just(this.part("a.txt", Mono.empty()), this.part("b.txt", Mono.never()))).subscribe();
+            await(() -> this.spooled.size() == 2);
+            subscription.dispose();
+
+            awaitDeleted(this.spooled);
+            assertThat(this.server.getStats().accepted()).isZero();
+        });
+    }
+
+    @Test
+    void deletesSpooledFilesWhenSpoolingFails() throws IOException {
+        this.contextRunner(Duration.ZERO).run(context -> {
+            ReactiveEmailTemplate reactiveEmailTemplate = context.getBean(ReactiveEmailTemplate.class);
+            Mono<SendResult> result = reactiveEmailTemplate.sendMime(Mono.just(message()),
+                    Flux.just(this.part("a.txt", Mono.empty()), this.part("b.txt", Mono.error(new IOException("disk full")))));
+
+            assertThatExceptionOfType(MailPreparationException.class).isThrownBy(() -> result.block(TIMEOUT))
+                    .withRootCauseInstanceOf(IOException.class);
+            awaitDeleted(this.spooled);
+            assertThat(this.server.getStats().accepted()).isZero();
+        });
+    }
+
+    @Test
+    void cancellingQueuedSendCancelsTaskAndDeletesFiles() throws IOException {
+        this.contextRunner(Duration.ofMillis(500)).run(context -> {
+            ReactiveEmailTemplate reactiveEmailTemplate = context.getBean(ReactiveEmailTemplate.class);
+            ThreadPoolExecutor executor = context.getBean("emailThreadPoolExecutor", ThreadPoolExecutor.class);
+            // 唯一的发送线程被第一封邮件占用
+            Mono<SendResult> first = reactiveEmailTemplate.send(new SimpleMailMessageDomain("alice@example.com", null, null, "first", "hello")).cache();
+            first.subscribe();
+            await(() -> executor.getActiveCount() == 1);
+
+            Disposable queued = reactiveEmailTemplate.sendMime(Mono.just(message()), Flux.just(this.part("a.txt", Mono.empty()))).subscribe();
+            await(() -> executor.getQueue().size() == 1);
+            queued.dispose();
+
+            // 任务取消后立即删除临时文件，不等待前一封邮件发送完成
+            awaitDeleted(this.spooled);
+            assertThat(executor.getCompletedTaskCount()).isZero();
+            assertThat(first.block(TIMEOUT).isSuccess()).isTrue();
+            // 已取消的任务出队后不再发送
+            await(() -> executor.getQueue().isEmpty() && executor.getActiveCount() == 0);
+            assertThat(this.server.getStats().accepted()).isEqualTo(1);
+        });
+    }
+
+    private ApplicationContextRunner contextRunner(Duration latency) throws IOException {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setLatency(latency);
+        this.server = new FakeSmtpServer(options);
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class))
+                .withUserConfiguration(EmailConfig.class, EmailAspect.class, EmailTemplate.class, EmailReactiveConfig.class)
+                .withPropertyValues("spring.mail.host=" + this.server.getHost(), "spring.mail.port=" + this.server.getPort(),
+                        "spring.mail.username=sender@example.com", "spring.mail.thread.core-pool-size=1", "spring.mail.thread.maximum-pool-size=1");
+    }
+
+    /**
+     * 写入附件内容后以{@code completion}结束的上传文件
+     */
+    private FilePart part(String filename, Mono<Void> completion) {
+        return new FilePart() {
+            @Override
+            public String filename() {
+                return filename;
+            }
+
+            @Override
+            public Mono<Void> transferTo(Path dest) {
+                ReactiveEmailTemplateTests.this.spooled.add(dest);
+                return Mono.fromCallable(() -> Files.writeString(dest, filename, StandardCharsets.UTF_8)).then(completion);
+            }
+
+            @Override
+            public String name() {
+                return "files";
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.EMPTY;
+            }
+
+            @Override
+            public Flux<DataBuffer> content() {
+                return Flux.empty();
+            }
+        };
+    }
+
+    private static void awaitDeleted(List<Path> paths) throws InterruptedException {
+        await(() -> paths.stream().noneMatch(Files::exists));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within %s", TIMEOUT).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static MimeMessageDomain message() {
+        MimeMessageDomain message = new MimeMessageDomain();
+        message.setTo("alice@example.com");
+        message.setSubject("attachments");
+        message.setText("hello");
+        return message;
+    }
+}
@@ -0,0 +1,170 @@
+package cn.alphahub.multiple.email.aspect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.aspect.EmailAspect.ResolvedTemplate;
+import cn.alphahub.multiple.email.config.EmailConfig.LoadBalanceStrategy;
+import cn.alphahub.multiple.email.config.EmailTemplatesReloadedEvent;
+import cn.alphahub.multiple.email.config.MailWrapper;
+import cn.alphahub.multiple.email.group.CircuitBreaker;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+@SuppressWarnings("deprecation")
+class EmailAspectTests {
+    private final MailProperties outerProperties = new MailProperties();
+    private final MailProperties innerProperties = new MailProperties();
+    private final JavaMailSender outerSender = new JavaMailSenderImpl();
+    private final JavaMailSender innerSender = new JavaMailSenderImpl();
+    private MailWrapper mailWrapper;
+    private EmailAspect aspect;
+    private Target target;
+
+    @BeforeEach
+    void setUp() {
+        this.mailWrapper = new MailWrapper(Map.of("OUTER", this.outerProperties, "INNER", this.innerProperties),
+                Map.of("OUTER", this.outerSender, "INNER", this.innerSender));
+        this.mailWrapper.setTemplateGroupMap(Map.of("bulk", new TemplateGroup("bulk", LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN,
+                List.of(new TemplateGroup.Member("OUTER", 1, new CircuitBreaker(3, Duration.ofSeconds(30)))))));
+        this.aspect = new EmailAspect(this.mailWrapper);
+        Target raw = new Target();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(raw);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(this.aspect);
+        this.target = proxyFactory.getProxy();
+        raw.self = this.target;
+    }
+
+    @Test
+    void bindsTemplateAndDeprecatedThreadLocals() {
+        Binding binding = this.target.inner();
+
+        assertThat(binding.template().name()).isEqualTo("INNER");
+        assertThat(binding.template().context().mailSender()).isSameAs(this.innerSender);
+        assertThat(binding.sender()).isSameAs(this.innerSender);
+        assertThat(binding.properties()).isSameAs(this.innerProperties);
+        assertUnbound();
+    }
+
+    @Test
+    void groupLeavesDeprecatedThreadLocalsEmpty() {
+        Binding binding = this.target.group();
+
+        assertThat(binding.template().group()).isSameAs(this.mailWrapper.getTemplateGroup("bulk"));
+        assertThat(binding.template().context()).isNull();
+        assertThat(binding.sender()).isNull();
+        assertThat(binding.properties()).isNull();
+        assertUnbound();
+    }
+
+    @Test
+    void cachesResolvedTemplatePerMethod() {
+        ResolvedTemplate first = this.target.inner().template();
+        JavaMailSender replaced = new JavaMailSenderImpl();
+        this.mailWrapper.swap(Map.of("INNER", this.innerProperties), Map.of("INNER", replaced), Map.of());
+
+        assertThat(this.target.inner().template()).isSameAs(first);
+        assertThat(this.target.inner().sender()).isSameAs(this.innerSender);
+
+        this.aspect.onTemplatesReloaded(new EmailTemplatesReloadedEvent(this, Set.of(), Set.of("INNER"), Set.of()));
+
+        Binding reloaded = this.target.inner();
+        assertThat(reloaded.template()).isNotSameAs(first);
+        assertThat(reloaded.sender()).isSameAs(replaced);
+    }
+
+    @Test
+    void restoresOuterTemplateAfterNestedCall() {
+        List<Binding> bindings = this.target.outer();
+
+        assertThat(bindings).extracting(binding -> binding.template().name()).containsExactly("OUTER", "INNER", "OUTER");
+        assertThat(bindings).extracting(Binding::sender).containsExactly(this.outerSender, this.innerSender, this.outerSender);
+        assertThat(bindings).extracting(Binding::properties).containsExactly(this.outerProperties, this.innerProperties, this.outerProperties);
+        assertUnbound();
+    }
+
+    @Test
+    void restoresOuterTemplateWhenNestedCallFails() {
+        List<Binding> bindings = this.target.outerWithFailingInner();
+
+        assertThat(bindings).extracting(binding -> binding.template().name()).containsExactly("OUTER", "OUTER");
+        assertThat(bindings.get(1).sender()).isSameAs(this.outerSender);
+        assertUnbound();
+    }
+
+    @Test
+    void rejectsUnknownGroup() {
+        assertThatIllegalArgumentException().isThrownBy(() -> this.target.unknownGroup())
+                .withMessage("Mail template group 'missing' is not configured");
+        assertUnbound();
+    }
+
+    private static void assertUnbound() {
+        assertThat(EmailAspect.MAIL_TEMPLATE_TL.get()).isNull();
+        assertThat(EmailAspect.MAIL_SENDER_TL.get()).isNull();
+        assertThat(EmailAspect.MAIL_PROPERTIES_TL.get()).isNull();
+    }
+
+    record Binding(ResolvedTemplate template, JavaMailSender sender, MailProperties properties) {
+        static Binding current() {
+            return new Binding(EmailAspect.MAIL_TEMPLATE_TL.get(), EmailAspect.MAIL_SENDER_TL.get(), EmailAspect.MAIL_PROPERTIES_TL.get());
+        }
+    }
+
+    public static class Target {
+        Target self;
+
+        @Email(name = "OUTER")
+        public List<Binding> outer() {
+            List<Binding> bindings = new ArrayList<>();
+            bindings.add(Binding.current());
+            bindings.add(this.self.inner());
+            bindings.add(Binding.current());
+            return bindings;
+        }
+
+        @Email(name = "OUTER")
+        public List<Binding> outerWithFailingInner() {
+            List<Binding> bindings = new ArrayList<>();
+            bindings.add(Binding.current());
+            try {
+                this.self.failingInner();
+            } catch (IllegalStateException e) {
+                bindings.add(Binding.current());
+            }
+            return bindings;
+        }
+
+        @Email(name = "INNER")
+        public Binding inner() {
+            return Binding.current();
+        }
+
+        @Email(name = "INNER")
+        public void failingInner() {
+            throw new IllegalStateException("inner failed");
+        }
+
+        @Email(group = "bulk")
+        public Binding group() {
+            return Binding.current();
+        }
+
+        @Email(group = "missing")
+        public Binding unknownGroup() {
+            return Binding.current();
+        }
+    }
+}
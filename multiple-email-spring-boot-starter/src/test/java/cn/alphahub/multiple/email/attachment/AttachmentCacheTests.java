@@ -0,0 +1,192 @@
+package cn.alphahub.multiple.email.attachment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.mock.web.MockMultipartFile;
+
+class AttachmentCacheTests {
+    private final Session session = Session.getInstance(new Properties());
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 56, 57, 100, 57 * 1024, 57 * 1024 + 1, 200_000})
+    void cachedEncodingMatchesStreamingEncoding(int fileSize) throws Exception {
+        Path path = this.file("data.bin", fileSize);
+        AttachmentCache cache = new AttachmentCache(1024 * 1024, 1024 * 1024);
+
+        MimeBodyPart cached = this.attach(cache, FileAttachment.of(path));
+        MimeBodyPart streamed = this.attach(AttachmentCache.NONE, FileAttachment.of(path));
+
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cached.getEncoding()).isEqualTo("base64");
+        assertThat(cached.getFileName()).isEqualTo("data.bin");
+        assertThat(raw(cached).strip()).isEqualTo(raw(streamed).strip());
+        assertThat(bytes(cached)).isEqualTo(Files.readAllBytes(path));
+    }
+
+    @Test
+    void reusesEncodingUntilFileChanges() throws Exception {
+        Path path = this.file("terms.pdf", 1000);
+        AttachmentCache cache = new AttachmentCache(1024 * 1024, 1024 * 1024);
+
+        this.attach(cache, FileAttachment.of(path));
+        this.attach(cache, FileAttachment.of(path));
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+        long size = cache.getSize();
+        assertThat(size).isGreaterThan(1000);
+
+        byte[] changed = new byte[1000];
+        new Random(7).nextBytes(changed);
+        Files.write(path, changed);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 10_000));
+        MimeBodyPart reloaded = this.attach(cache, FileAttachment.of(path));
+
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getEntryCount()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(size);
+        assertThat(bytes(reloaded)).isEqualTo(changed);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        // 每个文件编码后约1.4KB，最多缓存两个
+        AttachmentCache cache = new AttachmentCache(3000, 3000);
+        Path a = this.file("a.bin", 1000);
+        Path b = this.file("b.bin", 1000);
+        Path c = this.file("c.bin", 1000);
+
+        this.attach(cache, FileAttachment.of(a));
+        this.attach(cache, FileAttachment.of(b));
+        this.attach(cache, FileAttachment.of(a));
+        this.attach(cache, FileAttachment.of(c));
+
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+        assertThat(cache.getSize()).isLessThanOrEqualTo(3000);
+        this.attach(cache, FileAttachment.of(a));
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        this.attach(cache, FileAttachment.of(b));
+        assertThat(cache.getMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    void skipsLargeTemporaryAndMissingFiles() throws Exception {
+        AttachmentCache cache = new AttachmentCache(1024 * 1024, 100);
+        Path large = this.file("large.bin", 101);
+        List<FileAttachment> spooled = FileAttachment.spool(new MockMultipartFile("file", "upload.txt", "text/plain", "upload".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(bytes(this.attach(cache, FileAttachment.of(large)))).isEqualTo(Files.readAllBytes(large));
+        try {
+            assertThat(bytes(this.attach(cache, spooled.get(0)))).isEqualTo("upload".getBytes(StandardCharsets.UTF_8));
+        } finally {
+            FileAttachment.release(spooled);
+        }
+        MimeMessageHelper helper = new MimeMessageHelper(new MimeMessage(this.session), true);
+        cache.addAttachment(helper, FileAttachment.of(this.tempDir.resolve("missing.bin")));
+
+        assertThat(cache.getMissCount()).isZero();
+        assertThat(cache.getHitCount()).isZero();
+        assertThat(cache.getEntryCount()).isZero();
+        assertThat(helper.getRootMimeMultipart().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        Path path = this.file("logo.png", 500_000);
+        AttachmentCache cache = new AttachmentCache(2 * 1024 * 1024, 1024 * 1024);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    MimeMessage message = new MimeMessage(this.session);
+                    MimeMessageHelper helper = new MimeMessageHelper(message, MimeMessageHelper.MULTIPART_MODE_RELATED);
+                    helper.setText("<img src=\"cid:logo\">", true);
+                    cache.addInline(helper, "logo", FileAttachment.of(path));
+                    MimeBodyPart inline = (MimeBodyPart) ((MimeMultipart) this.roundTrip(message).getContent()).getBodyPart(1);
+                    assertThat(inline.getContentID()).isEqualTo("<logo>");
+                    return bytes(inline);
+                }));
+            }
+            start.countDown();
+            for (Future<byte[]> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(Files.readAllBytes(path));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(threads - 1);
+    }
+
+    private Path file(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(this.tempDir.resolve(name), content);
+    }
+
+    /**
+     * 添加附件后写出并重新解析邮件，返回解析后的附件
+     */
+    private MimeBodyPart attach(AttachmentCache cache, FileAttachment attachment) throws Exception {
+        MimeMessage message = new MimeMessage(this.session);
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setFrom("sender@example.com");
+        helper.setTo("alice@example.com");
+        helper.setSubject("attachment");
+        helper.setText("hello");
+        cache.addAttachment(helper, attachment);
+        return (MimeBodyPart) ((MimeMultipart) this.roundTrip(message).getContent()).getBodyPart(1);
+    }
+
+    private MimeMessage roundTrip(MimeMessage message) throws Exception {
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return new MimeMessage(this.session, new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static String raw(MimeBodyPart part) throws Exception {
+        try (InputStream in = part.getRawInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    private static byte[] bytes(MimeBodyPart part) throws Exception {
+        try (InputStream in = part.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
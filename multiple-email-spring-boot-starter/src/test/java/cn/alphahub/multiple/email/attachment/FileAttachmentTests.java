@@ -0,0 +1,74 @@
+package cn.alphahub.multiple.email.attachment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mock.web.MockMultipartFile;
+
+class FileAttachmentTests {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void spoolsUploadsAndDeletesThemOnRelease() throws IOException {
+        MockMultipartFile upload = new MockMultipartFile("file", "notes.txt", "text/plain", "hello".getBytes(StandardCharsets.UTF_8));
+
+        List<FileAttachment> attachments = FileAttachment.spool(upload, null, new MockMultipartFile("empty", "empty.txt", "text/plain", new byte[0]));
+
+        assertThat(attachments).hasSize(1);
+        FileAttachment attachment = attachments.get(0);
+        assertThat(attachment.getFilename()).isEqualTo("notes.txt");
+        assertThat(attachment.isTemporary()).isTrue();
+        try (InputStream in = attachment.getDataSource().getInputStream()) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("hello");
+        }
+        assertThat(attachment.getDataSource().getName()).isEqualTo("notes.txt");
+
+        FileAttachment.release(attachments);
+        assertThat(attachment.getPath()).doesNotExist();
+    }
+
+    @Test
+    void releaseKeepsReferencedFile() throws IOException {
+        Path path = Files.writeString(this.tempDir.resolve("report.txt"), "report");
+
+        FileAttachment attachment = FileAttachment.of(path);
+        attachment.release();
+
+        assertThat(attachment.getFilename()).isEqualTo("report.txt");
+        assertThat(attachment.isTemporary()).isFalse();
+        assertThat(path).exists();
+    }
+
+    @Test
+    void failedSpoolDeletesAlreadySpooledFiles() {
+        Path[] spooled = new Path[1];
+        MockMultipartFile first = new MockMultipartFile("file", "first.txt", "text/plain", "first".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void transferTo(File dest) throws IOException {
+                super.transferTo(dest);
+                spooled[0] = dest.toPath();
+            }
+        };
+        MockMultipartFile broken = new MockMultipartFile("file", "broken.txt", "text/plain", "broken".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void transferTo(File dest) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        assertThatExceptionOfType(MailPreparationException.class).isThrownBy(() -> FileAttachment.spool(first, broken))
+                .withRootCauseInstanceOf(IOException.class);
+        assertThat(spooled[0]).isNotNull().doesNotExist();
+    }
+}
@@ -0,0 +1,67 @@
+package cn.alphahub.multiple.email.attachment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+class FileChannelDataSourceTests {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsFileOnEveryCall() throws Exception {
+        Path path = this.tempDir.resolve("report.html");
+        FileChannelDataSource dataSource = new FileChannelDataSource(path, "report.html");
+        // 构建数据源时不打开文件
+        Files.write(path, new byte[]{1, 2, 3});
+
+        try (InputStream first = dataSource.getInputStream(); InputStream second = dataSource.getInputStream()) {
+            assertThat(first.readAllBytes()).containsExactly(1, 2, 3);
+            assertThat(second.readAllBytes()).containsExactly(1, 2, 3);
+        }
+        assertThat(dataSource.getName()).isEqualTo("report.html");
+        assertThat(dataSource.getContentType()).isEqualTo("text/html");
+        assertThat(dataSource.getEncoding()).isEqualTo("base64");
+        assertThatIOException().isThrownBy(dataSource::getOutputStream);
+    }
+
+    @Test
+    void attachmentRoundTripsAsBase64() throws Exception {
+        byte[] content = new byte[256 * 1024 + 7];
+        new Random(42).nextBytes(content);
+        Path path = Files.write(this.tempDir.resolve("data.bin"), content);
+
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setFrom("sender@example.com");
+        helper.setTo("alice@example.com");
+        helper.setSubject("attachment");
+        helper.setText("hello");
+        helper.addAttachment("data.bin", new FileChannelDataSource(path, "data.bin"));
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+
+        MimeMessage parsed = new MimeMessage(Session.getInstance(new Properties()), new ByteArrayInputStream(out.toByteArray()));
+        MimeBodyPart attachment = (MimeBodyPart) ((MimeMultipart) parsed.getContent()).getBodyPart(1);
+        assertThat(attachment.getFileName()).isEqualTo("data.bin");
+        assertThat(attachment.getEncoding()).isEqualTo("base64");
+        try (InputStream in = attachment.getInputStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+    }
+}
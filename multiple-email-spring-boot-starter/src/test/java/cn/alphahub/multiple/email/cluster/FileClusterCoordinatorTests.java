@@ -0,0 +1,116 @@
+package cn.alphahub.multiple.email.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cn.alphahub.multiple.email.cluster.ClusterCoordinator.QuotaGrant;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileClusterCoordinatorTests {
+    private static final Duration LEASE = Duration.ofMinutes(1);
+    @TempDir
+    Path directory;
+    private FileClusterCoordinator first;
+    private FileClusterCoordinator second;
+
+    @AfterEach
+    void close() {
+        if (this.first != null) {
+            this.first.destroy();
+        }
+        if (this.second != null) {
+            this.second.destroy();
+        }
+    }
+
+    @Test
+    void rebalancesPartitionsWhenNodesJoinAndLeave() throws IOException {
+        this.nodes();
+
+        assertThat(this.first.claimPartitions("outbox", 4, LEASE)).containsExactlyInAnyOrder(0, 1, 2, 3);
+        // 新节点加入时分区仍被持有，等待原节点在下次续约时释放多余分区
+        assertThat(this.second.claimPartitions("outbox", 4, LEASE)).isEmpty();
+        assertThat(this.first.claimPartitions("outbox", 4, LEASE)).containsExactlyInAnyOrder(0, 1);
+        assertThat(this.second.claimPartitions("outbox", 4, LEASE)).containsExactlyInAnyOrder(2, 3);
+        // 续约不改变已均分的分区
+        assertThat(this.first.claimPartitions("outbox", 4, LEASE)).containsExactlyInAnyOrder(0, 1);
+        assertThat(this.second.claimPartitions("outbox", 4, LEASE)).containsExactlyInAnyOrder(2, 3);
+
+        this.second.releasePartitions("outbox");
+
+        assertThat(this.first.claimPartitions("outbox", 4, LEASE)).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    void unevenPartitionsAreNeverOwnedTwice() throws IOException {
+        this.nodes();
+
+        this.first.claimPartitions("outbox", 5, LEASE);
+        this.second.claimPartitions("outbox", 5, LEASE);
+        Set<Integer> firstOwned = this.first.claimPartitions("outbox", 5, LEASE);
+        Set<Integer> secondOwned = this.second.claimPartitions("outbox", 5, LEASE);
+
+        assertThat(firstOwned).hasSize(3).doesNotContainAnyElementsOf(secondOwned);
+        assertThat(secondOwned).hasSize(2);
+    }
+
+    @Test
+    void takesOverPartitionsOfExpiredNode() throws Exception {
+        this.nodes();
+        Duration shortLease = Duration.ofMillis(200);
+
+        this.first.claimPartitions("outbox", 4, shortLease);
+        this.second.claimPartitions("outbox", 4, LEASE);
+        Set<Integer> before = this.first.claimPartitions("outbox", 4, shortLease);
+        assertThat(before).hasSize(2);
+        Set<Integer> taken = new HashSet<>(this.second.claimPartitions("outbox", 4, LEASE));
+
+        // 第一个节点停止续约，租约过期后其分区由存活节点接管
+        Thread.sleep(300);
+
+        taken.addAll(this.second.claimPartitions("outbox", 4, LEASE));
+        assertThat(taken).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    void sharesQuotaAcrossNodes() throws IOException {
+        this.nodes();
+        Duration window = Duration.ofHours(1);
+
+        QuotaGrant firstGrant = this.first.acquireQuota("MARKETING", 6, 10, window);
+        QuotaGrant secondGrant = this.second.acquireQuota("MARKETING", 6, 10, window);
+
+        assertThat(firstGrant.granted()).isEqualTo(6);
+        assertThat(secondGrant.granted()).isEqualTo(4);
+        assertThat(this.first.acquireQuota("MARKETING", 1, 10, window).granted()).isZero();
+        assertThat(this.first.acquireQuota("NOTICE", 1, 10, window).granted()).isEqualTo(1);
+        assertThat(secondGrant.windowEnd()).isEqualTo(firstGrant.windowEnd());
+        assertThat(firstGrant.windowEnd().toEpochMilli() % window.toMillis()).isZero();
+    }
+
+    @Test
+    void marksKeyOnceAcrossNodes() throws Exception {
+        this.nodes();
+
+        assertThat(this.first.markIfAbsent("order-1", Duration.ofMinutes(1))).isTrue();
+        assertThat(this.second.markIfAbsent("order-1", Duration.ofMinutes(1))).isFalse();
+
+        this.first.unmark("order-1");
+        assertThat(this.second.markIfAbsent("order-1", Duration.ofMillis(100))).isTrue();
+
+        // 过期后可再次标记
+        Thread.sleep(200);
+        assertThat(this.first.markIfAbsent("order-1", Duration.ofMinutes(1))).isTrue();
+    }
+
+    private void nodes() throws IOException {
+        this.first = new FileClusterCoordinator(this.directory, "node-a", Duration.ofMinutes(1));
+        this.second = new FileClusterCoordinator(this.directory, "node-b", Duration.ofMinutes(1));
+    }
+}
@@ -0,0 +1,45 @@
+package cn.alphahub.multiple.email.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+class EmailConfigTests {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class))
+            .withUserConfiguration(EmailConfig.class);
+
+    @Test
+    void virtualThreadsRequireJava21() {
+        assertThatIllegalStateException().isThrownBy(() -> EmailConfig.checkVirtualThreadSupport(Runtime.Version.parse("17.0.9")))
+                .withMessageContaining("requires Java 21 or later, but the application is running on Java 17");
+        assertThatNoException().isThrownBy(() -> EmailConfig.checkVirtualThreadSupport(Runtime.Version.parse("21")));
+        assertThatNoException().isThrownBy(() -> EmailConfig.checkVirtualThreadSupport(Runtime.Version.parse("24.0.1")));
+    }
+
+    @Test
+    void virtualModeFailsStartupBeforeJava21() {
+        assumeTrue(Runtime.version().feature() < 21);
+        this.contextRunner.withPropertyValues("spring.mail.thread.mode=virtual").run(context -> {
+            assertThat(context).hasFailed();
+            assertThat(context.getStartupFailure()).rootCause().isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("spring.mail.thread.mode=virtual requires Java 21");
+        });
+    }
+
+    @Test
+    void platformModeUsesThreadPool() {
+        this.contextRunner.run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context.getBean("emailTaskExecutor", Executor.class)).isSameAs(context.getBean("emailThreadPoolExecutor", ThreadPoolExecutor.class));
+        });
+    }
+}
@@ -0,0 +1,201 @@
+package cn.alphahub.multiple.email.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import cn.alphahub.multiple.email.EmailTemplate;
+import cn.alphahub.multiple.email.EmailTemplate.SimpleMailMessageDomain;
+import cn.alphahub.multiple.email.annotation.Email;
+import cn.alphahub.multiple.email.aspect.EmailAspect;
+import cn.alphahub.multiple.email.dispatch.BoundedPriorityBlockingQueue;
+import cn.alphahub.multiple.email.group.TemplateGroup;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import cn.alphahub.multiple.email.transport.PooledJavaMailSender;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.context.assertj.AssertableApplicationContext;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mail.javamail.JavaMailSender;
+
+class EmailTemplateReloaderTests {
+    private static final String PROPERTY_SOURCE = "mail";
+    private FakeSmtpServer server;
+    private FakeSmtpServer otherServer;
+
+    @AfterEach
+    void close() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+        if (this.otherServer != null) {
+            this.otherServer.close();
+        }
+    }
+
+    @Test
+    void unchangedConfigurationKeepsSendersAndGroups() throws IOException {
+        this.contextRunner().run(context -> {
+            MailWrapper mailWrapper = context.getBean(MailWrapper.class);
+            Map<String, JavaMailSender> before = Map.copyOf(mailWrapper.getJavaMailSenderMap());
+            TemplateGroup group = mailWrapper.getTemplateGroup("bulk");
+
+            EmailTemplatesReloadedEvent event = context.getBean(EmailTemplateReloader.class).reload();
+
+            assertThat(event.hasChanges()).isFalse();
+            assertThat(mailWrapper.getJavaMailSenderMap()).containsExactlyInAnyOrderEntriesOf(before);
+            assertThat(mailWrapper.getTemplateGroup("bulk")).isSameAs(group);
+            assertThat(context.getBean(Events.class).received).containsExactly(event);
+        });
+    }
+
+    @Test
+    void replacesOnlyChangedTemplates() throws IOException {
+        this.contextRunner().run(context -> {
+            MailWrapper mailWrapper = context.getBean(MailWrapper.class);
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+            emailTemplate.using("MARKETING").sendAsync(message()).get(10, TimeUnit.SECONDS);
+            PooledJavaMailSender marketing = (PooledJavaMailSender) mailWrapper.getJavaMailSenderMap().get("MARKETING");
+            JavaMailSender defaultSender = mailWrapper.getJavaMailSenderMap().get(Email.DEFAULT_TEMPLATE);
+            TemplateGroup group = mailWrapper.getTemplateGroup("bulk");
+            assertThat(marketing.getIdleCount()).isEqualTo(1);
+
+            Map<String, Object> changed = this.properties();
+            changed.put("spring.mail.email-templates[0].mail-properties.port", this.otherServer.getPort());
+            changed.put("spring.mail.email-templates[1].template-name", "NOTICE");
+            changed.put("spring.mail.email-templates[1].mail-properties.host", this.otherServer.getHost());
+            changed.put("spring.mail.email-templates[1].mail-properties.port", this.otherServer.getPort());
+            changed.put("spring.mail.email-templates[1].mail-properties.username", "notice@example.com");
+            EmailTemplatesReloadedEvent event = reload(context, changed);
+
+            assertThat(event.getAdded()).containsExactly("NOTICE");
+            assertThat(event.getUpdated()).containsExactly("MARKETING");
+            assertThat(event.getRemoved()).isEmpty();
+            assertThat(mailWrapper.getJavaMailSenderMap().get(Email.DEFAULT_TEMPLATE)).isSameAs(defaultSender);
+            // 被替换的发送实例立即关闭空闲连接
+            assertThat(marketing.getIdleCount()).isZero();
+            // 已获取的句柄和新增的邮件模板都使用新配置
+            emailTemplate.using("MARKETING").sendAsync(message()).get(10, TimeUnit.SECONDS);
+            emailTemplate.using("NOTICE").sendAsync(message()).get(10, TimeUnit.SECONDS);
+            assertThat(this.server.getStats().accepted()).isEqualTo(1);
+            assertThat(this.otherServer.getStats().accepted()).isEqualTo(2);
+            // 组配置未变化，保留原实例及其熔断状态
+            assertThat(mailWrapper.getTemplateGroup("bulk")).isSameAs(group);
+        });
+    }
+
+    @Test
+    void removedTemplateIsNoLongerAvailable() throws IOException {
+        this.contextRunner().run(context -> {
+            EmailTemplate emailTemplate = context.getBean(EmailTemplate.class);
+            emailTemplate.using("MARKETING");
+            Map<String, Object> changed = this.properties();
+            changed.keySet().removeIf(key -> key.startsWith("spring.mail.email-"));
+
+            EmailTemplatesReloadedEvent event = reload(context, changed);
+
+            assertThat(event.getRemoved()).containsExactly("MARKETING");
+            assertThat(context.getBean(MailWrapper.class).getTemplateGroup("bulk")).isNull();
+            assertThatIllegalArgumentException().isThrownBy(() -> emailTemplate.using("MARKETING"));
+        });
+    }
+
+    @Test
+    void invalidConfigurationKeepsCurrentTemplates() throws IOException {
+        this.contextRunner().run(context -> {
+            MailWrapper mailWrapper = context.getBean(MailWrapper.class);
+            Map<String, JavaMailSender> before = Map.copyOf(mailWrapper.getJavaMailSenderMap());
+            Map<String, Object> changed = this.properties();
+            changed.put("spring.mail.email-templates[0].mail-properties.port", this.otherServer.getPort());
+            changed.put("spring.mail.email-groups[0].members[0].template-name", "MISSING");
+
+            assertThatIllegalArgumentException().isThrownBy(() -> reload(context, changed))
+                    .withMessageContaining("refers to unknown template 'MISSING'");
+            assertThat(mailWrapper.getJavaMailSenderMap()).containsExactlyInAnyOrderEntriesOf(before);
+            assertThat(context.getBean(Events.class).received).isEmpty();
+        });
+    }
+
+    @Test
+    void resizesThreadPoolAndQueue() throws IOException {
+        this.contextRunner().run(context -> {
+            ThreadPoolExecutor executor = context.getBean("emailThreadPoolExecutor", ThreadPoolExecutor.class);
+            Map<String, Object> changed = this.properties();
+            changed.put("spring.mail.thread.core-pool-size", 6);
+            changed.put("spring.mail.thread.maximum-pool-size", 8);
+            changed.put("spring.mail.thread.capacity", 20);
+
+            reload(context, changed);
+
+            assertThat(executor.getCorePoolSize()).isEqualTo(6);
+            assertThat(executor.getMaximumPoolSize()).isEqualTo(8);
+            assertThat(((BoundedPriorityBlockingQueue<?>) executor.getQueue()).getCapacity()).isEqualTo(20);
+
+            changed.put("spring.mail.thread.core-pool-size", 1);
+            changed.put("spring.mail.thread.maximum-pool-size", 2);
+            reload(context, changed);
+
+            assertThat(executor.getCorePoolSize()).isEqualTo(1);
+            assertThat(executor.getMaximumPoolSize()).isEqualTo(2);
+        });
+    }
+
+    /**
+     * 用修改后的配置替换启动时的配置后重新加载；集合配置只能整体覆盖，修改时需给出完整的列表
+     */
+    private static EmailTemplatesReloadedEvent reload(AssertableApplicationContext context, Map<String, Object> properties) {
+        context.getEnvironment().getPropertySources().replace(PROPERTY_SOURCE, new MapPropertySource(PROPERTY_SOURCE, properties));
+        return context.getBean(EmailTemplateReloader.class).reload();
+    }
+
+    private Map<String, Object> properties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.mail.host", this.server.getHost());
+        properties.put("spring.mail.port", this.server.getPort());
+        properties.put("spring.mail.username", "sender@example.com");
+        properties.put("spring.mail.pool.enabled", true);
+        properties.put("spring.mail.email-templates[0].template-name", "MARKETING");
+        properties.put("spring.mail.email-templates[0].mail-properties.host", this.server.getHost());
+        properties.put("spring.mail.email-templates[0].mail-properties.port", this.server.getPort());
+        properties.put("spring.mail.email-templates[0].mail-properties.username", "marketing@example.com");
+        properties.put("spring.mail.email-groups[0].group-name", "bulk");
+        properties.put("spring.mail.email-groups[0].members[0].template-name", "MARKETING");
+        return properties;
+    }
+
+    private ApplicationContextRunner contextRunner() throws IOException {
+        this.server = new FakeSmtpServer();
+        this.otherServer = new FakeSmtpServer();
+        Map<String, Object> properties = this.properties();
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class))
+                .withUserConfiguration(EmailConfig.class, EmailAspect.class, EmailTemplate.class, Events.class)
+                .withInitializer(context -> context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(PROPERTY_SOURCE, properties)));
+    }
+
+    private static SimpleMailMessageDomain message() {
+        return new SimpleMailMessageDomain("alice@example.com", null, null, "reload", "hello");
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class Events {
+        final List<EmailTemplatesReloadedEvent> received = new CopyOnWriteArrayList<>();
+
+        @Bean
+        ApplicationListener<EmailTemplatesReloadedEvent> reloadedEventListener() {
+            return this.received::add;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BoundedPriorityBlockingQueueTests {
+
+    @Test
+    void rejectsOfferBeyondCapacity() {
+        BoundedPriorityBlockingQueue<Runnable> queue = new BoundedPriorityBlockingQueue<>(2, PrioritizedTask.COMPARATOR);
+        assertThat(queue.offer(task(MailPriority.LOW))).isTrue();
+        assertThat(queue.offer(task(MailPriority.HIGH))).isTrue();
+        assertThat(queue.remainingCapacity()).isZero();
+        assertThat(queue.offer(task(MailPriority.CRITICAL))).isFalse();
+        assertThatIllegalStateException().isThrownBy(() -> queue.put(task(MailPriority.NORMAL)));
+
+        queue.setCapacity(3);
+        assertThat(queue.offer(task(MailPriority.CRITICAL))).isTrue();
+        assertThat(queue).hasSize(3);
+    }
+
+    @Test
+    void executorGrowsToMaximumPoolSizeThenAborts() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> executed = new CopyOnWriteArrayList<>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 2, 10, TimeUnit.SECONDS,
+                new BoundedPriorityBlockingQueue<>(2, PrioritizedTask.COMPARATOR), new ThreadPoolExecutor.AbortPolicy());
+        try {
+            executor.execute(PrioritizedTask.of(() -> {
+                awaitQuietly(release);
+                executed.add("running");
+            }, MailPriority.NORMAL, Long.MAX_VALUE));
+            executor.execute(PrioritizedTask.of(() -> executed.add("low"), MailPriority.LOW, Long.MAX_VALUE));
+            executor.execute(PrioritizedTask.of(() -> executed.add("critical"), MailPriority.CRITICAL, Long.MAX_VALUE));
+            assertThat(executor.getPoolSize()).isEqualTo(1);
+            assertThat(executor.getQueue()).hasSize(2);
+
+            // 队列已满，扩容到最大线程数
+            executor.execute(PrioritizedTask.of(() -> {
+                awaitQuietly(release);
+                executed.add("overflow");
+            }, MailPriority.NORMAL, Long.MAX_VALUE));
+            assertThat(executor.getPoolSize()).isEqualTo(2);
+            assertThatThrownBy(() -> executor.execute(task(MailPriority.CRITICAL))).isInstanceOf(RejectedExecutionException.class);
+
+            release.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(executed).containsExactlyInAnyOrder("running", "overflow", "critical", "low");
+            assertThat(executed.indexOf("critical")).isLessThan(executed.indexOf("low"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Runnable task(MailPriority priority) {
+        return PrioritizedTask.of(() -> {
+        }, priority, Long.MAX_VALUE);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import cn.alphahub.multiple.email.config.EmailConfig.EmailThreadPoolProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.OverloadPolicy;
+import cn.alphahub.multiple.email.dispatch.EmailDispatcher.Lane;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+
+class EmailDispatcherTests {
+    private final ManualExecutor executor = new ManualExecutor();
+    private final List<String> executed = new ArrayList<>();
+
+    @Test
+    void spilledTasksRunTransactionalFirstInPriorityOrder() {
+        EmailDispatcher dispatcher = new EmailDispatcher(properties(1, 0, OverloadPolicy.SPILL), this.executor);
+        dispatcher.execute(this.task("first", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        dispatcher.execute(this.task("bulk-critical", MailPriority.CRITICAL, Long.MAX_VALUE), Lane.BULK);
+        dispatcher.execute(this.task("low", MailPriority.LOW, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        dispatcher.execute(this.task("normal-late", MailPriority.NORMAL, 2_000L), Lane.TRANSACTIONAL);
+        dispatcher.execute(this.task("normal-early", MailPriority.NORMAL, 1_000L), Lane.TRANSACTIONAL);
+        dispatcher.execute(this.task("high", MailPriority.HIGH, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        assertThat(dispatcher.getSpilled()).isEqualTo(5);
+        assertThat(dispatcher.available(Lane.TRANSACTIONAL)).isZero();
+
+        this.executor.runAll();
+
+        assertThat(this.executed).containsExactly("first", "high", "normal-early", "normal-late", "low", "bulk-critical");
+        assertThat(dispatcher.getSpilled()).isZero();
+        assertThat(dispatcher.available(Lane.TRANSACTIONAL)).isEqualTo(1);
+    }
+
+    @Test
+    void bulkLaneCannotUseReservedCapacity() {
+        EmailDispatcher dispatcher = new EmailDispatcher(properties(3, 1, OverloadPolicy.ABORT), this.executor);
+        assertThat(dispatcher.available(Lane.BULK)).isEqualTo(2);
+        assertThat(dispatcher.available(Lane.TRANSACTIONAL)).isEqualTo(3);
+
+        assertThat(dispatcher.tryExecute(this.task("bulk-1", MailPriority.NORMAL, Long.MAX_VALUE), Lane.BULK)).isTrue();
+        assertThat(dispatcher.tryExecute(this.task("bulk-2", MailPriority.NORMAL, Long.MAX_VALUE), Lane.BULK)).isTrue();
+        assertThat(dispatcher.tryExecute(this.task("bulk-3", MailPriority.NORMAL, Long.MAX_VALUE), Lane.BULK)).isFalse();
+        assertThat(dispatcher.available(Lane.BULK)).isZero();
+        assertThat(dispatcher.available(Lane.TRANSACTIONAL)).isEqualTo(1);
+
+        dispatcher.execute(this.task("transactional", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        assertThat(dispatcher.available(Lane.TRANSACTIONAL)).isZero();
+        assertThatThrownBy(() -> dispatcher.execute(this.task("rejected", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        this.executor.runAll();
+        assertThat(this.executed).containsExactly("bulk-1", "bulk-2", "transactional");
+        assertThat(dispatcher.available(Lane.BULK)).isEqualTo(2);
+        assertThat(dispatcher.available(Lane.TRANSACTIONAL)).isEqualTo(3);
+    }
+
+    @Test
+    void rejectedDispatchReleasesPermit() {
+        EmailDispatcher dispatcher = new EmailDispatcher(properties(1, 0, OverloadPolicy.ABORT), this.executor);
+        this.executor.rejecting = true;
+        assertThatThrownBy(() -> dispatcher.execute(this.task("rejected", MailPriority.NORMAL, Long.MAX_VALUE), Lane.BULK))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(dispatcher.tryExecute(this.task("rejected", MailPriority.NORMAL, Long.MAX_VALUE), Lane.BULK)).isFalse();
+        assertThat(dispatcher.available(Lane.BULK)).isEqualTo(1);
+        assertThat(this.executed).isEmpty();
+    }
+
+    @Test
+    void rejectedSpillRunsInline() {
+        EmailDispatcher dispatcher = new EmailDispatcher(properties(1, 0, OverloadPolicy.SPILL), this.executor);
+        dispatcher.execute(this.task("first", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        dispatcher.execute(this.task("spilled-1", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        dispatcher.execute(this.task("spilled-2", MailPriority.NORMAL, Long.MAX_VALUE), Lane.BULK);
+
+        // 执行器关闭后，溢出的任务在归还名额的线程中执行
+        this.executor.rejecting = true;
+        this.executor.runAll();
+
+        assertThat(this.executed).containsExactly("first", "spilled-1", "spilled-2");
+        assertThat(dispatcher.getSpilled()).isZero();
+        assertThat(dispatcher.available(Lane.TRANSACTIONAL)).isEqualTo(1);
+        assertThat(dispatcher.available(Lane.BULK)).isEqualTo(1);
+    }
+
+    @Test
+    void spillRejectsWhenFull() {
+        EmailThreadPoolProperties properties = properties(1, 0, OverloadPolicy.SPILL);
+        properties.setSpillCapacity(1);
+        EmailDispatcher dispatcher = new EmailDispatcher(properties, this.executor);
+        dispatcher.execute(this.task("first", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        dispatcher.execute(this.task("spilled", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL);
+        assertThatThrownBy(() -> dispatcher.execute(this.task("rejected", MailPriority.NORMAL, Long.MAX_VALUE), Lane.TRANSACTIONAL))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        this.executor.runAll();
+        assertThat(this.executed).containsExactly("first", "spilled");
+    }
+
+    private Runnable task(String name, MailPriority priority, long deadlineMillis) {
+        return PrioritizedTask.of(() -> this.executed.add(name), priority, deadlineMillis);
+    }
+
+    private static EmailThreadPoolProperties properties(int maxPendingTasks, int reservedCapacity, OverloadPolicy overloadPolicy) {
+        EmailThreadPoolProperties properties = new EmailThreadPoolProperties();
+        properties.setMaxPendingTasks(maxPendingTasks);
+        properties.setReservedCapacity(reservedCapacity);
+        properties.setOverloadPolicy(overloadPolicy);
+        return properties;
+    }
+
+    /**
+     * 由测试线程逐个执行任务的执行器
+     */
+    private static final class ManualExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean rejecting;
+
+        @Override
+        public void execute(Runnable command) {
+            if (this.rejecting) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            this.tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package cn.alphahub.multiple.email.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTests {
+    private TimerWheel timerWheel;
+
+    @AfterEach
+    void destroy() throws Exception {
+        if (this.timerWheel != null) {
+            this.timerWheel.destroy();
+        }
+    }
+
+    @Test
+    void neverRunsBeforeDue() throws Exception {
+        this.timerWheel = new TimerWheel(Duration.ofMillis(10), 8);
+        long start = System.nanoTime();
+        long[] ranAfter = new long[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        this.timerWheel.schedule(Instant.now().plusMillis(50), () -> {
+            ranAfter[0] = System.nanoTime() - start;
+            latch.countDown();
+        });
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ranAfter[0]).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(this.timerWheel.getPending()).isZero();
+    }
+
+    @Test
+    void waitsRemainingRoundsWhenDelayExceedsWheel() throws Exception {
+        // 4个槽位、每格10ms，一圈40ms：+15ms和+55ms、+95ms落在同一个槽位，分别需要再转0、1、2圈
+        this.timerWheel = new TimerWheel(Duration.ofMillis(10), 4);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] ranAfter = new long[3];
+        Instant now = Instant.now();
+        this.timerWheel.schedule(now.plusMillis(95), () -> {
+            ranAfter[2] = System.nanoTime() - start;
+            order.add("third");
+            latch.countDown();
+        });
+        this.timerWheel.schedule(now.plusMillis(15), () -> {
+            ranAfter[0] = System.nanoTime() - start;
+            order.add("first");
+            latch.countDown();
+        });
+        this.timerWheel.schedule(now.plusMillis(55), () -> {
+            ranAfter[1] = System.nanoTime() - start;
+            order.add("second");
+            latch.countDown();
+        });
+        assertThat(this.timerWheel.getPending()).isEqualTo(3);
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("first", "second", "third");
+        assertThat(ranAfter[1]).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(ranAfter[2]).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    void runsPastDueTaskOnNextTick() throws Exception {
+        this.timerWheel = new TimerWheel(Duration.ofMillis(10), 3);
+        CountDownLatch latch = new CountDownLatch(1);
+        this.timerWheel.schedule(Instant.now().minusSeconds(60), latch::countDown);
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void destroyCancelsPendingTasksWithoutRunningThem() throws Exception {
+        this.timerWheel = new TimerWheel(Duration.ofMillis(10), 8);
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        this.timerWheel.schedule(Instant.now().plusSeconds(60), () -> ran.set(true), () -> cancelled.set(true));
+        this.timerWheel.schedule(Instant.now().plusSeconds(60), () -> ran.set(true));
+
+        this.timerWheel.destroy();
+
+        assertThat(ran).isFalse();
+        assertThat(cancelled).isTrue();
+        assertThat(this.timerWheel.getPending()).isZero();
+        assertThatThrownBy(() -> this.timerWheel.schedule(Instant.now(), () -> ran.set(true)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void cancelsPendingTasksOnlyAfterRunningTaskReturns() throws Exception {
+        this.timerWheel = new TimerWheel(Duration.ofMillis(10), 8);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        this.timerWheel.schedule(Instant.now(), () -> {
+            running.countDown();
+            awaitQuietly(release);
+        });
+        this.timerWheel.schedule(Instant.now().plusSeconds(60), () -> {
+        }, cancelled::countDown);
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread destroyer = new Thread(() -> {
+            try {
+                this.timerWheel.destroy();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        destroyer.start();
+        // 时间轮线程仍在执行到期任务，剩余任务不会被并发取消
+        assertThat(cancelled.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(this.timerWheel.getPending()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        destroyer.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(this.timerWheel.getPending()).isZero();
+    }
+
+    @Test
+    void scheduleRacingWithDestroyIsRejectedOrCancelled() throws Exception {
+        this.timerWheel = new TimerWheel(Duration.ofMillis(1), 8);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> schedulers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread scheduler = new Thread(() -> {
+                started.countDown();
+                while (true) {
+                    try {
+                        this.timerWheel.schedule(Instant.now().plusSeconds(60), () -> {
+                        }, cancelled::incrementAndGet);
+                        accepted.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet();
+                        return;
+                    }
+                }
+            });
+            scheduler.start();
+            schedulers.add(scheduler);
+        }
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(20);
+
+        this.timerWheel.destroy();
+        for (Thread scheduler : schedulers) {
+            scheduler.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertThat(rejected).hasValue(4);
+        assertThat(accepted.get()).isPositive();
+        assertThat(cancelled).hasValue(accepted.get());
+        assertThat(this.timerWheel.getPending()).isZero();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
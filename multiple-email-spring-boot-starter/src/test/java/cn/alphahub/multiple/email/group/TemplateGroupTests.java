@@ -0,0 +1,93 @@
+package cn.alphahub.multiple.email.group;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import cn.alphahub.multiple.email.config.EmailConfig.LoadBalanceStrategy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TemplateGroupTests {
+
+    @Test
+    void weightedRoundRobinInterleavesByWeight() {
+        TemplateGroup group = new TemplateGroup("bulk", LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN, List.of(member("A", 3), member("B", 1)));
+
+        List<String> selected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            selected.add(group.select(Set.of()).getTemplateName());
+        }
+
+        // 平滑加权轮询：B不会连续落在一轮的末尾
+        assertThat(selected).containsExactly("A", "A", "B", "A", "A", "A", "B", "A");
+    }
+
+    @Test
+    void skipsExcludedAndOpenMembers() {
+        TemplateGroup.Member a = member("A", 1);
+        TemplateGroup.Member b = member("B", 1);
+        TemplateGroup group = new TemplateGroup("bulk", LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN, List.of(a, b));
+
+        assertThat(group.select(Set.of("A")).getTemplateName()).isEqualTo("B");
+
+        b.getCircuitBreaker().onFailure();
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("A");
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("A");
+        assertThat(group.select(Set.of("A"))).isNull();
+    }
+
+    @Test
+    void expiredBreakerGetsTrialBeforeHealthyMembers() throws InterruptedException {
+        TemplateGroup.Member a = new TemplateGroup.Member("A", 1, new CircuitBreaker(1, Duration.ofMillis(50)));
+        TemplateGroup.Member b = member("B", 1);
+        TemplateGroup group = new TemplateGroup("bulk", LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN, List.of(a, b));
+        a.getCircuitBreaker().onFailure();
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("B");
+
+        Thread.sleep(100);
+
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("A");
+        // 试探期间其余流量只分给未熔断的成员
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("B");
+    }
+
+    @Test
+    void leastInFlightPrefersLowestLoadPerWeight() {
+        TemplateGroup.Member a = member("A", 2);
+        TemplateGroup.Member b = member("B", 1);
+        TemplateGroup group = new TemplateGroup("bulk", LoadBalanceStrategy.LEAST_IN_FLIGHT, List.of(a, b));
+
+        a.begin();
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("A");
+        a.begin();
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("B");
+
+        a.end(true);
+        a.end(true);
+        assertThat(a.getInFlight()).isZero();
+        assertThat(group.select(Set.of()).getTemplateName()).isEqualTo("A");
+    }
+
+    @Test
+    void memberEndRecordsHealth() {
+        TemplateGroup.Member a = member("A", 1);
+
+        a.begin();
+        a.end(false);
+
+        assertThat(a.getCircuitBreaker().isOpen()).isTrue();
+    }
+
+    @Test
+    void rejectsEmptyGroup() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new TemplateGroup("bulk", LoadBalanceStrategy.WEIGHTED_ROUND_ROBIN, List.of()))
+                .withMessage("Mail template group 'bulk' has no members");
+    }
+
+    private static TemplateGroup.Member member(String templateName, int weight) {
+        return new TemplateGroup.Member(templateName, weight, new CircuitBreaker(1, Duration.ofMinutes(1)));
+    }
+}
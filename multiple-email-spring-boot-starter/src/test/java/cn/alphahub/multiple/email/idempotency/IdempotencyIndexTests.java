@@ -0,0 +1,123 @@
+package cn.alphahub.multiple.email.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailSendException;
+
+class IdempotencyIndexTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsAllKeysAcrossResize() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(Duration.ofHours(1), 1_000_000, 1, null, null);
+        AtomicInteger sends = new AtomicInteger();
+        int keys = 5000;
+        for (int i = 0; i < keys; i++) {
+            String messageId = "<" + i + "@test>";
+            index.deduplicate("key-" + i, () -> {
+                sends.incrementAndGet();
+                return CompletableFuture.completedFuture(SendResult.success("test", messageId, 1L));
+            });
+        }
+        assertThat(index.getKeyCount()).isEqualTo(keys);
+        for (int i = 0; i < keys; i++) {
+            SendResult result = index.deduplicate("key-" + i, () -> {
+                sends.incrementAndGet();
+                return CompletableFuture.completedFuture(SendResult.success("test", "<other@test>", 1L));
+            }).join();
+            assertThat(result.getMessageId()).isEqualTo("<" + i + "@test>");
+        }
+        assertThat(sends).hasValue(keys);
+        assertThat(index.getDuplicateCount()).isEqualTo(keys);
+        assertThat(index.getMissCount()).isEqualTo(keys);
+    }
+
+    @Test
+    void failedKeyCanBeReused() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(Duration.ofHours(1), 1_000_000, 1, null, null);
+        CompletableFuture<SendResult> failed = index.deduplicate("key", () -> CompletableFuture.failedFuture(new MailSendException("451 try again")));
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(index.getKeyCount()).isZero();
+
+        // 同一个键多次失败、重试都复用已移除的槽
+        for (int i = 0; i < 3000; i++) {
+            index.deduplicate("key", () -> CompletableFuture.failedFuture(new MailSendException("451 try again")));
+        }
+        CompletableFuture<SendResult> retried = index.deduplicate("key", () -> CompletableFuture.completedFuture(SendResult.success("test", "<retried@test>", 1L)));
+        assertThat(retried.join().getMessageId()).isEqualTo("<retried@test>");
+        assertThat(index.getKeyCount()).isEqualTo(1L);
+
+        CompletableFuture<SendResult> duplicate = index.deduplicate("key", () -> {
+            throw new AssertionError("duplicate key must not be sent again");
+        });
+        assertThat(duplicate.join().getMessageId()).isEqualTo("<retried@test>");
+    }
+
+    @Test
+    void pendingKeySharesFirstResult() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(Duration.ofHours(1), 1_000_000, 1, null, null);
+        CompletableFuture<SendResult> first = new CompletableFuture<>();
+        assertThat(index.deduplicate("key", () -> first)).isSameAs(first);
+
+        CompletableFuture<SendResult> duplicate = index.deduplicate("key", () -> {
+            throw new AssertionError("duplicate key must not be sent again");
+        });
+        assertThat(duplicate).isNotDone();
+        first.complete(SendResult.success("test", "<first@test>", 1L));
+        assertThat(duplicate.join().getMessageId()).isEqualTo("<first@test>");
+    }
+
+    @Test
+    void reloadsJournalAfterRestart() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(Duration.ofHours(1), 1_000_000, 4, this.directory, null);
+        for (int i = 0; i < 100; i++) {
+            String messageId = "<" + i + "@test>";
+            index.deduplicate("key-" + i, () -> CompletableFuture.completedFuture(SendResult.success("test", messageId, 1L)));
+        }
+        index.deduplicate("failed", () -> CompletableFuture.failedFuture(new MailSendException("550 rejected")));
+        index.destroy();
+
+        IdempotencyIndex reloaded = new IdempotencyIndex(Duration.ofHours(1), 1_000_000, 4, this.directory, null);
+        assertThat(reloaded.getKeyCount()).isEqualTo(100L);
+        for (int i = 0; i < 100; i++) {
+            SendResult result = reloaded.deduplicate("key-" + i, () -> {
+                throw new AssertionError("persisted key must not be sent again");
+            }).join();
+            assertThat(result.getTemplateName()).isEqualTo("test");
+            assertThat(result.getMessageId()).isEqualTo("<" + i + "@test>");
+        }
+        AtomicInteger sends = new AtomicInteger();
+        reloaded.deduplicate("failed", () -> {
+            sends.incrementAndGet();
+            return CompletableFuture.completedFuture(SendResult.success("test", "<failed@test>", 1L));
+        });
+        assertThat(sends).hasValue(1);
+        reloaded.destroy();
+    }
+
+    @Test
+    void ignoresTornJournalTail() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(Duration.ofHours(1), 1_000_000, 1, this.directory, null);
+        index.deduplicate("key", () -> CompletableFuture.completedFuture(SendResult.success("test", "<key@test>", 1L)));
+        index.destroy();
+        try (var files = Files.list(this.directory)) {
+            Path journal = files.findFirst().orElseThrow();
+            Files.write(journal, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        IdempotencyIndex reloaded = new IdempotencyIndex(Duration.ofHours(1), 1_000_000, 1, this.directory, null);
+        assertThat(reloaded.getKeyCount()).isEqualTo(1L);
+        reloaded.destroy();
+    }
+}
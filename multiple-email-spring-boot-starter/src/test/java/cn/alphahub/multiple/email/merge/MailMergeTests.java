@@ -0,0 +1,117 @@
+package cn.alphahub.multiple.email.merge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cn.alphahub.multiple.email.attachment.FileAttachment;
+import cn.alphahub.multiple.email.render.CompiledMailTemplate;
+import jakarta.mail.BodyPart;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MailMergeTests {
+    private static final String BODY = "<html><head><title>Hello ${name}</title></head><body><p>${greeting}</p><img src=\"cid:logo\"></body></html>";
+    private final Session session = Session.getInstance(new Properties());
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void splicesPersonalizedBodyBetweenSharedParts() throws Exception {
+        Path attachment = Files.write(this.tempDir.resolve("report.bin"), new byte[]{0, 1, 2, (byte) 0xff});
+        Path logo = Files.write(this.tempDir.resolve("logo.png"), new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+        MailMerge mailMerge = MailMerge.prepare(CompiledMailTemplate.compile("welcome", BODY), null,
+                List.of(FileAttachment.of(attachment)), Map.of("logo", FileAttachment.of(logo)));
+        // 附件在准备阶段已编码进共享字节，之后不再读取文件
+        Files.delete(attachment);
+        Files.delete(logo);
+
+        MimeMessage alice = this.roundTrip(mailMerge.createMimeMessage(this.session, "sender@example.com", "alice@example.com",
+                Map.of("name", "Alice", "greeting", "Hi Alice")));
+        MimeMessage bob = this.roundTrip(mailMerge.createMimeMessage(this.session, "sender@example.com", "bob@example.com",
+                Map.of("name", "Bob", "greeting", "Hi Bob")));
+
+        assertThat(alice.getSubject()).isEqualTo("Hello Alice");
+        assertThat(bob.getSubject()).isEqualTo("Hello Bob");
+        assertThat(alice.getAllRecipients()).extracting(Object::toString).containsExactly("alice@example.com");
+        assertThat(html(alice)).contains("<p>Hi Alice</p>").doesNotContain("Bob");
+        assertThat(html(bob)).contains("<p>Hi Bob</p>").doesNotContain("Alice");
+        assertThat(alice.getMessageID()).isNotEqualTo(bob.getMessageID());
+
+        MimeMultipart mixed = (MimeMultipart) bob.getContent();
+        assertThat(mixed.getCount()).isEqualTo(2);
+        BodyPart file = mixed.getBodyPart(1);
+        assertThat(file.getFileName()).isEqualTo("report.bin");
+        assertThat(bytes(file)).containsExactly(0, 1, 2, 0xff);
+        MimeMultipart related = (MimeMultipart) mixed.getBodyPart(0).getContent();
+        MimeBodyPart inline = (MimeBodyPart) related.getBodyPart(1);
+        assertThat(inline.getContentID()).isEqualTo("<logo>");
+        assertThat(bytes(inline)).containsExactly(0x89, 'P', 'N', 'G');
+    }
+
+    @Test
+    void encodesBodyAsQuotedPrintable() throws Exception {
+        MailMerge mailMerge = MailMerge.prepare(CompiledMailTemplate.compile("text", "<p>${greeting}</p>${tail}"), null, List.of(), Map.of());
+        String greeting = "你好，Zoë! a=b " + "x".repeat(200);
+        String tail = "trailing space \r\nlast line ends with space ";
+
+        MimeMessage message = this.roundTrip(mailMerge.createMimeMessage(this.session, "sender@example.com", "alice@example.com",
+                Map.of("greeting", greeting, "tail", tail)));
+
+        MimeBodyPart body = htmlPart(message);
+        assertThat(body.getEncoding()).isEqualTo("quoted-printable");
+        assertThat(body.getContentType()).contains("text/html").contains("UTF-8");
+        assertThat(body.getContent()).isEqualTo("<p>" + "你好，Zoë! a=b " + "x".repeat(200) + "</p>" + tail);
+        // 编码后每行不超过76个字符，行尾空格编码为=20
+        String raw;
+        try (InputStream in = body.getRawInputStream()) {
+            raw = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+        assertThat(raw.split("\r\n")).allMatch(line -> line.length() <= 76).contains("last line ends with space=20");
+    }
+
+    @Test
+    void explicitSubjectTemplateOverridesTitle() throws Exception {
+        MailMerge mailMerge = MailMerge.prepare(CompiledMailTemplate.compile("welcome", BODY), CompiledMailTemplate.compile("subject", "欢迎 ${name} & co"),
+                List.of(), Map.of());
+
+        MimeMessage message = this.roundTrip(mailMerge.createMimeMessage(this.session, "sender@example.com", "alice@example.com",
+                Map.of("name", "<Alice>", "greeting", "hi")));
+
+        assertThat(message.getSubject()).isEqualTo("欢迎 <Alice> & co");
+    }
+
+    private MimeMessage roundTrip(MimeMessage message) throws Exception {
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return new MimeMessage(this.session, new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static MimeBodyPart htmlPart(MimeMessage message) throws Exception {
+        MimeMultipart mixed = (MimeMultipart) message.getContent();
+        MimeMultipart related = (MimeMultipart) mixed.getBodyPart(0).getContent();
+        return (MimeBodyPart) related.getBodyPart(0);
+    }
+
+    private static String html(MimeMessage message) throws Exception {
+        return (String) htmlPart(message).getContent();
+    }
+
+    private static byte[] bytes(BodyPart part) throws Exception {
+        try (InputStream in = part.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
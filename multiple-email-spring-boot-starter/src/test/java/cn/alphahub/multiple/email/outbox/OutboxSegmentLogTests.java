@@ -0,0 +1,159 @@
+package cn.alphahub.multiple.email.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cn.alphahub.multiple.email.outbox.OutboxSegmentLog.OutboxRecord;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxSegmentLogTests {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysUnacknowledgedRecordsAfterReopen() throws IOException {
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            assertThat(log.append(bytes("one")).sequence()).isEqualTo(1L);
+            assertThat(log.append(bytes("two")).sequence()).isEqualTo(2L);
+            assertThat(log.append(bytes("three")).sequence()).isEqualTo(3L);
+            log.acknowledge(1L);
+        }
+
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            assertThat(log.getCheckpoint()).isEqualTo(1L);
+            assertThat(payloads(log)).containsExactly("two", "three");
+            assertThat(log.append(bytes("four")).sequence()).isEqualTo(4L);
+        }
+    }
+
+    @Test
+    void dropsTornTailRecord() throws IOException {
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            log.append(bytes("one"));
+            log.append(bytes("two"));
+        }
+        // 进程在写完长度前崩溃：记录头和部分内容已写入，校验和不匹配
+        int tail = 2 * OutboxSegmentLog.HEADER_SIZE + "one".length() + "two".length();
+        try (FileChannel channel = FileChannel.open(this.segments().get(0), StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(OutboxSegmentLog.HEADER_SIZE + 4);
+            torn.putInt(100).putInt(12345).putLong(3L).put(bytes("thr")).flip();
+            channel.write(torn, tail);
+        }
+
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            assertThat(payloads(log)).containsExactly("one", "two");
+            // 新记录覆盖半条记录
+            assertThat(log.append(bytes("three")).sequence()).isEqualTo(3L);
+        }
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            assertThat(payloads(log)).containsExactly("one", "two", "three");
+        }
+    }
+
+    @Test
+    void truncatesAtCrcMismatch() throws IOException {
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            log.append(bytes("one"));
+            log.append(bytes("two"));
+            log.append(bytes("three"));
+        }
+        int secondPayload = 2 * OutboxSegmentLog.HEADER_SIZE + "one".length();
+        try (FileChannel channel = FileChannel.open(this.segments().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("T")), secondPayload);
+        }
+
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            assertThat(payloads(log)).containsExactly("one");
+            assertThat(log.append(bytes("again")).sequence()).isEqualTo(2L);
+        }
+    }
+
+    @Test
+    void checkpointAdvancesOnlyOverContiguousAcks() throws IOException {
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            for (int i = 1; i <= 5; i++) {
+                log.append(bytes("record-" + i));
+            }
+            log.acknowledge(3L);
+            log.acknowledge(2L);
+            assertThat(log.getCheckpoint()).isZero();
+            log.acknowledge(1L);
+            assertThat(log.getCheckpoint()).isEqualTo(3L);
+            log.acknowledge(5L);
+            assertThat(log.getCheckpoint()).isEqualTo(3L);
+            // 重复确认被忽略
+            log.acknowledge(2L);
+            assertThat(log.getCheckpoint()).isEqualTo(3L);
+        }
+
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, SEGMENT_SIZE, false)) {
+            assertThat(log.getCheckpoint()).isEqualTo(3L);
+            // 乱序确认只保存在内存中，重启后未越过checkpoint的记录重新投递
+            assertThat(payloads(log)).containsExactly("record-4", "record-5");
+            log.acknowledge(5L);
+            log.acknowledge(4L);
+            assertThat(log.getCheckpoint()).isEqualTo(5L);
+        }
+    }
+
+    @Test
+    void rollsAndDeletesAcknowledgedSegments() throws IOException {
+        // 每个段文件只能容纳一条记录
+        int segmentSize = OutboxSegmentLog.HEADER_SIZE + 20 + Integer.BYTES + 8;
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, segmentSize, false)) {
+            for (int i = 1; i <= 3; i++) {
+                log.append(new byte[20]);
+            }
+            assertThat(this.segments()).hasSize(3);
+
+            log.acknowledge(2L);
+            assertThat(this.segments()).hasSize(3);
+            log.acknowledge(1L);
+            assertThat(this.segments()).hasSize(1);
+            // 正在写入的段文件不删除
+            log.acknowledge(3L);
+            assertThat(this.segments()).hasSize(1);
+
+            OutboxRecord large = log.append(new byte[segmentSize * 2]);
+            assertThat(large.sequence()).isEqualTo(4L);
+            assertThat(large.payload()).hasSize(segmentSize * 2);
+            assertThat(this.segments()).hasSize(2);
+            log.acknowledge(4L);
+            assertThat(this.segments()).hasSize(1);
+        }
+
+        try (OutboxSegmentLog log = new OutboxSegmentLog(this.directory, segmentSize, false)) {
+            assertThat(this.segments()).isEmpty();
+            assertThat(payloads(log)).isEmpty();
+            assertThat(log.append(new byte[20]).sequence()).isEqualTo(5L);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> stream = Files.list(this.directory)) {
+            return stream.filter(path -> path.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private static List<String> payloads(OutboxSegmentLog log) {
+        List<String> payloads = new ArrayList<>();
+        log.replay(record -> payloads.add(new String(record.payload(), StandardCharsets.UTF_8)));
+        return payloads;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
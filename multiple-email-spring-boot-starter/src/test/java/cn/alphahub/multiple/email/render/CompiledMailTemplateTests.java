@@ -0,0 +1,142 @@
+package cn.alphahub.multiple.email.render;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class CompiledMailTemplateTests {
+
+    @Test
+    void escapesHtmlSpecialCharacters() {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test", "<p>${value}</p>");
+
+        assertThat(template.render(Map.of("value", "<script>alert(\"x\" & 'y')</script>")))
+                .isEqualTo("<p>&lt;script&gt;alert(&quot;x&quot; &amp; &#39;y&#39;)&lt;/script&gt;</p>");
+        assertThat(template.render(Map.of("value", "plain text"))).isEqualTo("<p>plain text</p>");
+    }
+
+    @Test
+    void rawPlaceholderIsNotEscaped() {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test", "<div>$!{fragment}</div>");
+
+        assertThat(template.render(Map.of("fragment", "<b>bold</b> & more"))).isEqualTo("<div><b>bold</b> & more</div>");
+    }
+
+    @Test
+    void textRenderingDoesNotEscape() {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test", "Hello ${name}");
+
+        assertThat(template.renderText(Map.of("name", "Tom & Jerry <tj@example.com>"))).isEqualTo("Hello Tom & Jerry <tj@example.com>");
+    }
+
+    @Test
+    void escapedPlaceholderIsLiteral() {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test", "Use \\${name} for ${name}");
+
+        assertThat(template.render(Map.of("name", "Tom"))).isEqualTo("Use ${name} for Tom");
+        assertThat(CompiledMailTemplate.compile("test", "price: $5 {not a placeholder} \\n").render(Map.of()))
+                .isEqualTo("price: $5 {not a placeholder} \\n");
+    }
+
+    @Test
+    void rejectsUnclosedPlaceholder() {
+        assertThatIllegalArgumentException().isThrownBy(() -> CompiledMailTemplate.compile("welcome", "<p>Hello ${user.name</p>"))
+                .withMessage("Unclosed placeholder at offset 9 of mail body template 'welcome'");
+        assertThatIllegalArgumentException().isThrownBy(() -> CompiledMailTemplate.compile("welcome", "$!{raw"))
+                .withMessageStartingWith("Unclosed placeholder at offset 0");
+    }
+
+    @Test
+    void rejectsEmptyPlaceholder() {
+        assertThatIllegalArgumentException().isThrownBy(() -> CompiledMailTemplate.compile("welcome", "<p>${}</p>"))
+                .withMessage("Empty placeholder at offset 3 of mail body template 'welcome'");
+        assertThatIllegalArgumentException().isThrownBy(() -> CompiledMailTemplate.compile("welcome", "$!{  }"))
+                .withMessageStartingWith("Empty placeholder at offset 0");
+    }
+
+    @Test
+    void nullAndMissingValuesRenderEmpty() {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test", "[${missing}][$!{missing}][${user.missing}][$!{user.name.first}]");
+        Map<String, Object> model = new HashMap<>();
+        model.put("missing", null);
+        model.put("user", new User("Tom", null));
+
+        assertThat(template.render(model)).isEqualTo("[][][][]");
+        assertThat(CompiledMailTemplate.compile("test", "[${user.address.city}]").render(model)).isEqualTo("[]");
+    }
+
+    @Test
+    void resolvesNestedMapBeanAndRecordPaths() {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test",
+                "${order.id}|${order.customer.name}|${order.customer.address.city}|${order.lines.size}|${settings.theme.color}");
+        Customer customer = new Customer();
+        customer.setName("Tom <admin>");
+        customer.setAddress(new Address("Paris", "75001"));
+        Map<String, Object> model = Map.of(
+                "order", Map.of("id", 42, "customer", customer, "lines", new Lines(List.of("a", "b"))),
+                "settings", Map.of("theme", Map.of("color", "#fff")));
+
+        assertThat(template.render(model)).isEqualTo("42|Tom &lt;admin&gt;|Paris|2|#fff");
+    }
+
+    @Test
+    void rendersSubjectFromTitleAsPlainText() {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test",
+                "<html><head><TITLE lang=\"en\">\n  Q&amp;A for ${name} &lt;${team}&gt; &#39;weekly&#39;\n</TITLE></head><body>${name}</body></html>");
+
+        assertThat(template.renderSubject(Map.of("name", "Tom & Jerry", "team", "R&D")))
+                .isEqualTo("Q&A for Tom & Jerry <R&D> 'weekly'");
+        assertThat(template.render(Map.of("name", "Tom & Jerry", "team", "R&D"))).contains("<body>Tom &amp; Jerry</body>");
+        assertThat(CompiledMailTemplate.compile("test", "<p>no title</p>").renderSubject(Map.of())).isEmpty();
+    }
+
+    @Test
+    void dataHandlerStreamsRenderedBody() throws Exception {
+        CompiledMailTemplate template = CompiledMailTemplate.compile("test", "<p>你好 ${name}</p>");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        template.toDataHandler(Map.of("name", "<Tom>")).writeTo(out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("<p>你好 &lt;Tom&gt;</p>");
+        assertThat(template.toDataHandler(Map.of()).getContentType()).isEqualTo("text/html; charset=UTF-8");
+    }
+
+    record User(String name, String address) {
+    }
+
+    record Address(String city, String zip) {
+    }
+
+    record Lines(List<String> items) {
+        public int getSize() {
+            return this.items.size();
+        }
+    }
+
+    public static class Customer {
+        private String name;
+        private Address address;
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Address getAddress() {
+            return this.address;
+        }
+
+        public void setAddress(Address address) {
+            this.address = address;
+        }
+    }
+}
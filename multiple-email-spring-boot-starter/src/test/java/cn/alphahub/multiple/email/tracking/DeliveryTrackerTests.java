@@ -0,0 +1,220 @@
+package cn.alphahub.multiple.email.tracking;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cn.alphahub.multiple.email.EmailTemplate.SendResult;
+import cn.alphahub.multiple.email.recipient.RecipientResult;
+import jakarta.mail.Address;
+import jakarta.mail.Message.RecipientType;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailSendException;
+
+class DeliveryTrackerTests {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsRetryAndSuccess() throws IOException {
+        DeliveryTracker tracker = new DeliveryTracker(16, null);
+        String id = tracker.queued("MARKETING");
+        assertThat(tracker.getCount(DeliveryStatus.QUEUED)).isEqualTo(1);
+
+        tracker.sending(id, 1);
+        DeliveryRecord first = tracker.find(id).orElseThrow();
+        tracker.retrying(id, 1, failure(451, "451 4.3.0 Try again later"));
+        DeliveryRecord retrying = tracker.find(id).orElseThrow();
+        tracker.sending(id, 2);
+        tracker.sent(id, SendResult.success("MARKETING", "<1@example.com>", 10,
+                List.of(new RecipientResult("alice@example.com", true, 250, null))));
+
+        assertThat(retrying.status()).isEqualTo(DeliveryStatus.RETRYING);
+        assertThat(retrying.replyCode()).isEqualTo(451);
+        DeliveryRecord record = tracker.find(id).orElseThrow();
+        assertThat(record.status()).isEqualTo(DeliveryStatus.SENT);
+        assertThat(record.attempts()).isEqualTo(2);
+        // 开始时间为第一次尝试的时间
+        assertThat(record.startedAt()).isEqualTo(first.startedAt());
+        assertThat(record.finishedAt()).isNotNull();
+        assertThat(record.messageId()).isEqualTo("<1@example.com>");
+        assertThat(record.recipients()).containsExactly("alice@example.com");
+        assertThat(tracker.getCount(DeliveryStatus.SENT)).isEqualTo(1);
+        assertThat(tracker.getCount(DeliveryStatus.QUEUED)).isZero();
+        assertThat(tracker.getCount(DeliveryStatus.RETRYING)).isZero();
+    }
+
+    @Test
+    void ignoresOutdatedTransitions() throws IOException {
+        DeliveryTracker tracker = new DeliveryTracker(16, null);
+        String id = tracker.queued("MARKETING");
+        tracker.sending(id, 1);
+        tracker.retrying(id, 1, failure(451, "451 busy"));
+        tracker.sending(id, 2);
+
+        // 第一次尝试的重试通知晚于第二次尝试开始
+        tracker.retrying(id, 1, failure(451, "451 busy"));
+        assertThat(tracker.find(id).orElseThrow().status()).isEqualTo(DeliveryStatus.SENDING);
+
+        tracker.sent(id, SendResult.success("MARKETING", "<1@example.com>", 10));
+        tracker.sending(id, 3);
+        tracker.failed(id, new IllegalStateException("late"), null);
+        assertThat(tracker.find(id).orElseThrow().status()).isEqualTo(DeliveryStatus.SENT);
+    }
+
+    @Test
+    void lateSuccessReplacesFailure() throws Exception {
+        DeliveryTracker tracker = new DeliveryTracker(16, null);
+        String id = tracker.queued("MARKETING");
+        tracker.sending(id, 1);
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setRecipients(RecipientType.TO, "alice@example.com, bob@example.com");
+        message.setHeader("Message-ID", "<2@example.com>");
+
+        tracker.failed(id, new CompletionException(failure(554, "554 5.7.1 Message rejected")), message);
+        DeliveryRecord failed = tracker.find(id).orElseThrow();
+        assertThat(failed.status()).isEqualTo(DeliveryStatus.FAILED);
+        assertThat(failed.replyCode()).isEqualTo(554);
+        assertThat(failed.recipients()).containsExactly("alice@example.com", "bob@example.com");
+        assertThat(failed.messageId()).isEqualTo("<2@example.com>");
+
+        // 调用方超时后发送仍然成功
+        tracker.sent(id, SendResult.success("MARKETING", "<2@example.com>", 10));
+        assertThat(tracker.find(id).orElseThrow().status()).isEqualTo(DeliveryStatus.SENT);
+        assertThat(tracker.getCount(DeliveryStatus.FAILED)).isZero();
+        assertThat(tracker.getCount(DeliveryStatus.SENT)).isEqualTo(1);
+    }
+
+    @Test
+    void overwritesOldestRecordsWhenFull() throws IOException {
+        DeliveryTracker tracker = new DeliveryTracker(3, null);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(tracker.queued("T" + i));
+        }
+        tracker.sent(ids.get(3), SendResult.success("T3", null, 1));
+
+        assertThat(tracker.find(ids.get(0))).isEmpty();
+        assertThat(tracker.find(ids.get(1))).isEmpty();
+        assertThat(tracker.list(null, 10)).extracting(DeliveryRecord::templateName).containsExactly("T4", "T3", "T2");
+        assertThat(tracker.list(DeliveryStatus.QUEUED, 1)).extracting(DeliveryRecord::templateName).containsExactly("T4");
+        assertThat(tracker.getCount(DeliveryStatus.QUEUED)).isEqualTo(2);
+        assertThat(tracker.getCount(DeliveryStatus.SENT)).isEqualTo(1);
+
+        tracker.discard(ids.get(4));
+        assertThat(tracker.find(ids.get(4))).isEmpty();
+        assertThat(tracker.getCount(DeliveryStatus.QUEUED)).isEqualTo(1);
+        assertThat(tracker.find("not an id")).isEmpty();
+    }
+
+    @Test
+    void reloadsFinishedRecordsFromJournal() throws IOException {
+        DeliveryTracker tracker = new DeliveryTracker(16, this.directory);
+        String sent = tracker.queued("MARKETING");
+        tracker.sending(sent, 1);
+        tracker.sent(sent, SendResult.success("MARKETING", "<3@example.com>", 10,
+                List.of(new RecipientResult("alice@example.com", true, 250, null))));
+        String failed = tracker.queued("NOTICE");
+        tracker.failed(failed, failure(550, "550 5.1.1 No such user"), null);
+        String pending = tracker.queued("NOTICE");
+        tracker.destroy();
+
+        DeliveryTracker reloaded = new DeliveryTracker(16, this.directory);
+
+        DeliveryRecord record = reloaded.find(sent).orElseThrow();
+        DeliveryRecord original = tracker.find(sent).orElseThrow();
+        // 日志中的时间精确到毫秒
+        assertThat(record).usingRecursiveComparison().ignoringFields("queuedAt", "startedAt", "finishedAt").isEqualTo(original);
+        assertThat(record.finishedAt()).isEqualTo(original.finishedAt().truncatedTo(ChronoUnit.MILLIS));
+        assertThat(reloaded.find(failed).orElseThrow().replyCode()).isEqualTo(550);
+        // 未结束的记录不写日志
+        assertThat(reloaded.find(pending)).isEmpty();
+        // 从最大序号继续编号，不会重复使用记录ID
+        String next = reloaded.queued("MARKETING");
+        assertThat(Long.parseLong(next, Character.MAX_RADIX)).isGreaterThan(Long.parseLong(failed, Character.MAX_RADIX));
+        reloaded.destroy();
+    }
+
+    @Test
+    void keepsAtMostTwoJournalFiles() throws IOException {
+        DeliveryTracker tracker = new DeliveryTracker(2, this.directory);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            String id = tracker.queued("T" + i);
+            tracker.sent(id, SendResult.success("T" + i, null, 1));
+            ids.add(id);
+        }
+        tracker.destroy();
+
+        try (Stream<Path> files = Files.list(this.directory)) {
+            assertThat(files.count()).isEqualTo(2);
+        }
+        DeliveryTracker reloaded = new DeliveryTracker(2, this.directory);
+        assertThat(reloaded.list(null, 10)).extracting(DeliveryRecord::id).containsExactly(ids.get(6), ids.get(5));
+        assertThat(reloaded.getCount(DeliveryStatus.SENT)).isEqualTo(2);
+        reloaded.destroy();
+    }
+
+    @Test
+    void countsStayConsistentUnderConcurrentUpdates() throws Exception {
+        DeliveryTracker tracker = new DeliveryTracker(64, null);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        String id = tracker.queued("T");
+                        tracker.sending(id, 1);
+                        if (j % 2 == 0) {
+                            tracker.sent(id, SendResult.success("T", null, 1));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long total = 0;
+        for (DeliveryStatus status : DeliveryStatus.values()) {
+            total += tracker.getCount(status);
+        }
+        assertThat(total).isEqualTo(64);
+        // 被挂起的线程不会用较早的记录覆盖序号大一圈的记录
+        assertThat(tracker.list(null, 100)).hasSize(64);
+    }
+
+    @Test
+    void noneRecordsNothing() {
+        String id = DeliveryTracker.NONE.queued("MARKETING");
+
+        DeliveryTracker.NONE.sent(id, SendResult.success("MARKETING", null, 1));
+
+        assertThat(id).isNull();
+        assertThat(DeliveryTracker.NONE.getCapacity()).isZero();
+        assertThat(DeliveryTracker.NONE.list(null, 10)).isEmpty();
+    }
+
+    private static MailSendException failure(int code, String reply) {
+        SMTPSendFailedException cause = new SMTPSendFailedException("DATA", code, reply, null, new Address[0], new Address[0], new Address[0]);
+        return new MailSendException("Failed messages: " + cause.getMessage(), cause);
+    }
+}
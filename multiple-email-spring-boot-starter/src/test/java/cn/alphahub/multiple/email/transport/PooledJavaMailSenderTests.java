@@ -0,0 +1,250 @@
+package cn.alphahub.multiple.email.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import cn.alphahub.multiple.email.config.EmailConfig.EmailPoolProperties;
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRateLimitProperties;
+import cn.alphahub.multiple.email.test.FakeSmtpOptions;
+import cn.alphahub.multiple.email.test.FakeSmtpServer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+class PooledJavaMailSenderTests {
+    private FakeSmtpServer server;
+    private PooledJavaMailSender sender;
+
+    @AfterEach
+    void close() throws IOException {
+        if (this.sender != null) {
+            this.sender.destroy();
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    void reusesIdleConnection() throws Exception {
+        this.start(new FakeSmtpOptions(), pool());
+
+        for (int i = 0; i < 3; i++) {
+            this.sender.send(this.message());
+        }
+
+        assertThat(this.server.getStats().connections()).isEqualTo(1);
+        assertThat(this.server.getStats().accepted()).isEqualTo(3);
+        assertThat(this.sender.getIdleCount()).isEqualTo(1);
+        assertThat(this.sender.getActiveCount()).isZero();
+    }
+
+    @Test
+    void withoutPoolEveryMessageOpensConnection() throws Exception {
+        EmailPoolProperties pool = pool();
+        pool.setEnabled(false);
+        this.start(new FakeSmtpOptions(), pool);
+
+        this.sender.send(this.message());
+        this.sender.send(this.message());
+
+        assertThat(this.server.getStats().connections()).isEqualTo(2);
+        assertThat(this.sender.getIdleCount()).isZero();
+    }
+
+    @Test
+    void closesConnectionAfterMaxMessages() throws Exception {
+        EmailPoolProperties pool = pool();
+        pool.setMaxMessagesPerConnection(2);
+        this.start(new FakeSmtpOptions(), pool);
+
+        this.sender.send(this.message(), this.message(), this.message(), this.message(), this.message());
+
+        assertThat(this.server.getStats().connections()).isEqualTo(3);
+        assertThat(this.server.getStats().accepted()).isEqualTo(5);
+        assertThat(this.sender.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void validatesIdleConnectionWithNoop() throws Exception {
+        EmailPoolProperties pool = pool();
+        pool.setValidationInterval(Duration.ZERO);
+        this.start(new FakeSmtpOptions(), pool);
+
+        this.sender.send(this.message());
+        this.sender.send(this.message());
+
+        assertThat(this.server.getStats().noops()).isEqualTo(1);
+        assertThat(this.server.getStats().connections()).isEqualTo(1);
+    }
+
+    @Test
+    void replacesIdleConnectionClosedByServer() throws Exception {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setMaxMessagesPerConnection(1);
+        EmailPoolProperties pool = pool();
+        pool.setValidationInterval(Duration.ZERO);
+        this.start(options, pool);
+
+        this.sender.send(this.message());
+        this.sender.send(this.message());
+
+        // 服务器已断开空闲连接，借出前的NOOP失败后新建连接
+        FakeSmtpServer.Stats stats = this.server.getStats();
+        assertThat(stats.connections()).isEqualTo(2);
+        assertThat(stats.accepted()).isEqualTo(2);
+    }
+
+    @Test
+    void skipsValidationWithinInterval() throws Exception {
+        this.start(new FakeSmtpOptions(), pool());
+
+        this.sender.send(this.message());
+        this.sender.send(this.message());
+
+        assertThat(this.server.getStats().noops()).isZero();
+        assertThat(this.server.getStats().connections()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsIdleConnection() throws Exception {
+        EmailPoolProperties pool = pool();
+        pool.setMaxIdleTime(Duration.ofMillis(50));
+        this.start(new FakeSmtpOptions(), pool);
+
+        this.sender.send(this.message());
+        assertThat(this.sender.getIdleCount()).isEqualTo(1);
+        Thread.sleep(100);
+        this.sender.send(this.message());
+
+        assertThat(this.server.getStats().connections()).isEqualTo(2);
+        assertThat(this.server.getStats().noops()).isZero();
+        assertThat(this.sender.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void reconnectsAndResendsWhenClosedBeforeMailFrom() throws Exception {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setMaxMessagesPerConnection(1);
+        this.start(options, pool());
+
+        this.sender.send(this.message());
+        this.sender.send(this.message());
+
+        FakeSmtpServer.Stats stats = this.server.getStats();
+        assertThat(stats.connections()).isEqualTo(2);
+        assertThat(stats.accepted()).isEqualTo(2);
+        assertThat(stats.noops()).isZero();
+    }
+
+    @Test
+    void doesNotResendWhenClosedAfterMailFrom() throws Exception {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setDropReplyAt(2);
+        this.start(options, pool());
+
+        this.sender.send(this.message());
+        assertThatExceptionOfType(MailSendException.class).isThrownBy(() -> this.sender.send(this.message()));
+
+        // 服务器可能已收下邮件，重发会导致重复投递
+        FakeSmtpServer.Stats stats = this.server.getStats();
+        assertThat(stats.connections()).isEqualTo(1);
+        assertThat(stats.accepted()).isEqualTo(1);
+        assertThat(stats.dropped()).isEqualTo(1);
+        assertThat(this.sender.getIdleCount()).isZero();
+
+        this.sender.send(this.message());
+        assertThat(this.server.getStats().connections()).isEqualTo(2);
+    }
+
+    @Test
+    void waitsForRatePermitBeforeBorrowingConnection() throws Exception {
+        this.start(new FakeSmtpOptions(), pool());
+        CountDownLatch waiting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SmtpRateLimiter limiter = new SmtpRateLimiter(rateLimit(1, 1), new SmtpRateLimiter.Ticker() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public void sleep(long nanos) throws InterruptedException {
+                waiting.countDown();
+                release.await();
+            }
+        });
+        this.sender.setRateLimiter(limiter);
+        this.sender.send(this.message());
+
+        MimeMessage second = this.message();
+        Thread blocked = new Thread(() -> this.sender.send(second));
+        blocked.start();
+        assertThat(waiting.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 等待许可的线程不占用连接
+        assertThat(this.sender.getActiveCount()).isZero();
+        assertThat(this.sender.getIdleCount()).isEqualTo(1);
+
+        release.countDown();
+        blocked.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(this.server.getStats().accepted()).isEqualTo(2);
+        assertThat(this.server.getStats().connections()).isEqualTo(1);
+    }
+
+    @Test
+    void throttledReplyBacksOffRateLimiter() throws Exception {
+        FakeSmtpOptions options = new FakeSmtpOptions();
+        options.setTransientErrorRate(1.0);
+        this.start(options, pool());
+        SmtpRateLimiter limiter = new SmtpRateLimiter(rateLimit(10, 10));
+        this.sender.setRateLimiter(limiter);
+
+        assertThatExceptionOfType(MailSendException.class).isThrownBy(() -> this.sender.send(this.message()));
+
+        assertThat(limiter.getRate()).isEqualTo(5.0);
+    }
+
+    private void start(FakeSmtpOptions options, EmailPoolProperties pool) throws IOException {
+        this.server = new FakeSmtpServer(options);
+        this.sender = new PooledJavaMailSender(pool);
+        this.sender.setHost(this.server.getHost());
+        this.sender.setPort(this.server.getPort());
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.connectiontimeout", "5000");
+        properties.setProperty("mail.smtp.timeout", "5000");
+        this.sender.setJavaMailProperties(properties);
+    }
+
+    private MimeMessage message() throws MessagingException {
+        MimeMessage message = this.sender.createMimeMessage();
+        message.setFrom("sender@example.com");
+        message.setRecipients(MimeMessage.RecipientType.TO, "alice@example.com");
+        message.setSubject("test");
+        message.setText("hello");
+        return message;
+    }
+
+    private static EmailRateLimitProperties rateLimit(double permitsPerSecond, int burst) {
+        EmailRateLimitProperties rateLimit = new EmailRateLimitProperties();
+        rateLimit.setEnabled(true);
+        rateLimit.setPermitsPerSecond(permitsPerSecond);
+        rateLimit.setBurst(burst);
+        return rateLimit;
+    }
+
+    private static EmailPoolProperties pool() {
+        EmailPoolProperties pool = new EmailPoolProperties();
+        pool.setEnabled(true);
+        pool.setMaxSize(2);
+        pool.setMaxWait(Duration.ofSeconds(5));
+        return pool;
+    }
+}
@@ -0,0 +1,131 @@
+package cn.alphahub.multiple.email.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cn.alphahub.multiple.email.config.EmailConfig.EmailRateLimitProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class SmtpRateLimiterTests {
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    void spendsBurstThenPacesAtConfiguredRate() throws InterruptedException {
+        SmtpRateLimiter limiter = new SmtpRateLimiter(properties(), this.ticker);
+
+        limiter.acquire();
+        limiter.acquire();
+        assertThat(this.ticker.sleeps).isEmpty();
+
+        limiter.acquire();
+        limiter.acquire();
+        assertThat(this.ticker.sleeps).containsExactly(millis(100), millis(100));
+    }
+
+    @Test
+    void refillIsCappedAtBurst() throws InterruptedException {
+        SmtpRateLimiter limiter = new SmtpRateLimiter(properties(), this.ticker);
+        limiter.acquire();
+        limiter.acquire();
+
+        this.ticker.advance(Duration.ofSeconds(10));
+        limiter.acquire();
+        limiter.acquire();
+        assertThat(this.ticker.sleeps).isEmpty();
+        limiter.acquire();
+        assertThat(this.ticker.sleeps).containsExactly(millis(100));
+    }
+
+    @Test
+    void throttledReplyHalvesRateAndPauses() throws InterruptedException {
+        SmtpRateLimiter limiter = new SmtpRateLimiter(properties(), this.ticker);
+        limiter.acquire();
+
+        limiter.onThrottled();
+        assertThat(limiter.getRate()).isEqualTo(5.0);
+        // 暂停5s，且限流后不保留已累积的令牌：下一个令牌按新速率需要200ms
+        limiter.acquire();
+        assertThat(this.ticker.sleeps).containsExactly(millis(5_200));
+    }
+
+    @Test
+    void backoffStopsAtMinimumRate() {
+        SmtpRateLimiter limiter = new SmtpRateLimiter(properties(), this.ticker);
+
+        limiter.onThrottled();
+        limiter.onThrottled();
+        limiter.onThrottled();
+        assertThat(limiter.getRate()).isEqualTo(1.25);
+        limiter.onThrottled();
+        assertThat(limiter.getRate()).isEqualTo(1.0);
+    }
+
+    @Test
+    void successesRecoverAdditivelyUpToConfiguredRate() {
+        SmtpRateLimiter limiter = new SmtpRateLimiter(properties(), this.ticker);
+        limiter.onThrottled();
+        limiter.onThrottled();
+        assertThat(limiter.getRate()).isEqualTo(2.5);
+
+        limiter.onSuccess();
+        assertThat(limiter.getRate()).isEqualTo(3.5);
+        for (int i = 0; i < 10; i++) {
+            limiter.onSuccess();
+        }
+        assertThat(limiter.getRate()).isEqualTo(10.0);
+    }
+
+    @Test
+    void pauseDoesNotStackAcrossRepeatedThrottles() throws InterruptedException {
+        SmtpRateLimiter limiter = new SmtpRateLimiter(properties(), this.ticker);
+        limiter.onThrottled();
+        this.ticker.advance(Duration.ofSeconds(1));
+        limiter.onThrottled();
+
+        // 第二次限流从当前时刻起暂停5s，不与第一次累加；速率已降到2.5，下一个令牌需要400ms
+        limiter.acquire();
+        assertThat(this.ticker.sleeps).containsExactly(millis(5_400));
+    }
+
+    private static EmailRateLimitProperties properties() {
+        EmailRateLimitProperties properties = new EmailRateLimitProperties();
+        properties.setEnabled(true);
+        properties.setPermitsPerSecond(10);
+        properties.setBurst(2);
+        properties.setBackoffFactor(0.5);
+        properties.setMinPermitsPerSecond(1);
+        properties.setRecoveryStep(1);
+        properties.setThrottlePause(Duration.ofSeconds(5));
+        return properties;
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * 只在等待时前进的时钟
+     */
+    static final class FakeTicker implements SmtpRateLimiter.Ticker {
+        private final List<Long> sleeps = new ArrayList<>();
+        private long now = 1_000_000L;
+
+        @Override
+        public long nanoTime() {
+            return this.now;
+        }
+
+        @Override
+        public void sleep(long nanos) {
+            this.sleeps.add(nanos);
+            this.now += nanos;
+        }
+
+        void advance(Duration duration) {
+            this.now += duration.toNanos();
+        }
+    }
+}
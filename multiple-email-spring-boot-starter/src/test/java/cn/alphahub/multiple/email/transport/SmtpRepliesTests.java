@@ -0,0 +1,130 @@
+package cn.alphahub.multiple.email.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.util.MailConnectException;
+import org.eclipse.angus.mail.util.SocketConnectException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+
+class SmtpRepliesTests {
+    private static final InternetAddress ALICE = address("alice@example.com");
+    private static final InternetAddress BOB = address("bob@example.com");
+
+    @Test
+    void dataRejectedWith4xxIsTransient() {
+        MailSendException failure = failed(new SMTPSendFailedException("DATA", 451, "451 4.3.0 Try again later", null,
+                new Address[0], new Address[]{ALICE}, new Address[0]));
+
+        assertThat(SmtpReplies.replyCodes(failure)).containsExactly(451);
+        assertThat(SmtpReplies.isTransient(failure)).isTrue();
+        assertThat(SmtpReplies.isThrottled(failure)).isTrue();
+        assertThat(SmtpReplies.isConnectionFailure(failure)).isTrue();
+    }
+
+    @Test
+    void dataRejectedWith5xxIsPermanent() {
+        MailSendException failure = failed(new SMTPSendFailedException("DATA", 554, "554 5.7.1 Message rejected", null,
+                new Address[0], new Address[]{ALICE}, new Address[0]));
+
+        assertThat(SmtpReplies.replyCodes(failure)).containsExactly(554);
+        assertThat(SmtpReplies.isTransient(failure)).isFalse();
+        assertThat(SmtpReplies.isThrottled(failure)).isFalse();
+    }
+
+    @Test
+    void recipientsRejectedWith4xxAreTransient() {
+        SMTPAddressFailedException alice = new SMTPAddressFailedException(ALICE, "RCPT TO:<alice@example.com>", 450, "450 4.2.1 Mailbox busy");
+        SMTPAddressFailedException bob = new SMTPAddressFailedException(BOB, "RCPT TO:<bob@example.com>", 451, "451 4.7.1 Greylisted");
+        alice.setNextException(bob);
+        MailSendException failure = failed(new SendFailedException("Invalid Addresses", alice,
+                new Address[0], new Address[0], new Address[]{ALICE, BOB}));
+
+        assertThat(SmtpReplies.replyCodes(failure)).containsExactly(450, 451);
+        assertThat(SmtpReplies.isTransient(failure)).isTrue();
+        assertThat(SmtpReplies.partialDelivery(failure)).isNull();
+    }
+
+    @Test
+    void mixedRecipientCodesArePermanent() {
+        // 只要有一个收件人被永久拒绝，重发整封邮件仍会失败
+        SMTPAddressFailedException alice = new SMTPAddressFailedException(ALICE, "RCPT TO:<alice@example.com>", 451, "451 4.7.1 Greylisted");
+        SMTPAddressFailedException bob = new SMTPAddressFailedException(BOB, "RCPT TO:<bob@example.com>", 550, "550 5.1.1 No such user");
+        alice.setNextException(bob);
+        MailSendException failure = failed(new SendFailedException("Invalid Addresses", alice,
+                new Address[0], new Address[0], new Address[]{ALICE, BOB}));
+
+        assertThat(SmtpReplies.replyCodes(failure)).containsExactly(451, 550);
+        assertThat(SmtpReplies.isTransient(failure)).isFalse();
+        assertThat(SmtpReplies.isThrottled(failure)).isTrue();
+        assertThat(SmtpReplies.sendFailure(failure).getInvalidAddresses()).containsExactly(ALICE, BOB);
+    }
+
+    @Test
+    void partialDeliveryKeepsRecipientClassification() {
+        SMTPAddressFailedException bob = new SMTPAddressFailedException(BOB, "RCPT TO:<bob@example.com>", 550, "550 5.1.1 No such user");
+        SMTPSendFailedException sent = new SMTPSendFailedException("DATA", 250, "250 OK queued", bob,
+                new Address[]{ALICE}, new Address[0], new Address[]{BOB});
+        MailSendException failure = failed(sent);
+
+        SendFailedException partial = SmtpReplies.partialDelivery(failure);
+        assertThat(partial).isSameAs(sent);
+        assertThat(partial.getValidSentAddresses()).containsExactly(ALICE);
+        assertThat(SmtpReplies.replyCodes(failure)).containsExactly(250, 550);
+    }
+
+    @Test
+    void greetingReplyCodeIsParsedFromMessage() {
+        MailSendException failure = failed(new MessagingException("Got bad greeting from SMTP host: smtp.example.com, port: 25, response: 421 Too many connections"));
+
+        assertThat(SmtpReplies.replyCodes(failure)).containsExactly(421);
+        assertThat(SmtpReplies.isTransient(failure)).isTrue();
+    }
+
+    @Test
+    void socketFailuresAreTransient() {
+        MailConnectException connect = new MailConnectException(new SocketConnectException("Connection refused", new ConnectException("Connection refused"), "smtp.example.com", 25, 5000));
+        assertThat(SmtpReplies.isTransient(failed(connect))).isTrue();
+        assertThat(SmtpReplies.isTransient(failed(new MessagingException("Exception reading response", new SocketTimeoutException("Read timed out"))))).isTrue();
+        assertThat(SmtpReplies.isTransient(failed(new MessagingException("Can't send command to SMTP host", new SocketException("Connection reset"))))).isTrue();
+    }
+
+    @Test
+    void localIoFailuresArePermanent() {
+        MessagingException missingAttachment = new MessagingException("IOException while sending message", new FileNotFoundException("/tmp/missing.pdf (No such file or directory)"));
+        assertThat(SmtpReplies.isTransient(failed(missingAttachment))).isFalse();
+        assertThat(SmtpReplies.isTransient(failed(new MessagingException("IOException while sending message", new IOException("Stream closed"))))).isFalse();
+    }
+
+    @Test
+    void authenticationFailuresArePermanent() {
+        assertThat(SmtpReplies.isTransient(new MailAuthenticationException(new AuthenticationFailedException("535 5.7.8 Authentication failed")))).isFalse();
+        assertThat(SmtpReplies.isConnectionFailure(new MailAuthenticationException("Authentication failed"))).isTrue();
+    }
+
+    private static MailSendException failed(Exception cause) {
+        return new MailSendException(Map.of(new Object(), cause));
+    }
+
+    private static InternetAddress address(String address) {
+        try {
+            return new InternetAddress(address);
+        } catch (MessagingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
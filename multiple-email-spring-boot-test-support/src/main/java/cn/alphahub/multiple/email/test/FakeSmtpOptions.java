@@ -0,0 +1,159 @@
+package cn.alphahub.multiple.email.test;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * 进程内假SMTP服务器的故障注入配置
+ * <p>默认不注入任何延迟和故障；故障注入按每封邮件独立判定：先判定限流，再判定暂时失败、永久失败。</p>
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+public class FakeSmtpOptions {
+    /**
+     * 监听端口，0表示随机端口
+     */
+    private int port = 0;
+    /**
+     * 每封邮件DATA结束后应答前的固定延迟，模拟服务商的处理耗时
+     */
+    private Duration latency = Duration.ZERO;
+    /**
+     * 在固定延迟之上增加的随机延迟上限
+     */
+    private Duration latencyJitter = Duration.ZERO;
+    /**
+     * 建立连接后发送问候语前的延迟，模拟TCP+TLS握手耗时
+     */
+    private Duration connectLatency = Duration.ZERO;
+    /**
+     * 以451应答的邮件比例（暂时失败，客户端应重试）
+     */
+    private double transientErrorRate = 0.0;
+    /**
+     * 以550应答的邮件比例（永久失败）
+     */
+    private double permanentErrorRate = 0.0;
+    /**
+     * 每秒最多接收的邮件数，超出时以450应答（限流），0表示不限制
+     */
+    private int maxMessagesPerSecond = 0;
+    /**
+     * 最大并发连接数，超出时问候语以421应答并断开，0表示不限制
+     */
+    private int maxConnections = 0;
+    /**
+     * 单个连接接收该数量的邮件后服务器主动断开，模拟服务商关闭长连接，0表示不限制
+     */
+    private int maxMessagesPerConnection = 0;
+    /**
+     * 单个连接上第N封邮件DATA结束后不应答直接断开，模拟邮件已提交但应答丢失，0表示不注入
+     */
+    private int dropReplyAt = 0;
+    /**
+     * 以550应答{@code RCPT TO}的收件人地址，模拟收件人不存在
+     */
+    private Set<String> rejectedRecipients = Set.of();
+    /**
+     * 是否保存接收的邮件（信封和原始内容），供测试断言；压测时保持关闭，避免占用内存
+     */
+    private boolean recordMessages = false;
+
+    public int getPort() {
+        return this.port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public Duration getLatency() {
+        return this.latency;
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public Duration getLatencyJitter() {
+        return this.latencyJitter;
+    }
+
+    public void setLatencyJitter(Duration latencyJitter) {
+        this.latencyJitter = latencyJitter;
+    }
+
+    public Duration getConnectLatency() {
+        return this.connectLatency;
+    }
+
+    public void setConnectLatency(Duration connectLatency) {
+        this.connectLatency = connectLatency;
+    }
+
+    public double getTransientErrorRate() {
+        return this.transientErrorRate;
+    }
+
+    public void setTransientErrorRate(double transientErrorRate) {
+        this.transientErrorRate = transientErrorRate;
+    }
+
+    public double getPermanentErrorRate() {
+        return this.permanentErrorRate;
+    }
+
+    public void setPermanentErrorRate(double permanentErrorRate) {
+        this.permanentErrorRate = permanentErrorRate;
+    }
+
+    public int getMaxMessagesPerSecond() {
+        return this.maxMessagesPerSecond;
+    }
+
+    public void setMaxMessagesPerSecond(int maxMessagesPerSecond) {
+        this.maxMessagesPerSecond = maxMessagesPerSecond;
+    }
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxMessagesPerConnection() {
+        return this.maxMessagesPerConnection;
+    }
+
+    public void setMaxMessagesPerConnection(int maxMessagesPerConnection) {
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+    }
+
+    public int getDropReplyAt() {
+        return this.dropReplyAt;
+    }
+
+    public void setDropReplyAt(int dropReplyAt) {
+        this.dropReplyAt = dropReplyAt;
+    }
+
+    public Set<String> getRejectedRecipients() {
+        return this.rejectedRecipients;
+    }
+
+    public void setRejectedRecipients(Set<String> rejectedRecipients) {
+        this.rejectedRecipients = Set.copyOf(rejectedRecipients);
+    }
+
+    public boolean isRecordMessages() {
+        return this.recordMessages;
+    }
+
+    public void setRecordMessages(boolean recordMessages) {
+        this.recordMessages = recordMessages;
+    }
+}
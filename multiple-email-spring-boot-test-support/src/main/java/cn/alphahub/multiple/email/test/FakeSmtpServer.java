@@ -0,0 +1,317 @@
+package cn.alphahub.multiple.email.test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的假SMTP服务器
+ * <p>
+ * 只实现发送邮件所需的最小命令集，接收的邮件默认直接丢弃（开启{@code recordMessages}时保存供测试断言），不受真实邮件服务商的限制；
+ * 可按{@link FakeSmtpOptions}注入处理延迟、451暂时失败、550永久失败、450限流、421连接数超限、拒绝指定收件人，以及服务器主动断开连接。
+ * 基准测试用它测量客户端侧的吞吐量，示例模块的{@code fake-smtp} profile用它在本机压测连接池、线程池、重试等配置。
+ *
+ * @author agent
+ * @version 1.0.0
+ * @date 2026-10-16
+ */
+public class FakeSmtpServer implements AutoCloseable {
+    private final FakeSmtpOptions options;
+    private final ServerSocket serverSocket;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong transientErrors = new AtomicLong();
+    private final AtomicLong permanentErrors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong noops = new AtomicLong();
+    private final Queue<ReceivedMessage> messages = new ConcurrentLinkedQueue<>();
+    private final Object windowLock = new Object();
+    private long windowSecond;
+    private int windowCount;
+    private volatile boolean running = true;
+
+    /**
+     * 监听随机端口、不注入故障的假SMTP服务器
+     *
+     * @throws IOException 无法监听端口
+     */
+    public FakeSmtpServer() throws IOException {
+        this(new FakeSmtpOptions());
+    }
+
+    /**
+     * 按故障注入配置创建假SMTP服务器
+     *
+     * @param options 故障注入配置
+     * @throws IOException 无法监听端口
+     */
+    public FakeSmtpServer(FakeSmtpOptions options) throws IOException {
+        this.options = options;
+        this.serverSocket = new ServerSocket(options.getPort(), 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "fake-smtp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * 监听地址
+     *
+     * @return host
+     */
+    public String getHost() {
+        return this.serverSocket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * 监听端口
+     *
+     * @return port
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * 服务器计数快照
+     *
+     * @return stats
+     */
+    public Stats getStats() {
+        return new Stats(this.connections.get(), this.accepted.get(), this.transientErrors.get(), this.permanentErrors.get(), this.throttled.get(),
+                this.dropped.get(), this.noops.get());
+    }
+
+    /**
+     * 已接收的邮件，按接收顺序排列；只有开启{@link FakeSmtpOptions#isRecordMessages()}时才保存
+     *
+     * @return received messages
+     */
+    public List<ReceivedMessage> getMessages() {
+        return List.copyOf(this.messages);
+    }
+
+    private void accept() {
+        while (this.running) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                this.connections.incrementAndGet();
+                Thread session = new Thread(() -> this.session(socket), "fake-smtp-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                if (this.running) {
+                    throw new IllegalStateException("Fake SMTP server failed to accept connection", e);
+                }
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        int active = this.activeConnections.incrementAndGet();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1))) {
+            if (this.options.getMaxConnections() > 0 && active > this.options.getMaxConnections()) {
+                reply(out, "421 4.7.0 Too many connections, try again later");
+                return;
+            }
+            sleep(this.options.getConnectLatency(), Duration.ZERO);
+            reply(out, "220 localhost fake SMTP ready");
+            String line;
+            int messages = 0;
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "MAIL" -> {
+                        from = address(line);
+                        recipients = new ArrayList<>();
+                        reply(out, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        String recipient = address(line);
+                        if (this.options.getRejectedRecipients().contains(recipient)) {
+                            reply(out, "550 5.1.1 <" + recipient + ">: Recipient address rejected: User unknown");
+                        } else {
+                            recipients.add(recipient);
+                            reply(out, "250 OK");
+                        }
+                    }
+                    case "NOOP" -> {
+                        this.noops.incrementAndGet();
+                        reply(out, "250 OK");
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder content = this.options.isRecordMessages() ? new StringBuilder() : null;
+                        while ((line = in.readLine()) != null && !".".equals(line)) {
+                            if (content != null) {
+                                content.append(line.startsWith(".") ? line.substring(1) : line).append("\r\n");
+                            }
+                        }
+                        messages++;
+                        if (messages == this.options.getDropReplyAt()) {
+                            this.dropped.incrementAndGet();
+                            return;
+                        }
+                        sleep(this.options.getLatency(), this.options.getLatencyJitter());
+                        String reply = this.dataReply();
+                        if (content != null && reply.startsWith("250")) {
+                            this.messages.add(new ReceivedMessage(from, List.copyOf(recipients), content.toString()));
+                        }
+                        reply(out, reply);
+                        if (messages == this.options.getMaxMessagesPerConnection()) {
+                            return;
+                        }
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // client closed the connection
+        } finally {
+            this.activeConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * 按故障注入配置决定DATA结束后的应答
+     *
+     * @return SMTP reply
+     */
+    private String dataReply() {
+        if (!this.tryAcquire()) {
+            this.throttled.incrementAndGet();
+            return "450 4.7.0 Too many messages, slow down";
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        if (random < this.options.getTransientErrorRate()) {
+            this.transientErrors.incrementAndGet();
+            return "451 4.3.0 Temporary local problem, try again later";
+        }
+        if (random < this.options.getTransientErrorRate() + this.options.getPermanentErrorRate()) {
+            this.permanentErrors.incrementAndGet();
+            return "550 5.7.1 Message rejected";
+        }
+        this.accepted.incrementAndGet();
+        return "250 OK queued";
+    }
+
+    /**
+     * 按秒计数的固定窗口限流
+     *
+     * @return 是否在限额内
+     */
+    private boolean tryAcquire() {
+        int limit = this.options.getMaxMessagesPerSecond();
+        if (limit <= 0) {
+            return true;
+        }
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        synchronized (this.windowLock) {
+            if (second != this.windowSecond) {
+                this.windowSecond = second;
+                this.windowCount = 0;
+            }
+            return ++this.windowCount <= limit;
+        }
+    }
+
+    /**
+     * 取出{@code MAIL FROM:<...>}、{@code RCPT TO:<...>}中的地址
+     *
+     * @param line SMTP command
+     * @return address
+     */
+    private static String address(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>', start + 1);
+        return start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(line.indexOf(':') + 1).trim();
+    }
+
+    private static void sleep(Duration latency, Duration jitter) {
+        long nanos = latency.toNanos() + (jitter.isZero() ? 0L : ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1));
+        if (nanos <= 0L) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(Writer out, String reply) throws IOException {
+        out.write(reply);
+        out.write("\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        this.serverSocket.close();
+    }
+
+    /**
+     * 已接收的邮件
+     *
+     * @param from       信封发件人（{@code MAIL FROM}）
+     * @param recipients 被接受的信封收件人（{@code RCPT TO}）
+     * @param content    邮件原始内容，已去除点填充，行以CRLF结尾
+     */
+    public record ReceivedMessage(String from, List<String> recipients, String content) {
+    }
+
+    /**
+     * 服务器计数
+     *
+     * @param connections     已接受的连接数
+     * @param accepted        已接收的邮件数
+     * @param transientErrors 以451应答的邮件数
+     * @param permanentErrors 以550应答的邮件数
+     * @param throttled       以450应答的邮件数
+     * @param dropped         DATA结束后未应答即断开的邮件数
+     * @param noops           收到的NOOP命令数
+     */
+    public record Stats(long connections, long accepted, long transientErrors, long permanentErrors, long throttled,
+                        long dropped, long noops) {
+
+        /**
+         * 两次快照之间的增量
+         *
+         * @param before 较早的快照
+         * @return stats
+         */
+        public Stats minus(Stats before) {
+            return new Stats(this.connections - before.connections, this.accepted - before.accepted,
+                    this.transientErrors - before.transientErrors, this.permanentErrors - before.permanentErrors,
+                    this.throttled - before.throttled, this.dropped - before.dropped, this.noops - before.noops);
+        }
+    }
+}